@@ -0,0 +1,210 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code /api/movies} and {@code /api/movies/{id}} through Spring MVC's {@link DispatcherServlet},
+ * answered from the {@link MovieJsonCache} as plain and gzipped bytes, against a
+ * {@code @RestController} that returns the same objects for Jackson to serialize on every request.
+ * Throughput is requests per second; the GC profiler's {@code gc.alloc.rate.norm} is bytes
+ * allocated per request, including the mock request and response all variants share.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiPayloadBenchmark {
+
+    private static final int MOVIE_COUNT = 1000;
+
+    @Param({"page", "movie"})
+    public String payload;
+
+    private DispatcherServlet dispatcher;
+    private String cachedPath;
+    private String jacksonPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] json = SyntheticCatalog.moviesJson(MOVIE_COUNT).getBytes(StandardCharsets.UTF_8);
+        MovieService movieService = new MovieService(new HeapMovieStore(new CatalogLoader().loadMovies(new ByteArrayInputStream(json))));
+        MoviesApiController cached = new MoviesApiController();
+        ReflectionTestUtils.setField(cached, "movieJsonCache",
+            new MovieJsonCache(Jackson2ObjectMapperBuilder.json().build(), movieService, 16 << 20));
+        ReflectionTestUtils.setField(cached, "requestExecutor",
+            new RequestExecutor(RequestExecutor.Mode.BLOCKING, false, 1, 1000, 10_000, new MockEnvironment()));
+
+        MockServletContext servletContext = new MockServletContext();
+        AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(servletContext);
+        context.register(WebConfig.class, MovieJsonPayloadHandler.class);
+        context.addBeanFactoryPostProcessor(beanFactory -> {
+            beanFactory.registerSingleton("moviesApiController", cached);
+            beanFactory.registerSingleton("jacksonApiController", new JacksonApiController(movieService));
+        });
+        context.refresh();
+        dispatcher = new DispatcherServlet(context);
+        try {
+            dispatcher.init(new MockServletConfig(servletContext));
+        } catch (ServletException e) {
+            throw new IllegalStateException(e);
+        }
+
+        cachedPath = "/api/movies" + ("page".equals(payload) ? "" : "/42");
+        jacksonPath = "/jackson/movies" + ("page".equals(payload) ? "" : "/42");
+        MockHttpServletResponse fromJackson = new MockHttpServletResponse();
+        MockHttpServletResponse fromCache = new MockHttpServletResponse();
+        service(request(jacksonPath, null), fromJackson);
+        service(request(cachedPath, null), fromCache);
+        if (fromJackson.getStatus() != 200 || !Arrays.equals(fromJackson.getContentAsByteArray(), fromCache.getContentAsByteArray())) {
+            throw new IllegalStateException("Cached and serialized responses differ for " + payload);
+        }
+    }
+
+    @Benchmark
+    public long jackson() {
+        return perform(jacksonPath, null);
+    }
+
+    @Benchmark
+    public long cached() {
+        return perform(cachedPath, null);
+    }
+
+    @Benchmark
+    public long cachedGzip() {
+        return perform(cachedPath, "gzip, deflate, br");
+    }
+
+    private long perform(String path, String acceptEncoding) {
+        DiscardingResponse response = new DiscardingResponse();
+        service(request(path, acceptEncoding), response);
+        return response.written;
+    }
+
+    private MockHttpServletRequest request(String path, String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest(dispatcher.getServletContext(), "GET", path);
+        if ("page".equals(payload)) {
+            request.setQueryString("sort=rating&size=24");
+            request.addParameter("sort", "rating");
+            request.addParameter("size", "24");
+        }
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return request;
+    }
+
+    private void service(MockHttpServletRequest request, MockHttpServletResponse response) {
+        try {
+            dispatcher.service(request, response);
+        } catch (ServletException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Counts the body instead of buffering it, standing in for the container's socket buffer;
+     * {@link MockHttpServletResponse}'s own stream copies every body byte by byte.
+     */
+    static final class DiscardingResponse extends MockHttpServletResponse {
+        long written;
+
+        private final ServletOutputStream body = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                written += len;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return body;
+        }
+    }
+
+    /**
+     * Spring MVC with the handlers running inline; {@link MovieJsonPayloadHandler} is registered alongside.
+     */
+    @Configuration
+    static class WebConfig extends WebMvcConfigurationSupport {
+    }
+
+    /**
+     * The same endpoints written the usual way, serialized by Jackson on every request.
+     */
+    @RestController
+    @RequestMapping("/jackson/movies")
+    public static class JacksonApiController {
+        private final MovieService movieService;
+
+        JacksonApiController(MovieService movieService) {
+            this.movieService = movieService;
+        }
+
+        @GetMapping
+        public MoviePage list(@RequestParam(value = "sort", required = false) String sort,
+                              @RequestParam(value = "after", required = false) String after,
+                              @RequestParam(value = "size", required = false) Integer size) {
+            return movieService.getMoviePage(MovieSort.fromParameter(sort), after, size != null ? size : 24);
+        }
+
+        @GetMapping("/{id}")
+        public Movie movie(@PathVariable("id") long movieId) {
+            return movieService.getMovieById(movieId).orElse(null);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of loading a synthetic {@code movies.json} with each {@link CatalogLoader.Mode}.
+ * Each fork loads one catalog; {@code peakHeapMb} is the heap high-water mark seen during the load.
+ * The 5M catalog is roughly 1.4 GB of JSON and needs a large heap in DOM mode:
+ * <pre>mvn -Pbenchmark test-compile exec:exec -Djmh.args="CatalogLoadBenchmark -jvmArgs -Xmx12g"</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class CatalogLoadBenchmark {
+
+    @Param({"10000", "1000000", "5000000"})
+    public int movieCount;
+
+    @Param({"DOM", "STREAMING", "PARALLEL"})
+    public CatalogLoader.Mode mode;
+
+    private File catalogFile;
+    private CatalogLoader loader;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HeapCounters {
+        public long peakHeapMb;
+    }
+
+    @Setup(Level.Trial)
+    public void writeCatalog() throws IOException {
+        catalogFile = File.createTempFile("movies-" + movieCount + "-", ".json");
+        catalogFile.deleteOnExit();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(catalogFile), StandardCharsets.UTF_8), 1 << 16)) {
+            SyntheticCatalog.appendMovies(writer, movieCount);
+        }
+        loader = new CatalogLoader(mode, 4096, 0);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeaks() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCatalog() {
+        catalogFile.delete();
+    }
+
+    @Benchmark
+    public List<Movie> load(HeapCounters counters) throws IOException {
+        List<Movie> movies;
+        try (InputStream inputStream = new FileInputStream(catalogFile)) {
+            movies = loader.loadMovies(inputStream);
+        }
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        counters.peakHeapMb = peak >> 20;
+        return movies;
+    }
+}
@@ -0,0 +1,76 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link MovieMetrics} on the instrumented hot paths: {@code none} never creates the
+ * meters, {@code off} creates them and switches instrumentation off at runtime, {@code on} records
+ * into a Prometheus registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    @Param({"none", "off", "on"})
+    public String instrumentation;
+
+    private final MovieService movieService = new MovieService();
+    private final ReviewService reviewService = new ReviewService();
+    private final ReviewRequest review = new ReviewRequest("Ana", 5, "A gripping story with great acting throughout");
+    private MovieMetrics metrics;
+    private long cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!"none".equals(instrumentation)) {
+            metrics = new MovieMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), movieService,
+                reviewService, new RenderedPageCache(1 << 20, new InMemoryReviewStore()),
+                new AdmissionControl(true, 1, 10, 50, 100, 100_000, new StandardEnvironment()), "on".equals(instrumentation));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (metrics != null) {
+            metrics.close();
+        }
+    }
+
+    @Benchmark
+    public Optional<Movie> getMovieById() {
+        return movieService.getMovieById(1 + (cursor++ & 15));
+    }
+
+    @Benchmark
+    public List<Review> getReviewsForMovie() {
+        return reviewService.getReviewsForMovie(1 + (cursor++ & 15));
+    }
+
+    @Benchmark
+    public ReviewValidationError validate() {
+        return ReviewValidator.defaults().validate(review, metrics);
+    }
+}
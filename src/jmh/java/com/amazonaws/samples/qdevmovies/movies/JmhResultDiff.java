@@ -0,0 +1,86 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files (as written to {@code target/jmh-result.json}) and prints
+ * the change in score and normalised allocation for every benchmark present in both.
+ * <pre>mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.amazonaws.samples.qdevmovies.movies.JmhResultDiff -Djmh.args="baseline.json target/jmh-result.json" -Djmh.report=</pre>
+ */
+public final class JmhResultDiff {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private JmhResultDiff() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: JmhResultDiff <baseline.json> <candidate.json>");
+            System.exit(2);
+        }
+        Map<String, JSONObject> baseline = load(args[0]);
+        Map<String, JSONObject> candidate = load(args[1]);
+        System.out.printf("%-90s %14s %14s %9s %12s %12s%n", "benchmark", "baseline", "candidate", "change", "B/op before", "B/op after");
+        for (Map.Entry<String, JSONObject> entry : candidate.entrySet()) {
+            JSONObject before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            JSONObject after = entry.getValue();
+            double beforeScore = before.getJSONObject("primaryMetric").getDouble("score");
+            double afterScore = after.getJSONObject("primaryMetric").getDouble("score");
+            String unit = after.getJSONObject("primaryMetric").getString("scoreUnit");
+            System.out.printf("%-90s %14s %14s %+8.1f%% %12s %12s%n", entry.getKey(),
+                format(beforeScore, unit), format(afterScore, unit), (afterScore - beforeScore) * 100.0 / beforeScore,
+                allocation(before), allocation(after));
+        }
+    }
+
+    private static Map<String, JSONObject> load(String path) throws IOException {
+        Map<String, JSONObject> results = new LinkedHashMap<>();
+        try (InputStream in = new FileInputStream(path)) {
+            JSONArray runs = new JSONArray(new JSONTokener(in));
+            for (int i = 0; i < runs.length(); i++) {
+                JSONObject run = runs.getJSONObject(i);
+                results.put(run.getString("benchmark") + params(run), run);
+            }
+        }
+        return results;
+    }
+
+    private static String params(JSONObject run) {
+        JSONObject params = run.optJSONObject("params");
+        if (params == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder();
+        Iterator<String> names = params.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            key.append(key.length() == 0 ? " {" : ", ").append(name).append('=').append(params.get(name));
+        }
+        return key.append('}').toString();
+    }
+
+    private static String allocation(JSONObject run) {
+        JSONObject secondary = run.optJSONObject("secondaryMetrics");
+        if (secondary == null || !secondary.has(ALLOCATION)) {
+            return "-";
+        }
+        return String.format("%.0f", secondary.getJSONObject(ALLOCATION).getDouble("score"));
+    }
+
+    private static String format(double score, String unit) {
+        return String.format("%.3f %s", score, unit);
+    }
+}
@@ -0,0 +1,79 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Top-10 lookups from the precomputed leaderboards against sorting the catalog on every request:
+ * <pre>mvn -Pbenchmark test-compile exec:exec -Djmh.args="LeaderboardBenchmark"</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LeaderboardBenchmark {
+
+    private static final RatingSummary NO_REVIEWS = new RatingSummary(0, 0, 0.0, new long[5]);
+
+    @Param({"10000", "1000000"})
+    public int movieCount;
+
+    private List<Movie> movies;
+    private MovieLeaderboards leaderboards;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] json = SyntheticCatalog.moviesJson(movieCount).getBytes(StandardCharsets.UTF_8);
+        movies = new CatalogLoader().loadMovies(new ByteArrayInputStream(json));
+        leaderboards = new MovieLeaderboards(movies, id -> NO_REVIEWS);
+    }
+
+    @Benchmark
+    public List<RankedMovie> leaderboardOverall() {
+        return leaderboards.top(null, null, null, 10);
+    }
+
+    @Benchmark
+    public List<RankedMovie> leaderboardGenreDecade() {
+        return leaderboards.top("Drama", 1990, null, 10);
+    }
+
+    @Benchmark
+    public List<Movie> sortAndLimitOverall() {
+        return sortAndLimit(null, null);
+    }
+
+    @Benchmark
+    public List<Movie> sortAndLimitGenreDecade() {
+        return sortAndLimit("Drama", 1990);
+    }
+
+    private List<Movie> sortAndLimit(String genre, Integer decade) {
+        return movies.stream()
+            .filter(m -> genre == null || MovieSearchIndex.splitGenre(m.getGenre()).contains(genre))
+            .filter(m -> decade == null || m.getYear() / 10 * 10 == decade)
+            .sorted(Comparator.comparingDouble((Movie m) -> -MovieLeaderboards.score(m, NO_REVIEWS)).thenComparingLong(Movie::getId))
+            .limit(10)
+            .collect(Collectors.toList());
+    }
+}
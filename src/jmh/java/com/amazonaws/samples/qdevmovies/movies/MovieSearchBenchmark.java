@@ -0,0 +1,100 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency distribution over a synthetic catalog. Run in sample mode so JMH reports p99/p99.9:
+ * <pre>mvn -Pbenchmark test-compile exec:exec -Djmh.args="MovieSearchBenchmark"</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MovieSearchBenchmark {
+
+    @Param({"1000000"})
+    public int movieCount;
+
+    private MovieSearchIndex index;
+    private final MovieSearchQuery commonPrefix = new MovieSearchQuery("he", null, null, null, null, 24);
+    private final MovieSearchQuery letterPrefix = new MovieSearchQuery("s", null, null, null, null, 24);
+    private final MovieSearchQuery numericPrefix = new MovieSearchQuery("1", null, null, null, null, 24);
+    private final MovieSearchQuery twoDigitPrefix = new MovieSearchQuery("12", null, null, null, null, 24);
+    private final MovieSearchQuery shortPrefixWithFacets = new MovieSearchQuery("7", "Drama", 1990, 1999, null, 24);
+    private final MovieSearchQuery titleSubstring = new MovieSearchQuery("eis", null, null, null, null, 24);
+    private final MovieSearchQuery rareTerm = new MovieSearchQuery("987654", null, null, null, null, 24);
+    private final MovieSearchQuery facetted = new MovieSearchQuery("ring", "Sci-Fi", 1990, 1999, 4.0, 24);
+    private final MovieSearchQuery rangesOnly = new MovieSearchQuery(null, null, 2001, 2001, 4.5, 24);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] json = SyntheticCatalog.moviesJson(movieCount).getBytes(StandardCharsets.UTF_8);
+        index = new MovieSearchIndex(new CatalogLoader().loadMovies(new ByteArrayInputStream(json)));
+    }
+
+    @Benchmark
+    public MovieSearchResult commonPrefix() {
+        return index.search(commonPrefix);
+    }
+
+    @Benchmark
+    public MovieSearchResult letterPrefix() {
+        return index.search(letterPrefix);
+    }
+
+    /**
+     * One and two characters starting about 111,000 and 11,000 of the titles' numbers
+     */
+    @Benchmark
+    public MovieSearchResult numericPrefix() {
+        return index.search(numericPrefix);
+    }
+
+    @Benchmark
+    public MovieSearchResult twoDigitPrefix() {
+        return index.search(twoDigitPrefix);
+    }
+
+    @Benchmark
+    public MovieSearchResult shortPrefixWithFacets() {
+        return index.search(shortPrefixWithFacets);
+    }
+
+    @Benchmark
+    public MovieSearchResult titleSubstring() {
+        return index.search(titleSubstring);
+    }
+
+    @Benchmark
+    public MovieSearchResult rareTerm() {
+        return index.search(rareTerm);
+    }
+
+    @Benchmark
+    public MovieSearchResult textWithFacets() {
+        return index.search(facetted);
+    }
+
+    @Benchmark
+    public MovieSearchResult rangesOnly() {
+        return index.search(rangesOnly);
+    }
+}
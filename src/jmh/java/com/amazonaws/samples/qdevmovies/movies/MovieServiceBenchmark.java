@@ -0,0 +1,68 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MovieService#getMovieById(Long)} across catalog sizes and store layouts. The columnar
+ * store materialises a {@link Movie} per lookup, which shows up in the GC profiler's allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MovieServiceBenchmark {
+
+    @Param({"12", "100000", "1000000"})
+    public int movieCount;
+
+    @Param({"HEAP", "COLUMNAR"})
+    public MovieStore.Type store;
+
+    private MovieService movieService;
+    private Long[] movieIds;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] json = SyntheticCatalog.moviesJson(movieCount).getBytes(StandardCharsets.UTF_8);
+        CatalogLoader loader = new CatalogLoader();
+        if (store == MovieStore.Type.COLUMNAR) {
+            ColumnarMovieStore.Builder builder = ColumnarMovieStore.builder();
+            loader.loadMovies(new ByteArrayInputStream(json), builder::add);
+            movieService = new MovieService(builder.build());
+        } else {
+            movieService = new MovieService(new HeapMovieStore(loader.loadMovies(new ByteArrayInputStream(json))));
+        }
+        Random random = new Random(1);
+        movieIds = new Long[1024];
+        for (int i = 0; i < movieIds.length; i++) {
+            movieIds[i] = (long) (1 + random.nextInt(movieCount));
+        }
+    }
+
+    @Benchmark
+    public Optional<Movie> getMovieById() {
+        cursor = (cursor + 1) & (movieIds.length - 1);
+        return movieService.getMovieById(movieIds[cursor]);
+    }
+}
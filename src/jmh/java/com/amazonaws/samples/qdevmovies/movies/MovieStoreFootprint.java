@@ -0,0 +1,37 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prints the retained heap of each {@link MovieStore} implementation for synthetic catalogs, measured with JOL.
+ * <pre>mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.amazonaws.samples.qdevmovies.movies.MovieStoreFootprint -Djmh.args="10000 1000000" -Djmh.report=</pre>
+ */
+public final class MovieStoreFootprint {
+
+    private MovieStoreFootprint() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        String[] sizes = args.length > 0 ? args : new String[] {"10000", "100000"};
+        System.out.printf("%10s %18s %18s %8s%n", "movies", "heap store bytes", "columnar bytes", "ratio");
+        for (String size : sizes) {
+            int movieCount = Integer.parseInt(size);
+            byte[] json = SyntheticCatalog.moviesJson(movieCount).getBytes(StandardCharsets.UTF_8);
+            CatalogLoader loader = new CatalogLoader();
+
+            MovieStore heap = new HeapMovieStore(loader.loadMovies(new ByteArrayInputStream(json)));
+            long heapBytes = GraphLayout.parseInstance(heap).totalSize();
+            heap = null;
+
+            ColumnarMovieStore.Builder builder = ColumnarMovieStore.builder();
+            loader.loadMovies(new ByteArrayInputStream(json), builder::add);
+            long columnarBytes = GraphLayout.parseInstance(builder.build()).totalSize();
+
+            System.out.printf("%10d %18d %18d %8.2f%n", movieCount, heapBytes, columnarBytes, (double) heapBytes / columnarBytes);
+        }
+    }
+}
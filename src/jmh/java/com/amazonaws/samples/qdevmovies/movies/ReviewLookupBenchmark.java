@@ -0,0 +1,86 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of fetching one movie's seed reviews as the corpus grows.
+ * {@code indexedLookup} should stay flat across corpus sizes; {@code parsePerRequest}
+ * reproduces the old re-parse-on-every-call behaviour for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReviewLookupBenchmark {
+
+    @Param({"12", "1000", "100000"})
+    public int movieCount;
+
+    private byte[] corpus;
+    private ReviewService reviewService;
+    private long[] movieIds;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = SyntheticCatalog.reviewsJson(movieCount, 3).getBytes(StandardCharsets.UTF_8);
+        reviewService = new ReviewService(ReviewCatalog.fromJson(new ByteArrayInputStream(corpus)));
+        Random random = new Random(1);
+        movieIds = new long[1024];
+        for (int i = 0; i < movieIds.length; i++) {
+            movieIds[i] = 1 + random.nextInt(movieCount);
+        }
+    }
+
+    private long nextMovieId() {
+        cursor = (cursor + 1) & (movieIds.length - 1);
+        return movieIds[cursor];
+    }
+
+    @Benchmark
+    public List<Review> indexedLookup() {
+        return reviewService.getReviewsForMovie(nextMovieId());
+    }
+
+    @Benchmark
+    public List<Review> parsePerRequest() {
+        long movieId = nextMovieId();
+        List<Review> reviews = new ArrayList<>();
+        JSONObject reviewsData = new JSONObject(new String(corpus, StandardCharsets.UTF_8));
+        if (reviewsData.has(String.valueOf(movieId))) {
+            JSONArray movieReviews = reviewsData.getJSONArray(String.valueOf(movieId));
+            for (int i = 0; i < movieReviews.length(); i++) {
+                JSONObject reviewObj = movieReviews.getJSONObject(i);
+                reviews.add(new Review(
+                    reviewObj.getString("userName"),
+                    reviewObj.getString("avatarEmoji"),
+                    reviewObj.getDouble("rating"),
+                    reviewObj.getString("comment")
+                ));
+            }
+        }
+        return reviews;
+    }
+}
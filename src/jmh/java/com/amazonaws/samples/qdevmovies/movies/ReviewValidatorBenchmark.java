@@ -0,0 +1,126 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Review validation throughput as the comment grows, for single reviews and for batches of
+ * {@value #BATCH_SIZE}. The form caps comments at 500 characters but the endpoint accepts anything,
+ * so 100 KB comments are included. Batch scores are per review. {@code legacyValidate} keeps the
+ * old quadratic word count for comparison, up to 5000 characters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReviewValidatorBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    /** Word limits are lifted so long comments are scanned in full rather than rejected. */
+    private static final ReviewValidator VALIDATOR = new ReviewValidator(Arrays.asList(
+        ReviewRule.nameLength(ReviewValidator.MAX_NAME_LENGTH),
+        ReviewRule.ratingRange(1, 5),
+        ReviewRule.minWords(ReviewValidator.MIN_WORDS),
+        ReviewRule.maxBytes(Integer.MAX_VALUE)));
+
+    static String comment(int length) {
+        StringBuilder comment = new StringBuilder(length + 8);
+        while (comment.length() < length) {
+            comment.append("great ");
+        }
+        comment.setLength(length);
+        return comment.toString();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Comments {
+        @Param({"10", "500", "102400"})
+        public int commentLength;
+
+        ReviewRequest request;
+        List<ReviewRequest> batch;
+        ReviewValidationError[] errors;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            request = new ReviewRequest("Reviewer", 4, comment(commentLength));
+            batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(new ReviewRequest("Reviewer " + i, 1 + i % 5, comment(commentLength)));
+            }
+            errors = new ReviewValidationError[BATCH_SIZE];
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LegacyComments {
+        @Param({"10", "500", "5000"})
+        public int commentLength;
+
+        ReviewRequest request;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            request = new ReviewRequest("Reviewer", 4, comment(commentLength));
+        }
+    }
+
+    @Benchmark
+    public ReviewValidationError validate(Comments comments) {
+        return VALIDATOR.validate(comments.request);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int validateBatch(Comments comments) {
+        return VALIDATOR.validateAll(comments.batch, comments.errors);
+    }
+
+    @Benchmark
+    public String legacyValidate(LegacyComments comments) {
+        ReviewRequest request = comments.request;
+        if (request.getUserName() == null || request.getUserName().trim().isEmpty()) {
+            return "User name is required";
+        }
+        if (request.getRating() < 1 || request.getRating() > 5) {
+            return "Rating must be between 1 and 5 stars";
+        }
+        if (request.getComment() == null || request.getComment().trim().isEmpty()) {
+            return "Review comment is required";
+        }
+        String comment = request.getComment().trim();
+        int wordCount = 0;
+        for (int i = 0; i < comment.length(); i++) {
+            if (comment.charAt(i) != ' ') {
+                boolean isWordStart = true;
+                for (int j = 0; j < i; j++) {
+                    if (j == i - 1 && comment.charAt(j) != ' ') {
+                        isWordStart = false;
+                    }
+                }
+                if (isWordStart) {
+                    wordCount++;
+                }
+            }
+        }
+        return wordCount < 5 ? "Review must be at least 5 words" : null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the "more like this" neighbours for a whole catalog, and looking one movie's up
+ * against scanning every movie's vector per request:
+ * <pre>mvn -Pbenchmark test-compile exec:exec -Djmh.args="SimilarMoviesBenchmark"</pre>
+ * The build runs on one fork-join worker per available processor.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SimilarMoviesBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int movieCount;
+
+    private List<Movie> movies;
+    private SimilarMovies similarMovies;
+    private float[] features;
+    private long[] movieIds;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] json = SyntheticCatalog.moviesJson(movieCount).getBytes(StandardCharsets.UTF_8);
+        movies = new CatalogLoader().loadMovies(new ByteArrayInputStream(json));
+        similarMovies = new SimilarMovies(movies, 10, Runtime.getRuntime().availableProcessors());
+        features = new float[movies.size() * SimilarMovies.DIMENSIONS];
+        for (int i = 0; i < movies.size(); i++) {
+            similarMovies.encode(movies.get(i), features, i * SimilarMovies.DIMENSIONS);
+        }
+        Random random = new Random(1);
+        movieIds = new long[1024];
+        for (int i = 0; i < movieIds.length; i++) {
+            movieIds[i] = 1 + random.nextInt(movieCount);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public SimilarMovies build() {
+        return new SimilarMovies(movies, 10, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public List<SimilarMovie> lookup() {
+        cursor = (cursor + 1) & (movieIds.length - 1);
+        return similarMovies.similarTo(movieIds[cursor], 10);
+    }
+
+    /**
+     * Best case for computing neighbours on demand: vectors already encoded, one pass over all of them.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int scan() {
+        cursor = (cursor + 1) & (movieIds.length - 1);
+        int ordinal = (int) movieIds[cursor] - 1;
+        int[] best = new int[10];
+        float[] bestSimilarity = new float[10];
+        Arrays.fill(bestSimilarity, Float.NEGATIVE_INFINITY);
+        for (int other = 0; other < movies.size(); other++) {
+            if (other == ordinal) {
+                continue;
+            }
+            float similarity = 0;
+            for (int d = 0; d < SimilarMovies.DIMENSIONS; d++) {
+                similarity += features[ordinal * SimilarMovies.DIMENSIONS + d] * features[other * SimilarMovies.DIMENSIONS + d];
+            }
+            if (similarity > bestSimilarity[9]) {
+                int slot = 9;
+                while (slot > 0 && similarity > bestSimilarity[slot - 1]) {
+                    best[slot] = best[slot - 1];
+                    bestSimilarity[slot] = bestSimilarity[slot - 1];
+                    slot--;
+                }
+                best[slot] = other;
+                bestSimilarity[slot] = similarity;
+            }
+        }
+        return best[0];
+    }
+}
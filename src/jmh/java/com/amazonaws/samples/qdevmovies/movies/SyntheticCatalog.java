@@ -0,0 +1,89 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Generates catalog and review documents in the same shape as {@code movies.json}
+ * and {@code mock-reviews.json}, at arbitrary sizes, for benchmarks.
+ */
+public final class SyntheticCatalog {
+
+    private static final String[] GENRES = {"Drama", "Crime/Drama", "Action/Crime", "Adventure/Drama", "Action/Sci-Fi", "Adventure/Fantasy", "Comedy", "Horror/Thriller"};
+    private static final String[] DIRECTORS = {"John Director", "Michael Filmmaker", "Chris Moviemaker", "Sofia Auteur", "Akira Lens", "Greta Frame"};
+    private static final String[] WORDS = {"epic", "journey", "heist", "family", "dream", "city", "hero", "prison", "ring", "space", "war", "club", "love", "secret", "night"};
+
+    private SyntheticCatalog() {
+    }
+
+    public static String moviesJson(int movieCount) {
+        StringBuilder json = new StringBuilder(movieCount * 260);
+        appendMovies(json, movieCount);
+        return json.toString();
+    }
+
+    public static void appendMovies(Appendable out, int movieCount) {
+        Random random = new Random(42);
+        try {
+            out.append('[');
+            for (int i = 1; i <= movieCount; i++) {
+                if (i > 1) {
+                    out.append(',');
+                }
+                out.append("{\"id\":").append(String.valueOf(i))
+                    .append(",\"movieName\":\"").append(title(random)).append(' ').append(String.valueOf(i)).append('"')
+                    .append(",\"director\":\"").append(DIRECTORS[random.nextInt(DIRECTORS.length)]).append('"')
+                    .append(",\"year\":").append(String.valueOf(1950 + random.nextInt(75)))
+                    .append(",\"genre\":\"").append(GENRES[random.nextInt(GENRES.length)]).append('"')
+                    .append(",\"description\":\"").append(sentence(random, 16)).append('"')
+                    .append(",\"duration\":").append(String.valueOf(80 + random.nextInt(120)))
+                    .append(",\"imdbRating\":").append(String.valueOf((2 + random.nextInt(7)) / 2.0))
+                    .append('}');
+            }
+            out.append(']');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static String reviewsJson(int movieCount, int reviewsPerMovie) {
+        Random random = new Random(7);
+        StringBuilder json = new StringBuilder(movieCount * reviewsPerMovie * 120);
+        json.append('{');
+        for (int i = 1; i <= movieCount; i++) {
+            if (i > 1) {
+                json.append(',');
+            }
+            json.append('"').append(i).append("\":[");
+            for (int r = 0; r < reviewsPerMovie; r++) {
+                if (r > 0) {
+                    json.append(',');
+                }
+                json.append("{\"userName\":\"User").append(random.nextInt(100000)).append('"')
+                    .append(",\"avatarEmoji\":\"👩\"")
+                    .append(",\"rating\":").append((2 + random.nextInt(9)) / 2.0)
+                    .append(",\"comment\":\"").append(sentence(random, 12)).append("\"}");
+            }
+            json.append(']');
+        }
+        json.append('}');
+        return json.toString();
+    }
+
+    private static String title(Random random) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        return "The " + Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+}
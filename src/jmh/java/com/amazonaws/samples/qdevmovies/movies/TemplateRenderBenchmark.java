@@ -0,0 +1,134 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.spring5.expression.ThymeleafEvaluationContext;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side rendering of {@code movies.html} and {@code movie-details.html} with the same
+ * Spring dialect and cached template resolution the application uses, excluding the page cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 6, time = 3)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateRenderBenchmark {
+
+    static SpringTemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    /**
+     * A web context carrying the shared SpEL evaluation context, as {@code ThymeleafView} sets up
+     * for every request; without it each expression builds its own.
+     */
+    static WebContext webContext() {
+        MockServletContext servletContext = new MockServletContext();
+        WebContext context = new WebContext(new MockHttpServletRequest(servletContext), new MockHttpServletResponse(), servletContext);
+        StaticApplicationContext applicationContext = new StaticApplicationContext();
+        applicationContext.refresh();
+        context.setVariable(ThymeleafEvaluationContext.THYMELEAF_EVALUATION_CONTEXT_CONTEXT_VARIABLE_NAME,
+            new ThymeleafEvaluationContext(applicationContext, null));
+        return context;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Listing {
+        @Param({"24", "200"})
+        public int cards;
+
+        SpringTemplateEngine engine;
+        WebContext context;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            byte[] json = SyntheticCatalog.moviesJson(cards).getBytes(StandardCharsets.UTF_8);
+            List<Movie> movies = new CatalogLoader().loadMovies(new ByteArrayInputStream(json));
+            engine = templateEngine();
+            context = webContext();
+            context.setVariable("movies", MovieViews.of(new HeapMovieStore(movies)).of(movies));
+            context.setVariable("page", new MoviePage(movies, MovieSort.ID, "next"));
+            context.setVariable("sort", MovieSort.ID);
+            context.setVariable("pageSize", cards);
+            context.setVariable("ratings", new RatingAggregates(new ReviewService(ReviewCatalog.empty()), new InMemoryReviewStore()));
+            context.setVariable("genres", new MovieSearchIndex(movies).getGenres());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Details {
+        @Param({"3", "100"})
+        public int reviews;
+
+        SpringTemplateEngine engine;
+        WebContext context;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Movie movie = new Movie(1L, "The Prison Escape", "John Director", 1994, "Drama",
+                "Two imprisoned men bond over a number of years.", 142, 5.0, "🔒");
+            List<Review> allReviews = new ArrayList<>(reviews);
+            InMemoryReviewStore store = new InMemoryReviewStore();
+            RatingAggregates ratings = new RatingAggregates(new ReviewService(ReviewCatalog.empty()), store);
+            for (int i = 0; i < reviews; i++) {
+                Review review = new Review("User" + i, "👩", 1 + i % 5, "A review comment that is long enough to be shown in full " + i);
+                allReviews.add(review);
+                store.addReview(movie.getId(), review);
+            }
+            engine = templateEngine();
+            context = webContext();
+            context.setVariable("movie", new MovieView(movie));
+            context.setVariable("allReviews", allReviews);
+            context.setVariable("ratingSummary", ratings.get(movie.getId()));
+        }
+    }
+
+    @Benchmark
+    public int renderMovies(Listing listing) {
+        StringWriter writer = new StringWriter(16384);
+        listing.engine.process("movies", listing.context, writer);
+        return writer.getBuffer().length();
+    }
+
+    @Benchmark
+    public int renderMovieDetails(Details details) {
+        StringWriter writer = new StringWriter(16384);
+        details.engine.process("movie-details", details.context, writer);
+        return writer.getBuffer().length();
+    }
+}
@@ -0,0 +1,132 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes one line per request to the {@code access} logger:
+ * {@code method=GET route=/movies/{id}/details movie=3 status=200 micros=412}.
+ * <p>
+ * The route is the matched mapping pattern, so lines group by endpoint rather than by URL. Each
+ * route is sampled at its own rate, {@code movies.access-log.routes} ({@code route=rate,...}),
+ * falling back to {@code movies.access-log.sample-rate}; 5xx responses are always written. An
+ * asynchronous request is written when it completes. The message is parameterized and the numbers
+ * are unboxed into reusable buffers, so a written line allocates nothing on the request thread.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    /** Set by filters that answer a movie's request before it reaches a handler, such as the page cache. */
+    static final String MOVIE_ID_ATTRIBUTE = AccessLogFilter.class.getName() + ".movieId";
+
+    private static final Logger access = LogManager.getLogger("access");
+    private static final String NONE = "-";
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final Map<String, Double> routeSampleRates;
+
+    @Autowired
+    public AccessLogFilter(@Value("${movies.access-log.enabled:true}") boolean enabled,
+                           @Value("${movies.access-log.sample-rate:1.0}") double sampleRate,
+                           @Value("${movies.access-log.routes:}") String routes) {
+        this.enabled = enabled;
+        this.sampleRate = checkRate(sampleRate);
+        this.routeSampleRates = parseRoutes(routes);
+    }
+
+    static Map<String, Double> parseRoutes(String routes) {
+        Map<String, Double> rates = new HashMap<>();
+        for (String entry : routes.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected route=rate in movies.access-log.routes, got '" + entry.trim() + "'");
+            }
+            rates.put(entry.substring(0, separator).trim(), checkRate(Double.parseDouble(entry.substring(separator + 1).trim())));
+        }
+        return Collections.unmodifiableMap(rates);
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Access log sample rate must be between 0 and 1, got " + rate);
+        }
+        return rate;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !access.isInfoEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            chain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (completed && isAsyncStarted(request)) {
+                AsyncCompletion.onComplete(request, event -> log((HttpServletRequest) event.getSuppliedRequest(),
+                    ((HttpServletResponse) event.getSuppliedResponse()).getStatus(), System.nanoTime() - start));
+            } else {
+                log(request, completed ? response.getStatus() : HttpServletResponse.SC_INTERNAL_SERVER_ERROR, System.nanoTime() - start);
+            }
+        }
+    }
+
+    void log(HttpServletRequest request, int status, long nanos) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String route = pattern != null ? pattern.toString() : "UNMATCHED";
+        if (status < 500 && !sampled(route)) {
+            return;
+        }
+        access.info("method={} route={} movie={} status={} micros={}",
+            request.getMethod(), route, movieId(request), Unbox.box(status), Unbox.box(nanos / 1000));
+    }
+
+    private boolean sampled(String route) {
+        Double routeRate = routeSampleRates.get(route);
+        double rate = routeRate != null ? routeRate : sampleRate;
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private static Object movieId(HttpServletRequest request) {
+        Object movieId = request.getAttribute(MOVIE_ID_ATTRIBUTE);
+        if (movieId != null) {
+            return movieId;
+        }
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables instanceof Map) {
+            Object id = ((Map<?, ?>) variables).get("id");
+            if (id != null) {
+                return id;
+            }
+        }
+        return NONE;
+    }
+}
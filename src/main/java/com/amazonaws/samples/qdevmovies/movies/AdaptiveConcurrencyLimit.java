@@ -0,0 +1,100 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrency limit that adapts to measured latency, additive increase and multiplicative
+ * decrease (AIMD).
+ * <p>
+ * Each request that finishes within the latency budget while the limit is at least half used
+ * raises the limit by {@code 1/limit}, so about one per limit's worth of requests. A request that
+ * takes longer cuts it by {@link #BACKOFF}, down to the minimum. Only requests that started after
+ * the last cut can cut it again, so one burst of slow requests counts once rather than once per
+ * request. The in-flight count and the limit are atomics updated by compare-and-set; nothing
+ * blocks.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    static final double BACKOFF = 0.9;
+
+    private final long latencyBudgetNanos;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /** The limit as {@link Double#doubleToRawLongBits} */
+    private final AtomicLong limit;
+    private final AtomicLong lastDecreaseNanos;
+    private final LongAdder decreases = new LongAdder();
+
+    AdaptiveConcurrencyLimit(long latencyBudgetNanos, int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit || latencyBudgetNanos <= 0) {
+            throw new IllegalArgumentException("Concurrency limit needs 1 <= min <= initial <= max and a positive latency budget, got "
+                + minLimit + " <= " + initialLimit + " <= " + maxLimit + ", " + latencyBudgetNanos + " ns");
+        }
+        this.latencyBudgetNanos = latencyBudgetNanos;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+        this.lastDecreaseNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @return whether the request may start; if so, {@link #release} must follow
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a request admitted by {@link #tryAcquire} and adjusts the limit to its latency.
+     */
+    void release(long startNanos, long endNanos) {
+        int current = inFlight.getAndDecrement();
+        if (endNanos - startNanos > latencyBudgetNanos) {
+            long lastDecrease = lastDecreaseNanos.get();
+            if (startNanos - lastDecrease > 0 && lastDecreaseNanos.compareAndSet(lastDecrease, endNanos)) {
+                decreases.increment();
+                update(-1);
+            }
+        } else if (current * 2 >= getLimit()) {
+            update(1);
+        }
+    }
+
+    private void update(int direction) {
+        while (true) {
+            long bits = limit.get();
+            double current = Double.longBitsToDouble(bits);
+            double next = direction > 0 ? Math.min(maxLimit, current + 1 / current) : Math.max(minLimit, current * BACKOFF);
+            if (next == current || limit.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    double getLimit() {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getLatencyBudgetNanos() {
+        return latencyBudgetNanos;
+    }
+
+    long getDecreases() {
+        return decreases.sum();
+    }
+}
@@ -0,0 +1,286 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which page renders and review writes the {@link AdmissionFilter} lets through.
+ * <p>
+ * Requests are grouped into routes: {@code review} ({@code POST /movies/{id}/details}),
+ * {@code details} ({@code GET /movies/{id}/details}), {@code pages} (the other {@code GET /movies}
+ * pages), {@code api} ({@code GET /api/movies}) and {@code bulk} ({@code POST /api/reviews/bulk}).
+ * Each route has an
+ * {@link AdaptiveConcurrencyLimit} that shrinks when its requests take longer than
+ * {@code movies.admission.routes.<route>.latency-ms} and grows back while they are fast, within
+ * {@code .min-limit} and {@code .max-limit}; each setting falls back to
+ * {@code movies.admission.<setting>}. Review writes and bulk imports also take a token from the
+ * bucket of their session, when they name one the server knows, and from the bucket of the client
+ * address, refilled at {@code movies.admission.review.session-rate} and {@code .address-rate} per second.
+ */
+@Component
+public class AdmissionControl {
+    private static final Logger logger = LogManager.getLogger(AdmissionControl.class);
+
+    static final String REVIEW = "review";
+    static final String DETAILS = "details";
+    static final String PAGES = "pages";
+    static final String API = "api";
+    static final String BULK = "bulk";
+
+    private static final String DETAILS_ROUTE = "/movies/{id}/details";
+    private static final String DETAILS_SUFFIX = "/details";
+    private static final String BULK_PATH = "/api/reviews/bulk";
+
+    private final boolean enabled;
+    private final TokenBuckets sessions;
+    private final TokenBuckets addresses;
+    private final Map<String, Route> routes;
+    private final Route review;
+    private final Route details;
+    private final Route pages;
+    private final Route api;
+    private final Route bulk;
+
+    @Autowired
+    public AdmissionControl(@Value("${movies.admission.enabled:true}") boolean enabled,
+                            @Value("${movies.admission.review.session-rate:1}") double sessionRate,
+                            @Value("${movies.admission.review.session-burst:10}") int sessionBurst,
+                            @Value("${movies.admission.review.address-rate:50}") double addressRate,
+                            @Value("${movies.admission.review.address-burst:100}") int addressBurst,
+                            @Value("${movies.admission.review.max-keys:100000}") int maxKeys,
+                            Environment environment) {
+        this.enabled = enabled;
+        this.sessions = new TokenBuckets(sessionRate, sessionBurst, maxKeys);
+        this.addresses = new TokenBuckets(addressRate, addressBurst, maxKeys);
+        Map<String, Route> routes = new LinkedHashMap<>();
+        this.review = newRoute(routes, REVIEW, DETAILS_ROUTE, true, environment);
+        this.details = newRoute(routes, DETAILS, DETAILS_ROUTE, false, environment);
+        this.pages = newRoute(routes, PAGES, "/movies/**", false, environment);
+        this.api = newRoute(routes, API, "/api/movies/**", false, environment);
+        this.bulk = newRoute(routes, BULK, BULK_PATH, true, environment);
+        this.routes = Collections.unmodifiableMap(routes);
+        if (!enabled) {
+            logger.info("Admission control disabled");
+        }
+    }
+
+    private static Route newRoute(Map<String, Route> routes, String name, String pattern, boolean rateLimited, Environment environment) {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(
+            TimeUnit.MILLISECONDS.toNanos(setting(environment, name, "latency-ms", 250)),
+            (int) setting(environment, name, "initial-limit", 64),
+            (int) setting(environment, name, "min-limit", 4),
+            (int) setting(environment, name, "max-limit", 512));
+        Route route = new Route(name, pattern, rateLimited, limit);
+        routes.put(name, route);
+        return route;
+    }
+
+    private static long setting(Environment environment, String route, String name, long fallback) {
+        long shared = environment.getProperty("movies.admission." + name, Long.class, fallback);
+        return environment.getProperty("movies.admission.routes." + route + "." + name, Long.class, shared);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param path the request URI without the context path
+     * @return the route a request belongs to, or {@code null} for requests that are always admitted
+     */
+    Route route(String method, String path) {
+        boolean get = "GET".equals(method);
+        if (path.equals(BULK_PATH)) {
+            return "POST".equals(method) ? bulk : null;
+        }
+        if (path.startsWith("/api/movies")) {
+            return get && (path.length() == 11 || path.charAt(11) == '/') ? api : null;
+        }
+        if (!path.startsWith("/movies") || (path.length() > 7 && path.charAt(7) != '/')) {
+            return null;
+        }
+        if (isDetailsPath(path)) {
+            return get ? details : "POST".equals(method) ? review : null;
+        }
+        return get ? pages : null;
+    }
+
+    private static boolean isDetailsPath(String path) {
+        int end = path.length() - DETAILS_SUFFIX.length();
+        if (end <= 8 || end - 8 > 18 || !path.endsWith(DETAILS_SUFFIX)) {
+            return false;
+        }
+        for (int i = 8; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes a token from the session's bucket, when there is a session, and from the address's. A
+     * write is charged only when both have one: the session's token is put back if the address is
+     * out, so a busy address does not also drain the sessions behind it.
+     *
+     * @param sessionId a session the server knows; {@code null} for none, or for an id the client made up
+     *
+     * @return 0 when both had one, otherwise the nanoseconds until the emptier one will
+     */
+    long acquireWriteToken(String sessionId, String address, long nowNanos) {
+        if (sessionId != null) {
+            long wait = sessions.tryAcquire(sessionId, nowNanos);
+            if (wait > 0) {
+                return wait;
+            }
+        }
+        long wait = addresses.tryAcquire(address == null ? "" : address, nowNanos);
+        if (wait > 0 && sessionId != null) {
+            sessions.refund(sessionId);
+        }
+        return wait;
+    }
+
+    Map<String, Route> routes() {
+        return routes;
+    }
+
+    public Stats stats() {
+        Map<String, RouteStats> byRoute = new LinkedHashMap<>();
+        for (Route route : routes.values()) {
+            byRoute.put(route.name, route.stats());
+        }
+        return new Stats(enabled, sessions.size(), addresses.size(), byRoute);
+    }
+
+    static final class Route {
+        final String name;
+        /** Reported to the access log for rejected requests, which never reach a handler mapping. */
+        final String pattern;
+        final boolean rateLimited;
+        final AdaptiveConcurrencyLimit limit;
+        final LongAdder admitted = new LongAdder();
+        final LongAdder throttled = new LongAdder();
+        final LongAdder shed = new LongAdder();
+
+        Route(String name, String pattern, boolean rateLimited, AdaptiveConcurrencyLimit limit) {
+            this.name = name;
+            this.pattern = pattern;
+            this.rateLimited = rateLimited;
+            this.limit = limit;
+        }
+
+        RouteStats stats() {
+            return new RouteStats(limit.getLatencyBudgetNanos() / 1_000_000, limit.getLimit(), limit.getInFlight(),
+                limit.getDecreases(), admitted.sum(), throttled.sum(), shed.sum());
+        }
+    }
+
+    public static final class Stats {
+        private final boolean enabled;
+        private final int sessionBuckets;
+        private final int addressBuckets;
+        private final Map<String, RouteStats> routes;
+
+        Stats(boolean enabled, int sessionBuckets, int addressBuckets, Map<String, RouteStats> routes) {
+            this.enabled = enabled;
+            this.sessionBuckets = sessionBuckets;
+            this.addressBuckets = addressBuckets;
+            this.routes = routes;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * @return sessions with a review token bucket that is not full
+         */
+        public int getSessionBuckets() {
+            return sessionBuckets;
+        }
+
+        /**
+         * @return client addresses with a review token bucket that is not full
+         */
+        public int getAddressBuckets() {
+            return addressBuckets;
+        }
+
+        public Map<String, RouteStats> getRoutes() {
+            return routes;
+        }
+    }
+
+    public static final class RouteStats {
+        private final long latencyBudgetMillis;
+        private final double limit;
+        private final int inFlight;
+        private final long limitDecreases;
+        private final long admitted;
+        private final long rateLimited;
+        private final long shed;
+
+        RouteStats(long latencyBudgetMillis, double limit, int inFlight, long limitDecreases, long admitted,
+                   long rateLimited, long shed) {
+            this.latencyBudgetMillis = latencyBudgetMillis;
+            this.limit = limit;
+            this.inFlight = inFlight;
+            this.limitDecreases = limitDecreases;
+            this.admitted = admitted;
+            this.rateLimited = rateLimited;
+            this.shed = shed;
+        }
+
+        public long getLatencyBudgetMillis() {
+            return latencyBudgetMillis;
+        }
+
+        /**
+         * @return the current concurrency limit; requests over its whole part are shed
+         */
+        public double getLimit() {
+            return limit;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return times a request over the latency budget cut the limit
+         */
+        public long getLimitDecreases() {
+            return limitDecreases;
+        }
+
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        /**
+         * @return requests answered with 429 because a session or address was out of tokens
+         */
+        public long getRateLimited() {
+            return rateLimited;
+        }
+
+        /**
+         * @return requests answered with 503 because the route was at its concurrency limit
+         */
+        public long getShed() {
+            return shed;
+        }
+    }
+}
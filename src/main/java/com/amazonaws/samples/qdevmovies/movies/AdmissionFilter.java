@@ -0,0 +1,95 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Sheds page renders, review writes and bulk imports that {@link AdmissionControl} does not admit, before any
+ * work is done for them.
+ * <p>
+ * A write from a session or address that is out of tokens gets 429, and a request to a
+ * route at its concurrency limit gets 503, both with {@code Retry-After} and an empty body.
+ * Admitted requests count against their route until they complete, asynchronous ones included,
+ * and their latency adjusts its limit. The filter runs last, after the {@link RenderedPageCacheFilter},
+ * so cached pages are always served; it never reads the parameters, so a rejected write's body is
+ * never parsed. A write is charged to its session only when the id the client sent names a live
+ * session: any other id is the client's choice, and a fresh one per request would dodge the limit.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    static final int TOO_MANY_REQUESTS = 429;
+
+    private final AdmissionControl admission;
+
+    @Autowired
+    public AdmissionFilter(AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !admission.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        AdmissionControl.Route route = admission.route(request.getMethod(), path);
+        if (route == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        if (route.rateLimited) {
+            String session = request.isRequestedSessionIdValid() ? request.getRequestedSessionId() : null;
+            long waitNanos = admission.acquireWriteToken(session, request.getRemoteAddr(), start);
+            if (waitNanos > 0) {
+                route.throttled.increment();
+                reject(request, response, route, path, TOO_MANY_REQUESTS, Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000));
+                return;
+            }
+        }
+        if (!route.limit.tryAcquire()) {
+            route.shed.increment();
+            reject(request, response, route, path, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 1);
+            return;
+        }
+        route.admitted.increment();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            async = isAsyncStarted(request);
+        } finally {
+            if (async) {
+                AsyncCompletion.onComplete(request, event -> route.limit.release(start, System.nanoTime()));
+            } else {
+                route.limit.release(start, System.nanoTime());
+            }
+        }
+    }
+
+    private static void reject(HttpServletRequest request, HttpServletResponse response, AdmissionControl.Route route,
+                               String path, int status, long retryAfterSeconds) {
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, route.pattern);
+        if (route.name.equals(AdmissionControl.REVIEW) || route.name.equals(AdmissionControl.DETAILS)) {
+            request.setAttribute(AccessLogFilter.MOVIE_ID_ATTRIBUTE, path.substring("/movies/".length(), path.length() - "/details".length()));
+        }
+        response.setStatus(status);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentLength(0);
+    }
+}
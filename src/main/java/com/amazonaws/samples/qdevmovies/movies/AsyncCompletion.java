@@ -0,0 +1,46 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import java.util.function.Consumer;
+
+/**
+ * Runs an action once an asynchronous request completes, for filters that account for a request
+ * when it ends rather than when the filter chain returns. Timeouts and errors need no handling of
+ * their own: the container completes the request after them.
+ */
+final class AsyncCompletion implements AsyncListener {
+    private final Consumer<AsyncEvent> action;
+
+    private AsyncCompletion(Consumer<AsyncEvent> action) {
+        this.action = action;
+    }
+
+    /**
+     * @param request a request whose asynchronous processing has started
+     */
+    static void onComplete(HttpServletRequest request, Consumer<AsyncEvent> action) {
+        request.getAsyncContext().addListener(new AsyncCompletion(action));
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        action.accept(event);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        // onComplete follows once the timeout has been handled
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        // onComplete follows once the error has been handled
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+        // the listener stays registered for the whole request
+    }
+}
@@ -0,0 +1,671 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * The movie catalog and seed reviews in a compact binary form, written at build time from
+ * {@code movies.json} and {@code mock-reviews.json} so startup maps a file instead of parsing JSON.
+ * <p>
+ * The file is big-endian: a header (magic, format version, the {@link SourceStamp stamps} of the JSON
+ * it was built from, counts and section offsets), the movies as
+ * fixed-width columns, the movie ids sorted for binary search with their rows, each {@link MovieSort}'s
+ * order as catalog positions, the reviewed movies' ids with the range of their reviews, the reviews as
+ * columns, and a string table of offsets into UTF-8 bytes. Each distinct string is stored once and
+ * referenced by number. Opening a catalog checks the header and that the sections and string table
+ * lie where the counts put them, and decodes nothing else; a movie, or a movie's reviews, is decoded
+ * when it is looked up.
+ */
+public final class BinaryCatalog {
+    private static final Logger logger = LogManager.getLogger(BinaryCatalog.class);
+
+    /** Written next to {@code movies.json} by the build. */
+    static final String RESOURCE = "catalog.bin";
+    private static final int MAGIC = 0x51444D43;
+    static final int FORMAT_VERSION = 3;
+    /** magic, version, two source checksums, five counts and six section offsets, then two source sizes */
+    private static final int HEADER_BYTES = 15 * 4 + 2 * 8;
+    private static final int NO_STRING = -1;
+
+    private final ByteBuffer buffer;
+    private final SourceStamp moviesSource;
+    private final SourceStamp reviewsSource;
+    private final int movieCount;
+    private final int sortCount;
+    private final int reviewedMovieCount;
+    private final int reviewCount;
+    private final int stringCount;
+    private final int moviesAt;
+    private final int idIndexAt;
+    private final int orderingsAt;
+    private final int reviewIndexAt;
+    private final int reviewsAt;
+    private final int stringsAt;
+    private final int stringBytesAt;
+
+    private BinaryCatalog(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary catalog");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Binary catalog format version " + buffer.getInt(4) + " is not supported, expected " + FORMAT_VERSION);
+        }
+        moviesSource = new SourceStamp(buffer.getLong(60), buffer.getInt(8));
+        reviewsSource = new SourceStamp(buffer.getLong(68), buffer.getInt(12));
+        movieCount = buffer.getInt(16);
+        sortCount = buffer.getInt(20);
+        reviewedMovieCount = buffer.getInt(24);
+        reviewCount = buffer.getInt(28);
+        stringCount = buffer.getInt(32);
+        moviesAt = buffer.getInt(36);
+        idIndexAt = buffer.getInt(40);
+        orderingsAt = buffer.getInt(44);
+        reviewIndexAt = buffer.getInt(48);
+        reviewsAt = buffer.getInt(52);
+        stringsAt = buffer.getInt(56);
+        if (movieCount < 0 || sortCount < 0 || reviewedMovieCount < 0 || reviewCount < 0 || stringCount < 0
+            || !Arrays.equals(layout(movieCount, sortCount, reviewedMovieCount, reviewCount),
+                new long[] {moviesAt, idIndexAt, orderingsAt, reviewIndexAt, reviewsAt, stringsAt})
+            || stringsAt + 4L * (stringCount + 1) > buffer.capacity()) {
+            throw new IOException("Binary catalog is truncated or corrupt");
+        }
+        stringBytesAt = stringsAt + 4 * (stringCount + 1);
+        int previous = 0;
+        for (int id = 0; id <= stringCount; id++) {
+            int offset = buffer.getInt(stringsAt + 4 * id);
+            if (offset < previous || (id == 0 && offset != 0)) {
+                throw new IOException("Binary catalog string table is corrupt");
+            }
+            previous = offset;
+        }
+        if (stringBytesAt + (long) previous != buffer.capacity()) {
+            throw new IOException("Binary catalog is truncated or corrupt");
+        }
+    }
+
+    /**
+     * @return where each section starts, by the counts: movies, id index, orderings, review index, reviews and strings
+     */
+    private static long[] layout(int movies, int sortCount, int reviewedMovies, int reviews) {
+        long moviesAt = HEADER_BYTES;
+        long idIndexAt = moviesAt + 44L * movies;
+        long orderingsAt = idIndexAt + 12L * movies;
+        long reviewIndexAt = orderingsAt + 4L * movies * sortCount;
+        long reviewsAt = reviewIndexAt + 8L * reviewedMovies + 4L * (reviewedMovies + 1) + 12L * reviewedMovies;
+        long stringsAt = reviewsAt + 20L * reviews;
+        return new long[] {moviesAt, idIndexAt, orderingsAt, reviewIndexAt, reviewsAt, stringsAt};
+    }
+
+    /**
+     * Maps a binary catalog file. The mapping stays valid after the file is replaced, so replace it
+     * by renaming a new file over it rather than writing it in place. A file that may be written in
+     * place, such as a watched external catalog, must be {@link #read(Path) read} instead: a mapped
+     * file truncated under a reader crashes the JVM.
+     */
+    static BinaryCatalog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary catalog " + path + " is larger than 2 GB");
+            }
+            return new BinaryCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads a binary catalog file into the heap and decodes all of it, so it is known to be whole
+     * and no later change to the file can affect it.
+     */
+    static BinaryCatalog read(Path path) throws IOException {
+        BinaryCatalog catalog = new BinaryCatalog(ByteBuffer.wrap(Files.readAllBytes(path)));
+        catalog.decodeAll();
+        return catalog;
+    }
+
+    /**
+     * Opens the {@value #RESOURCE} the build put on the classpath, mapping it when it is a plain file.
+     * Open it once, through {@link BundledCatalog}.
+     * @return {@code null} if there is none
+     * @throws IOException if it is unreadable, or was built from other {@code movies.json} or {@code mock-reviews.json}
+     */
+    static BinaryCatalog openResource() throws IOException {
+        return openResource(BinaryCatalog.class.getClassLoader());
+    }
+
+    static BinaryCatalog openResource(ClassLoader classLoader) throws IOException {
+        URL url = classLoader.getResource(RESOURCE);
+        if (url == null) {
+            return null;
+        }
+        BinaryCatalog catalog;
+        FileTime built = null;
+        if ("file".equals(url.getProtocol())) {
+            Path path = toPath(url);
+            built = Files.getLastModifiedTime(path);
+            catalog = open(path);
+        } else {
+            // Inside a jar the resource cannot be mapped; reading it still needs no parsing
+            try (InputStream in = url.openStream()) {
+                catalog = new BinaryCatalog(ByteBuffer.wrap(readFully(in)));
+            }
+        }
+        // Edited JSON on the classpath without a rebuild would otherwise be ignored
+        if (!catalog.moviesSource.matches(classLoader, "movies.json", built)
+            || !catalog.reviewsSource.matches(classLoader, "mock-reviews.json", built)) {
+            throw new IOException(RESOURCE + " was built from a different movies.json or mock-reviews.json");
+        }
+        return catalog;
+    }
+
+    private static Path toPath(URL url) throws IOException {
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Cannot locate " + url, e);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        byte[] chunk = new byte[1 << 16];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            bytes.write(chunk, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    SourceStamp moviesSource() {
+        return moviesSource;
+    }
+
+    SourceStamp reviewsSource() {
+        return reviewsSource;
+    }
+
+    /**
+     * Decodes every movie, ordering and review once, so a corrupt reference fails here rather than
+     * in a later lookup.
+     */
+    private void decodeAll() throws IOException {
+        try {
+            for (int row = 0; row < movieCount; row++) {
+                movie(row);
+                int indexed = buffer.getInt(idIndexAt + 8 * movieCount + 4 * row);
+                if (indexed < 0 || indexed >= movieCount) {
+                    throw new IOException("Binary catalog id index refers to row " + indexed);
+                }
+            }
+            for (int i = 0; i < movieCount * sortCount; i++) {
+                int position = buffer.getInt(orderingsAt + 4 * i);
+                if (position < 0 || position >= movieCount) {
+                    throw new IOException("Binary catalog ordering refers to position " + position);
+                }
+            }
+            for (int slot = 0; slot < reviewedMovieCount; slot++) {
+                int from = buffer.getInt(reviewIndexAt + 8 * reviewedMovieCount + 4 * slot);
+                int to = buffer.getInt(reviewIndexAt + 8 * reviewedMovieCount + 4 * slot + 4);
+                if (from < 0 || to < from || to > reviewCount) {
+                    throw new IOException("Binary catalog review index is corrupt");
+                }
+                reviewsAt(slot);
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Binary catalog is corrupt: " + e, e);
+        }
+    }
+
+    /**
+     * @return whether the file starts like a binary catalog rather than JSON
+     */
+    static boolean isBinaryCatalog(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] magic = new byte[4];
+            return in.read(magic) == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * @return the movies, decoded one row at a time as they are read
+     */
+    MappedMovieStore movies() {
+        return new MappedMovieStore(this);
+    }
+
+    /**
+     * @return the seed reviews, decoded one movie at a time as they are read
+     */
+    ReviewCatalog reviews() {
+        return new MappedReviews();
+    }
+
+    int movieCount() {
+        return movieCount;
+    }
+
+    Movie movie(int row) {
+        int n = movieCount;
+        return new Movie(buffer.getLong(moviesAt + 8 * row),
+            string(buffer.getInt(moviesAt + 8 * n + 4 * row)),
+            string(buffer.getInt(moviesAt + 12 * n + 4 * row)),
+            buffer.getInt(moviesAt + 28 * n + 4 * row),
+            string(buffer.getInt(moviesAt + 16 * n + 4 * row)),
+            string(buffer.getInt(moviesAt + 20 * n + 4 * row)),
+            buffer.getInt(moviesAt + 32 * n + 4 * row),
+            buffer.getDouble(moviesAt + 36 * n + 8 * row),
+            string(buffer.getInt(moviesAt + 24 * n + 4 * row)));
+    }
+
+    /**
+     * @return the movie's row, or -1 if the catalog has no such movie
+     */
+    int rowOf(long movieId) {
+        int found = search(idIndexAt, movieCount, movieId);
+        return found < 0 ? -1 : buffer.getInt(idIndexAt + 8 * movieCount + 4 * found);
+    }
+
+    /**
+     * @return the stored orders over {@code movies}, which must be this catalog's movies in row order
+     */
+    MovieOrderings orderings(List<Movie> movies) {
+        if (sortCount != MovieSort.values().length) {
+            // Written before the sorts changed; still usable, only slower to start
+            return new MovieOrderings(movies);
+        }
+        Map<MovieSort, int[]> orderings = new EnumMap<>(MovieSort.class);
+        for (MovieSort sort : MovieSort.values()) {
+            int[] positions = new int[movieCount];
+            int at = orderingsAt + 4 * movieCount * sort.ordinal();
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = buffer.getInt(at + 4 * i);
+            }
+            orderings.put(sort, positions);
+        }
+        return new MovieOrderings(movies, orderings);
+    }
+
+    /**
+     * Binary search over {@code count} ascending longs starting at {@code at}.
+     * @return the index of {@code key}, or -1
+     */
+    private int search(int at, int count, long key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = buffer.getLong(at + 8 * mid);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private String string(int id) {
+        if (id == NO_STRING) {
+            return null;
+        }
+        int start = buffer.getInt(stringsAt + 4 * id);
+        byte[] bytes = new byte[buffer.getInt(stringsAt + 4 * id + 4) - start];
+        // A duplicate has its own position, so concurrent readers never share one
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position(stringBytesAt + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private List<Review> reviewsAt(int slot) {
+        int m = reviewedMovieCount;
+        int from = buffer.getInt(reviewIndexAt + 8 * m + 4 * slot);
+        int to = buffer.getInt(reviewIndexAt + 8 * m + 4 * slot + 4);
+        Review[] reviews = new Review[to - from];
+        int r = reviewCount;
+        for (int i = from; i < to; i++) {
+            reviews[i - from] = new Review(
+                string(buffer.getInt(reviewsAt + 4 * i)),
+                string(buffer.getInt(reviewsAt + 4 * r + 4 * i)),
+                buffer.getDouble(reviewsAt + 12 * r + 8 * i),
+                string(buffer.getInt(reviewsAt + 8 * r + 4 * i)));
+        }
+        return Collections.unmodifiableList(Arrays.asList(reviews));
+    }
+
+    /**
+     * Reviews by movie: the reviewed movies' ids in catalog order, the start of each one's reviews
+     * (plus the end of the last), and the ids sorted for binary search with their slots.
+     */
+    private final class MappedReviews extends ReviewCatalog {
+        private final int sortedAt = reviewIndexAt + 8 * reviewedMovieCount + 4 * (reviewedMovieCount + 1);
+
+        @Override
+        public List<Review> get(long movieId) {
+            int found = search(sortedAt, reviewedMovieCount, movieId);
+            if (found < 0) {
+                return Collections.emptyList();
+            }
+            return reviewsAt(buffer.getInt(sortedAt + 8 * reviewedMovieCount + 4 * found));
+        }
+
+        @Override
+        public void forEach(BiConsumer<Long, List<Review>> action) {
+            for (int slot = 0; slot < reviewedMovieCount; slot++) {
+                action.accept(buffer.getLong(reviewIndexAt + 8 * slot), reviewsAt(slot));
+            }
+        }
+
+        @Override
+        public int movieCount() {
+            return reviewedMovieCount;
+        }
+
+        @Override
+        public int reviewCount() {
+            return reviewCount;
+        }
+    }
+
+    /**
+     * Writes a binary catalog of the movies and reviews, replacing {@code target} atomically so
+     * a running instance that mapped the previous file keeps reading it intact.
+     */
+    static void write(List<Movie> movies, ReviewCatalog reviews, Path target) throws IOException {
+        write(movies, reviews, SourceStamp.MISSING, SourceStamp.MISSING, target);
+    }
+
+    /**
+     * @param moviesSource the stamp of the JSON the movies came from
+     * @param reviewsSource the stamp of the JSON the reviews came from
+     */
+    static void write(List<Movie> movies, ReviewCatalog reviews, SourceStamp moviesSource, SourceStamp reviewsSource, Path target) throws IOException {
+        StringTable strings = new StringTable();
+        int n = movies.size();
+        long[] ids = new long[n];
+        int[][] movieStrings = new int[5][n];
+        for (int row = 0; row < n; row++) {
+            Movie movie = movies.get(row);
+            ids[row] = movie.getId();
+            movieStrings[0][row] = strings.add(movie.getMovieName());
+            movieStrings[1][row] = strings.add(movie.getDirector());
+            movieStrings[2][row] = strings.add(movie.getGenre());
+            movieStrings[3][row] = strings.add(movie.getDescription());
+            movieStrings[4][row] = strings.add(movie.getIcon());
+        }
+        Integer[] byId = new Integer[n];
+        for (int row = 0; row < n; row++) {
+            byId[row] = row;
+        }
+        Arrays.sort(byId, (a, b) -> Long.compare(ids[a], ids[b]));
+        MovieOrderings orderings = new MovieOrderings(movies);
+
+        int m = reviews.movieCount();
+        int r = reviews.reviewCount();
+        long[] reviewedIds = new long[m];
+        int[] firstReview = new int[m + 1];
+        int[][] reviewStrings = new int[3][r];
+        double[] ratings = new double[r];
+        int[] counts = new int[2];
+        reviews.forEach((movieId, movieReviews) -> {
+            reviewedIds[counts[0]] = movieId;
+            firstReview[counts[0]++] = counts[1];
+            for (Review review : movieReviews) {
+                reviewStrings[0][counts[1]] = strings.add(review.getUserName());
+                reviewStrings[1][counts[1]] = strings.add(review.getAvatarEmoji());
+                reviewStrings[2][counts[1]] = strings.add(review.getComment());
+                ratings[counts[1]++] = review.getRating();
+            }
+        });
+        firstReview[m] = r;
+        Integer[] reviewedById = new Integer[m];
+        for (int slot = 0; slot < m; slot++) {
+            reviewedById[slot] = slot;
+        }
+        Arrays.sort(reviewedById, (a, b) -> Long.compare(reviewedIds[a], reviewedIds[b]));
+
+        int sortCount = MovieSort.values().length;
+        long[] layout = layout(n, sortCount, m, r);
+        long stringsAt = layout[5];
+        if (stringsAt + 4L * (strings.size() + 1) + strings.byteCount > Integer.MAX_VALUE) {
+            throw new IOException("Catalog is too large for a binary catalog (2 GB)");
+        }
+
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            for (long value : new long[] {MAGIC, FORMAT_VERSION, moviesSource.checksum, reviewsSource.checksum, n, sortCount, m, r, strings.size()}) {
+                out.writeInt((int) value);
+            }
+            for (long offset : layout) {
+                out.writeInt((int) offset);
+            }
+            out.writeLong(moviesSource.size);
+            out.writeLong(reviewsSource.size);
+            for (long id : ids) {
+                out.writeLong(id);
+            }
+            for (int[] column : movieStrings) {
+                writeInts(out, column);
+            }
+            for (Movie movie : movies) {
+                out.writeInt(movie.getYear());
+            }
+            for (Movie movie : movies) {
+                out.writeInt(movie.getDuration());
+            }
+            for (Movie movie : movies) {
+                out.writeDouble(movie.getImdbRating());
+            }
+            for (int row : byId) {
+                out.writeLong(ids[row]);
+            }
+            for (int row : byId) {
+                out.writeInt(row);
+            }
+            for (MovieSort sort : MovieSort.values()) {
+                writeInts(out, orderings.positions(sort));
+            }
+            for (long movieId : reviewedIds) {
+                out.writeLong(movieId);
+            }
+            writeInts(out, firstReview);
+            for (int slot : reviewedById) {
+                out.writeLong(reviewedIds[slot]);
+            }
+            for (int slot : reviewedById) {
+                out.writeInt(slot);
+            }
+            for (int[] column : reviewStrings) {
+                writeInts(out, column);
+            }
+            for (double rating : ratings) {
+                out.writeDouble(rating);
+            }
+            strings.writeTo(out);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Build step: {@code BinaryCatalog <movies.json> <mock-reviews.json> <catalog.bin>}. A missing
+     * reviews file writes a catalog without reviews.
+     */
+    public static void main(String[] args) throws IOException {
+        try {
+            if (args.length != 3) {
+                logger.error("Usage: BinaryCatalog <movies.json> <mock-reviews.json> <catalog.bin>");
+                System.exit(2);
+            }
+            build(Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2]));
+        } finally {
+            // Stops the asynchronous loggers' thread, which would otherwise hold up the build's exec:java
+            LogManager.shutdown();
+        }
+    }
+
+    static void build(Path moviesPath, Path reviewsPath, Path target) throws IOException {
+        CatalogLoader loader = new CatalogLoader();
+        byte[] moviesJson = Files.readAllBytes(moviesPath);
+        List<Movie> movies = loader.loadMovies(new ByteArrayInputStream(moviesJson));
+        ReviewCatalog reviews = ReviewCatalog.empty();
+        byte[] reviewsJson = Files.exists(reviewsPath) ? Files.readAllBytes(reviewsPath) : null;
+        if (reviewsJson != null) {
+            reviews = loader.loadReviews(new ByteArrayInputStream(reviewsJson));
+        }
+        write(movies, reviews, SourceStamp.of(moviesJson), SourceStamp.of(reviewsJson), target);
+        logger.info("Wrote {} movies and {} reviews to {} ({} bytes)", movies.size(), reviews.reviewCount(), target, Files.size(target));
+    }
+
+    /**
+     * What the build records of a JSON source: its size and CRC32, the checksum a jar also stores for
+     * each entry. Checking a source against its stamp reads only metadata: a jar entry's size and
+     * checksum, or a plain file's size and whether it changed after the catalog was written. Only a
+     * file of the same size modified since is read, to compare its checksum.
+     */
+    static final class SourceStamp {
+        static final SourceStamp MISSING = new SourceStamp(-1, 0);
+
+        final long size;
+        final int checksum;
+
+        SourceStamp(long size, int checksum) {
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        static SourceStamp of(byte[] source) {
+            if (source == null) {
+                return MISSING;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(source, 0, source.length);
+            return new SourceStamp(source.length, (int) crc.getValue());
+        }
+
+        /**
+         * @param built when the catalog file was written, or {@code null} if it is not a plain file
+         * @return whether the resource {@code name} is still the source this stamp was taken of
+         */
+        boolean matches(ClassLoader classLoader, String name, FileTime built) throws IOException {
+            URL url = classLoader.getResource(name);
+            if (url == null) {
+                return size == MISSING.size;
+            }
+            URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection) {
+                JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+                if (entry.getSize() != -1 && entry.getSize() != size) {
+                    return false;
+                }
+                if (entry.getCrc() != -1) {
+                    return (int) entry.getCrc() == checksum;
+                }
+            } else if ("file".equals(url.getProtocol())) {
+                Path path = toPath(url);
+                if (Files.size(path) != size) {
+                    return false;
+                }
+                if (built != null && Files.getLastModifiedTime(path).compareTo(built) <= 0) {
+                    return true;
+                }
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return equals(of(readFully(in)));
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof SourceStamp)) {
+                return false;
+            }
+            SourceStamp stamp = (SourceStamp) other;
+            return size == stamp.size && checksum == stamp.checksum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + checksum;
+        }
+
+        @Override
+        public String toString() {
+            return size == MISSING.size ? "missing" : size + " bytes, crc " + Integer.toHexString(checksum);
+        }
+    }
+
+    private static final class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private long byteCount;
+
+        int add(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = encoded.size();
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                byteCount += bytes.length;
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        int size() {
+            return encoded.size();
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] bytes : encoded) {
+                offset += bytes.length;
+                out.writeInt(offset);
+            }
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+        }
+    }
+}
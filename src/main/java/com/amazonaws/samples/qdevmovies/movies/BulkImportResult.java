@@ -0,0 +1,62 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk review import. Every rejection is counted by code, but only the first
+ * {@link BulkReviewImporter#MAX_REPORTED_ERRORS} are reported line by line; {@code errorsTruncated}
+ * says whether any were left out.
+ */
+public class BulkImportResult {
+
+    private final long lines;
+    private final long accepted;
+    private final long rejected;
+    private final List<BulkReviewError> errors;
+    private final boolean errorsTruncated;
+    private final Map<String, Long> errorCounts;
+    private final long elapsedMillis;
+
+    public BulkImportResult(long lines, long accepted, long rejected, List<BulkReviewError> errors,
+                            Map<String, Long> errorCounts, long elapsedMillis) {
+        this.lines = lines;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.errors = errors;
+        this.errorsTruncated = rejected > errors.size();
+        this.errorCounts = errorCounts;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return lines read, including blank lines
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<BulkReviewError> getErrors() {
+        return errors;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public Map<String, Long> getErrorCounts() {
+        return errorCounts;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,47 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * One rejected line of a bulk import. {@code code} is a {@link ReviewValidationError.Code} name when
+ * a validation rule failed, or one of the import's own codes when the line could not be read.
+ */
+public class BulkReviewError {
+
+    public static final String INVALID_JSON = "INVALID_JSON";
+    public static final String MISSING_FIELD = "MISSING_FIELD";
+    public static final String INVALID_FIELD = "INVALID_FIELD";
+    public static final String UNKNOWN_MOVIE = "UNKNOWN_MOVIE";
+    public static final String LINE_TOO_LONG = "LINE_TOO_LONG";
+
+    private final long line;
+    private final String code;
+    private final String field;
+    private final String message;
+
+    public BulkReviewError(long line, String code, String field, String message) {
+        this.line = line;
+        this.code = code;
+        this.field = field;
+        this.message = message;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "line " + line + ": " + code + (field != null ? " (" + field + ")" : "") + ": " + message;
+    }
+}
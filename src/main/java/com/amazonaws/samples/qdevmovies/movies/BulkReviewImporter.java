@@ -0,0 +1,254 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Imports reviews from newline-delimited JSON, one review object per line:
+ * <pre>{"movieId": 1, "userName": "Ana", "rating": 5, "comment": "...", "avatarEmoji": "👩"}</pre>
+ * The input is read as a stream and handled {@value #BATCH_SIZE} lines at a time: each batch is
+ * checked with the {@link ReviewValidator#defaults()} rules and its accepted reviews are appended
+ * in one call. Memory stays bounded by the batch, the longest allowed line and the
+ * {@value #MAX_REPORTED_ERRORS} reported errors, however long the input is.
+ */
+@Service
+public class BulkReviewImporter {
+    private static final Logger logger = LogManager.getLogger(BulkReviewImporter.class);
+
+    public static final int BATCH_SIZE = 1000;
+    public static final int MAX_REPORTED_ERRORS = 1000;
+    /** A maximal comment is 2000 bytes; this leaves room for JSON escapes and the other fields. */
+    public static final int MAX_LINE_LENGTH = 16 * 1024;
+    public static final String DEFAULT_AVATAR = "🧑";
+    private static final int MAX_AVATAR_LENGTH = 16;
+
+    private final MovieService movieService;
+    private final ReviewStore reviewStore;
+    private final ReviewValidator validator = ReviewValidator.defaults();
+    private final MovieMetrics metrics;
+
+    public BulkReviewImporter(MovieService movieService, ReviewStore reviewStore) {
+        this(movieService, reviewStore, null);
+    }
+
+    /**
+     * @param metrics times each review's validation while it is recording; may be {@code null}
+     */
+    @Autowired
+    public BulkReviewImporter(MovieService movieService, ReviewStore reviewStore, MovieMetrics metrics) {
+        this.movieService = movieService;
+        this.reviewStore = reviewStore;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Reads UTF-8 NDJSON until the end of the stream. Blank lines are skipped; any other line
+     * that cannot be imported is counted and reported with its 1-based line number.
+     */
+    public BulkImportResult importNdjson(InputStream input) throws IOException {
+        return importNdjson(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    public BulkImportResult importNdjson(Reader input) throws IOException {
+        long start = System.nanoTime();
+        Import state = new Import();
+        NdjsonLineReader reader = new NdjsonLineReader(input, MAX_LINE_LENGTH);
+        String line;
+        while ((line = reader.nextLine()) != null) {
+            long lineNumber = reader.getLineNumber();
+            if (reader.isTooLong()) {
+                state.reject(lineNumber, BulkReviewError.LINE_TOO_LONG, null,
+                    "Line is longer than " + MAX_LINE_LENGTH + " characters");
+            } else if (!isBlank(line)) {
+                parse(line, lineNumber, state);
+            }
+            if (state.isFull()) {
+                state.flush();
+            }
+        }
+        state.flush();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Bulk import read {} lines: {} accepted, {} rejected in {} ms",
+            reader.getLineNumber(), state.accepted, state.rejected, elapsedMillis);
+        return new BulkImportResult(reader.getLineNumber(), state.accepted, state.rejected,
+            Collections.unmodifiableList(state.errors), Collections.unmodifiableMap(state.errorCounts), elapsedMillis);
+    }
+
+    private void parse(String line, long lineNumber, Import state) {
+        JSONObject json;
+        try {
+            json = new JSONObject(line);
+        } catch (JSONException e) {
+            state.reject(lineNumber, BulkReviewError.INVALID_JSON, null, e.getMessage());
+            return;
+        }
+
+        Object movieId = json.opt("movieId");
+        if (movieId == null) {
+            state.reject(lineNumber, BulkReviewError.MISSING_FIELD, "movieId", "movieId is required");
+            return;
+        }
+        if (!isWholeNumber(movieId)) {
+            state.reject(lineNumber, BulkReviewError.INVALID_FIELD, "movieId", "movieId must be a whole number");
+            return;
+        }
+        Object rating = json.opt("rating");
+        if (rating == null) {
+            state.reject(lineNumber, BulkReviewError.MISSING_FIELD, "rating", "rating is required");
+            return;
+        }
+        if (!isWholeNumber(rating)) {
+            state.reject(lineNumber, BulkReviewError.INVALID_FIELD, "rating", "rating must be a whole number");
+            return;
+        }
+        Object userName = json.opt("userName");
+        if (userName != null && !(userName instanceof String)) {
+            state.reject(lineNumber, BulkReviewError.INVALID_FIELD, "userName", "userName must be a string");
+            return;
+        }
+        Object comment = json.opt("comment");
+        if (comment != null && !(comment instanceof String)) {
+            state.reject(lineNumber, BulkReviewError.INVALID_FIELD, "comment", "comment must be a string");
+            return;
+        }
+        Object avatar = json.opt("avatarEmoji");
+        if (avatar != null && (!(avatar instanceof String) || ((String) avatar).length() > MAX_AVATAR_LENGTH)) {
+            state.reject(lineNumber, BulkReviewError.INVALID_FIELD, "avatarEmoji",
+                "avatarEmoji must be a string of at most " + MAX_AVATAR_LENGTH + " characters");
+            return;
+        }
+
+        long id = ((Number) movieId).longValue();
+        if (!movieService.containsMovie(id)) {
+            state.reject(lineNumber, BulkReviewError.UNKNOWN_MOVIE, "movieId", "Movie " + id + " does not exist");
+            return;
+        }
+        int stars = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, ((Number) rating).longValue()));
+        state.add(lineNumber, id, new ReviewRequest((String) userName, stars, (String) comment),
+            avatar != null ? (String) avatar : DEFAULT_AVATAR);
+    }
+
+    private static boolean isWholeNumber(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            return true;
+        }
+        if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            return d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 1L << 53;
+        }
+        return false;
+    }
+
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Per-call state: the pending batch in parallel arrays, reused from batch to batch, and the running totals.
+     * Lines rejected before validation wait with the batch, so errors are reported in line order.
+     */
+    private final class Import {
+        private final List<ReviewRequest> batch = new ArrayList<>(BATCH_SIZE);
+        private final long[] lineNumbers = new long[BATCH_SIZE];
+        private final long[] movieIds = new long[BATCH_SIZE];
+        private final String[] avatars = new String[BATCH_SIZE];
+        private final ReviewValidationError[] validationErrors = new ReviewValidationError[BATCH_SIZE];
+        private final long[] acceptedIds = new long[BATCH_SIZE];
+        private final Review[] acceptedReviews = new Review[BATCH_SIZE];
+        private final List<BulkReviewError> unparsed = new ArrayList<>();
+
+        private final List<BulkReviewError> errors = new ArrayList<>();
+        private final Map<String, Long> errorCounts = new TreeMap<>();
+        private long accepted;
+        private long rejected;
+
+        void add(long lineNumber, long movieId, ReviewRequest request, String avatar) {
+            int i = batch.size();
+            lineNumbers[i] = lineNumber;
+            movieIds[i] = movieId;
+            avatars[i] = avatar;
+            batch.add(request);
+        }
+
+        boolean isFull() {
+            return batch.size() + unparsed.size() >= BATCH_SIZE;
+        }
+
+        void flush() {
+            validator.validateAll(batch, validationErrors, metrics);
+            int count = 0;
+            int next = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                while (next < unparsed.size() && unparsed.get(next).getLine() < lineNumbers[i]) {
+                    report(unparsed.get(next++));
+                }
+                ReviewValidationError error = validationErrors[i];
+                if (error != null) {
+                    count(error.getCode().name());
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(new BulkReviewError(lineNumbers[i], error.getCode().name(), error.getField(), error.getMessage()));
+                    }
+                    continue;
+                }
+                ReviewRequest request = batch.get(i);
+                acceptedIds[count] = movieIds[i];
+                acceptedReviews[count] = new Review(request.getUserName(), avatars[i],
+                    (double) request.getRating(), request.getComment());
+                count++;
+            }
+            while (next < unparsed.size()) {
+                report(unparsed.get(next++));
+            }
+            unparsed.clear();
+            if (count > 0) {
+                reviewStore.addReviews(acceptedIds, acceptedReviews, count);
+                accepted += count;
+            }
+            batch.clear();
+            Arrays.fill(acceptedReviews, 0, count, null);
+            Arrays.fill(avatars, null);
+        }
+
+        void reject(long lineNumber, String code, String field, String message) {
+            if (errors.size() + unparsed.size() < MAX_REPORTED_ERRORS) {
+                unparsed.add(new BulkReviewError(lineNumber, code, field, message));
+            } else {
+                // Every earlier line's error already fills the report, so only the count is needed
+                count(code);
+            }
+        }
+
+        private void report(BulkReviewError error) {
+            count(error.getCode());
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        private void count(String code) {
+            rejected++;
+            errorCounts.merge(code, 1L, Long::sum);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * The build's {@link BinaryCatalog} on the classpath, opened once and shared by {@link MovieService}
+ * for the movies and {@link ReviewService} for the seed reviews. Each falls back to its JSON file
+ * when there is no usable catalog.
+ */
+@Component
+public class BundledCatalog {
+    private static final Logger logger = LogManager.getLogger(BundledCatalog.class);
+    private static final BundledCatalog NONE = new BundledCatalog((BinaryCatalog) null);
+
+    private final BinaryCatalog catalog;
+
+    /**
+     * @param enabled whether to use the build's binary catalog when there is one
+     */
+    @Autowired
+    public BundledCatalog(@Value("${movies.catalog.binary:true}") boolean enabled) {
+        this(enabled ? openResource() : null);
+    }
+
+    private BundledCatalog(BinaryCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * @return no binary catalog, so the services load their JSON files
+     */
+    static BundledCatalog none() {
+        return NONE;
+    }
+
+    private static BinaryCatalog openResource() {
+        long start = System.nanoTime();
+        try {
+            BinaryCatalog catalog = BinaryCatalog.openResource();
+            if (catalog == null) {
+                logger.info("No {} on the classpath, loading the JSON catalog", BinaryCatalog.RESOURCE);
+            } else {
+                logger.info("Opened {} in {} ms", BinaryCatalog.RESOURCE, (System.nanoTime() - start) / 1_000_000);
+            }
+            return catalog;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot use {}, loading the JSON catalog: {}", BinaryCatalog.RESOURCE, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @return the catalog, or {@code null} if it is missing, unusable or turned off
+     */
+    BinaryCatalog get() {
+        return catalog;
+    }
+}
@@ -0,0 +1,17 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+
+/**
+ * A structure derived from the catalog, such as the search index, that {@link MovieService} builds
+ * for every new catalog before publishing it, so readers find it in the same {@link CatalogSnapshot}
+ * as the movies it was built from.
+ */
+@FunctionalInterface
+public interface CatalogIndex<T> {
+
+    /**
+     * Called on the reload thread before the snapshot holding {@code movies} is published.
+     */
+    T build(List<Movie> movies);
+}
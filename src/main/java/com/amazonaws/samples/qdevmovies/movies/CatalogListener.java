@@ -0,0 +1,14 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * Callback for catalog reloads in {@link MovieService}.
+ */
+@FunctionalInterface
+public interface CatalogListener {
+
+    /**
+     * Called on the reload thread right after {@code snapshot} has been published, with its
+     * {@link CatalogIndex indexes} already built.
+     */
+    void catalogReloaded(CatalogSnapshot snapshot);
+}
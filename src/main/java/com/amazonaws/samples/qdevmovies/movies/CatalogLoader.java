@@ -0,0 +1,216 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Turns {@code movies.json}-style and {@code mock-reviews.json}-style documents into domain objects.
+ * <ul>
+ *     <li>{@link Mode#DOM} builds a JSON tree of the whole document before creating any movie (the original behaviour).</li>
+ *     <li>{@link Mode#STREAMING} pulls one element at a time through a {@link JSONTokener}, so only a single
+ *     movie's JSON is alive at any moment.</li>
+ *     <li>{@link Mode#PARALLEL} splits the array into raw text chunks and parses them on a fork-join pool,
+ *     keeping at most a couple of chunks per worker in flight and merging results in document order.</li>
+ * </ul>
+ */
+@Component
+public class CatalogLoader {
+
+    public enum Mode { DOM, STREAMING, PARALLEL }
+
+    private final Mode mode;
+    private final int chunkSize;
+    private final int parallelism;
+
+    public CatalogLoader() {
+        this(Mode.STREAMING, 4096, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Autowired
+    public CatalogLoader(@Value("${movies.catalog.loader.mode:STREAMING}") Mode mode,
+                         @Value("${movies.catalog.loader.chunk-size:4096}") int chunkSize,
+                         @Value("${movies.catalog.loader.parallelism:0}") int parallelism) {
+        this.mode = mode;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Reads a JSON array of movies. The stream is not closed.
+     */
+    public List<Movie> loadMovies(InputStream inputStream) throws IOException {
+        List<Movie> movieList = new ArrayList<>();
+        loadMovies(inputStream, movieList::add);
+        return movieList;
+    }
+
+    /**
+     * Reads a JSON array of movies and hands each one to the sink in document order, so callers that
+     * re-encode movies (e.g. {@link ColumnarMovieStore}) never need the whole list at once.
+     * The sink is always called from the calling thread. The stream is not closed.
+     */
+    public void loadMovies(InputStream inputStream, Consumer<Movie> sink) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), 1 << 16);
+        switch (mode) {
+            case DOM:
+                loadMoviesDom(reader, sink);
+                break;
+            case PARALLEL:
+                loadMoviesParallel(reader, sink);
+                break;
+            default:
+                loadMoviesStreaming(reader, sink);
+        }
+    }
+
+    /**
+     * Reads a JSON object mapping movie ids to arrays of reviews, one movie's array at a time.
+     * The stream is not closed.
+     */
+    public ReviewCatalog loadReviews(InputStream inputStream) {
+        JSONTokener tokener = new JSONTokener(new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), 1 << 16));
+        ReviewCatalog.Builder builder = ReviewCatalog.builder();
+        expect(tokener, '{');
+        char c = tokener.nextClean();
+        while (c != '}') {
+            tokener.back();
+            String key = tokener.nextValue().toString();
+            expect(tokener, ':');
+            JSONArray movieReviews = (JSONArray) tokener.nextValue();
+            List<Review> reviews = new ArrayList<>(movieReviews.length());
+            for (int i = 0; i < movieReviews.length(); i++) {
+                reviews.add(toReview(movieReviews.getJSONObject(i)));
+            }
+            builder.put(Long.parseLong(key), reviews);
+            c = tokener.nextClean();
+            if (c == ',') {
+                c = tokener.nextClean();
+            } else if (c != '}') {
+                throw tokener.syntaxError("Expected ',' or '}'");
+            }
+        }
+        return builder.build();
+    }
+
+    private void loadMoviesDom(Reader reader, Consumer<Movie> sink) {
+        JSONArray moviesArray = new JSONArray(new JSONTokener(reader));
+        for (int i = 0; i < moviesArray.length(); i++) {
+            sink.accept(toMovie(moviesArray.getJSONObject(i)));
+        }
+    }
+
+    private void loadMoviesStreaming(Reader reader, Consumer<Movie> sink) {
+        JSONTokener tokener = new JSONTokener(reader);
+        expect(tokener, '[');
+        char c = tokener.nextClean();
+        while (c != ']') {
+            tokener.back();
+            sink.accept(toMovie((JSONObject) tokener.nextValue()));
+            c = tokener.nextClean();
+            if (c == ',') {
+                c = tokener.nextClean();
+            } else if (c != ']') {
+                throw tokener.syntaxError("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private void loadMoviesParallel(Reader reader, Consumer<Movie> sink) throws IOException {
+        JsonArraySplitter splitter = new JsonArraySplitter(reader);
+        Deque<ForkJoinTask<List<Movie>>> inFlight = new ArrayDeque<>();
+        int maxInFlight = parallelism * 2;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            String element;
+            while ((element = splitter.nextElement()) != null) {
+                chunk.add(element);
+                if (chunk.size() == chunkSize) {
+                    inFlight.addLast(pool.submit(new ParseChunk(chunk)));
+                    chunk = new ArrayList<>(chunkSize);
+                    if (inFlight.size() >= maxInFlight) {
+                        inFlight.removeFirst().join().forEach(sink);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                inFlight.addLast(pool.submit(new ParseChunk(chunk)));
+            }
+            while (!inFlight.isEmpty()) {
+                inFlight.removeFirst().join().forEach(sink);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    static Movie toMovie(JSONObject movieObj) {
+        return new Movie(
+            movieObj.getLong("id"),
+            movieObj.getString("movieName"),
+            movieObj.getString("director"),
+            movieObj.getInt("year"),
+            movieObj.getString("genre"),
+            movieObj.getString("description"),
+            movieObj.getInt("duration"),
+            movieObj.getDouble("imdbRating"),
+            movieObj.optString("icon", null)
+        );
+    }
+
+    static Review toReview(JSONObject reviewObj) {
+        return new Review(
+            reviewObj.getString("userName"),
+            reviewObj.getString("avatarEmoji"),
+            reviewObj.getDouble("rating"),
+            reviewObj.getString("comment")
+        );
+    }
+
+    private static void expect(JSONTokener tokener, char expected) {
+        char c = tokener.nextClean();
+        if (c != expected) {
+            throw tokener.syntaxError("Expected '" + expected + "' but found '" + c + "'");
+        }
+    }
+
+    private static final class ParseChunk extends RecursiveTask<List<Movie>> {
+        private final transient List<String> elements;
+
+        ParseChunk(List<String> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        protected List<Movie> compute() {
+            List<Movie> parsed = new ArrayList<>(elements.size());
+            for (String element : elements) {
+                parsed.add(toMovie(new JSONObject(element)));
+            }
+            return parsed;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One immutable version of the catalog: the movie store, its precomputed orderings, the movies'
+ * views and the {@link CatalogIndex indexes} derived from it, built together before being published
+ * so a reader never sees one without the others.
+ */
+public class CatalogSnapshot {
+    private final long generation;
+    private final MovieStore store;
+    private final MovieOrderings orderings;
+    private final MovieViews views;
+    private final String source;
+    private final long loadedAt;
+    private final long loadNanos;
+    /** Filled in before publication, except for indexes registered with the snapshot current at startup. */
+    private final Map<CatalogIndex<?>, Object> indexes = new ConcurrentHashMap<>();
+
+    CatalogSnapshot(long generation, MovieStore store, String source) {
+        this(generation, store, source, 0);
+    }
+
+    /**
+     * @param loadNanos how long reading and parsing the catalog took
+     */
+    CatalogSnapshot(long generation, MovieStore store, String source, long loadNanos) {
+        this.generation = generation;
+        this.store = store;
+        this.orderings = MovieOrderings.of(store);
+        this.views = MovieViews.of(store);
+        this.source = source;
+        this.loadedAt = System.currentTimeMillis();
+        this.loadNanos = loadNanos;
+    }
+
+    /**
+     * @return 1 for the catalog loaded at startup, incremented by every successful reload
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public List<Movie> getMovies() {
+        return store.getAllMovies();
+    }
+
+    /**
+     * @return where the catalog was loaded from: a file path, {@code classpath:catalog.bin} or {@code classpath:movies.json}
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return when the snapshot was built, in epoch milliseconds
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * @return how long loading the catalog took, or 0 if it was not loaded from a file or resource
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    MovieStore getStore() {
+        return store;
+    }
+
+    MovieOrderings getOrderings() {
+        return orderings;
+    }
+
+    MovieViews getViews() {
+        return views;
+    }
+
+    /**
+     * @throws IllegalStateException if the index was not registered with {@link MovieService#addCatalogIndex}
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getIndex(CatalogIndex<T> index) {
+        Object built = indexes.get(index);
+        if (built == null) {
+            throw new IllegalStateException("Catalog index " + index + " is not registered");
+        }
+        return (T) built;
+    }
+
+    <T> void putIndex(CatalogIndex<T> index, T built) {
+        indexes.put(index, built);
+    }
+}
@@ -0,0 +1,67 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * Point-in-time view of the published catalog and its reload history.
+ */
+public class CatalogStats {
+    private final long generation;
+    private final int movies;
+    private final String source;
+    private final long loadedAt;
+    private final long reloads;
+    private final long reloadFailures;
+    private final long lastReloadMillis;
+    private final String lastFailure;
+
+    CatalogStats(CatalogSnapshot snapshot, long reloads, long reloadFailures, long lastReloadMillis, String lastFailure) {
+        this.generation = snapshot.getGeneration();
+        this.movies = snapshot.getStore().size();
+        this.source = snapshot.getSource();
+        this.loadedAt = snapshot.getLoadedAt();
+        this.reloads = reloads;
+        this.reloadFailures = reloadFailures;
+        this.lastReloadMillis = lastReloadMillis;
+        this.lastFailure = lastFailure;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getMovies() {
+        return movies;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * @return successful reloads since startup
+     */
+    public long getReloads() {
+        return reloads;
+    }
+
+    public long getReloadFailures() {
+        return reloadFailures;
+    }
+
+    /**
+     * @return how long the last successful reload took to build and publish, or -1 if there has been none
+     */
+    public long getLastReloadMillis() {
+        return lastReloadMillis;
+    }
+
+    /**
+     * @return why the last failed reload failed, or {@code null} if none has
+     */
+    public String getLastFailure() {
+        return lastFailure;
+    }
+}
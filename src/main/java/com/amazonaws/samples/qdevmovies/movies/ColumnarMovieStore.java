@@ -0,0 +1,190 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.amazonaws.samples.qdevmovies.utils.LongIndexMap;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+/**
+ * Stores the catalog as parallel primitive columns instead of one object per movie.
+ * Genre, director and icon are dictionary-encoded into {@code int} codes, and ids resolve to
+ * row numbers through an open-addressing {@link LongIndexMap}, so no {@code Long} is boxed.
+ * <p>
+ * {@link Movie} instances handed out are transient views materialised from a row; their
+ * strings are the shared column values, so a view costs one small object and no copying.
+ */
+public class ColumnarMovieStore implements MovieStore {
+
+    private final int size;
+    private final long[] ids;
+    private final String[] movieNames;
+    private final String[] descriptions;
+    private final int[] years;
+    private final int[] durations;
+    private final double[] imdbRatings;
+    private final int[] genreCodes;
+    private final int[] directorCodes;
+    private final int[] iconCodes;
+    private final String[] genreDictionary;
+    private final String[] directorDictionary;
+    private final String[] iconDictionary;
+    private final LongIndexMap idIndex;
+    private final List<Movie> view = new RowView();
+
+    private ColumnarMovieStore(Builder builder) {
+        this.size = builder.size;
+        this.ids = Arrays.copyOf(builder.ids, size);
+        this.movieNames = Arrays.copyOf(builder.movieNames, size);
+        this.descriptions = Arrays.copyOf(builder.descriptions, size);
+        this.years = Arrays.copyOf(builder.years, size);
+        this.durations = Arrays.copyOf(builder.durations, size);
+        this.imdbRatings = Arrays.copyOf(builder.imdbRatings, size);
+        this.genreCodes = Arrays.copyOf(builder.genreCodes, size);
+        this.directorCodes = Arrays.copyOf(builder.directorCodes, size);
+        this.iconCodes = Arrays.copyOf(builder.iconCodes, size);
+        this.genreDictionary = builder.genres.toArray();
+        this.directorDictionary = builder.directors.toArray();
+        this.iconDictionary = builder.icons.toArray();
+        this.idIndex = builder.idIndex;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<Movie> getAllMovies() {
+        return view;
+    }
+
+    @Override
+    public Optional<Movie> findById(long id) {
+        int row = idIndex.get(id);
+        return row == LongIndexMap.MISSING ? Optional.empty() : Optional.of(row(row));
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return idIndex.containsKey(id);
+    }
+
+    public int genreCount() {
+        return genreDictionary.length;
+    }
+
+    public int directorCount() {
+        return directorDictionary.length;
+    }
+
+    private Movie row(int row) {
+        return new Movie(ids[row], movieNames[row], directorDictionary[directorCodes[row]], years[row],
+            genreDictionary[genreCodes[row]], descriptions[row], durations[row], imdbRatings[row], iconDictionary[iconCodes[row]]);
+    }
+
+    private class RowView extends AbstractList<Movie> implements RandomAccess {
+        @Override
+        public Movie get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return row(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Appends rows one movie at a time; pass {@link #add(Movie)} as the {@link CatalogLoader} sink.
+     * A movie whose id was already added is skipped.
+     */
+    public static class Builder {
+        private int size;
+        private long[] ids = new long[16];
+        private String[] movieNames = new String[16];
+        private String[] descriptions = new String[16];
+        private int[] years = new int[16];
+        private int[] durations = new int[16];
+        private double[] imdbRatings = new double[16];
+        private int[] genreCodes = new int[16];
+        private int[] directorCodes = new int[16];
+        private int[] iconCodes = new int[16];
+        private final Dictionary genres = new Dictionary();
+        private final Dictionary directors = new Dictionary();
+        private final Dictionary icons = new Dictionary();
+        private final LongIndexMap idIndex = new LongIndexMap(16);
+
+        private Builder() {
+        }
+
+        public void add(Movie movie) {
+            if (idIndex.containsKey(movie.getId())) {
+                return;
+            }
+            if (size == ids.length) {
+                grow(size * 2);
+            }
+            ids[size] = movie.getId();
+            movieNames[size] = movie.getMovieName();
+            descriptions[size] = movie.getDescription();
+            years[size] = movie.getYear();
+            durations[size] = movie.getDuration();
+            imdbRatings[size] = movie.getImdbRating();
+            genreCodes[size] = genres.encode(movie.getGenre());
+            directorCodes[size] = directors.encode(movie.getDirector());
+            iconCodes[size] = icons.encode(movie.getIcon());
+            idIndex.put(movie.getId(), size);
+            size++;
+        }
+
+        public ColumnarMovieStore build() {
+            return new ColumnarMovieStore(this);
+        }
+
+        private void grow(int capacity) {
+            ids = Arrays.copyOf(ids, capacity);
+            movieNames = Arrays.copyOf(movieNames, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            years = Arrays.copyOf(years, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            imdbRatings = Arrays.copyOf(imdbRatings, capacity);
+            genreCodes = Arrays.copyOf(genreCodes, capacity);
+            directorCodes = Arrays.copyOf(directorCodes, capacity);
+            iconCodes = Arrays.copyOf(iconCodes, capacity);
+        }
+    }
+
+    private static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[16];
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, code * 2);
+                }
+                values[code] = value;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String[] toArray() {
+            return Arrays.copyOf(values, codes.size());
+        }
+    }
+}
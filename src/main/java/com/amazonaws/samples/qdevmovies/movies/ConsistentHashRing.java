@@ -0,0 +1,115 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Assigns movie ids to instances on a consistent-hash ring.
+ * <p>
+ * Each instance is placed on the ring at {@code virtualNodes} points, hashed from its name, and a
+ * movie belongs to the instance at the first point at or after the movie's own hash. The many points
+ * per instance even out the share each one owns, and adding or removing an instance only moves the
+ * movies between its points and their predecessors: about 1/N of them, all to or from that instance.
+ * <p>
+ * The points are kept as a sorted {@code long[]} with a parallel {@code int[]} of owners, so a
+ * lookup is one binary search over primitives. A ring is immutable; membership changes build a new one.
+ */
+final class ConsistentHashRing {
+
+    private final List<String> members;
+    private final int virtualNodes;
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * @param members instance names, e.g. base URLs; duplicates are ignored
+     * @param virtualNodes points per instance
+     */
+    ConsistentHashRing(List<String> members, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be at least 1");
+        }
+        this.members = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(members)));
+        if (this.members.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one member");
+        }
+        this.virtualNodes = virtualNodes;
+        int size = this.members.size() * virtualNodes;
+        long[] hashes = new long[size];
+        Integer[] order = new Integer[size];
+        for (int m = 0; m < this.members.size(); m++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[m * virtualNodes + v] = hash(this.members.get(m) + "#" + v);
+                order[m * virtualNodes + v] = m * virtualNodes + v;
+            }
+        }
+        // Ties, vanishingly rare, go to the earlier member
+        Arrays.sort(order, (a, b) -> {
+            int byHash = Long.compare(hashes[a], hashes[b]);
+            return byHash != 0 ? byHash : Integer.compare(a, b);
+        });
+        this.points = new long[size];
+        this.owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    List<String> getMembers() {
+        return members;
+    }
+
+    int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    boolean contains(String member) {
+        return members.contains(member);
+    }
+
+    String ownerOf(long movieId) {
+        int index = Arrays.binarySearch(points, mix(movieId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return members.get(owners[index == points.length ? 0 : index]);
+    }
+
+    ConsistentHashRing withMembers(List<String> newMembers) {
+        return new ConsistentHashRing(newMembers, virtualNodes);
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with {@link #mix} so nearby names spread out.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3's 64-bit finalizer: consecutive movie ids land far apart on the ring.
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashRing" + members + " x " + virtualNodes;
+    }
+}
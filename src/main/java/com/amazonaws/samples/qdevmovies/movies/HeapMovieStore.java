@@ -0,0 +1,44 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps every {@link Movie} as its own object in a list plus an id map.
+ */
+public class HeapMovieStore implements MovieStore {
+    private final List<Movie> movies;
+    private final Map<Long, Movie> movieMap;
+
+    public HeapMovieStore(List<Movie> movies) {
+        this.movies = Collections.unmodifiableList(new ArrayList<>(movies));
+        this.movieMap = new HashMap<>();
+        for (Movie movie : movies) {
+            movieMap.put(movie.getId(), movie);
+        }
+    }
+
+    @Override
+    public int size() {
+        return movies.size();
+    }
+
+    @Override
+    public List<Movie> getAllMovies() {
+        return movies;
+    }
+
+    @Override
+    public Optional<Movie> findById(long id) {
+        return Optional.ofNullable(movieMap.get(id));
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return movieMap.containsKey(id);
+    }
+}
@@ -0,0 +1,306 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps user reviews in memory as one append-only log per movie.
+ * <p>
+ * Writers to the same movie serialise on that movie's log, so writers to different movies never
+ * contend. Readers take no lock: a log stores reviews in fixed-size chunks that are never moved,
+ * and publishes its size with a volatile write only after the review is in place. A snapshot is
+ * simply (chunks, size) read at one instant, so it is consistent, immutable and free of copying.
+ * <p>
+ * When a log directory is configured, every review is first committed to a durable {@link ReviewLog},
+ * and the log is replayed into memory on startup. A review is logged and placed in its movie's log
+ * under that log's monitor, so both hold a movie's reviews in the same order, but the commit happens
+ * outside it, so writers to one movie still share a sync. A review becomes visible only once it is durable.
+ */
+@Component
+public class InMemoryReviewStore implements ReviewStore {
+
+    private final ConcurrentMap<Long, MovieReviewLog> logs = new ConcurrentHashMap<>();
+    private final List<ReviewListener> listeners = new CopyOnWriteArrayList<>();
+    private final ReviewLog reviewLog;
+
+    /**
+     * Keeps reviews in memory only.
+     */
+    public InMemoryReviewStore() {
+        this.reviewLog = null;
+    }
+
+    /**
+     * @param logDirectory where the review log lives; blank keeps reviews in memory only
+     * @param fsyncIntervalMillis 0 to fsync before each review is acknowledged, otherwise how often to fsync
+     */
+    @Autowired
+    public InMemoryReviewStore(@Value("${movies.reviews.log.directory:}") String logDirectory,
+                               @Value("${movies.reviews.log.segment-bytes:67108864}") long segmentBytes,
+                               @Value("${movies.reviews.log.fsync-interval-ms:0}") long fsyncIntervalMillis,
+                               @Value("${movies.reviews.log.compact-interval-ms:600000}") long compactIntervalMillis) throws IOException {
+        this.reviewLog = logDirectory == null || logDirectory.trim().isEmpty() ? null
+            : ReviewLog.open(Paths.get(logDirectory.trim()), segmentBytes, fsyncIntervalMillis, compactIntervalMillis,
+                new ReviewLog.Replay() {
+                    @Override
+                    public void reviewAdded(long movieId, Review review) {
+                        logFor(movieId).append(review);
+                    }
+
+                    @Override
+                    public void reviewsRemoved(long movieId) {
+                        logs.remove(movieId);
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (reviewLog != null) {
+            reviewLog.close();
+        }
+    }
+
+    @Override
+    public long addReview(long movieId, Review review) {
+        MovieReviewLog log = logFor(movieId);
+        int version;
+        if (reviewLog == null) {
+            version = log.append(review);
+        } else {
+            long seq;
+            synchronized (log) {
+                seq = reviewLog.append(movieId, review);
+                version = log.reserve(review);
+            }
+            commit(seq);
+            log.publish(version);
+        }
+        for (ReviewListener listener : listeners) {
+            listener.reviewAdded(movieId, review);
+        }
+        return version;
+    }
+
+    @Override
+    public void addReviews(long[] movieIds, Review[] reviews, int count) {
+        // Runs of consecutive reviews for one movie: where each starts, its movie's log, and the size publishing it
+        int[] starts = new int[count + 1];
+        MovieReviewLog[] runLogs = new MovieReviewLog[count];
+        int[] ends = new int[count];
+        int runs = 0;
+        long seq = 0;
+        int start = 0;
+        while (start < count) {
+            long movieId = movieIds[start];
+            int end = start + 1;
+            while (end < count && movieIds[end] == movieId) {
+                end++;
+            }
+            MovieReviewLog log = logFor(movieId);
+            if (reviewLog == null) {
+                log.appendAll(reviews, start, end);
+            } else {
+                synchronized (log) {
+                    seq = reviewLog.appendAll(movieId, reviews, start, end);
+                    ends[runs] = log.reserveAll(reviews, start, end);
+                }
+            }
+            starts[runs] = start;
+            runLogs[runs++] = log;
+            start = end;
+        }
+        starts[runs] = count;
+        if (reviewLog != null && runs > 0) {
+            commit(seq);
+            for (int r = 0; r < runs; r++) {
+                runLogs[r].publish(ends[r]);
+            }
+        }
+        for (int r = 0; r < runs; r++) {
+            long movieId = movieIds[starts[r]];
+            for (int i = starts[r]; i < starts[r + 1]; i++) {
+                for (ReviewListener listener : listeners) {
+                    listener.reviewAdded(movieId, reviews[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces a movie's reviews with those handed over by the instance that held it before, durably
+     * like any other write, so a repeated handover leaves one copy. Listeners are not called: the
+     * reviews are not new, and were counted where they were added.
+     */
+    void restore(long movieId, List<Review> reviews) {
+        Review[] restored = reviews.toArray(new Review[0]);
+        if (reviewLog != null) {
+            commit(reviewLog.appendReplacement(movieId, restored));
+        }
+        if (restored.length == 0) {
+            logs.remove(movieId);
+            return;
+        }
+        MovieReviewLog log = new MovieReviewLog();
+        log.appendAll(restored, 0, restored.length);
+        logs.put(movieId, log);
+    }
+
+    /**
+     * Drops movies' reviews once another instance has taken them over. The review log records the
+     * removal first, so they are not replayed on restart and compaction reclaims their space.
+     */
+    void removeAll(List<Long> movieIds) {
+        if (reviewLog != null && !movieIds.isEmpty()) {
+            commit(reviewLog.appendRemovals(movieIds));
+        }
+        for (long movieId : movieIds) {
+            logs.remove(movieId);
+        }
+    }
+
+    @Override
+    public List<Review> getReviews(long movieId) {
+        MovieReviewLog log = logs.get(movieId);
+        return log == null ? Collections.<Review>emptyList() : log.snapshot();
+    }
+
+    @Override
+    public long getVersion(long movieId) {
+        MovieReviewLog log = logs.get(movieId);
+        return log == null ? 0 : log.size;
+    }
+
+    @Override
+    public void forEachMovie(BiConsumer<Long, List<Review>> action) {
+        logs.forEach((movieId, log) -> action.accept(movieId, log.snapshot()));
+    }
+
+    @Override
+    public void addListener(ReviewListener listener) {
+        listeners.add(listener);
+    }
+
+    private MovieReviewLog logFor(long movieId) {
+        MovieReviewLog log = logs.get(movieId);
+        if (log == null) {
+            log = logs.computeIfAbsent(movieId, id -> new MovieReviewLog());
+        }
+        return log;
+    }
+
+    private void commit(long seq) {
+        try {
+            reviewLog.commit(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store review", e);
+        }
+    }
+
+    static final class MovieReviewLog {
+        private static final int CHUNK_SHIFT = 5;
+        private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        private volatile Review[][] chunks = new Review[1][];
+        private volatile int size;
+        /** Reviews placed in the chunks, published or not; guarded by the monitor. */
+        private int reserved;
+
+        synchronized int append(Review review) {
+            int end = reserve(review);
+            size = end;
+            return end;
+        }
+
+        synchronized void appendAll(Review[] reviews, int from, int to) {
+            size = reserveAll(reviews, from, to);
+        }
+
+        /**
+         * Places a review after the others without making it visible. The caller holds the monitor
+         * and later {@link #publish publishes} the returned size.
+         */
+        int reserve(Review review) {
+            int index = reserved;
+            int chunk = index >>> CHUNK_SHIFT;
+            Review[][] current = chunks;
+            if (chunk == current.length) {
+                Review[][] grown = new Review[current.length * 2][];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[chunk] == null) {
+                current[chunk] = new Review[CHUNK_SIZE];
+            }
+            current[chunk][index & CHUNK_MASK] = review;
+            // Publish the directory before the size so a reader that sees the new size also sees its chunk
+            chunks = current;
+            reserved = index + 1;
+            return reserved;
+        }
+
+        int reserveAll(Review[] reviews, int from, int to) {
+            for (int i = from; i < to; i++) {
+                reserve(reviews[i]);
+            }
+            return reserved;
+        }
+
+        /**
+         * Makes the reviews up to {@code end} visible. Writers reserve in log order, and committing a
+         * log sequence number commits every earlier one, so a writer publishing past a slower writer's
+         * reservations only publishes reviews that are already durable.
+         */
+        synchronized void publish(int end) {
+            if (end > size) {
+                size = end;
+            }
+        }
+
+        List<Review> snapshot() {
+            int visible = size;
+            if (visible == 0) {
+                return Collections.emptyList();
+            }
+            return new Snapshot(chunks, visible);
+        }
+    }
+
+    private static final class Snapshot extends AbstractList<Review> implements RandomAccess {
+        private final Review[][] chunks;
+        private final int size;
+
+        Snapshot(Review[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        public Review get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return chunks[index >>> MovieReviewLog.CHUNK_SHIFT][index & MovieReviewLog.CHUNK_MASK];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
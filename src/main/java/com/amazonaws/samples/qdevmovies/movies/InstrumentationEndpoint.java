@@ -0,0 +1,35 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/instrumentation} reports whether {@link MovieMetrics} is recording;
+ * {@code POST} with {@code {"enabled": false}} takes it off the hot paths until it is turned back on.
+ */
+@Component
+@Endpoint(id = "instrumentation")
+public class InstrumentationEndpoint {
+
+    private final MovieMetrics metrics;
+
+    public InstrumentationEndpoint(MovieMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public Map<String, Boolean> status() {
+        return Collections.singletonMap("enabled", metrics.isEnabled());
+    }
+
+    @WriteOperation
+    public Map<String, Boolean> setEnabled(boolean enabled) {
+        metrics.setEnabled(enabled);
+        return status();
+    }
+}
@@ -0,0 +1,107 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a top-level JSON array from a {@link Reader} and hands back the raw text of one
+ * element at a time. Only brackets and string quoting are tracked, so splitting is much
+ * cheaper than parsing and the elements can be parsed elsewhere, e.g. on other threads.
+ */
+class JsonArraySplitter {
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean started;
+    private boolean finished;
+
+    JsonArraySplitter(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the next element's JSON text, or {@code null} once the closing bracket is reached
+     */
+    String nextElement() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (!started) {
+            int open = nextNonWhitespace();
+            if (open != '[') {
+                throw new JSONException("Expected a JSON array but found '" + (char) open + "'");
+            }
+            started = true;
+        }
+        int c = nextNonWhitespace();
+        if (c == ',') {
+            c = nextNonWhitespace();
+        }
+        if (c == ']') {
+            finished = true;
+            return null;
+        }
+        if (c == -1) {
+            throw new JSONException("Unterminated JSON array");
+        }
+
+        StringBuilder element = new StringBuilder(256);
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (c != -1) {
+            if (inString) {
+                element.append((char) c);
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (depth == 0 && (c == ',' || c == ']')) {
+                // Primitive element: push the delimiter back for the next call
+                position--;
+                return element.toString();
+            } else {
+                element.append((char) c);
+                if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return element.toString();
+                    }
+                }
+            }
+            c = read();
+        }
+        throw new JSONException("Unterminated JSON array element");
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c = read();
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = read();
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,95 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class LeaderboardService {
+    private static final Logger logger = LogManager.getLogger(LeaderboardService.class);
+    private final MovieService movieService;
+    private final RatingAggregates ratingAggregates;
+    private final CatalogIndex<MovieLeaderboards> leaderboards = this::rebuild;
+    /** Movies re-rated while a catalog rebuild is running; {@code null} when none is */
+    private volatile Set<Long> changedDuringRebuild;
+
+    @Autowired
+    public LeaderboardService(MovieService movieService, RatingAggregates ratingAggregates, ReviewStore reviewStore) {
+        this.movieService = movieService;
+        this.ratingAggregates = ratingAggregates;
+        movieService.addCatalogIndex(leaderboards);
+        // The first boards are in use already, and no rating has changed as none is being listened to yet
+        changedDuringRebuild = null;
+        // Registered after RatingAggregates, so the aggregates already include the new review
+        reviewStore.addListener(this::ratingChanged);
+        movieService.addCatalogListener(this::catalogReloaded);
+    }
+
+    private MovieLeaderboards build(List<Movie> movies) {
+        long start = System.nanoTime();
+        MovieLeaderboards built = new MovieLeaderboards(movies, ratingAggregates::get);
+        logger.info("Built {} leaderboards in {} ms", built.boardCount(), (System.nanoTime() - start) / 1_000_000);
+        return built;
+    }
+
+    /**
+     * Takes no lock. A change made while a rebuild is running may be missed by the new boards, so it
+     * is recorded for the rebuild to replay after the swap, or applied here if the swap has happened.
+     */
+    private void ratingChanged(long movieId, Review review) {
+        MovieLeaderboards current = current();
+        current.ratingChanged(movieId);
+        Set<Long> changed = changedDuringRebuild;
+        if (changed != null) {
+            changed.add(movieId);
+        }
+        MovieLeaderboards latest = current();
+        if (latest != current) {
+            latest.ratingChanged(movieId);
+        }
+    }
+
+    /**
+     * Builds the boards for a new catalog while readers and rating updates keep using the old ones,
+     * and starts recording the movies re-rated meanwhile. A change made before the rebuild started
+     * is already in the aggregates it reads.
+     */
+    private MovieLeaderboards rebuild(List<Movie> movies) {
+        changedDuringRebuild = ConcurrentHashMap.newKeySet();
+        return build(movies);
+    }
+
+    /**
+     * Re-scores the movies re-rated during the rebuild on the new boards, now that they are published.
+     */
+    private void catalogReloaded(CatalogSnapshot snapshot) {
+        Set<Long> changed = changedDuringRebuild;
+        changedDuringRebuild = null;
+        if (changed == null) {
+            return;
+        }
+        MovieLeaderboards rebuilt = snapshot.getIndex(leaderboards);
+        for (Long movieId : changed) {
+            rebuilt.ratingChanged(movieId);
+        }
+    }
+
+    private MovieLeaderboards current() {
+        return movieService.getSnapshot().getIndex(leaderboards);
+    }
+
+    /**
+     * @param decade a decade such as {@code 1990} or {@code 1990s}
+     * @param limit number of movies; {@code null} means {@link MovieLeaderboards#DEFAULT_LIMIT}
+     * @throws IllegalArgumentException if the decade is not a year
+     */
+    public List<RankedMovie> top(String genre, String decade, String director, Integer limit) {
+        return current().top(genre, MovieLeaderboards.parseDecade(decade), director,
+            limit != null ? limit : MovieLeaderboards.DEFAULT_LIMIT);
+    }
+}
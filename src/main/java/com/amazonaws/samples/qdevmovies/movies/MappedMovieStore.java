@@ -0,0 +1,65 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+/**
+ * Serves the catalog straight from a {@link BinaryCatalog}. Nothing is decoded up front: each lookup
+ * decodes one row, so loading costs the same for any catalog size and the movies' text stays off the heap.
+ * <p>
+ * Like {@link ColumnarMovieStore}, it hands out transient {@link Movie} views, one per lookup.
+ */
+public class MappedMovieStore implements MovieStore {
+
+    private final BinaryCatalog catalog;
+    private final List<Movie> view = new RowView();
+
+    MappedMovieStore(BinaryCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    public int size() {
+        return catalog.movieCount();
+    }
+
+    @Override
+    public List<Movie> getAllMovies() {
+        return view;
+    }
+
+    @Override
+    public Optional<Movie> findById(long id) {
+        int row = catalog.rowOf(id);
+        return row < 0 ? Optional.empty() : Optional.of(catalog.movie(row));
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return catalog.rowOf(id) >= 0;
+    }
+
+    /**
+     * @return the listing orders stored with the catalog, so none is sorted at startup
+     */
+    MovieOrderings orderings() {
+        return catalog.orderings(view);
+    }
+
+    private class RowView extends AbstractList<Movie> implements RandomAccess {
+        @Override
+        public Movie get(int index) {
+            if (index < 0 || index >= catalog.movieCount()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + catalog.movieCount());
+            }
+            return catalog.movie(index);
+        }
+
+        @Override
+        public int size() {
+            return catalog.movieCount();
+        }
+    }
+}
@@ -12,8 +12,17 @@ public class Movie {
     private final String description;
     private final int duration;
     private final double imdbRating;
+    private final String icon;
 
     public Movie(long id, String movieName, String director, int year, String genre, String description, int duration, double imdbRating) {
+        this(id, movieName, director, year, genre, description, duration, imdbRating, null);
+    }
+
+    /**
+     * @param icon the catalog's icon for the movie, or {@code null} for the default
+     */
+    public Movie(long id, String movieName, String director, int year, String genre, String description, int duration,
+                 double imdbRating, String icon) {
         this.id = id;
         this.movieName = movieName;
         this.director = director;
@@ -22,6 +31,7 @@ public class Movie {
         this.description = description;
         this.duration = duration;
         this.imdbRating = imdbRating;
+        this.icon = MovieIconUtils.iconOrDefault(icon);
     }
 
     public long getId() {
@@ -57,6 +67,6 @@ public class Movie {
     }
 
     public String getIcon() {
-        return MovieIconUtils.getMovieIcon(this.movieName);
+        return this.icon;
     }
 }
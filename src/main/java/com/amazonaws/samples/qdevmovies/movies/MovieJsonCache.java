@@ -0,0 +1,289 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON bodies of {@code /api/movies} and {@code /api/movies/{id}}, serialized once and kept as
+ * UTF-8 bytes alongside a gzip-compressed copy, so a request only looks its payload up and writes
+ * the array to the response (see {@link MovieJsonPayloadHandler}).
+ * <p>
+ * Movies are immutable, so a payload only changes with the catalog: keys carry the catalog
+ * generation and a reload drops every entry. Like the {@link RenderedPageCache}, the cache evicts
+ * the least recently used payloads once their bytes exceed a budget.
+ */
+@Component
+public class MovieJsonCache {
+
+    /** Approximate per-entry bookkeeping (map entry, payload object, key and ETags). */
+    private static final int ENTRY_OVERHEAD_BYTES = 200;
+
+    private final ObjectMapper objectMapper;
+    private final MovieService movieService;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Payload> payloads = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public MovieJsonCache(ObjectMapper objectMapper, MovieService movieService,
+                          @Value("${movies.api.json-cache.max-bytes:16777216}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.movieService = movieService;
+        this.maxBytes = maxBytes;
+        movieService.addCatalogListener(snapshot -> invalidateAll());
+    }
+
+    /**
+     * @return the movie's JSON, or empty if the catalog has no such movie
+     */
+    public Optional<Payload> movie(long movieId) {
+        CatalogSnapshot snapshot = movieService.getSnapshot();
+        String key = "g" + snapshot.getGeneration() + ":movie:" + movieId;
+        Payload payload = get(key);
+        if (payload == null) {
+            Optional<Movie> movie = snapshot.getStore().findById(movieId);
+            if (!movie.isPresent()) {
+                return Optional.empty();
+            }
+            payload = put(key, movie.get());
+        }
+        return Optional.of(payload);
+    }
+
+    /**
+     * @return the JSON of one page of the catalog, as {@link MovieService#getMoviePage} returns it
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for a different sort
+     */
+    public Payload page(MovieSort sort, String cursor, int size) {
+        CatalogSnapshot snapshot = movieService.getSnapshot();
+        int pageSize = Math.max(1, Math.min(size, MovieOrderings.MAX_PAGE_SIZE));
+        String key = "g" + snapshot.getGeneration() + ":page:" + sort + ":" + pageSize + ":" + (cursor == null ? "" : cursor);
+        Payload payload = get(key);
+        if (payload == null) {
+            payload = put(key, snapshot.getOrderings().page(sort, cursor, pageSize));
+        }
+        return payload;
+    }
+
+    public synchronized void invalidateAll() {
+        payloads.clear();
+        bytes = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(payloads.size(), bytes, maxBytes, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private Payload get(String key) {
+        Payload payload;
+        synchronized (this) {
+            payload = payloads.get(key);
+        }
+        if (payload != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return payload;
+    }
+
+    private Payload put(String key, Object value) {
+        Payload payload;
+        try {
+            payload = new Payload(objectMapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + key, e);
+        }
+        long size = payload.size() + 2L * key.length() + ENTRY_OVERHEAD_BYTES;
+        if (size > maxBytes / 8) {
+            return payload;
+        }
+        synchronized (this) {
+            Payload replaced = payloads.put(key, payload);
+            if (replaced != null) {
+                bytes -= replaced.size() + 2L * key.length() + ENTRY_OVERHEAD_BYTES;
+            }
+            bytes += size;
+            Iterator<Map.Entry<String, Payload>> eldest = payloads.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Payload> entry = eldest.next();
+                eldest.remove();
+                bytes -= entry.getValue().size() + 2L * entry.getKey().length() + ENTRY_OVERHEAD_BYTES;
+                evictions.increment();
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * @return whether an {@code Accept-Encoding} header admits gzip
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        int at = acceptEncoding.indexOf("gzip");
+        if (at < 0) {
+            return false;
+        }
+        int end = acceptEncoding.indexOf(',', at);
+        if (end < 0) {
+            end = acceptEncoding.length();
+        }
+        int quality = acceptEncoding.indexOf("q=", at);
+        if (quality < 0 || quality > end) {
+            return true;
+        }
+        // Refused only by a zero weight, "q=0" or "q=0.000"
+        for (int i = quality + 2; i < end; i++) {
+            char c = acceptEncoding.charAt(i);
+            if (c >= '1' && c <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One serialized JSON body, plain and gzip-compressed, with a strong ETag for each.
+     */
+    public static final class Payload {
+        private final byte[] json;
+        private final byte[] gzip;
+        private final String etag;
+        private final String gzipEtag;
+
+        Payload(byte[] json) {
+            this.json = json;
+            byte[] compressed = compress(json);
+            // Tiny bodies can come out larger; those are always sent as they are
+            this.gzip = compressed.length < json.length ? compressed : null;
+            CRC32 crc = new CRC32();
+            crc.update(json, 0, json.length);
+            String hash = Long.toHexString(crc.getValue()) + Integer.toHexString(json.length);
+            this.etag = "\"" + hash + "\"";
+            this.gzipEtag = "\"" + hash + "-gzip\"";
+        }
+
+        private static byte[] compress(byte[] json) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return compressed.toByteArray();
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * @return the compressed body, or {@code null} if compressing does not make it smaller
+         */
+        public byte[] getGzip() {
+            return gzip;
+        }
+
+        /**
+         * Writes the body the request's {@code Accept-Encoding} calls for, the cached array as-is,
+         * or a 304 if {@code If-None-Match} already carries its ETag.
+         */
+        public void write(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            boolean compressed = gzip != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            String tag = compressed ? gzipEtag : etag;
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            response.setHeader(HttpHeaders.ETAG, tag);
+            String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+            if (ifNoneMatch != null && (ifNoneMatch.contains(tag) || ifNoneMatch.trim().equals("*"))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            byte[] body = compressed ? gzip : json;
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            if (compressed) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+
+        long size() {
+            return json.length + (gzip != null ? gzip.length : 0);
+        }
+    }
+
+    public static final class Stats {
+        private final int entries;
+        private final long bytes;
+        private final long maxBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Stats(int entries, long bytes, long maxBytes, long hits, long misses, long evictions) {
+            this.entries = entries;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        /**
+         * @return approximate memory held by cached payloads, plain and compressed
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a {@link MovieJsonCache.Payload} returned by a handler, directly or through a
+ * {@code DeferredResult}, straight to the servlet response. It goes ahead of Spring's own handlers,
+ * which would otherwise pass the bytes through {@code @ResponseBody} content negotiation and
+ * message converters on every request.
+ */
+@Component
+public class MovieJsonPayloadHandler implements HandlerMethodReturnValueHandler, BeanPostProcessor {
+
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return MovieJsonCache.Payload.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public void handleReturnValue(Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest) throws Exception {
+        mavContainer.setRequestHandled(true);
+        ((MovieJsonCache.Payload) returnValue).write(webRequest.getNativeRequest(HttpServletRequest.class),
+            webRequest.getNativeResponse(HttpServletResponse.class));
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof RequestMappingHandlerAdapter) {
+            RequestMappingHandlerAdapter adapter = (RequestMappingHandlerAdapter) bean;
+            List<HandlerMethodReturnValueHandler> handlers = new ArrayList<>();
+            handlers.add(this);
+            handlers.addAll(adapter.getReturnValueHandlers());
+            adapter.setReturnValueHandlers(handlers);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,381 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.amazonaws.samples.qdevmovies.utils.IntArrayList;
+import com.amazonaws.samples.qdevmovies.utils.LongIndexMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.LongFunction;
+
+/**
+ * Top-rated movies per facet, precomputed when the catalog loads.
+ * <p>
+ * There is one bounded board for the whole catalog and one per genre, decade, genre and decade
+ * pair, and director. A board holds its best {@link #BOARD_CAPACITY} movies in rank order plus a
+ * <em>floor</em>: an upper bound on the rank of every movie of the facet that is not on the board.
+ * Serving a request walks the board only while entries still rank ahead of the floor, so it costs
+ * O(K) however large the catalog is.
+ * <p>
+ * When a movie's rating changes it is re-offered to each of its boards in O(K). A movie pushed off
+ * a board raises the floor. A board movie whose score drops below the floor stays on the board but
+ * no longer counts as exact. If a request needs more exact entries than a board has left, that one
+ * board is rebuilt from its member list. The slack between {@link #MAX_LIMIT} and the capacity makes
+ * this rare.
+ * <p>
+ * The score is a Bayesian average. The IMDb rating counts as {@link #PRIOR_WEIGHT} reviews, and
+ * every community review is added to it. This stops one enthusiastic review from putting a movie at
+ * the top. Ties are ranked in catalog order.
+ */
+public class MovieLeaderboards {
+
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 100;
+
+    static final int BOARD_CAPACITY = 128;
+    static final double PRIOR_WEIGHT = 5.0;
+    private static final int UPDATE_STRIPES = 64;
+
+    private final List<Movie> movies;
+    private final LongFunction<RatingSummary> ratings;
+    private final LongIndexMap ordinalsById;
+    private final double[] scores;
+    private final Map<String, Board> boards;
+    private final Object[] updateLocks = new Object[UPDATE_STRIPES];
+
+    /**
+     * @param ratings community rating lookup by movie id; it is consulted once per movie here and again on {@link #ratingChanged(long)}
+     */
+    public MovieLeaderboards(List<Movie> movies, LongFunction<RatingSummary> ratings) {
+        this.movies = movies;
+        this.ratings = ratings;
+        this.ordinalsById = new LongIndexMap(movies.size());
+        this.scores = new double[movies.size()];
+
+        Map<String, IntArrayList> members = new HashMap<>();
+        for (int ordinal = 0; ordinal < movies.size(); ordinal++) {
+            Movie movie = movies.get(ordinal);
+            ordinalsById.put(movie.getId(), ordinal);
+            scores[ordinal] = score(movie, ratings.apply(movie.getId()));
+            for (String key : boardKeys(movie)) {
+                IntArrayList list = members.get(key);
+                if (list == null) {
+                    list = new IntArrayList();
+                    members.put(key, list);
+                }
+                list.add(ordinal);
+            }
+        }
+        Map<String, Board> built = new HashMap<>(members.size() * 2);
+        for (Map.Entry<String, IntArrayList> entry : members.entrySet()) {
+            Board board = new Board(entry.getValue().toArray());
+            board.rebuild(scores);
+            built.put(entry.getKey(), board);
+        }
+        this.boards = built;
+        for (int i = 0; i < updateLocks.length; i++) {
+            updateLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the best rated movies matching every given facet, best first.
+     *
+     * @param genre a genre such as {@code Drama}, matched case-insensitively, or {@code null}
+     * @param decade the first year of a decade such as {@code 1990}, or {@code null}
+     * @param director the director's full name, matched case-insensitively, or {@code null}
+     * @param limit number of movies, clamped to 1..{@link #MAX_LIMIT}
+     */
+    public List<RankedMovie> top(String genre, Integer decade, String director, int limit) {
+        int k = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String normalizedGenre = normalize(genre);
+        String normalizedDirector = normalize(director);
+        Board board;
+        IntPredicate filter = null;
+        if (normalizedDirector != null) {
+            // Director boards are small, so other facets are applied as a filter rather than precomputed
+            board = boards.get(directorKey(normalizedDirector));
+            if (normalizedGenre != null || decade != null) {
+                filter = ordinal -> matches(movies.get(ordinal), normalizedGenre, decade);
+            }
+        } else {
+            board = boards.get(facetKey(normalizedGenre, decade));
+        }
+        if (board == null) {
+            return Collections.emptyList();
+        }
+        int[] ordinals = board.top(k, filter, scores);
+        List<RankedMovie> ranked = new ArrayList<>(ordinals.length);
+        for (int i = 0; i < ordinals.length; i++) {
+            ranked.add(new RankedMovie(i + 1, movies.get(ordinals[i]), scores[ordinals[i]]));
+        }
+        return ranked;
+    }
+
+    /**
+     * Re-scores a movie after its community rating changed and updates each of its boards in O(K).
+     * Updates of one movie are serialised on its lock stripe, so two reviews of it cannot leave its
+     * older score on a board; updates of other movies only meet on the boards they share.
+     */
+    public void ratingChanged(long movieId) {
+        int ordinal = ordinalsById.get(movieId);
+        if (ordinal == LongIndexMap.MISSING) {
+            return;
+        }
+        Movie movie = movies.get(ordinal);
+        synchronized (updateLocks[ordinal & (UPDATE_STRIPES - 1)]) {
+            double score = score(movie, ratings.apply(movieId));
+            scores[ordinal] = score;
+            for (String key : boardKeys(movie)) {
+                boards.get(key).offer(ordinal, score);
+            }
+        }
+    }
+
+    public int boardCount() {
+        return boards.size();
+    }
+
+    /**
+     * Parses a decade given as {@code 1990}, {@code 1995} or {@code 1990s}.
+     *
+     * @return the first year of the decade, or {@code null} if no decade was given
+     * @throws IllegalArgumentException if the value is not a year
+     */
+    public static Integer parseDecade(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String year = value.trim();
+        if (year.endsWith("s")) {
+            year = year.substring(0, year.length() - 1);
+        }
+        try {
+            return decadeOf(Integer.parseInt(year));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid decade: " + value);
+        }
+    }
+
+    static double score(Movie movie, RatingSummary rating) {
+        double reviewSum = rating.getAverage() * rating.getCount();
+        return (PRIOR_WEIGHT * movie.getImdbRating() + reviewSum) / (PRIOR_WEIGHT + rating.getCount());
+    }
+
+    private static List<String> boardKeys(Movie movie) {
+        int decade = decadeOf(movie.getYear());
+        List<String> keys = new ArrayList<>();
+        keys.add(facetKey(null, null));
+        keys.add(facetKey(null, decade));
+        for (String genre : MovieSearchIndex.splitGenre(movie.getGenre())) {
+            String normalizedGenre = genre.toLowerCase(Locale.ROOT);
+            keys.add(facetKey(normalizedGenre, null));
+            keys.add(facetKey(normalizedGenre, decade));
+        }
+        String director = normalize(movie.getDirector());
+        if (director != null) {
+            keys.add(directorKey(director));
+        }
+        return keys;
+    }
+
+    private static boolean matches(Movie movie, String genre, Integer decade) {
+        if (decade != null && decadeOf(movie.getYear()) != decade) {
+            return false;
+        }
+        if (genre == null) {
+            return true;
+        }
+        for (String part : MovieSearchIndex.splitGenre(movie.getGenre())) {
+            if (part.equalsIgnoreCase(genre)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String facetKey(String genre, Integer decade) {
+        return "g:" + (genre == null ? "" : genre) + "|d:" + (decade == null ? "" : decade);
+    }
+
+    private static String directorKey(String director) {
+        return "p:" + director;
+    }
+
+    private static int decadeOf(int year) {
+        return Math.floorDiv(year, 10) * 10;
+    }
+
+    private static String normalize(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return whether the entry (scoreA, ordinalA) ranks ahead of (scoreB, ordinalB)
+     */
+    private static boolean ahead(double scoreA, int ordinalA, double scoreB, int ordinalB) {
+        return scoreA > scoreB || (scoreA == scoreB && ordinalA < ordinalB);
+    }
+
+    /**
+     * Selects the best {@code k} matching members in rank order with a bounded min-heap, in O(n log k).
+     */
+    static int[] select(int[] members, IntPredicate filter, int k, double[] scores) {
+        int[] heap = new int[k];
+        int heapSize = 0;
+        for (int ordinal : members) {
+            if (filter != null && !filter.test(ordinal)) {
+                continue;
+            }
+            if (heapSize < k) {
+                heap[heapSize] = ordinal;
+                siftUp(heap, heapSize++, scores);
+            } else if (ahead(scores[ordinal], ordinal, scores[heap[0]], heap[0])) {
+                heap[0] = ordinal;
+                siftDown(heap, heapSize, scores);
+            }
+        }
+        int[] ranked = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ranked[i] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, scores);
+        }
+        return ranked;
+    }
+
+    private static void siftUp(int[] heap, int index, double[] scores) {
+        int ordinal = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ahead(scores[heap[parent]], heap[parent], scores[ordinal], ordinal)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = ordinal;
+    }
+
+    private static void siftDown(int[] heap, int size, double[] scores) {
+        if (size == 0) {
+            return;
+        }
+        int ordinal = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && ahead(scores[heap[child]], heap[child], scores[heap[child + 1]], heap[child + 1])) {
+                child++;
+            }
+            if (!ahead(scores[ordinal], ordinal, scores[heap[child]], heap[child])) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = ordinal;
+    }
+
+    /**
+     * One facet's bounded leaderboard. Entries are kept in rank order together with the score
+     * they were ranked by, so a board stays self-consistent while movies are being re-scored.
+     */
+    private static final class Board {
+        private final int[] members;
+        private final int capacity;
+        private int[] ordinals;
+        private double[] entryScores;
+        private int size;
+        private boolean hasFloor;
+        private double floorScore;
+        private int floorOrdinal;
+
+        Board(int[] members) {
+            this.members = members;
+            this.capacity = Math.min(BOARD_CAPACITY, members.length);
+        }
+
+        synchronized void rebuild(double[] scores) {
+            int[] selected = select(members, null, Math.min(BOARD_CAPACITY + 1, members.length), scores);
+            size = Math.min(selected.length, capacity);
+            ordinals = new int[capacity];
+            entryScores = new double[capacity];
+            for (int i = 0; i < size; i++) {
+                ordinals[i] = selected[i];
+                entryScores[i] = scores[selected[i]];
+            }
+            hasFloor = selected.length > capacity;
+            if (hasFloor) {
+                floorOrdinal = selected[capacity];
+                floorScore = scores[floorOrdinal];
+            }
+        }
+
+        synchronized void offer(int ordinal, double score) {
+            for (int i = 0; i < size; i++) {
+                if (ordinals[i] == ordinal) {
+                    System.arraycopy(ordinals, i + 1, ordinals, i, size - i - 1);
+                    System.arraycopy(entryScores, i + 1, entryScores, i, size - i - 1);
+                    size--;
+                    break;
+                }
+            }
+            int position = size;
+            while (position > 0 && ahead(score, ordinal, entryScores[position - 1], ordinals[position - 1])) {
+                position--;
+            }
+            if (position == capacity) {
+                raiseFloor(score, ordinal);
+                return;
+            }
+            if (size == capacity) {
+                raiseFloor(entryScores[size - 1], ordinals[size - 1]);
+                size--;
+            }
+            System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+            System.arraycopy(entryScores, position, entryScores, position + 1, size - position);
+            ordinals[position] = ordinal;
+            entryScores[position] = score;
+            size++;
+        }
+
+        synchronized int[] top(int k, IntPredicate filter, double[] scores) {
+            IntArrayList result = new IntArrayList(k);
+            for (int i = 0; i < size && result.size() < k; i++) {
+                if (hasFloor && !ahead(entryScores[i], ordinals[i], floorScore, floorOrdinal)) {
+                    break;
+                }
+                if (filter == null || filter.test(ordinals[i])) {
+                    result.add(ordinals[i]);
+                }
+            }
+            if (result.size() == k || !hasFloor) {
+                return result.toArray();
+            }
+            if (filter != null) {
+                return select(members, filter, k, scores);
+            }
+            rebuild(scores);
+            return top(k, null, scores);
+        }
+
+        private void raiseFloor(double score, int ordinal) {
+            if (!hasFloor || ahead(score, ordinal, floorScore, floorOrdinal)) {
+                hasFloor = true;
+                floorScore = score;
+                floorOrdinal = ordinal;
+            }
+        }
+    }
+}
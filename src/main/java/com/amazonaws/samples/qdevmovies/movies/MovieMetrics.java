@@ -0,0 +1,174 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micrometer meters for the catalog, reviews, request handling and rendering, served by Actuator
+ * at {@code /actuator/prometheus}.
+ * <p>
+ * Hot paths hold this context's recorder and check {@link #recording(MovieMetrics)} first: a
+ * disabled call site costs one volatile read and takes no timestamps. The catalog and seed review
+ * services cannot depend on this class, which depends on them, so it attaches itself to them.
+ * {@code movies.metrics.enabled} sets the initial state and {@code /actuator/instrumentation}
+ * switches it at runtime. Gauges over the catalog, the page cache and admission control are only
+ * read when scraped and stay registered either way.
+ */
+@Component
+public class MovieMetrics {
+    private static final Logger logger = LogManager.getLogger(MovieMetrics.class);
+
+    private final MeterRegistry registry;
+    private final Timer movieHits;
+    private final Timer movieMisses;
+    private final Timer reviewLookups;
+    private final Timer validationsAccepted;
+    private final Map<ReviewValidationError.Code, Timer> validationsRejected = new EnumMap<>(ReviewValidationError.Code.class);
+    private final Timer catalogLoads;
+    private final Map<String, Timer> requests = new ConcurrentHashMap<>();
+    private final Map<String, Timer> renders = new ConcurrentHashMap<>();
+    private final MovieService movieService;
+    private final ReviewService reviewService;
+    private volatile boolean enabled;
+
+    @Autowired
+    public MovieMetrics(MeterRegistry registry, MovieService movieService, ReviewService reviewService, RenderedPageCache pageCache,
+                        AdmissionControl admission, @Value("${movies.metrics.enabled:true}") boolean enabled) {
+        this.registry = registry;
+        this.movieService = movieService;
+        this.reviewService = reviewService;
+        this.movieHits = movieLookups(registry, "hit");
+        this.movieMisses = movieLookups(registry, "miss");
+        this.reviewLookups = Timer.builder("movies.reviews.lookups")
+            .description("ReviewService.getReviewsForMovie calls")
+            .register(registry);
+        this.validationsAccepted = validations(registry, "ACCEPTED");
+        for (ReviewValidationError.Code code : ReviewValidationError.Code.values()) {
+            validationsRejected.put(code, validations(registry, code.name()));
+        }
+        this.catalogLoads = Timer.builder("movies.catalog.loads")
+            .description("Reading and parsing the catalog, at startup and on each reload")
+            .register(registry);
+        catalogLoads.record(movieService.getSnapshot().getLoadNanos(), TimeUnit.NANOSECONDS);
+        movieService.addCatalogListener(snapshot -> catalogLoads.record(snapshot.getLoadNanos(), TimeUnit.NANOSECONDS));
+
+        Gauge.builder("movies.catalog.generation", movieService, service -> service.getSnapshot().getGeneration())
+            .register(registry);
+        Gauge.builder("movies.catalog.movies", movieService, service -> service.getSnapshot().getStore().size())
+            .register(registry);
+        FunctionCounter.builder("movies.catalog.reload.failures", movieService, service -> service.getCatalogStats().getReloadFailures())
+            .register(registry);
+        FunctionCounter.builder("movies.page.cache.hits", pageCache, cache -> cache.stats().getHits()).register(registry);
+        FunctionCounter.builder("movies.page.cache.misses", pageCache, cache -> cache.stats().getMisses()).register(registry);
+        FunctionCounter.builder("movies.page.cache.not.modified", pageCache, cache -> cache.stats().getNotModified()).register(registry);
+        FunctionCounter.builder("movies.page.cache.evictions", pageCache, cache -> cache.stats().getEvictions()).register(registry);
+        Gauge.builder("movies.page.cache.bytes", pageCache, cache -> cache.stats().getBytes()).register(registry);
+        for (AdmissionControl.Route route : admission.routes().values()) {
+            admissionDecisions(registry, route, "admitted", route.admitted);
+            admissionDecisions(registry, route, "rate_limited", route.throttled);
+            admissionDecisions(registry, route, "shed", route.shed);
+            Gauge.builder("movies.admission.limit", route.limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Adaptive concurrency limit of an admission route")
+                .tag("route", route.name)
+                .register(registry);
+            Gauge.builder("movies.admission.in.flight", route.limit, AdaptiveConcurrencyLimit::getInFlight)
+                .tag("route", route.name)
+                .register(registry);
+        }
+        setEnabled(enabled);
+        movieService.setMetrics(this);
+        reviewService.setMetrics(this);
+    }
+
+    private static Timer movieLookups(MeterRegistry registry, String result) {
+        return Timer.builder("movies.catalog.lookups")
+            .description("MovieService.getMovieById calls, by whether the movie was found")
+            .tag("result", result)
+            .register(registry);
+    }
+
+    private static void admissionDecisions(MeterRegistry registry, AdmissionControl.Route route, String result, LongAdder count) {
+        FunctionCounter.builder("movies.admission.decisions", count, LongAdder::sum)
+            .description("Requests the admission filter let through, rejected with 429 or shed with 503")
+            .tag("route", route.name)
+            .tag("result", result)
+            .register(registry);
+    }
+
+    private static Timer validations(MeterRegistry registry, String result) {
+        return Timer.builder("movies.reviews.validations")
+            .description("ReviewValidator.validate calls, by ACCEPTED or rejection code")
+            .tag("result", result)
+            .register(registry);
+    }
+
+    /**
+     * @return whether a call site holding {@code metrics}, which may be {@code null}, should time its work
+     */
+    static boolean recording(MovieMetrics metrics) {
+        return metrics != null && metrics.enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        logger.info("Instrumentation {}", enabled ? "enabled" : "disabled");
+    }
+
+    @PreDestroy
+    public void close() {
+        enabled = false;
+        movieService.setMetrics(null);
+        reviewService.setMetrics(null);
+    }
+
+    void recordMovieLookup(boolean found, long nanos) {
+        (found ? movieHits : movieMisses).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordReviewLookup(long nanos) {
+        reviewLookups.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordValidation(ReviewValidationError error, long nanos) {
+        (error == null ? validationsAccepted : validationsRejected.get(error.getCode())).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param uri the matched mapping pattern, e.g. {@code /movies/{id}/details}
+     */
+    void recordRequest(String method, String uri, int status, long nanos) {
+        requests.computeIfAbsent(method + ' ' + status + ' ' + uri, key -> Timer.builder("movies.http.requests")
+            .description("Controller mappings, from handler start to the response being rendered")
+            .tag("method", method)
+            .tag("uri", uri)
+            .tag("status", Integer.toString(status))
+            .publishPercentileHistogram()
+            .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordRender(String view, long nanos) {
+        renders.computeIfAbsent(view, name -> Timer.builder("movies.views.render")
+            .description("Thymeleaf rendering of a view returned by a controller")
+            .tag("view", name)
+            .publishPercentileHistogram()
+            .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
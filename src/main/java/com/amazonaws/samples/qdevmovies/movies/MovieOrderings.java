@@ -0,0 +1,181 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Precomputed listing orders over an immutable catalog with keyset pagination.
+ * Each {@link MovieSort} is materialised once as an array of catalog positions; a page
+ * is a binary search for the cursor followed by a slice, so no request sorts anything.
+ * <p>
+ * Cursors encode the sort, the last movie's sort key and its id rather than an offset,
+ * so they stay meaningful if the catalog they were issued against is replaced.
+ */
+public class MovieOrderings {
+
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final Base64.Encoder CURSOR_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder CURSOR_DECODER = Base64.getUrlDecoder();
+
+    private final List<Movie> movies;
+    private final Map<MovieSort, int[]> orderings = new EnumMap<>(MovieSort.class);
+
+    public MovieOrderings(List<Movie> movies) {
+        this.movies = movies;
+        for (MovieSort sort : MovieSort.values()) {
+            Integer[] positions = new Integer[movies.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i;
+            }
+            Arrays.sort(positions, (a, b) -> sort.comparator().compare(movies.get(a), movies.get(b)));
+            int[] ordering = new int[positions.length];
+            for (int i = 0; i < ordering.length; i++) {
+                ordering[i] = positions[i];
+            }
+            orderings.put(sort, ordering);
+        }
+    }
+
+    /**
+     * Uses orders computed ahead of time, e.g. stored in a {@link BinaryCatalog}.
+     * @param orderings for every sort, the movies' positions in {@code movies} in that sort's order
+     */
+    MovieOrderings(List<Movie> movies, Map<MovieSort, int[]> orderings) {
+        this.movies = movies;
+        this.orderings.putAll(orderings);
+    }
+
+    /**
+     * @return the store's stored orders if it has them, otherwise its movies sorted now
+     */
+    static MovieOrderings of(MovieStore store) {
+        if (store instanceof MappedMovieStore) {
+            return ((MappedMovieStore) store).orderings();
+        }
+        return new MovieOrderings(store.getAllMovies());
+    }
+
+    /**
+     * @param cursor the {@code nextCursor} of the previous page, or {@code null} for the first page
+     * @param size number of movies per page, clamped to 1..{@link #MAX_PAGE_SIZE}
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another sort
+     */
+    public MoviePage page(MovieSort sort, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int[] ordering = orderings.get(sort);
+        int from = cursor == null || cursor.isEmpty() ? 0 : positionAfter(ordering, sort, decode(sort, cursor));
+        int to = Math.min(ordering.length, from + pageSize);
+        List<Movie> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(movies.get(ordering[i]));
+        }
+        String nextCursor = to < ordering.length && !page.isEmpty() ? encode(sort, page.get(page.size() - 1)) : null;
+        return new MoviePage(Collections.unmodifiableList(page), sort, nextCursor);
+    }
+
+    /**
+     * @return every movie in the given order, as a read-only view over the precomputed ordering
+     */
+    public List<Movie> ordered(MovieSort sort) {
+        return new OrderedView(orderings.get(sort));
+    }
+
+    /**
+     * @return the movies' positions in the given order; must not be modified
+     */
+    int[] positions(MovieSort sort) {
+        return orderings.get(sort);
+    }
+
+    private int positionAfter(int[] ordering, MovieSort sort, Movie cursor) {
+        int low = 0;
+        int high = ordering.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sort.comparator().compare(movies.get(ordering[mid]), cursor) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static String encode(MovieSort sort, Movie last) {
+        String key;
+        switch (sort) {
+            case NAME:
+                key = last.getMovieName();
+                break;
+            case YEAR:
+                key = String.valueOf(last.getYear());
+                break;
+            case RATING:
+                key = String.valueOf(last.getImdbRating());
+                break;
+            default:
+                key = "";
+        }
+        String raw = sort.name() + '|' + last.getId() + '|' + key;
+        return CURSOR_ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rebuilds a probe movie carrying just the fields the sort compares.
+     */
+    static Movie decode(MovieSort sort, String cursor) {
+        String raw;
+        try {
+            raw = new String(CURSOR_DECODER.decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        String[] parts = raw.split("\\|", 3);
+        if (parts.length != 3 || !parts[0].equals(sort.name())) {
+            throw new IllegalArgumentException("Cursor does not match sort " + sort);
+        }
+        try {
+            long id = Long.parseLong(parts[1]);
+            String key = parts[2];
+            switch (sort) {
+                case NAME:
+                    return new Movie(id, key, null, 0, null, null, 0, 0);
+                case YEAR:
+                    return new Movie(id, null, null, Integer.parseInt(key), null, null, 0, 0);
+                case RATING:
+                    return new Movie(id, null, null, 0, null, null, 0, Double.parseDouble(key));
+                default:
+                    return new Movie(id, null, null, 0, null, null, 0, 0);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    private class OrderedView extends AbstractList<Movie> implements RandomAccess {
+        private final int[] ordering;
+
+        OrderedView(int[] ordering) {
+            this.ordering = ordering;
+        }
+
+        @Override
+        public Movie get(int index) {
+            return movies.get(ordering[index]);
+        }
+
+        @Override
+        public int size() {
+            return ordering.length;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+
+/**
+ * One page of the listing. {@code nextCursor} is {@code null} on the last page.
+ */
+public class MoviePage {
+    private final List<Movie> movies;
+    private final MovieSort sort;
+    private final String nextCursor;
+
+    public MoviePage(List<Movie> movies, MovieSort sort, String nextCursor) {
+        this.movies = movies;
+        this.sort = sort;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Movie> getMovies() {
+        return movies;
+    }
+
+    public MovieSort getSort() {
+        return sort;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
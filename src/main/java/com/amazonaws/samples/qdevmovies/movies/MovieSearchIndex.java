@@ -0,0 +1,549 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.amazonaws.samples.qdevmovies.utils.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory search index over a catalog, built once when the catalog loads.
+ * <ul>
+ *     <li>an inverted index from every name, director and description word to the movies containing it,
+ *     kept as a sorted vocabulary so a prefix resolves to a contiguous range of words;</li>
+ *     <li>a trigram index over name and director words for substring matches;</li>
+ *     <li>genre facet postings ("Crime/Drama" counts as both Crime and Drama), plus year- and
+ *     rating-sorted orderings for range filters.</li>
+ * </ul>
+ * A query picks the most selective criterion as the driver, walks its postings lazily and checks the
+ * remaining criteria per candidate, stopping as soon as the limit is reached. Hits come back in catalog
+ * order, except when a year range (oldest first) or minimum rating (best first) is the most selective
+ * criterion. Movies are identified by their position in the catalog list.
+ * <p>
+ * A prefix of one or two characters, such as "1", can match a large part of the vocabulary. Those
+ * matching more than {@link #MAX_EXPANDED_WORDS} words get their merged postings precomputed, so the
+ * query walks one list instead of merging hundreds of thousands. Each level of precomputed prefixes
+ * holds at most one entry per word posting.
+ */
+public class MovieSearchIndex {
+
+    private static final int[] NO_POSTINGS = new int[0];
+    static final int MAX_EXPANDED_WORDS = 256;
+    static final int SHORT_PREFIX_LENGTH = 2;
+
+    private final List<Movie> movies;
+    private final int[] years;
+    private final double[] ratings;
+    private final String[] vocabulary;
+    private final int[][] wordPostings;
+    /** Postings of the vocabulary words before each position, so a prefix's total is one subtraction */
+    private final long[] postingsBefore;
+    /** Merged postings of the short prefixes matching more than {@link #MAX_EXPANDED_WORDS} words */
+    private final Map<String, int[]> shortPrefixPostings;
+    private final Map<String, int[]> trigramPostings;
+    private final Map<String, int[]> genrePostings;
+    private final List<String> genres;
+    private final int[] ordinalsByYear;
+    private final int[] sortedYears;
+    private final int[] ordinalsByRating;
+    private final double[] sortedRatings; // descending
+
+    public MovieSearchIndex(List<Movie> movies) {
+        this.movies = movies;
+        int size = movies.size();
+        this.years = new int[size];
+        this.ratings = new double[size];
+
+        Map<String, IntArrayList> words = new HashMap<>();
+        Map<String, IntArrayList> trigrams = new HashMap<>();
+        Map<String, IntArrayList> genreKeys = new HashMap<>();
+        Map<String, String> genreNames = new TreeMap<>();
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            Movie movie = movies.get(ordinal);
+            years[ordinal] = movie.getYear();
+            ratings[ordinal] = movie.getImdbRating();
+            for (String word : tokenize(movie.getMovieName())) {
+                addPosting(words, word, ordinal);
+                addTrigrams(trigrams, word, ordinal);
+            }
+            for (String word : tokenize(movie.getDirector())) {
+                addPosting(words, word, ordinal);
+                addTrigrams(trigrams, word, ordinal);
+            }
+            for (String word : tokenize(movie.getDescription())) {
+                addPosting(words, word, ordinal);
+            }
+            for (String genre : splitGenre(movie.getGenre())) {
+                String key = genre.toLowerCase(Locale.ROOT);
+                addPosting(genreKeys, key, ordinal);
+                if (!genreNames.containsKey(key)) {
+                    genreNames.put(key, genre);
+                }
+            }
+        }
+
+        this.vocabulary = words.keySet().toArray(new String[0]);
+        Arrays.sort(vocabulary);
+        this.wordPostings = new int[vocabulary.length][];
+        this.postingsBefore = new long[vocabulary.length + 1];
+        for (int i = 0; i < vocabulary.length; i++) {
+            wordPostings[i] = words.get(vocabulary[i]).toArray();
+            postingsBefore[i + 1] = postingsBefore[i] + wordPostings[i].length;
+        }
+        this.shortPrefixPostings = new HashMap<>();
+        for (int length = 1; length <= SHORT_PREFIX_LENGTH; length++) {
+            addShortPrefixes(length);
+        }
+        this.trigramPostings = toArrays(trigrams);
+        this.genrePostings = toArrays(genreKeys);
+        this.genres = Collections.unmodifiableList(new ArrayList<>(genreNames.values()));
+
+        long[] yearKeys = new long[size];
+        long[] ratingKeys = new long[size];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            yearKeys[ordinal] = ((long) years[ordinal] << 32) | ordinal;
+            ratingKeys[ordinal] = (ratingKey(ratings[ordinal]) << 32) | ordinal;
+        }
+        Arrays.sort(yearKeys);
+        Arrays.sort(ratingKeys);
+        this.ordinalsByYear = new int[size];
+        this.sortedYears = new int[size];
+        this.ordinalsByRating = new int[size];
+        this.sortedRatings = new double[size];
+        for (int i = 0; i < size; i++) {
+            ordinalsByYear[i] = (int) yearKeys[i];
+            sortedYears[i] = years[ordinalsByYear[i]];
+            ordinalsByRating[i] = (int) ratingKeys[size - 1 - i];
+            sortedRatings[i] = ratings[ordinalsByRating[i]];
+        }
+    }
+
+    public int size() {
+        return movies.size();
+    }
+
+    /**
+     * @return the distinct genre facet values in alphabetical order
+     */
+    public List<String> getGenres() {
+        return genres;
+    }
+
+    public MovieSearchResult search(MovieSearchQuery query) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query.getText()));
+        int[] genreFilter = null;
+        if (query.getGenre() != null && !query.getGenre().trim().isEmpty()) {
+            genreFilter = genrePostings.get(query.getGenre().trim().toLowerCase(Locale.ROOT));
+            if (genreFilter == null) {
+                return new MovieSearchResult(Collections.<Movie>emptyList(), false);
+            }
+        }
+        int minYear = query.getMinYear() != null ? query.getMinYear() : Integer.MIN_VALUE;
+        int maxYear = query.getMaxYear() != null ? query.getMaxYear() : Integer.MAX_VALUE;
+        double minRating = query.getMinRating() != null ? query.getMinRating() : Double.NEGATIVE_INFINITY;
+        if (minYear > maxYear) {
+            return new MovieSearchResult(Collections.<Movie>emptyList(), false);
+        }
+
+        PostingIterator driver = chooseDriver(terms, genreFilter, minYear, maxYear, minRating);
+        List<Movie> hits = new ArrayList<>(Math.min(query.getLimit(), 64));
+        int ordinal;
+        while ((ordinal = driver.next()) >= 0) {
+            if (years[ordinal] < minYear || years[ordinal] > maxYear || ratings[ordinal] < minRating) {
+                continue;
+            }
+            if (genreFilter != null && Arrays.binarySearch(genreFilter, ordinal) < 0) {
+                continue;
+            }
+            Movie movie = movies.get(ordinal);
+            if (!matchesAllTerms(movie, terms)) {
+                continue;
+            }
+            if (hits.size() == query.getLimit()) {
+                return new MovieSearchResult(hits, true);
+            }
+            hits.add(movie);
+        }
+        return new MovieSearchResult(hits, false);
+    }
+
+    private PostingIterator chooseDriver(Set<String> terms, int[] genreFilter, int minYear, int maxYear, double minRating) {
+        PostingIterator best = null;
+        long bestEstimate = Long.MAX_VALUE;
+        if (genreFilter != null) {
+            best = new ArrayIterator(genreFilter);
+            bestEstimate = genreFilter.length;
+        }
+        for (String term : terms) {
+            long estimate = estimateTerm(term);
+            if (estimate < bestEstimate) {
+                best = termIterator(term);
+                bestEstimate = estimate;
+            }
+        }
+        if (minYear != Integer.MIN_VALUE || maxYear != Integer.MAX_VALUE) {
+            int from = lowerBound(sortedYears, minYear);
+            int to = maxYear == Integer.MAX_VALUE ? sortedYears.length : lowerBound(sortedYears, maxYear + 1);
+            if (to - from < bestEstimate) {
+                best = new ArrayIterator(ordinalsByYear, from, to);
+                bestEstimate = to - from;
+            }
+        }
+        if (minRating != Double.NEGATIVE_INFINITY) {
+            int to = countAtLeast(sortedRatings, minRating);
+            if (to < bestEstimate) {
+                best = new ArrayIterator(ordinalsByRating, 0, to);
+            }
+        }
+        return best != null ? best : new RangeIterator(movies.size());
+    }
+
+    private long estimateTerm(String term) {
+        int[] merged = shortPrefixPostings.get(term);
+        if (merged != null) {
+            return merged.length;
+        }
+        long estimate = postingsBefore[prefixEnd(term)] - postingsBefore[lowerBound(vocabulary, term)];
+        if (term.length() >= 3) {
+            int smallest = Integer.MAX_VALUE;
+            for (int i = 0; i + 3 <= term.length(); i++) {
+                int[] postings = trigramPostings.get(term.substring(i, i + 3));
+                smallest = Math.min(smallest, postings == null ? 0 : postings.length);
+            }
+            estimate += smallest;
+        }
+        return estimate;
+    }
+
+    /**
+     * Candidates for one term: movies with a word starting with the term, plus (for terms of three or more
+     * characters) movies whose name or director words share all of the term's trigrams.
+     */
+    private PostingIterator termIterator(String term) {
+        int[] merged = shortPrefixPostings.get(term);
+        if (merged != null) {
+            return new ArrayIterator(merged);
+        }
+        List<PostingIterator> sources = new ArrayList<>();
+        for (int i = lowerBound(vocabulary, term), to = prefixEnd(term); i < to; i++) {
+            sources.add(new ArrayIterator(wordPostings[i]));
+        }
+        if (term.length() >= 3) {
+            List<int[]> lists = new ArrayList<>();
+            for (int i = 0; i + 3 <= term.length(); i++) {
+                int[] postings = trigramPostings.get(term.substring(i, i + 3));
+                lists.add(postings == null ? NO_POSTINGS : postings);
+            }
+            sources.add(new IntersectionIterator(lists));
+        }
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        return new UnionIterator(sources);
+    }
+
+    /**
+     * @return the end of the vocabulary range of words starting with the term
+     */
+    private int prefixEnd(String term) {
+        // Words are letters and digits, so none sorts after the term followed by the highest char
+        return lowerBound(vocabulary, term + Character.MAX_VALUE);
+    }
+
+    /**
+     * Precomputes the merged, duplicate-free postings of every prefix of the given length that
+     * starts more than {@link #MAX_EXPANDED_WORDS} words. The vocabulary is sorted, so such words
+     * are contiguous.
+     */
+    private void addShortPrefixes(int length) {
+        int from = 0;
+        while (from < vocabulary.length) {
+            if (vocabulary[from].length() < length) {
+                from++;
+                continue;
+            }
+            String prefix = vocabulary[from].substring(0, length);
+            int to = prefixEnd(prefix);
+            if (to - from > MAX_EXPANDED_WORDS) {
+                int[] merged = new int[(int) (postingsBefore[to] - postingsBefore[from])];
+                int size = 0;
+                for (int i = from; i < to; i++) {
+                    System.arraycopy(wordPostings[i], 0, merged, size, wordPostings[i].length);
+                    size += wordPostings[i].length;
+                }
+                Arrays.sort(merged);
+                int distinct = 0;
+                for (int i = 0; i < size; i++) {
+                    if (distinct == 0 || merged[distinct - 1] != merged[i]) {
+                        merged[distinct++] = merged[i];
+                    }
+                }
+                shortPrefixPostings.put(prefix, Arrays.copyOf(merged, distinct));
+            }
+            from = to;
+        }
+    }
+
+    private static boolean matchesAllTerms(Movie movie, Set<String> terms) {
+        for (String term : terms) {
+            boolean substring = term.length() >= 3;
+            if (!matchesWord(movie.getMovieName(), term, substring)
+                && !matchesWord(movie.getDirector(), term, substring)
+                && !matchesWord(movie.getDescription(), term, false)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether some word of the text starts with (or, if {@code anywhere}, contains) the lowercase term
+     */
+    private static boolean matchesWord(String text, String term, boolean anywhere) {
+        if (text == null) {
+            return false;
+        }
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && !Character.isLetterOrDigit(text.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && Character.isLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+            int lastOffset = anywhere ? end - term.length() : start;
+            for (int offset = start; offset <= lastOffset && offset + term.length() <= end; offset++) {
+                if (text.regionMatches(true, offset, term, 0, term.length())) {
+                    return true;
+                }
+            }
+            start = end;
+        }
+        return false;
+    }
+
+    /**
+     * Splits text into lowercase words of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    static List<String> splitGenre(String genre) {
+        if (genre == null) {
+            return Collections.emptyList();
+        }
+        List<String> parts = new ArrayList<>();
+        for (String part : genre.split("/")) {
+            if (!part.trim().isEmpty()) {
+                parts.add(part.trim());
+            }
+        }
+        return parts;
+    }
+
+    private static void addPosting(Map<String, IntArrayList> index, String key, int ordinal) {
+        IntArrayList postings = index.get(key);
+        if (postings == null) {
+            postings = new IntArrayList(4);
+            index.put(key, postings);
+        }
+        if (postings.last() != ordinal) {
+            postings.add(ordinal);
+        }
+    }
+
+    private static void addTrigrams(Map<String, IntArrayList> trigrams, String word, int ordinal) {
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            addPosting(trigrams, word.substring(i, i + 3), ordinal);
+        }
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, IntArrayList> lists) {
+        Map<String, int[]> arrays = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<String, IntArrayList> entry : lists.entrySet()) {
+            arrays.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return arrays;
+    }
+
+    private static long ratingKey(double rating) {
+        return Math.max(0L, (long) Math.floor(rating * 1000));
+    }
+
+    private static int lowerBound(String[] sorted, String key) {
+        int index = Arrays.binarySearch(sorted, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static int lowerBound(int[] sorted, int key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int countAtLeast(double[] descending, double key) {
+        int low = 0;
+        int high = descending.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (descending[mid] >= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Lazily yields ordinals; {@code -1} signals the end.
+     */
+    private interface PostingIterator {
+        int next();
+    }
+
+    private static final class RangeIterator implements PostingIterator {
+        private final int size;
+        private int next;
+
+        RangeIterator(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int next() {
+            return next < size ? next++ : -1;
+        }
+    }
+
+    private static final class ArrayIterator implements PostingIterator {
+        private final int[] ordinals;
+        private final int end;
+        private int position;
+
+        ArrayIterator(int[] ordinals) {
+            this(ordinals, 0, ordinals.length);
+        }
+
+        ArrayIterator(int[] ordinals, int from, int to) {
+            this.ordinals = ordinals;
+            this.position = from;
+            this.end = to;
+        }
+
+        @Override
+        public int next() {
+            return position < end ? ordinals[position++] : -1;
+        }
+    }
+
+    /**
+     * Walks the shortest list and keeps ordinals present in all the others.
+     */
+    private static final class IntersectionIterator implements PostingIterator {
+        private final int[] driver;
+        private final List<int[]> others;
+        private int position;
+
+        IntersectionIterator(List<int[]> lists) {
+            int shortest = 0;
+            for (int i = 1; i < lists.size(); i++) {
+                if (lists.get(i).length < lists.get(shortest).length) {
+                    shortest = i;
+                }
+            }
+            this.driver = lists.get(shortest);
+            this.others = new ArrayList<>(lists);
+            this.others.remove(shortest);
+        }
+
+        @Override
+        public int next() {
+            outer:
+            while (position < driver.length) {
+                int ordinal = driver[position++];
+                for (int[] other : others) {
+                    if (Arrays.binarySearch(other, ordinal) < 0) {
+                        continue outer;
+                    }
+                }
+                return ordinal;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Merges ascending sources into one ascending, duplicate-free stream.
+     */
+    private static final class UnionIterator implements PostingIterator {
+        private final PriorityQueue<long[]> heads = new PriorityQueue<>(
+            (a, b) -> Long.compare(a[0], b[0]));
+        private final List<PostingIterator> sources;
+        private int last = -1;
+
+        UnionIterator(List<PostingIterator> sources) {
+            this.sources = sources;
+            for (int i = 0; i < sources.size(); i++) {
+                int head = sources.get(i).next();
+                if (head >= 0) {
+                    heads.add(new long[] {head, i});
+                }
+            }
+        }
+
+        @Override
+        public int next() {
+            while (!heads.isEmpty()) {
+                long[] head = heads.poll();
+                int ordinal = (int) head[0];
+                int next = sources.get((int) head[1]).next();
+                if (next >= 0) {
+                    head[0] = next;
+                    heads.add(head);
+                }
+                if (ordinal != last) {
+                    last = ordinal;
+                    return ordinal;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * Criteria for {@link MovieSearchIndex#search(MovieSearchQuery)}. Every criterion is optional;
+ * the text is split into terms and each term must match the movie name, director or description.
+ */
+public class MovieSearchQuery {
+
+    public static final int DEFAULT_LIMIT = 24;
+    public static final int MAX_LIMIT = 200;
+
+    private String text;
+    private String genre;
+    private Integer minYear;
+    private Integer maxYear;
+    private Double minRating;
+    private int limit = DEFAULT_LIMIT;
+
+    public MovieSearchQuery() {
+    }
+
+    public MovieSearchQuery(String text, String genre, Integer minYear, Integer maxYear, Double minRating, Integer limit) {
+        this.text = text;
+        this.genre = genre;
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+        this.minRating = minRating;
+        setLimit(limit);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public void setGenre(String genre) {
+        this.genre = genre;
+    }
+
+    public Integer getMinYear() {
+        return minYear;
+    }
+
+    public void setMinYear(Integer minYear) {
+        this.minYear = minYear;
+    }
+
+    public Integer getMaxYear() {
+        return maxYear;
+    }
+
+    public void setMaxYear(Integer maxYear) {
+        this.maxYear = maxYear;
+    }
+
+    public Double getMinRating() {
+        return minRating;
+    }
+
+    public void setMinRating(Double minRating) {
+        this.minRating = minRating;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit maximum number of results; {@code null} or non-positive means the default, capped at {@link #MAX_LIMIT}
+     */
+    public void setLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            this.limit = DEFAULT_LIMIT;
+        } else {
+            this.limit = Math.min(limit, MAX_LIMIT);
+        }
+    }
+
+    public boolean isEmpty() {
+        return (text == null || text.trim().isEmpty()) && (genre == null || genre.trim().isEmpty())
+            && minYear == null && maxYear == null && minRating == null;
+    }
+}
@@ -0,0 +1,24 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+
+/**
+ * One page of search hits. {@code hasMore} is set when matching stopped at the query limit.
+ */
+public class MovieSearchResult {
+    private final List<Movie> movies;
+    private final boolean hasMore;
+
+    public MovieSearchResult(List<Movie> movies, boolean hasMore) {
+        this.movies = movies;
+        this.hasMore = hasMore;
+    }
+
+    public List<Movie> getMovies() {
+        return movies;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,41 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class MovieSearchService {
+    private static final Logger logger = LogManager.getLogger(MovieSearchService.class);
+    private final MovieService movieService;
+    private final CatalogIndex<MovieSearchIndex> index = MovieSearchService::build;
+
+    @Autowired
+    public MovieSearchService(MovieService movieService) {
+        this.movieService = movieService;
+        // Rebuilt off to the side for each reload; searches keep using the old index until the new catalog is published
+        movieService.addCatalogIndex(index);
+    }
+
+    private static MovieSearchIndex build(List<Movie> movies) {
+        long start = System.nanoTime();
+        MovieSearchIndex built = new MovieSearchIndex(movies);
+        logger.info("Built search index for {} movies in {} ms", built.size(), (System.nanoTime() - start) / 1_000_000);
+        return built;
+    }
+
+    public MovieSearchResult search(MovieSearchQuery query) {
+        return current().search(query);
+    }
+
+    public List<String> getGenres() {
+        return current().getGenres();
+    }
+
+    private MovieSearchIndex current() {
+        return movieService.getSnapshot().getIndex(index);
+    }
+}
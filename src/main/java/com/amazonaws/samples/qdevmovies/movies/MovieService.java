@@ -1,72 +1,408 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.Scanner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Serves the movie catalog from an immutable {@link CatalogSnapshot}.
+ * <p>
+ * When {@code movies.catalog.path} names a file, the catalog is loaded from it and the file is
+ * watched: after a change settles, a new snapshot is built on a background thread and published
+ * with a single volatile write. Readers never lock; each call reads the snapshot reference once,
+ * so it sees one complete catalog even while a reload is swapping in the next. A catalog that
+ * fails to load is counted and logged, and the current snapshot stays in place. Registered
+ * {@link CatalogIndex indexes} are built into the new snapshot before it is published, so searches,
+ * leaderboards and similar movies switch over together with the movies. Replace the file
+ * atomically (write a temporary file, then rename it over the catalog); a file that changes while
+ * it is being read is rejected and picked up again on the next change event.
+ * <p>
+ * Otherwise the bundled catalog is served from the {@link BundledCatalog}, the binary catalog the
+ * build writes next to {@code movies.json}, memory-mapped and decoded as movies are read, and from
+ * {@code movies.json} only if that is missing, unreadable or built from another {@code movies.json}. An external catalog file
+ * may also be a binary catalog; it is read into memory and decoded whole before it is published.
+ */
 @Service
 public class MovieService {
     private static final Logger logger = LogManager.getLogger(MovieService.class);
-    private final List<Movie> movies;
-    private final Map<Long, Movie> movieMap;
+    private static final String CLASSPATH_SOURCE = "classpath:movies.json";
+    private static final String BINARY_CLASSPATH_SOURCE = "classpath:" + BinaryCatalog.RESOURCE;
+    /** Editors often save in several writes; wait this long after the last event before reloading. */
+    private static final long RELOAD_DEBOUNCE_MILLIS = 250;
+
+    private final CatalogLoader catalogLoader;
+    private final MovieStore.Type storeType;
+    private final Path catalogPath;
+    private final BundledCatalog bundledCatalog;
+    private String bundledSource = CLASSPATH_SOURCE;
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<CatalogIndex<?>> indexes = new CopyOnWriteArrayList<>();
+    private final Object reloadLock = new Object();
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    private volatile CatalogSnapshot snapshot;
+    private volatile MovieMetrics metrics;
+    /** Rebuilt whenever the counters below change, so stats are read without the reload lock. */
+    private volatile CatalogStats stats;
+
+    private long reloads;
+    private long reloadFailures;
+    private long lastReloadMillis = -1;
+    private String lastFailure;
+
+    private ScheduledExecutorService reloader;
+    private WatchService watchService;
 
     public MovieService() {
-        this.movies = loadMoviesFromJson();
-        this.movieMap = new HashMap<>();
-        for (Movie movie : movies) {
-            movieMap.put(movie.getId(), movie);
+        this(new CatalogLoader(), MovieStore.Type.HEAP);
+    }
+
+    public MovieService(CatalogLoader catalogLoader, MovieStore.Type storeType) {
+        this(catalogLoader, storeType, null);
+    }
+
+    /**
+     * Loads the bundled catalog from {@code movies.json}, ignoring the binary catalog.
+     * @param catalogPath an external catalog file to load and watch; blank loads the bundled catalog once
+     */
+    public MovieService(CatalogLoader catalogLoader, MovieStore.Type storeType, String catalogPath) {
+        this(catalogLoader, storeType, catalogPath, BundledCatalog.none(), true);
+    }
+
+    /**
+     * @param catalogPath an external catalog file, JSON or binary, to load and watch; blank loads the bundled catalog once
+     * @param bundledCatalog the build's {@link BinaryCatalog} to serve the bundled catalog from, when there is one
+     */
+    @Autowired
+    public MovieService(CatalogLoader catalogLoader,
+                        @Value("${movies.catalog.store:HEAP}") MovieStore.Type storeType,
+                        @Value("${movies.catalog.path:}") String catalogPath,
+                        BundledCatalog bundledCatalog) {
+        this(catalogLoader, storeType, catalogPath, bundledCatalog, true);
+    }
+
+    MovieService(CatalogLoader catalogLoader, MovieStore.Type storeType, String catalogPath, BundledCatalog bundledCatalog, boolean watch) {
+        this.catalogLoader = catalogLoader;
+        this.storeType = storeType;
+        this.catalogPath = catalogPath == null || catalogPath.trim().isEmpty() ? null : Paths.get(catalogPath.trim()).toAbsolutePath();
+        this.bundledCatalog = bundledCatalog;
+        long start = System.nanoTime();
+        MovieStore initial = loadInitialCatalog(start);
+        this.snapshot = new CatalogSnapshot(1, initial, source(), System.nanoTime() - start);
+        publishStats();
+        if (this.catalogPath != null && watch) {
+            startWatching();
         }
     }
 
-    private List<Movie> loadMoviesFromJson() {
-        List<Movie> movieList = new ArrayList<>();
-        try {
-            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("movies.json");
+    MovieService(MovieStore store) {
+        this.catalogLoader = null;
+        this.storeType = null;
+        this.catalogPath = null;
+        this.bundledCatalog = BundledCatalog.none();
+        this.snapshot = new CatalogSnapshot(1, store, "memory");
+        publishStats();
+    }
+
+    private MovieStore loadInitialCatalog(long start) {
+        if (catalogPath != null) {
+            try {
+                return loadFromFile(start);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to load catalog from {}, using the bundled catalog: {}", catalogPath, e.toString());
+                reloadFailures++;
+                lastFailure = e.toString();
+            }
+        }
+        BinaryCatalog catalog = bundledCatalog.get();
+        if (catalog != null) {
+            bundledSource = BINARY_CLASSPATH_SOURCE;
+            logger.info("Mapped {} movies from {} in {} ms", catalog.movieCount(), BINARY_CLASSPATH_SOURCE,
+                (System.nanoTime() - start) / 1_000_000);
+            return catalog.movies();
+        }
+        try (InputStream inputStream = MovieService.class.getClassLoader().getResourceAsStream("movies.json")) {
             if (inputStream != null) {
-                Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name());
-                String jsonContent = scanner.useDelimiter("\\A").next();
-                scanner.close();
-                
-                JSONArray moviesArray = new JSONArray(jsonContent);
-                for (int i = 0; i < moviesArray.length(); i++) {
-                    JSONObject movieObj = moviesArray.getJSONObject(i);
-                    movieList.add(new Movie(
-                        movieObj.getLong("id"),
-                        movieObj.getString("movieName"),
-                        movieObj.getString("director"),
-                        movieObj.getInt("year"),
-                        movieObj.getString("genre"),
-                        movieObj.getString("description"),
-                        movieObj.getInt("duration"),
-                        movieObj.getDouble("imdbRating")
-                    ));
-                }
+                MovieStore loaded = loadMovies(catalogLoader, storeType, inputStream);
+                logger.info("Loaded {} movies into {} store in {} ms using {} loader", loaded.size(), storeType,
+                    (System.nanoTime() - start) / 1_000_000, catalogLoader.getMode());
+                return loaded;
             }
         } catch (Exception e) {
             logger.error("Failed to load movies from JSON: {}", e.getMessage());
         }
-        return movieList;
+        return new HeapMovieStore(new ArrayList<Movie>());
+    }
+
+    private MovieStore loadFromFile(long start) throws IOException {
+        FileTime modifiedBefore = Files.getLastModifiedTime(catalogPath);
+        long sizeBefore = Files.size(catalogPath);
+        boolean binary = BinaryCatalog.isBinaryCatalog(catalogPath);
+        MovieStore loaded;
+        if (binary) {
+            // Read rather than mapped: the file is watched, so it may be rewritten in place
+            loaded = BinaryCatalog.read(catalogPath).movies();
+        } else {
+            try (InputStream inputStream = Files.newInputStream(catalogPath)) {
+                loaded = loadMovies(catalogLoader, storeType, inputStream);
+            }
+        }
+        // A file rewritten in place while we read it can parse as a mix of old and new catalogs
+        if (!modifiedBefore.equals(Files.getLastModifiedTime(catalogPath)) || sizeBefore != Files.size(catalogPath)) {
+            throw new IOException("Catalog " + catalogPath + " changed while it was being read");
+        }
+        if (loaded.size() == 0) {
+            throw new IOException("Catalog " + catalogPath + " has no movies");
+        }
+        if (binary) {
+            logger.info("Read {} movies from binary catalog {} in {} ms", loaded.size(), catalogPath, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            logger.info("Loaded {} movies from {} into {} store in {} ms using {} loader", loaded.size(), catalogPath, storeType,
+                (System.nanoTime() - start) / 1_000_000, catalogLoader.getMode());
+        }
+        return loaded;
+    }
+
+    static MovieStore loadMovies(CatalogLoader catalogLoader, MovieStore.Type storeType, InputStream inputStream) throws IOException {
+        if (storeType == MovieStore.Type.COLUMNAR) {
+            ColumnarMovieStore.Builder builder = ColumnarMovieStore.builder();
+            catalogLoader.loadMovies(inputStream, builder::add);
+            return builder.build();
+        }
+        return new HeapMovieStore(catalogLoader.loadMovies(inputStream));
+    }
+
+    private String source() {
+        return catalogPath != null && reloadFailures == 0 ? catalogPath.toString() : bundledSource;
+    }
+
+    /**
+     * Builds a new snapshot and its indexes from the catalog file and publishes it, then tells the listeners.
+     * Reloads run one at a time; readers are never blocked.
+     *
+     * @return whether a new snapshot was published
+     * @throws IllegalStateException if no catalog file is configured
+     */
+    public boolean reload() {
+        if (catalogPath == null) {
+            throw new IllegalStateException("No catalog file is configured (movies.catalog.path)");
+        }
+        CatalogSnapshot published;
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            try {
+                MovieStore loaded = loadFromFile(start);
+                published = new CatalogSnapshot(snapshot.getGeneration() + 1, loaded, catalogPath.toString(), System.nanoTime() - start);
+                for (CatalogIndex<?> index : indexes) {
+                    buildIndex(published, index);
+                }
+            } catch (IOException | RuntimeException e) {
+                reloadFailures++;
+                lastFailure = e.toString();
+                publishStats();
+                logger.error("Catalog reload from {} failed, keeping generation {}: {}", catalogPath, snapshot.getGeneration(), e.toString());
+                return false;
+            }
+            snapshot = published;
+            reloads++;
+            lastReloadMillis = (System.nanoTime() - start) / 1_000_000;
+            publishStats();
+            logger.info("Published catalog generation {} with {} movies in {} ms", published.getGeneration(),
+                published.getStore().size(), lastReloadMillis);
+            for (CatalogListener listener : listeners) {
+                try {
+                    listener.catalogReloaded(published);
+                } catch (RuntimeException e) {
+                    logger.error("Catalog listener failed for generation {}", published.getGeneration(), e);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static <T> void buildIndex(CatalogSnapshot target, CatalogIndex<T> index) {
+        target.putIndex(index, index.build(target.getMovies()));
+    }
+
+    private void publishStats() {
+        stats = new CatalogStats(snapshot, reloads, reloadFailures, lastReloadMillis, lastFailure);
+    }
+
+    private void startWatching() {
+        reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            // Watch the directory: editors and deploy tools usually replace the file rather than write it in place
+            catalogPath.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.error("Cannot watch {} for changes; the catalog will not reload: {}", catalogPath, e.toString());
+            return;
+        }
+        Thread watcher = new Thread(this::watch, "catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching {} for catalog changes", catalogPath);
+    }
+
+    private void watch() {
+        Path fileName = catalogPath.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                        scheduleReload();
+                    }
+                }
+                if (!key.reset()) {
+                    logger.warn("Catalog directory {} is no longer watchable", catalogPath.getParent());
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    private void scheduleReload() {
+        if (reloadScheduled.compareAndSet(false, true)) {
+            reloader.schedule(() -> {
+                reloadScheduled.set(false);
+                reload();
+            }, RELOAD_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers a listener for reloads. Listeners that derive state from the catalog should build
+     * it from {@link #getSnapshot()} first, then register.
+     */
+    public void addCatalogListener(CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Builds the index for the current catalog, then has every reload build it into the new snapshot
+     * before publishing it; readers get it with {@link CatalogSnapshot#getIndex}. The index object is the key.
+     */
+    public <T> void addCatalogIndex(CatalogIndex<T> index) {
+        synchronized (reloadLock) {
+            snapshot.putIndex(index, index.build(getAllMovies()));
+            indexes.add(index);
+        }
+    }
+
+    /**
+     * @return the published catalog; read it once to make several lookups against the same version
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return the stats as of the last publication or failed reload; never waits for a reload in progress
+     */
+    public CatalogStats getCatalogStats() {
+        return stats;
     }
 
     public List<Movie> getAllMovies() {
-        return movies;
+        return snapshot.getStore().getAllMovies();
+    }
+
+    /**
+     * Returns one page of the catalog in the given order.
+     * @param cursor the previous page's {@link MoviePage#getNextCursor()}, or {@code null} for the first page
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for a different sort
+     */
+    public MoviePage getMoviePage(MovieSort sort, String cursor, int size) {
+        return snapshot.getOrderings().page(sort, cursor, size);
+    }
+
+    /**
+     * @return the whole catalog in the given order, without sorting per call
+     */
+    public List<Movie> getAllMovies(MovieSort sort) {
+        return snapshot.getOrderings().ordered(sort);
+    }
+
+    /**
+     * @return what the pages show for the movie, precomputed when the catalog was loaded
+     */
+    public MovieView getView(Movie movie) {
+        return snapshot.getViews().get(movie);
+    }
+
+    /**
+     * @return the movies' views, as a read-only list resolved as it is read
+     */
+    public List<MovieView> getViews(List<Movie> movies) {
+        return snapshot.getViews().of(movies);
+    }
+
+    /**
+     * Called by the context's {@link MovieMetrics}, which depends on this service.
+     */
+    void setMetrics(MovieMetrics metrics) {
+        this.metrics = metrics;
     }
 
     public Optional<Movie> getMovieById(Long id) {
+        MovieMetrics metrics = this.metrics;
+        if (!MovieMetrics.recording(metrics)) {
+            return findMovie(id);
+        }
+        long start = System.nanoTime();
+        Optional<Movie> movie = findMovie(id);
+        metrics.recordMovieLookup(movie.isPresent(), System.nanoTime() - start);
+        return movie;
+    }
+
+    private Optional<Movie> findMovie(Long id) {
         if (id == null || id <= 0) {
             return Optional.empty();
         }
-        return Optional.ofNullable(movieMap.get(id));
+        return snapshot.getStore().findById(id);
+    }
+
+    public boolean containsMovie(long id) {
+        return snapshot.getStore().contains(id);
     }
 }
@@ -0,0 +1,39 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Listing orders. Every order breaks ties by ascending id, so (sort key, id) identifies a position
+ * and can be used as a keyset cursor.
+ */
+public enum MovieSort {
+    ID(Comparator.comparingLong(Movie::getId)),
+    NAME(Comparator.comparing(Movie::getMovieName, String.CASE_INSENSITIVE_ORDER)
+        .thenComparingLong(Movie::getId)),
+    YEAR(Comparator.comparingInt(Movie::getYear).reversed()
+        .thenComparingLong(Movie::getId)),
+    RATING(Comparator.comparingDouble(Movie::getImdbRating).reversed()
+        .thenComparingLong(Movie::getId));
+
+    private final Comparator<Movie> comparator;
+
+    MovieSort(Comparator<Movie> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Comparator<Movie> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @return the sort named by a request parameter, case-insensitively, or {@link #ID} when blank
+     * @throws IllegalArgumentException for unknown names
+     */
+    public static MovieSort fromParameter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return ID;
+        }
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
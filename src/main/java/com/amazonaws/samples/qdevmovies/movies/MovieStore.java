@@ -0,0 +1,26 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * In-memory storage engine for the loaded catalog. Implementations are immutable once built.
+ */
+public interface MovieStore {
+
+    enum Type { HEAP, COLUMNAR }
+
+    int size();
+
+    /**
+     * @return the movies in catalog order; the list is read-only
+     */
+    List<Movie> getAllMovies();
+
+    Optional<Movie> findById(long id);
+
+    /**
+     * @return whether a movie with this id exists, without materialising it
+     */
+    boolean contains(long id);
+}
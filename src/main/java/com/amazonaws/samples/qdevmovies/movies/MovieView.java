@@ -0,0 +1,81 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * What the pages show for a movie, derived once with the catalog instead of on every render: the
+ * icon, the star glyphs, the formatted rating and the duration label. The movie's own fields are
+ * delegated, so a template reads a view exactly as it would the movie.
+ */
+public final class MovieView {
+    private final Movie movie;
+    private final String stars;
+    private final String ratingLabel;
+    private final String durationLabel;
+
+    MovieView(Movie movie) {
+        this.movie = movie;
+        this.stars = RatingLabels.stars(movie.getImdbRating());
+        this.ratingLabel = RatingLabels.decimal(movie.getImdbRating()) + "/5";
+        this.durationLabel = movie.getDuration() + " minutes";
+    }
+
+    public Movie getMovie() {
+        return movie;
+    }
+
+    public long getId() {
+        return movie.getId();
+    }
+
+    public String getMovieName() {
+        return movie.getMovieName();
+    }
+
+    public String getDirector() {
+        return movie.getDirector();
+    }
+
+    public int getYear() {
+        return movie.getYear();
+    }
+
+    public String getGenre() {
+        return movie.getGenre();
+    }
+
+    public String getDescription() {
+        return movie.getDescription();
+    }
+
+    public int getDuration() {
+        return movie.getDuration();
+    }
+
+    public double getImdbRating() {
+        return movie.getImdbRating();
+    }
+
+    public String getIcon() {
+        return movie.getIcon();
+    }
+
+    /**
+     * @return the rating as five star glyphs, e.g. {@code ★★★★⭐}
+     */
+    public String getStars() {
+        return stars;
+    }
+
+    /**
+     * @return e.g. {@code 4.5/5}
+     */
+    public String getRatingLabel() {
+        return ratingLabel;
+    }
+
+    /**
+     * @return e.g. {@code 142 minutes}
+     */
+    public String getDurationLabel() {
+        return durationLabel;
+    }
+}
@@ -0,0 +1,74 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.amazonaws.samples.qdevmovies.utils.LongIndexMap;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The {@link MovieView}s of one catalog snapshot, built with it. A {@link ColumnarMovieStore} or
+ * {@link MappedMovieStore} exists to avoid an object per movie, so over one the views are derived
+ * on each lookup instead, from the shared rating labels.
+ */
+final class MovieViews {
+    private final MovieView[] views;
+    private final LongIndexMap positions;
+
+    private MovieViews(MovieView[] views, LongIndexMap positions) {
+        this.views = views;
+        this.positions = positions;
+    }
+
+    static MovieViews of(MovieStore store) {
+        if (store instanceof ColumnarMovieStore || store instanceof MappedMovieStore) {
+            return new MovieViews(null, null);
+        }
+        List<Movie> movies = store.getAllMovies();
+        MovieView[] views = new MovieView[movies.size()];
+        LongIndexMap positions = new LongIndexMap(views.length);
+        for (int i = 0; i < views.length; i++) {
+            views[i] = new MovieView(movies.get(i));
+            positions.put(views[i].getId(), i);
+        }
+        return new MovieViews(views, positions);
+    }
+
+    /**
+     * @return the precomputed view of a movie from this snapshot, or a new one for any other movie
+     */
+    MovieView get(Movie movie) {
+        if (views != null) {
+            int position = positions.get(movie.getId());
+            if (position != LongIndexMap.MISSING && views[position].getMovie() == movie) {
+                return views[position];
+            }
+        }
+        return new MovieView(movie);
+    }
+
+    /**
+     * @return a read-only list of the movies' views, resolved as it is read
+     */
+    List<MovieView> of(List<Movie> movies) {
+        return new ViewList(movies);
+    }
+
+    private final class ViewList extends AbstractList<MovieView> implements RandomAccess {
+        private final List<Movie> movies;
+
+        ViewList(List<Movie> movies) {
+            this.movies = movies;
+        }
+
+        @Override
+        public MovieView get(int index) {
+            return MovieViews.this.get(movies.get(index));
+        }
+
+        @Override
+        public int size() {
+            return movies.size();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON endpoints for programmatic clients. Each runs through the {@link RequestExecutor}: inline, or
+ * on its executor when {@code movies.execution.mode} is {@code ASYNC}.
+ * Catalog pages and single movies are served as bytes from the {@link MovieJsonCache},
+ * gzip-compressed when the client accepts it.
+ */
+@RestController
+@RequestMapping("/api/movies")
+public class MoviesApiController {
+
+    private static final int DEFAULT_PAGE_SIZE = 24;
+
+    @Autowired
+    private MovieService movieService;
+
+    @Autowired
+    private MovieSearchService movieSearchService;
+
+    @Autowired
+    private RatingAggregates ratingAggregates;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private SimilarMovieService similarMovieService;
+
+    @Autowired
+    private RequestExecutor requestExecutor;
+
+    @Autowired
+    private MovieJsonCache movieJsonCache;
+
+    /**
+     * Lists the catalog one page at a time. Pass the previous response's {@code nextCursor} as {@code after}.
+     */
+    @GetMapping
+    public Object list(@RequestParam(value = "sort", required = false) String sort,
+                       @RequestParam(value = "after", required = false) String after,
+                       @RequestParam(value = "size", required = false) Integer size) {
+        return requestExecutor.run("api.movies", () -> {
+            try {
+                return movieJsonCache.page(MovieSort.fromParameter(sort), after, size != null ? size : DEFAULT_PAGE_SIZE);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * One movie of the catalog.
+     */
+    @GetMapping("/{id}")
+    public Object movie(@PathVariable("id") long movieId) {
+        return requestExecutor.run("api.movie", () -> movieJsonCache.movie(movieId)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Movie " + movieId + " not found")));
+    }
+
+    /**
+     * Searches the catalog by text (word prefix, or substring of name/director for 3+ characters),
+     * genre facet, year range and minimum rating.
+     */
+    @GetMapping("/search")
+    public Object search(@RequestParam(value = "q", required = false) String text,
+                         @RequestParam(value = "genre", required = false) String genre,
+                         @RequestParam(value = "minYear", required = false) Integer minYear,
+                         @RequestParam(value = "maxYear", required = false) Integer maxYear,
+                         @RequestParam(value = "minRating", required = false) Double minRating,
+                         @RequestParam(value = "limit", required = false) Integer limit) {
+        return requestExecutor.run("api.search",
+            () -> movieSearchService.search(new MovieSearchQuery(text, genre, minYear, maxYear, minRating, limit)));
+    }
+
+    /**
+     * Best rated movies overall or within a genre, decade ({@code 1990} or {@code 1990s}) and/or director.
+     */
+    @GetMapping("/top")
+    public Object top(@RequestParam(value = "genre", required = false) String genre,
+                      @RequestParam(value = "decade", required = false) String decade,
+                      @RequestParam(value = "director", required = false) String director,
+                      @RequestParam(value = "limit", required = false) Integer limit) {
+        return requestExecutor.run("api.top", () -> {
+            try {
+                return leaderboardService.top(genre, decade, director, limit);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Precomputed "more like this" neighbours of one movie, most similar first.
+     */
+    @GetMapping("/{id}/similar")
+    public Object similar(@PathVariable("id") long movieId,
+                          @RequestParam(value = "limit", required = false) Integer limit) {
+        return requestExecutor.run("api.similar", () -> {
+            requireMovie(movieId);
+            return similarMovieService.similarTo(movieId, limit);
+        });
+    }
+
+    /**
+     * Community rating of one movie: review count, average and 1-5 star histogram.
+     */
+    @GetMapping("/{id}/ratings")
+    public Object ratings(@PathVariable("id") long movieId) {
+        return requestExecutor.run("api.ratings", () -> {
+            requireMovie(movieId);
+            return ratingAggregates.get(movieId);
+        });
+    }
+
+    /**
+     * Community ratings for a set of movies, e.g. every movie on a listing page, in the order requested.
+     */
+    @GetMapping("/ratings")
+    public Object ratings(@RequestParam("ids") List<Long> movieIds) {
+        return requestExecutor.run("api.ratings-batch", () -> {
+            if (movieIds.size() > MovieOrderings.MAX_PAGE_SIZE) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MovieOrderings.MAX_PAGE_SIZE + " ids per request");
+            }
+            List<RatingSummary> summaries = new ArrayList<>(movieIds.size());
+            for (Long movieId : movieIds) {
+                summaries.add(ratingAggregates.get(movieId));
+            }
+            return summaries;
+        });
+    }
+
+    private void requireMovie(long movieId) {
+        if (!movieService.getMovieById(movieId).isPresent()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Movie " + movieId + " not found");
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
-import com.amazonaws.samples.qdevmovies.utils.MovieIconUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,15 +9,28 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 
 @Controller
 public class MoviesController {
     private static final Logger logger = LogManager.getLogger(MoviesController.class);
+    private static final int DEFAULT_PAGE_SIZE = 24;
+    private static final int STREAM_FLUSH_INTERVAL = 50;
+    private static final int SIMILAR_ON_DETAILS = 4;
+    private static final String STREAM_CARDS_MARKER = "<!--movie-cards-->";
 
     @Autowired
     private MovieService movieService;
@@ -26,19 +38,209 @@ public class MoviesController {
     @Autowired
     private ReviewService reviewService;
 
+    @Autowired
+    private MovieSearchService movieSearchService;
+
+    @Autowired
+    private ReviewStore reviewStore;
+
+    @Autowired
+    private RatingAggregates ratingAggregates;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private SimilarMovieService similarMovieService;
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    @Autowired
+    private RequestExecutor requestExecutor;
+
+    @Autowired
+    private MovieMetrics movieMetrics;
+
     @GetMapping("/movies")
-    public String getMovies(org.springframework.ui.Model model) {
-        logger.info("Fetching movies");
-        model.addAttribute("movies", movieService.getAllMovies());
+    public String getMovies(@RequestParam(value = "sort", required = false) String sort,
+                            @RequestParam(value = "after", required = false) String after,
+                            @RequestParam(value = "size", required = false) Integer size,
+                            org.springframework.ui.Model model) {
+        logger.debug("Fetching movies");
+        int pageSize = size != null ? size : DEFAULT_PAGE_SIZE;
+        MoviePage page;
+        try {
+            page = movieService.getMoviePage(MovieSort.fromParameter(sort), after, pageSize);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid listing request sort={} after={}: {}", sort, after, e.getMessage());
+            model.addAttribute("title", "Invalid Page");
+            model.addAttribute("message", "The requested page of movies is not valid.");
+            return "error";
+        }
+        model.addAttribute("movies", movieService.getViews(page.getMovies()));
+        model.addAttribute("page", page);
+        model.addAttribute("sort", page.getSort());
+        model.addAttribute("pageSize", pageSize);
+        model.addAttribute("ratings", ratingAggregates);
+        model.addAttribute("genres", movieSearchService.getGenres());
         return "movies";
     }
 
+    /**
+     * Streams the whole listing: the page shell up to the grid is flushed first, then cards are
+     * rendered one at a time straight to the response and flushed in batches.
+     */
+    @GetMapping(value = "/movies", params = "render=stream")
+    public void streamMovies(@RequestParam(value = "sort", required = false) String sort,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        logger.debug("Streaming movies");
+        MovieSort movieSort;
+        try {
+            movieSort = MovieSort.fromParameter(sort);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown sort: " + sort);
+            return;
+        }
+        WebContext shellContext = new WebContext(request, response, request.getServletContext(), request.getLocale());
+        shellContext.setVariable("movies", Collections.emptyList());
+        shellContext.setVariable("sort", movieSort);
+        shellContext.setVariable("genres", movieSearchService.getGenres());
+        shellContext.setVariable("streamCards", true);
+        String shell = templateEngine.process("movies", shellContext);
+        int marker = shell.indexOf(STREAM_CARDS_MARKER);
+
+        response.setContentType("text/html;charset=UTF-8");
+        PrintWriter writer = response.getWriter();
+        if (marker < 0) {
+            // The template lost the marker: render the whole listing in one pass rather than fail every request
+            logger.error("movies template has no {} marker; rendering the stream request without streaming", STREAM_CARDS_MARKER);
+            shellContext.setVariable("movies", movieService.getViews(movieService.getAllMovies(movieSort)));
+            shellContext.setVariable("ratings", ratingAggregates);
+            shellContext.setVariable("streamCards", false);
+            templateEngine.process("movies", shellContext, writer);
+            writer.flush();
+            return;
+        }
+        writer.write(shell, 0, marker);
+        writer.flush();
+
+        WebContext cardContext = new WebContext(request, response, request.getServletContext(), request.getLocale());
+        cardContext.setVariable("ratings", ratingAggregates);
+        Set<String> cardSelector = Collections.singleton("card");
+        int rendered = 0;
+        for (Movie movie : movieService.getAllMovies(movieSort)) {
+            cardContext.setVariable("movie", movieService.getView(movie));
+            templateEngine.process("fragments/movie-card", cardSelector, cardContext, writer);
+            if (++rendered % STREAM_FLUSH_INTERVAL == 0) {
+                writer.flush();
+            }
+        }
+        int tail = marker + STREAM_CARDS_MARKER.length();
+        writer.write(shell, tail, shell.length() - tail);
+        writer.flush();
+    }
+
+    @GetMapping("/movies/search")
+    public String searchMovies(@RequestParam(value = "q", required = false) String text,
+                               @RequestParam(value = "genre", required = false) String genre,
+                               @RequestParam(value = "minYear", required = false) Integer minYear,
+                               @RequestParam(value = "maxYear", required = false) Integer maxYear,
+                               @RequestParam(value = "minRating", required = false) Double minRating,
+                               @RequestParam(value = "limit", required = false) Integer limit,
+                               org.springframework.ui.Model model) {
+        MovieSearchQuery query = new MovieSearchQuery(text, genre, minYear, maxYear, minRating, limit);
+        logger.debug("Searching movies for '{}'", text);
+        MovieSearchResult result = movieSearchService.search(query);
+        model.addAttribute("movies", movieService.getViews(result.getMovies()));
+        model.addAttribute("hasMore", result.isHasMore());
+        model.addAttribute("query", query);
+        model.addAttribute("ratings", ratingAggregates);
+        model.addAttribute("genres", movieSearchService.getGenres());
+        return "movies";
+    }
+
+    @GetMapping("/movies/top")
+    public String topMovies(@RequestParam(value = "genre", required = false) String genre,
+                            @RequestParam(value = "decade", required = false) String decade,
+                            @RequestParam(value = "director", required = false) String director,
+                            @RequestParam(value = "limit", required = false) Integer limit,
+                            org.springframework.ui.Model model) {
+        logger.debug("Fetching top movies genre={} decade={} director={}", genre, decade, director);
+        List<RankedMovie> ranked;
+        try {
+            ranked = leaderboardService.top(genre, decade, director, limit);
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("title", "Invalid Leaderboard");
+            model.addAttribute("message", e.getMessage());
+            return "error";
+        }
+        List<Movie> movies = new ArrayList<>(ranked.size());
+        for (RankedMovie rankedMovie : ranked) {
+            movies.add(rankedMovie.getMovie());
+        }
+        model.addAttribute("movies", movieService.getViews(movies));
+        model.addAttribute("leaderboard", leaderboardTitle(genre, decade, director));
+        model.addAttribute("ratings", ratingAggregates);
+        model.addAttribute("genres", movieSearchService.getGenres());
+        return "movies";
+    }
+
+    @GetMapping("/movies/{id}/similar")
+    public String similarMovies(@PathVariable("id") Long movieId,
+                                @RequestParam(value = "limit", required = false) Integer limit,
+                                org.springframework.ui.Model model) {
+        Optional<Movie> movie = movieService.getMovieById(movieId);
+        if (!movie.isPresent()) {
+            model.addAttribute("title", "Movie Not Found");
+            model.addAttribute("message", "Movie with ID " + movieId + " was not found.");
+            return "error";
+        }
+        model.addAttribute("movies", movieService.getViews(similarMovies(movieId, limit)));
+        model.addAttribute("leaderboard", "More like " + movie.get().getMovieName());
+        model.addAttribute("ratings", ratingAggregates);
+        model.addAttribute("genres", movieSearchService.getGenres());
+        return "movies";
+    }
+
+    private List<Movie> similarMovies(long movieId, Integer limit) {
+        List<SimilarMovie> similar = similarMovieService.similarTo(movieId, limit);
+        List<Movie> movies = new ArrayList<>(similar.size());
+        for (SimilarMovie similarMovie : similar) {
+            movies.add(similarMovie.getMovie());
+        }
+        return movies;
+    }
+
+    private static String leaderboardTitle(String genre, String decade, String director) {
+        StringBuilder title = new StringBuilder("Top rated");
+        if (genre != null && !genre.trim().isEmpty()) {
+            title.append(' ').append(genre.trim());
+        }
+        title.append(" movies");
+        if (decade != null && !decade.trim().isEmpty()) {
+            title.append(" of the ").append(MovieLeaderboards.parseDecade(decade)).append('s');
+        }
+        if (director != null && !director.trim().isEmpty()) {
+            title.append(" by ").append(director.trim());
+        }
+        return title.toString();
+    }
+
+    /**
+     * Runs on the request executor in {@code ASYNC} mode, releasing the container thread while it runs.
+     */
     @GetMapping("/movies/{id}/details")
-    public String getMovieDetails(@PathVariable("id") Long movieId, 
-                                 org.springframework.ui.Model model,
-                                 HttpSession session,
-                                 @RequestParam(value = "error", required = false) String error) {
-        logger.info("Fetching details for movie ID: {}", movieId);
+    public Object getMovieDetails(@PathVariable("id") Long movieId,
+                                  org.springframework.ui.Model model,
+                                  HttpSession session,
+                                  @RequestParam(value = "error", required = false) String error) {
+        return requestExecutor.run("details", () -> movieDetails(movieId, model, session, error));
+    }
+
+    private String movieDetails(Long movieId, org.springframework.ui.Model model, HttpSession session, String error) {
+        logger.debug("Fetching details for movie ID: {}", movieId);
         
         Optional<Movie> movieOpt = movieService.getMovieById(movieId);
         if (!movieOpt.isPresent()) {
@@ -50,43 +252,49 @@ public class MoviesController {
         
         Movie movie = movieOpt.get();
         
-        // Get user's reviews from session
-        String sessionKey = "movie_" + movieId + "_reviews";
-        @SuppressWarnings("unchecked")
-        List<Review> userReviews = session != null ? (List<Review>) session.getAttribute(sessionKey) : null;
-        if (userReviews == null) {
-            userReviews = new ArrayList<>();
-            logger.info("No user reviews found for movie {}", movieId);
-        } else {
-            logger.info("Retrieved {} user reviews for movie {}", userReviews.size(), movieId);
-        }
+        // Get user reviews from the shared store; the snapshot never changes under the template
+        List<Review> userReviews = reviewStore.getReviews(movieId);
+        logger.debug("Retrieved {} user reviews for movie {}", userReviews.size(), movieId);
         
         // Get stored username from session
         String storedUserName = session != null ? (String) session.getAttribute("user_name") : null;
         
-        // Combine mock reviews with user reviews using our optimized ReviewService
+        // Combine mock reviews with user reviews; the indexed mock list is shared as-is when there is nothing to merge
         List<Review> mockReviews = reviewService.getReviewsForMovie(movie.getId());
-        List<Review> allReviews = new ArrayList<>();
-        allReviews.addAll(mockReviews);
-        allReviews.addAll(userReviews);
+        List<Review> allReviews;
+        if (userReviews.isEmpty()) {
+            allReviews = mockReviews;
+        } else {
+            allReviews = new ArrayList<>(mockReviews.size() + userReviews.size());
+            allReviews.addAll(mockReviews);
+            allReviews.addAll(userReviews);
+        }
         
         // Add data to model for template
-        model.addAttribute("movie", movie);
-        model.addAttribute("movieIcon", MovieIconUtils.getMovieIcon(movie.getMovieName()));
+        model.addAttribute("movie", movieService.getView(movie));
         model.addAttribute("allReviews", allReviews);
+        model.addAttribute("ratingSummary", ratingAggregates.get(movie.getId()));
+        model.addAttribute("similarMovies", movieService.getViews(similarMovies(movie.getId(), SIMILAR_ON_DETAILS)));
         model.addAttribute("storedUserName", storedUserName);
-        model.addAttribute("error", error);
+        model.addAttribute("error", ReviewValidator.defaults().messageFor(error));
         
         return "movie-details";
     }
 
+    /**
+     * Runs on the request executor in {@code ASYNC} mode; the wait for the review log's fsync then no longer holds a container thread.
+     */
     @PostMapping("/movies/{id}/details")
-    public String addReview(@PathVariable("id") Long movieId,
-                           @RequestParam("userName") String userName,
-                           @RequestParam("rating") int rating,
-                           @RequestParam("comment") String comment,
-                           HttpSession session) {
-        logger.info("Adding review for movie ID: {}", movieId);
+    public Object addReview(@PathVariable("id") Long movieId,
+                            @RequestParam("userName") String userName,
+                            @RequestParam("rating") int rating,
+                            @RequestParam("comment") String comment,
+                            HttpSession session) {
+        return requestExecutor.run("review", () -> storeReview(movieId, userName, rating, comment, session));
+    }
+
+    private String storeReview(Long movieId, String userName, int rating, String comment, HttpSession session) {
+        logger.debug("Adding review for movie ID: {}", movieId);
         
         // Use our optimized MovieService instead of static array
         Optional<Movie> movieOpt = movieService.getMovieById(movieId);
@@ -94,13 +302,13 @@ public class MoviesController {
             return "redirect:/movies/" + movieId + "/details?error=Movie+Not+Found";
         }
         
-        // Create review request and validate using the intentional code smells
+        // Validate in a single pass over the comment
         ReviewRequest request = new ReviewRequest(userName, rating, comment);
-        String validationError = ReviewValidator.validateReview(request);
+        ReviewValidationError validationError = ReviewValidator.defaults().validate(request, movieMetrics);
         
         if (validationError != null) {
-            // Redirect back with error parameter
-            return "redirect:/movies/" + movieId + "/details?error=" + validationError.replace(" ", "+");
+            // Redirect back with the error code; the details page turns it back into a message
+            return "redirect:/movies/" + movieId + "/details?error=" + validationError.getCode();
         }
         
         // Get or create avatar for this session
@@ -119,23 +327,11 @@ public class MoviesController {
         // Create new review
         Review newReview = new Review(userName, avatar, (double) rating, comment);
         
-        // Get existing user reviews from session
-        String sessionKey = "movie_" + movieId + "_reviews";
-        @SuppressWarnings("unchecked")
-        List<Review> userReviews = (List<Review>) session.getAttribute(sessionKey);
-        if (userReviews == null) {
-            userReviews = new ArrayList<>();
-            logger.info("Creating new review list for movie {}", movieId);
-        } else {
-            logger.info("Found {} existing reviews for movie {}", userReviews.size(), movieId);
-        }
-        
-        // Add new review to the list
-        userReviews.add(newReview);
-        session.setAttribute(sessionKey, userReviews);
-        logger.info("Added review. Total reviews for movie {}: {}", movieId, userReviews.size());
+        // Append to the shared review store, visible to every session
+        long total = reviewStore.addReview(movieId, newReview);
+        logger.debug("Added review. Total user reviews for movie {}: {}", movieId, total);
         
         // Redirect back to details page (Post-Redirect-Get pattern)
         return "redirect:/movies/" + movieId + "/details?reviewAdded=true";
     }
-}
\ No newline at end of file
+}
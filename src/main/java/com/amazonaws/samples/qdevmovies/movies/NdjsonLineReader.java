@@ -0,0 +1,96 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads newline-delimited records from a {@link Reader} one line at a time. A line longer than
+ * the limit is not buffered: the rest of it is skipped and {@link #isTooLong()} reports it, so a
+ * single runaway record cannot grow memory.
+ */
+class NdjsonLineReader {
+
+    private final Reader reader;
+    private final int maxLineLength;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder line;
+    private int position;
+    private int limit;
+    private long lineNumber;
+    private boolean tooLong;
+
+    NdjsonLineReader(Reader reader, int maxLineLength) {
+        this.reader = reader;
+        this.maxLineLength = maxLineLength;
+        this.line = new StringBuilder(Math.min(maxLineLength, 1024));
+    }
+
+    /**
+     * @return the next line without its terminator ({@code \n} or {@code \r\n}), an empty string
+     * for an overlong line, or {@code null} at the end of the input
+     */
+    String nextLine() throws IOException {
+        line.setLength(0);
+        tooLong = false;
+        boolean any = false;
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (!any) {
+                        return null;
+                    }
+                    break;
+                }
+            }
+            any = true;
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            append(start, position);
+            if (position < limit) {
+                position++;
+                break;
+            }
+        }
+        lineNumber++;
+        if (tooLong) {
+            return "";
+        }
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    /**
+     * @return whether the line just returned exceeded the limit and was skipped
+     */
+    boolean isTooLong() {
+        return tooLong;
+    }
+
+    /**
+     * @return the 1-based number of the line just returned
+     */
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    private void append(int from, int to) {
+        if (tooLong) {
+            return;
+        }
+        if (line.length() + (to - from) > maxLineLength + 1) {
+            // One extra character leaves room for the '\r' of a CRLF terminator
+            tooLong = true;
+            line.setLength(0);
+            return;
+        }
+        line.append(buffer, from, to - from);
+    }
+}
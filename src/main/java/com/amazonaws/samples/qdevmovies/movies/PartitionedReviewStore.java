@@ -0,0 +1,843 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * The review store the application uses: the local {@link InMemoryReviewStore}, or, when
+ * {@code movies.reviews.cluster.self} is set, one partition of reviews spread over several instances.
+ * <p>
+ * In a cluster each movie's reviews live on one instance, its owner on a {@link ConsistentHashRing}.
+ * Reads and writes for movies owned elsewhere are sent to the owner through a batching
+ * {@link ReviewPeer}. Owners tell every other instance about each review they store, so rating
+ * aggregates, leaderboards and cached pages stay current everywhere; only the reviews themselves
+ * are partitioned. On startup an instance seeds those from the reviews it owns and the rating
+ * totals the other owners report for theirs.
+ * <p>
+ * Membership changes in two phases, driven by {@link #changeMembers} on any instance: every
+ * instance first switches to the new ring while remembering the previous one, then hands over the
+ * movies it no longer owns, one chunk at a time, and tells the others when it is done. Only the
+ * movies whose owner changed move. Until a movie has been handed over, its previous owner keeps
+ * serving it: the new owner passes requests for it back, and takes over once told it has moved.
+ * One change must finish before the next starts.
+ * <p>
+ * Instances prove to each other that they belong to the cluster with the shared
+ * {@code movies.reviews.cluster.secret}, and reviews added through another instance are validated
+ * again here like a form post.
+ */
+@Primary
+@Component
+public class PartitionedReviewStore implements ReviewStore {
+    private static final Logger logger = LogManager.getLogger(PartitionedReviewStore.class);
+
+    /** An operation forwarded more often than this is failed rather than sent on, e.g. while rings disagree. */
+    static final int MAX_HOPS = 3;
+    private static final int STRIPES = 64;
+    private static final int HANDOFF_CHUNK = 256;
+
+    private final InMemoryReviewStore local;
+    private final String self;
+    private final int batchSize;
+    private final int connections;
+    private final int timeoutMillis;
+    private final String secret;
+    private final ReviewValidator validator = ReviewValidator.defaults();
+    private final List<ReviewListener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, ReviewPeer> peers = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+    private final LongAdder servedLocally = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder moviesHandedOver = new LongAdder();
+    private final LongAdder moviesTakenOver = new LongAdder();
+    /** Held while coordinating a change; not the store's monitor, which other instances' callbacks need meanwhile. */
+    private final Object changing = new Object();
+    private volatile Membership membership;
+
+    /**
+     * @param self this instance's base URL as the others reach it; blank for a single instance
+     * @param nodes comma-separated base URLs of the instances owning reviews; blank means just {@code self}.
+     *              An instance that is not listed owns nothing until it is added with {@link #changeMembers}
+     * @param secret shared by the instances of a cluster and sent with every request between them; required with {@code self}
+     * @throws IllegalStateException if {@code self} is set without a secret
+     */
+    @Autowired
+    public PartitionedReviewStore(InMemoryReviewStore local,
+                                  @Value("${movies.reviews.cluster.self:}") String self,
+                                  @Value("${movies.reviews.cluster.nodes:}") String nodes,
+                                  @Value("${movies.reviews.cluster.secret:}") String secret,
+                                  @Value("${movies.reviews.cluster.virtual-nodes:256}") int virtualNodes,
+                                  @Value("${movies.reviews.cluster.batch-size:256}") int batchSize,
+                                  @Value("${movies.reviews.cluster.connections:4}") int connections,
+                                  @Value("${movies.reviews.cluster.timeout-ms:5000}") int timeoutMillis) {
+        this.local = local;
+        this.self = self == null || self.trim().isEmpty() ? null : trimSlash(self.trim());
+        this.batchSize = batchSize;
+        this.connections = connections;
+        this.timeoutMillis = timeoutMillis;
+        this.secret = secret == null ? "" : secret.trim();
+        if (this.self != null && this.secret.isEmpty()) {
+            throw new IllegalStateException("movies.reviews.cluster.secret must be set when movies.reviews.cluster.self is");
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        if (this.self != null) {
+            List<String> members = parseMembers(nodes);
+            this.membership = new Membership(new ConsistentHashRing(members.isEmpty() ? Collections.singletonList(this.self) : members,
+                virtualNodes), null);
+            logger.info("Review cluster member {} of {}", this.self, membership.ring.getMembers());
+        }
+        local.addListener(this::storedLocally);
+    }
+
+    @PreDestroy
+    public void close() {
+        peers.values().forEach(ReviewPeer::close);
+    }
+
+    boolean isClustered() {
+        return self != null;
+    }
+
+    /**
+     * @return whether {@code presented} is this cluster's secret; compared in constant time
+     */
+    boolean isClusterSecret(String presented) {
+        return self != null && presented != null
+            && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public long addReview(long movieId, Review review) {
+        if (self == null) {
+            return local.addReview(movieId, review);
+        }
+        return handle(ReviewBatch.Op.add(movieId, review)).value;
+    }
+
+    @Override
+    public void addReviews(long[] movieIds, Review[] reviews, int count) {
+        Membership current = membership;
+        if (self == null) {
+            local.addReviews(movieIds, reviews, count);
+        } else if (current.transition != null) {
+            for (int i = 0; i < count; i++) {
+                handle(ReviewBatch.Op.add(movieIds[i], reviews[i]));
+            }
+        } else {
+            long[] ownIds = new long[count];
+            Review[] own = new Review[count];
+            int owned = 0;
+            List<CompletableFuture<ReviewBatch.Result>> remote = new ArrayList<>();
+            List<ReviewPeer> remotePeers = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String owner = current.ring.ownerOf(movieIds[i]);
+                if (owner.equals(self)) {
+                    ownIds[owned] = movieIds[i];
+                    own[owned++] = reviews[i];
+                } else {
+                    ReviewPeer peer = peer(owner);
+                    remote.add(peer.submit(ReviewBatch.Op.add(movieIds[i], reviews[i])));
+                    remotePeers.add(peer);
+                    forwarded.increment();
+                }
+            }
+            boolean[] stored = storeHeld(ownIds, own, owned);
+            for (int i = 0; i < owned; i++) {
+                if (!stored[i]) {
+                    handle(ReviewBatch.Op.add(ownIds[i], own[i]));
+                }
+            }
+            for (int i = 0; i < remote.size(); i++) {
+                remotePeers.get(i).await(remote.get(i));
+            }
+        }
+    }
+
+    @Override
+    public List<Review> getReviews(long movieId) {
+        if (self == null) {
+            return local.getReviews(movieId);
+        }
+        return handle(ReviewBatch.Op.get(movieId)).reviews;
+    }
+
+    @Override
+    public long getVersion(long movieId) {
+        if (self == null) {
+            return local.getVersion(movieId);
+        }
+        return handle(ReviewBatch.Op.version(movieId)).value;
+    }
+
+    @Override
+    public long[] getVersions(long[] movieIds) {
+        Membership current = membership;
+        if (self == null || current.transition != null) {
+            return ReviewStore.super.getVersions(movieIds);
+        }
+        long[] versions = new long[movieIds.length];
+        List<CompletableFuture<ReviewBatch.Result>> remote = new ArrayList<>(Collections.nCopies(movieIds.length, null));
+        ReviewPeer[] remotePeers = new ReviewPeer[movieIds.length];
+        for (int i = 0; i < movieIds.length; i++) {
+            String owner = current.ring.ownerOf(movieIds[i]);
+            if (owner.equals(self)) {
+                versions[i] = local.getVersion(movieIds[i]);
+            } else {
+                remotePeers[i] = peer(owner);
+                remote.set(i, remotePeers[i].submit(ReviewBatch.Op.version(movieIds[i])));
+                forwarded.increment();
+            }
+        }
+        for (int i = 0; i < movieIds.length; i++) {
+            if (remotePeers[i] != null) {
+                versions[i] = remotePeers[i].await(remote.get(i)).value;
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Calls {@code action} for each movie this instance owns; in a cluster the others are visited by their owners.
+     */
+    @Override
+    public void forEachMovie(BiConsumer<Long, List<Review>> action) {
+        if (self == null) {
+            local.forEachMovie(action);
+            return;
+        }
+        ConsistentHashRing ring = membership.ring;
+        local.forEachMovie((movieId, reviews) -> {
+            if (ring.ownerOf(movieId).equals(self)) {
+                action.accept(movieId, reviews);
+            }
+        });
+    }
+
+    /**
+     * Asks every other owner for the totals of the movies it owns. An instance that cannot be reached
+     * is skipped with a warning: its movies are then missing from the totals until it reports new reviews.
+     */
+    @Override
+    public void forEachRemoteTotals(BiConsumer<Long, long[]> action) {
+        if (self == null) {
+            return;
+        }
+        for (String member : membership.ring.getMembers()) {
+            if (member.equals(self)) {
+                continue;
+            }
+            long[] ratings;
+            try {
+                ratings = peer(member).call(ReviewBatch.Op.ratings()).orThrow().ratings;
+            } catch (RuntimeException e) {
+                logger.warn("Could not fetch rating totals from {}: {}", member, e.toString());
+                continue;
+            }
+            for (int i = 0; i < ratings.length; i += ReviewBatch.RATING_FIELDS) {
+                action.accept(ratings[i], Arrays.copyOfRange(ratings, i + 1, i + ReviewBatch.RATING_FIELDS));
+            }
+        }
+    }
+
+    /**
+     * Listeners hear about every review added anywhere in the cluster: on the owner's writer thread
+     * when it is stored here, and on a request thread when another owner reports it.
+     */
+    @Override
+    public void addListener(ReviewListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Runs a batch received from another instance, in order. Additions are validated first, and
+     * fail without being stored if invalid. Consecutive valid additions this instance owns outright
+     * are stored together, sharing one commit to the review log.
+     */
+    List<ReviewBatch.Result> handleBatch(List<ReviewBatch.Op> ops) {
+        ReviewBatch.Result[] results = new ReviewBatch.Result[ops.size()];
+        int[] pending = new int[ops.size()];
+        int pendingCount = 0;
+        for (int i = 0; i < ops.size(); i++) {
+            ReviewBatch.Op op = ops.get(i);
+            if (op.type == ReviewBatch.ADD) {
+                ReviewValidationError error = validate(op.review);
+                if (error != null) {
+                    results[i] = ReviewBatch.Result.failed(error.getMessage());
+                    continue;
+                }
+            }
+            Membership current = membership;
+            if (op.type == ReviewBatch.ADD && !op.handoff && current.transition == null && current.ring.ownerOf(op.movieId).equals(self)) {
+                pending[pendingCount++] = i;
+                continue;
+            }
+            storeTogether(ops, pending, pendingCount, results);
+            pendingCount = 0;
+            try {
+                results[i] = handle(op);
+            } catch (RuntimeException e) {
+                results[i] = ReviewBatch.Result.failed(e.toString());
+            }
+        }
+        storeTogether(ops, pending, pendingCount, results);
+        return Arrays.asList(results);
+    }
+
+    private ReviewValidationError validate(Review review) {
+        double rating = review.getRating();
+        // A rating the form could not have sent fails the range rule
+        int stars = rating == Math.rint(rating) && Math.abs(rating) <= Integer.MAX_VALUE ? (int) rating : 0;
+        return validator.validate(new ReviewRequest(review.getUserName(), stars, review.getComment()));
+    }
+
+    private void storeTogether(List<ReviewBatch.Op> ops, int[] pending, int count, ReviewBatch.Result[] results) {
+        if (count == 0) {
+            return;
+        }
+        long[] movieIds = new long[count];
+        Review[] reviews = new Review[count];
+        for (int i = 0; i < count; i++) {
+            movieIds[i] = ops.get(pending[i]).movieId;
+            reviews[i] = ops.get(pending[i]).review;
+        }
+        boolean[] stored;
+        try {
+            stored = storeHeld(movieIds, reviews, count);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < count; i++) {
+                results[pending[i]] = ReviewBatch.Result.failed(e.toString());
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            try {
+                results[pending[i]] = stored[i] ? ReviewBatch.Result.value(local.getVersion(movieIds[i])) : handle(ops.get(pending[i]));
+            } catch (RuntimeException e) {
+                results[pending[i]] = ReviewBatch.Result.failed(e.toString());
+            }
+        }
+    }
+
+    /**
+     * Stores the reviews of the movies this instance still holds once their stripes are read-locked,
+     * so none of them can be handed over between the check and the write.
+     * @return whether each review was stored; the others' movies moved after they were routed here
+     */
+    private boolean[] storeHeld(long[] movieIds, Review[] reviews, int count) {
+        boolean[] stored = new boolean[count];
+        if (count == 0) {
+            return stored;
+        }
+        List<Lock> locks = lockStripes(movieIds, count, false);
+        try {
+            Membership current = membership;
+            long[] heldIds = new long[count];
+            Review[] held = new Review[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (holds(current, movieIds[i])) {
+                    heldIds[n] = movieIds[i];
+                    held[n++] = reviews[i];
+                    stored[i] = true;
+                }
+            }
+            local.addReviews(heldIds, held, n);
+            servedLocally.add(n);
+        } finally {
+            unlock(locks);
+        }
+        return stored;
+    }
+
+    /**
+     * Serves one operation here or sends it on to the instance that can.
+     */
+    ReviewBatch.Result handle(ReviewBatch.Op op) {
+        if (op.type == ReviewBatch.TRANSFER) {
+            local.restore(op.movieId, op.reviews);
+            moviesTakenOver.increment();
+            return ReviewBatch.Result.value(op.reviews.size());
+        }
+        if (op.type == ReviewBatch.NOTIFY) {
+            notifyListeners(op.movieId, op.review);
+            return ReviewBatch.Result.value(0);
+        }
+        if (op.type == ReviewBatch.RATINGS) {
+            return ReviewBatch.Result.ratings(ownedTotals());
+        }
+        ReviewBatch.Result result = serveIfHeld(op);
+        if (result != null || op.handoff) {
+            return result != null ? result : ReviewBatch.Result.MOVED_AWAY;
+        }
+        Membership current = membership;
+        String owner = current.ring.ownerOf(op.movieId);
+        if (owner.equals(self)) {
+            Transition transition = current.transition;
+            if (transition != null) {
+                String previous = transition.previous.ownerOf(op.movieId);
+                if (!previous.equals(self) && transition.pendingDonors.contains(previous)) {
+                    ReviewBatch.Result handedOff = peer(previous).call(op.toPreviousOwner());
+                    if (handedOff.status != ReviewBatch.MOVED) {
+                        return handedOff;
+                    }
+                }
+            }
+            ReviewBatch.Result owned = serveIfOwned(op);
+            // Moved again since it was routed here, by a change that has started meanwhile
+            return owned != null ? owned : handle(op);
+        }
+        if (op.hops >= MAX_HOPS) {
+            throw new IllegalStateException("Reviews of movie " + op.movieId + " were forwarded " + op.hops
+                + " times without reaching their owner");
+        }
+        forwarded.increment();
+        return peer(owner).call(op.forwarded());
+    }
+
+    private long[] ownedTotals() {
+        List<long[]> owned = new ArrayList<>();
+        forEachMovie((movieId, reviews) -> {
+            long[] entry = new long[ReviewBatch.RATING_FIELDS];
+            entry[0] = movieId;
+            System.arraycopy(RatingAggregates.totals(reviews), 0, entry, 1, RatingAggregates.TOTALS);
+            owned.add(entry);
+        });
+        long[] ratings = new long[owned.size() * ReviewBatch.RATING_FIELDS];
+        for (int i = 0; i < owned.size(); i++) {
+            System.arraycopy(owned.get(i), 0, ratings, i * ReviewBatch.RATING_FIELDS, ReviewBatch.RATING_FIELDS);
+        }
+        return ratings;
+    }
+
+    /**
+     * @return the result if this instance holds the movie's reviews: it owns the movie, or owned it
+     *         and has not handed it over yet; {@code null} otherwise
+     */
+    private ReviewBatch.Result serveIfHeld(ReviewBatch.Op op) {
+        if (!holds(membership, op.movieId)) {
+            return null;
+        }
+        // Handing a movie over takes the write lock, so it never moves while being served; the
+        // membership read before locking may be out of date, so it is checked again
+        Lock lock = stripe(op.movieId).readLock();
+        lock.lock();
+        try {
+            return holds(membership, op.movieId) ? serveLocally(op) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Serves an operation on a movie this instance owns by the current ring, whether or not its
+     * previous owner had it, if that still holds once the movie's stripe is read-locked.
+     * @return {@code null} if the movie has moved on
+     */
+    private ReviewBatch.Result serveIfOwned(ReviewBatch.Op op) {
+        Lock lock = stripe(op.movieId).readLock();
+        lock.lock();
+        try {
+            return membership.ring.ownerOf(op.movieId).equals(self) ? serveLocally(op) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether this instance holds the movie's reviews: it owns the movie and no change is in
+     *         progress, or it owned the movie before the change and has not handed it over yet
+     */
+    private boolean holds(Membership current, long movieId) {
+        Transition transition = current.transition;
+        if (transition == null) {
+            return current.ring.ownerOf(movieId).equals(self);
+        }
+        return transition.previous.ownerOf(movieId).equals(self) && !transition.handedOver.contains(movieId);
+    }
+
+    private ReviewBatch.Result serveLocally(ReviewBatch.Op op) {
+        servedLocally.increment();
+        switch (op.type) {
+            case ReviewBatch.GET:
+                return ReviewBatch.Result.reviews(local.getReviews(op.movieId));
+            case ReviewBatch.VERSION:
+                return ReviewBatch.Result.value(local.getVersion(op.movieId));
+            case ReviewBatch.ADD:
+                return ReviewBatch.Result.value(local.addReview(op.movieId, op.review));
+            default:
+                throw new IllegalArgumentException("Unknown operation " + op.type);
+        }
+    }
+
+    private void storedLocally(long movieId, Review review) {
+        notifyListeners(movieId, review);
+        Membership current = membership;
+        if (current == null) {
+            return;
+        }
+        for (String member : current.allMembers()) {
+            if (!member.equals(self)) {
+                // Fire and forget: a failed notification is logged by the peer and costs other instances one stale rating
+                peer(member).submit(ReviewBatch.Op.notify(movieId, review));
+            }
+        }
+    }
+
+    private void notifyListeners(long movieId, Review review) {
+        for (ReviewListener listener : listeners) {
+            listener.reviewAdded(movieId, review);
+        }
+    }
+
+    /**
+     * Moves the cluster to a new set of instances: every instance in the old or new set first
+     * switches rings, then hands over what it no longer owns.
+     * @return movies handed over by each instance
+     * @throws IllegalStateException if this instance is not clustered or a change is still in progress
+     * @throws IOException if another instance cannot be reached; instances already switched keep the new ring
+     */
+    public Map<String, Integer> changeMembers(List<String> members) throws IOException {
+        synchronized (changing) {
+            return coordinate(members);
+        }
+    }
+
+    private Map<String, Integer> coordinate(List<String> members) throws IOException {
+        requireClustered();
+        List<String> next = normalize(members);
+        if (next.isEmpty()) {
+            throw new IllegalArgumentException("A review cluster needs at least one member");
+        }
+        Set<String> involved = new LinkedHashSet<>(membership.ring.getMembers());
+        involved.addAll(next);
+        if (!involved.contains(self)) {
+            // It would never hear that the others are done, so could never finish the change
+            throw new IllegalArgumentException("Change membership from an instance that is in the old or the new set");
+        }
+        String body = String.join("\n", next);
+        for (String member : involved) {
+            if (member.equals(self)) {
+                prepare(next);
+            } else {
+                peer(member).control("/internal/reviews/prepare", body);
+            }
+        }
+        Map<String, Integer> handedOver = new LinkedHashMap<>();
+        for (String member : involved) {
+            handedOver.put(member, member.equals(self) ? handOver()
+                : Integer.parseInt(peer(member).control("/internal/reviews/migrate", "").trim()));
+        }
+        logger.info("Review cluster is now {}; movies handed over: {}", next, handedOver);
+        return handedOver;
+    }
+
+    /**
+     * First phase of a membership change: route by the new ring, remembering the previous owners.
+     */
+    synchronized void prepare(List<String> members) {
+        requireClustered();
+        Membership current = membership;
+        if (current.transition != null) {
+            throw new IllegalStateException("A membership change is already in progress");
+        }
+        ConsistentHashRing next = current.ring.withMembers(normalize(members));
+        Set<String> donors = ConcurrentHashMap.newKeySet();
+        donors.addAll(current.ring.getMembers());
+        donors.remove(self);
+        membership = new Membership(next, new Transition(current.ring, donors));
+        logger.info("Review cluster switching from {} to {}", current.ring.getMembers(), next.getMembers());
+    }
+
+    /**
+     * Second phase: hands every movie this instance no longer owns to its new owner, then tells
+     * every instance involved that it is done.
+     * @return the number of movies handed over
+     */
+    int handOver() throws IOException {
+        Transition transition = membership.transition;
+        if (transition == null) {
+            return 0;
+        }
+        ConsistentHashRing ring = membership.ring;
+        Map<String, List<Long>> moving = new HashMap<>();
+        local.forEachMovie((movieId, reviews) -> {
+            String owner = ring.ownerOf(movieId);
+            if (transition.previous.ownerOf(movieId).equals(self) && !owner.equals(self)) {
+                moving.computeIfAbsent(owner, o -> new ArrayList<>()).add(movieId);
+            }
+        });
+        int moved = 0;
+        for (Map.Entry<String, List<Long>> entry : moving.entrySet()) {
+            List<Long> movieIds = entry.getValue();
+            for (int from = 0; from < movieIds.size(); from += HANDOFF_CHUNK) {
+                moved += handOver(transition, peer(entry.getKey()), movieIds.subList(from, Math.min(movieIds.size(), from + HANDOFF_CHUNK)));
+            }
+        }
+        Set<String> involved = new LinkedHashSet<>(transition.previous.getMembers());
+        involved.addAll(ring.getMembers());
+        for (String member : involved) {
+            if (member.equals(self)) {
+                handoverDone(self);
+            } else {
+                peer(member).control("/internal/reviews/handover-done", self);
+            }
+        }
+        logger.info("Handed {} movies over to their new owners", moved);
+        transition.handedOverAll = true;
+        finishIfDone();
+        return moved;
+    }
+
+    /**
+     * Sends one chunk of movies to their new owner. The chunk's stripes stay write-locked until the
+     * owner has stored them, so no review for them is added here in the meantime.
+     */
+    private int handOver(Transition transition, ReviewPeer owner, List<Long> movieIds) {
+        long[] ids = new long[movieIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = movieIds.get(i);
+        }
+        List<Lock> locks = lockStripes(ids, ids.length, true);
+        try {
+            List<CompletableFuture<ReviewBatch.Result>> stored = new ArrayList<>(movieIds.size());
+            for (long movieId : movieIds) {
+                stored.add(owner.submit(ReviewBatch.Op.transfer(movieId, local.getReviews(movieId))));
+            }
+            for (CompletableFuture<ReviewBatch.Result> result : stored) {
+                owner.await(result);
+            }
+            transition.handedOver.addAll(movieIds);
+            local.removeAll(movieIds);
+            moviesHandedOver.add(movieIds.size());
+            return movieIds.size();
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    /**
+     * Called when {@code donor} has handed over everything it no longer owns.
+     */
+    void handoverDone(String donor) {
+        Transition transition = membership.transition;
+        if (transition != null) {
+            transition.pendingDonors.remove(trimSlash(donor.trim()));
+            finishIfDone();
+        }
+    }
+
+    private synchronized void finishIfDone() {
+        Membership current = membership;
+        if (current.transition != null && current.transition.handedOverAll && current.transition.pendingDonors.isEmpty()) {
+            membership = new Membership(current.ring, null);
+            logger.info("Review cluster membership change complete: {}", current.ring.getMembers());
+        }
+    }
+
+    Stats stats() {
+        List<ReviewPeer.Stats> peerStats = new ArrayList<>();
+        for (ReviewPeer peer : peers.values()) {
+            peerStats.add(peer.stats());
+        }
+        Membership current = membership;
+        return new Stats(self, current == null ? Collections.<String>emptyList() : current.ring.getMembers(),
+            current != null && current.transition != null, servedLocally.sum(), forwarded.sum(),
+            moviesHandedOver.sum(), moviesTakenOver.sum(), peerStats);
+    }
+
+    private ReviewPeer peer(String member) {
+        ReviewPeer peer = peers.get(member);
+        if (peer == null) {
+            peer = peers.computeIfAbsent(member, m -> new ReviewPeer(m, secret, batchSize, connections, timeoutMillis));
+        }
+        return peer;
+    }
+
+    private ReentrantReadWriteLock stripe(long movieId) {
+        return stripes[stripeIndex(movieId)];
+    }
+
+    private static int stripeIndex(long movieId) {
+        return (int) (ConsistentHashRing.mix(movieId) & (STRIPES - 1));
+    }
+
+    /**
+     * Locks the stripes of the movies in stripe order, so writers and readers holding several never deadlock.
+     */
+    private List<Lock> lockStripes(long[] movieIds, int count, boolean write) {
+        boolean[] needed = new boolean[STRIPES];
+        for (int i = 0; i < count; i++) {
+            needed[stripeIndex(movieIds[i])] = true;
+        }
+        List<Lock> locks = new ArrayList<>();
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                if (needed[i]) {
+                    Lock lock = write ? stripes[i].writeLock() : stripes[i].readLock();
+                    lock.lock();
+                    locks.add(lock);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            unlock(locks);
+            throw e;
+        }
+        return locks;
+    }
+
+    private static void unlock(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private void requireClustered() {
+        if (self == null) {
+            throw new IllegalStateException("movies.reviews.cluster.self is not set");
+        }
+    }
+
+    static List<String> parseMembers(String members) {
+        return members == null ? Collections.<String>emptyList() : normalize(Arrays.asList(members.split("[,\\s]+")));
+    }
+
+    private static List<String> normalize(List<String> members) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String member : members) {
+            if (member != null && !member.trim().isEmpty()) {
+                normalized.add(trimSlash(member.trim()));
+            }
+        }
+        return new ArrayList<>(normalized);
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * The ring requests are routed by and, during a membership change, what is still moving.
+     */
+    private static final class Membership {
+        final ConsistentHashRing ring;
+        final Transition transition;
+
+        Membership(ConsistentHashRing ring, Transition transition) {
+            this.ring = ring;
+            this.transition = transition;
+        }
+
+        Set<String> allMembers() {
+            if (transition == null) {
+                return new LinkedHashSet<>(ring.getMembers());
+            }
+            Set<String> all = new LinkedHashSet<>(transition.previous.getMembers());
+            all.addAll(ring.getMembers());
+            return all;
+        }
+    }
+
+    private static final class Transition {
+        final ConsistentHashRing previous;
+        /** Previous members that have not yet reported handing over everything they no longer own. */
+        final Set<String> pendingDonors;
+        final Set<Long> handedOver = ConcurrentHashMap.newKeySet();
+        volatile boolean handedOverAll;
+
+        Transition(ConsistentHashRing previous, Set<String> pendingDonors) {
+            this.previous = previous;
+            this.pendingDonors = pendingDonors;
+        }
+    }
+
+    public static final class Stats {
+        private final String self;
+        private final List<String> members;
+        private final boolean changingMembers;
+        private final long servedLocally;
+        private final long forwarded;
+        private final long moviesHandedOver;
+        private final long moviesTakenOver;
+        private final List<ReviewPeer.Stats> peers;
+
+        Stats(String self, List<String> members, boolean changingMembers, long servedLocally, long forwarded,
+              long moviesHandedOver, long moviesTakenOver, List<ReviewPeer.Stats> peers) {
+            this.self = self;
+            this.members = members;
+            this.changingMembers = changingMembers;
+            this.servedLocally = servedLocally;
+            this.forwarded = forwarded;
+            this.moviesHandedOver = moviesHandedOver;
+            this.moviesTakenOver = moviesTakenOver;
+            this.peers = peers;
+        }
+
+        /**
+         * @return this instance's base URL; {@code null} when it runs alone
+         */
+        public String getSelf() {
+            return self;
+        }
+
+        public List<String> getMembers() {
+            return members;
+        }
+
+        public boolean isChangingMembers() {
+            return changingMembers;
+        }
+
+        /**
+         * @return reads and writes served from this instance's own partition
+         */
+        public long getServedLocally() {
+            return servedLocally;
+        }
+
+        /**
+         * @return reads and writes sent on to the movie's owner
+         */
+        public long getForwarded() {
+            return forwarded;
+        }
+
+        public long getMoviesHandedOver() {
+            return moviesHandedOver;
+        }
+
+        public long getMoviesTakenOver() {
+            return moviesTakenOver;
+        }
+
+        public List<ReviewPeer.Stats> getPeers() {
+            return peers;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * A leaderboard entry: the movie, its 1-based rank and the score it was ranked by.
+ */
+public class RankedMovie {
+    private final int rank;
+    private final Movie movie;
+    private final double score;
+
+    public RankedMovie(int rank, Movie movie, double score) {
+        this.rank = rank;
+        this.movie = movie;
+        this.score = score;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public Movie getMovie() {
+        return movie;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,127 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Running community ratings per movie, seeded from the mock reviews and stored user reviews, and updated as users add reviews.
+ * <p>
+ * Each movie keeps a star histogram and a rating sum in {@link LongAdder}s, so concurrent reviews of
+ * the same movie do not contend on a single counter and every update is O(1). Reading a summary
+ * sums a handful of counters and never looks at individual reviews. The count is derived from the
+ * histogram; while a review is being recorded a reader may see its rating in the sum before its star is counted.
+ */
+@Component
+public class RatingAggregates implements ReviewListener {
+    private static final Logger logger = LogManager.getLogger(RatingAggregates.class);
+
+    /** Ratings are summed in tenths of a star so half-star reviews add up exactly. */
+    private static final double SUM_SCALE = 10.0;
+
+    /** Values in {@link #totals}: the count of each star, then the rating sum in tenths. */
+    static final int TOTALS = 6;
+
+    private final ConcurrentMap<Long, MovieRatings> ratings = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RatingAggregates(ReviewService reviewService, ReviewStore reviewStore) {
+        BiConsumer<Long, List<Review>> seed = (movieId, reviews) -> {
+            for (Review review : reviews) {
+                reviewAdded(movieId, review);
+            }
+        };
+        reviewService.forEachMovie(seed);
+        // Reviews replayed from the review log on startup
+        reviewStore.forEachMovie(seed);
+        // In a cluster, reviews held by the other instances
+        reviewStore.forEachRemoteTotals(this::add);
+        logger.info("Seeded rating aggregates for {} movies", ratings.size());
+        reviewStore.addListener(this);
+    }
+
+    /**
+     * Sums reviews the way the aggregates count them, so another instance can be seeded without the reviews themselves.
+     * @return {@link #TOTALS} values: the count of each star, then the rating sum in tenths
+     */
+    static long[] totals(List<Review> reviews) {
+        long[] totals = new long[TOTALS];
+        for (Review review : reviews) {
+            totals[stars(review.getRating()) - 1]++;
+            totals[TOTALS - 1] += Math.round(review.getRating() * SUM_SCALE);
+        }
+        return totals;
+    }
+
+    private void add(long movieId, long[] totals) {
+        MovieRatings movieRatings = ratings.computeIfAbsent(movieId, id -> new MovieRatings());
+        movieRatings.add(totals);
+    }
+
+    @Override
+    public void reviewAdded(long movieId, Review review) {
+        MovieRatings movieRatings = ratings.get(movieId);
+        if (movieRatings == null) {
+            movieRatings = ratings.computeIfAbsent(movieId, id -> new MovieRatings());
+        }
+        movieRatings.record(review.getRating());
+    }
+
+    /**
+     * @return the movie's current rating summary; an empty summary if it has no reviews
+     */
+    public RatingSummary get(long movieId) {
+        MovieRatings movieRatings = ratings.get(movieId);
+        if (movieRatings == null) {
+            return new RatingSummary(movieId, 0, 0.0, new long[5]);
+        }
+        return movieRatings.summary(movieId);
+    }
+
+    /**
+     * Maps a rating to a histogram star: half stars round up, and the result is clamped to 1-5.
+     */
+    static int stars(double rating) {
+        return (int) Math.max(1, Math.min(5, Math.round(rating)));
+    }
+
+    private static final class MovieRatings {
+        private final LongAdder[] histogram = new LongAdder[5];
+        private final LongAdder sumTenths = new LongAdder();
+
+        MovieRatings() {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        void record(double rating) {
+            sumTenths.add(Math.round(rating * SUM_SCALE));
+            histogram[stars(rating) - 1].increment();
+        }
+
+        void add(long[] totals) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i].add(totals[i]);
+            }
+            sumTenths.add(totals[histogram.length]);
+        }
+
+        RatingSummary summary(long movieId) {
+            long[] counts = new long[histogram.length];
+            long count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = histogram[i].sum();
+                count += counts[i];
+            }
+            return new RatingSummary(movieId, count, sumTenths.sum() / SUM_SCALE, counts);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Star glyphs and one-decimal labels for ratings on the 0-5 scale, as the templates used to build
+ * them with {@code #numbers.sequence} and {@code #numbers.formatDecimal}. Ratings in half steps,
+ * which is nearly all of them, share precomputed strings.
+ */
+final class RatingLabels {
+
+    private static final int MAX_STARS = 5;
+    private static final String[] STARS = new String[2 * MAX_STARS + 1];
+    private static final String[] DECIMALS = new String[2 * MAX_STARS + 1];
+
+    static {
+        for (int halves = 0; halves < STARS.length; halves++) {
+            STARS[halves] = buildStars(halves / 2.0);
+            DECIMALS[halves] = formatDecimal(halves / 2.0);
+        }
+    }
+
+    private RatingLabels() {
+    }
+
+    /**
+     * @return five glyphs: ★ for each whole star, ⭐ for a half star and ☆ for the rest
+     */
+    static String stars(double rating) {
+        int halves = halfSteps(rating);
+        return halves >= 0 ? STARS[halves] : buildStars(rating);
+    }
+
+    /**
+     * @return the rating with one decimal, e.g. {@code 4.5}
+     */
+    static String decimal(double rating) {
+        int halves = halfSteps(rating);
+        return halves >= 0 ? DECIMALS[halves] : formatDecimal(rating);
+    }
+
+    private static int halfSteps(double rating) {
+        double halves = rating * 2;
+        return halves >= 0 && halves < STARS.length && halves == Math.rint(halves) ? (int) halves : -1;
+    }
+
+    private static String buildStars(double rating) {
+        StringBuilder stars = new StringBuilder(MAX_STARS);
+        for (int i = 1; i <= MAX_STARS; i++) {
+            stars.append(i <= rating ? '★' : (i - 0.5 == rating ? "⭐" : "☆"));
+        }
+        return stars.toString();
+    }
+
+    private static String formatDecimal(double value) {
+        // What #numbers.formatDecimal(value, 1, 1) printed for the pages' English locale
+        DecimalFormat format = new DecimalFormat("0.0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+        format.setRoundingMode(RoundingMode.HALF_EVEN);
+        return format.format(value);
+    }
+}
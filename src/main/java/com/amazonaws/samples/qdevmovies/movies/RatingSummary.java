@@ -0,0 +1,53 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * Point-in-time community rating for one movie: review count, average and a 1-5 star histogram.
+ */
+public class RatingSummary {
+
+    private final long movieId;
+    private final long count;
+    private final double average;
+    private final long[] histogram;
+
+    public RatingSummary(long movieId, long count, double sum, long[] histogram) {
+        this.movieId = movieId;
+        this.count = count;
+        this.average = count == 0 ? 0.0 : sum / count;
+        this.histogram = histogram;
+    }
+
+    public long getMovieId() {
+        return movieId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getAverage() {
+        return average;
+    }
+
+    /**
+     * @return review counts per star, index 0 holding 1-star reviews and index 4 holding 5-star reviews
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    public long countOf(int stars) {
+        return histogram[stars - 1];
+    }
+
+    /**
+     * @return the share of reviews with the given number of stars, as a percentage
+     */
+    public int percentOf(int stars) {
+        return count == 0 ? 0 : (int) Math.round(histogram[stars - 1] * 100.0 / count);
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+}
@@ -0,0 +1,249 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of rendered HTML pages, evicting the least recently used pages once the cached
+ * bodies exceed a byte budget.
+ * <p>
+ * Keys name the route, its parameters and the review versions of every movie shown, so a page
+ * is never served stale. Each entry also records the movies it depends on, and adding a review
+ * drops exactly the pages that show that movie. Strong ETags are derived from the key, so a
+ * conditional GET can be answered without rendering, or even without the page being cached.
+ * They include a per-process token because templates and the catalog can change across restarts.
+ */
+@Component
+public class RenderedPageCache implements ReviewListener {
+
+    /** Approximate per-entry bookkeeping (map entry, page object, key and dependency sets). */
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final long maxBytes;
+    private final String instanceToken = Long.toString(System.currentTimeMillis(), 36);
+    private final LinkedHashMap<String, Page> pages = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Long, Set<String>> keysByMovie = new HashMap<>();
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public RenderedPageCache(@Value("${movies.page-cache.max-bytes:16777216}") long maxBytes, ReviewStore reviewStore) {
+        this.maxBytes = maxBytes;
+        reviewStore.addListener(this);
+    }
+
+    /**
+     * @return the cached page, or {@code null} on a miss
+     */
+    public Page get(String key) {
+        Page page;
+        synchronized (this) {
+            page = pages.get(key);
+        }
+        if (page != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return page;
+    }
+
+    /**
+     * Caches a page, evicting least recently used pages as needed. Pages larger than an eighth
+     * of the budget are not cached.
+     */
+    public void put(String key, Page page) {
+        long size = sizeOf(key, page);
+        if (size > maxBytes / 8) {
+            return;
+        }
+        synchronized (this) {
+            remove(key);
+            pages.put(key, page);
+            bytes += size;
+            for (long movieId : page.movieIds) {
+                Set<String> keys = keysByMovie.get(movieId);
+                if (keys == null) {
+                    keys = new HashSet<>();
+                    keysByMovie.put(movieId, keys);
+                }
+                keys.add(key);
+            }
+            Iterator<Map.Entry<String, Page>> eldest = pages.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Page> entry = eldest.next();
+                eldest.remove();
+                forget(entry.getKey(), entry.getValue());
+                evictions.increment();
+            }
+        }
+    }
+
+    @Override
+    public void reviewAdded(long movieId, Review review) {
+        synchronized (this) {
+            Set<String> keys = keysByMovie.remove(movieId);
+            if (keys == null) {
+                return;
+            }
+            for (String key : keys) {
+                if (remove(key)) {
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every cached page, e.g. after the catalog they were rendered from has been replaced.
+     */
+    public synchronized void invalidateAll() {
+        invalidations.add(pages.size());
+        pages.clear();
+        keysByMovie.clear();
+        bytes = 0;
+    }
+
+    public String etag(String key) {
+        return "\"" + instanceToken + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    void recordNotModified() {
+        notModified.increment();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(pages.size(), bytes, maxBytes, hits.sum(), misses.sum(), notModified.sum(), evictions.sum(), invalidations.sum());
+    }
+
+    private boolean remove(String key) {
+        Page page = pages.remove(key);
+        if (page == null) {
+            return false;
+        }
+        forget(key, page);
+        return true;
+    }
+
+    private void forget(String key, Page page) {
+        bytes -= sizeOf(key, page);
+        for (long movieId : page.movieIds) {
+            Set<String> keys = keysByMovie.get(movieId);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByMovie.remove(movieId);
+                }
+            }
+        }
+    }
+
+    private static long sizeOf(String key, Page page) {
+        return page.body.length + 2L * key.length() + 8L * page.movieIds.length + ENTRY_OVERHEAD_BYTES;
+    }
+
+    /**
+     * A rendered response body together with the movies whose reviews it shows.
+     */
+    public static final class Page {
+        private final String contentType;
+        private final byte[] body;
+        private final long[] movieIds;
+
+        public Page(String contentType, byte[] body, long[] movieIds) {
+            this.contentType = contentType;
+            this.body = body;
+            this.movieIds = movieIds;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    public static final class Stats {
+        private final int entries;
+        private final long bytes;
+        private final long maxBytes;
+        private final long hits;
+        private final long misses;
+        private final long notModified;
+        private final long evictions;
+        private final long invalidations;
+
+        Stats(int entries, long bytes, long maxBytes, long hits, long misses, long notModified, long evictions, long invalidations) {
+            this.entries = entries;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.notModified = notModified;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return conditional GETs answered with 304 before any cache lookup or rendering
+         */
+        public long getNotModified() {
+            return notModified;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        /**
+         * @return share of lookups served from the cache, counting 304 responses as hits
+         */
+        public double getHitRatio() {
+            long served = hits + notModified;
+            long total = served + misses;
+            return total == 0 ? 0.0 : (double) served / total;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves {@code GET /movies} and {@code GET /movies/{id}/details} from the {@link RenderedPageCache}.
+ * <p>
+ * A request whose {@code If-None-Match} carries the current ETag gets a 304 before anything is
+ * rendered; a cached page is written as-is; otherwise the controller renders and the result is
+ * cached. Pages that are personalised for the session (a remembered reviewer name or a
+ * validation error) are always rendered. When the details page is rendered asynchronously, the
+ * page is cached on the async dispatch that renders it. Requests answered here carry the route and
+ * movie id they would have been mapped to, for the {@link AccessLogFilter}. It runs before the
+ * {@link AdmissionFilter}, so cached pages are served however busy rendering is.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 10)
+public class RenderedPageCacheFilter extends OncePerRequestFilter {
+
+    static final String CACHE_STATUS_HEADER = "X-Page-Cache";
+    private static final String PENDING_KEY_ATTRIBUTE = RenderedPageCacheFilter.class.getName() + ".pendingKey";
+
+    private static final String LISTING_ROUTE = "/movies";
+    private static final String DETAILS_ROUTE = "/movies/{id}/details";
+    private static final Pattern DETAILS_PATH = Pattern.compile("/movies/(\\d{1,18})/details");
+    private static final int DEFAULT_PAGE_SIZE = 24;
+
+    private final RenderedPageCache cache;
+    private final MovieService movieService;
+    private final ReviewStore reviewStore;
+    private final boolean enabled;
+
+    @Autowired
+    public RenderedPageCacheFilter(RenderedPageCache cache, MovieService movieService, ReviewStore reviewStore,
+                                   @Value("${movies.page-cache.enabled:true}") boolean enabled) {
+        this.cache = cache;
+        this.movieService = movieService;
+        // Keys carry the catalog generation, so old pages can no longer match; drop them to free the memory
+        movieService.addCatalogListener(snapshot -> cache.invalidateAll());
+        this.reviewStore = reviewStore;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"GET".equals(request.getMethod());
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            chain.doFilter(request, response);
+            PageKey pending = (PageKey) request.getAttribute(PENDING_KEY_ATTRIBUTE);
+            ContentCachingResponseWrapper wrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+            if (pending != null && wrapper != null && !isAsyncStarted(request)) {
+                complete(pending, wrapper);
+            }
+            return;
+        }
+        PageKey key = isPersonalised(request) ? null : keyFor(request);
+        if (key == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String etag = cache.etag(key.value);
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            cache.recordNotModified();
+            key.expose(request);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader(HttpHeaders.ETAG, etag);
+            return;
+        }
+        RenderedPageCache.Page page = cache.get(key.value);
+        if (page != null) {
+            key.expose(request);
+            response.setHeader(CACHE_STATUS_HEADER, "HIT");
+            write(response, etag, page);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        wrapper.setHeader(CACHE_STATUS_HEADER, "MISS");
+        chain.doFilter(request, wrapper);
+        if (isAsyncStarted(request)) {
+            // The handler renders on an async dispatch, which still writes through the wrapper
+            request.setAttribute(PENDING_KEY_ATTRIBUTE, key);
+            return;
+        }
+        complete(key, wrapper);
+    }
+
+    private void complete(PageKey key, ContentCachingResponseWrapper wrapper) throws IOException {
+        String contentType = wrapper.getContentType();
+        if (wrapper.getStatus() == HttpServletResponse.SC_OK && contentType != null && contentType.startsWith("text/html")) {
+            cache.put(key.value, new RenderedPageCache.Page(contentType, wrapper.getContentAsByteArray(), key.movieIds));
+            wrapper.setHeader(HttpHeaders.ETAG, cache.etag(key.value));
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private static void write(HttpServletResponse response, String etag, RenderedPageCache.Page page) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setContentType(page.getContentType());
+        response.setContentLength(page.getBody().length);
+        response.getOutputStream().write(page.getBody());
+    }
+
+    private static boolean isPersonalised(HttpServletRequest request) {
+        if (request.getParameter("error") != null) {
+            return true;
+        }
+        HttpSession session = request.getSession(false);
+        return session != null && session.getAttribute("user_name") != null;
+    }
+
+    /**
+     * @return the cache key for a cacheable request, or {@code null} to let it through untouched
+     */
+    PageKey keyFor(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        // Read before anything else: the page is rendered later from this generation or a newer one, never an older one
+        long generation = movieService.getSnapshot().getGeneration();
+        if ("/movies".equals(path)) {
+            return listingKey(request, generation);
+        }
+        Matcher details = DETAILS_PATH.matcher(path);
+        if (details.matches()) {
+            String id = details.group(1);
+            long movieId = Long.parseLong(id);
+            return new PageKey("g" + generation + ":details:" + movieId + ":v" + reviewStore.getVersion(movieId), new long[] {movieId},
+                DETAILS_ROUTE, id);
+        }
+        return null;
+    }
+
+    private PageKey listingKey(HttpServletRequest request, long generation) {
+        if (request.getParameter("render") != null) {
+            return null;
+        }
+        String sort = request.getParameter("sort");
+        String after = request.getParameter("after");
+        String sizeParameter = request.getParameter("size");
+        MoviePage page;
+        try {
+            int size = sizeParameter == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(sizeParameter);
+            page = movieService.getMoviePage(MovieSort.fromParameter(sort), after, size);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // Finding the page is a binary search and a slice; only rendering it is worth caching
+        List<Movie> movies = page.getMovies();
+        long[] movieIds = new long[movies.size()];
+        for (int i = 0; i < movieIds.length; i++) {
+            movieIds[i] = movies.get(i).getId();
+        }
+        long versions = 0;
+        for (long version : reviewStore.getVersions(movieIds)) {
+            versions += version;
+        }
+        String value = "g" + generation + ":movies:" + page.getSort() + ":" + (after == null ? "" : after) + ":" + (sizeParameter == null ? "" : sizeParameter) + ":v" + versions;
+        return new PageKey(value, movieIds, LISTING_ROUTE, null);
+    }
+
+    static final class PageKey {
+        final String value;
+        final long[] movieIds;
+        final String route;
+        final String movieId;
+
+        PageKey(String value, long[] movieIds, String route, String movieId) {
+            this.value = value;
+            this.movieIds = movieIds;
+            this.route = route;
+            this.movieId = movieId;
+        }
+
+        void expose(HttpServletRequest request) {
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, route);
+            if (movieId != null) {
+                request.setAttribute(AccessLogFilter.MOVIE_ID_ATTRIBUTE, movieId);
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs handler work off the servlet container's threads when {@code movies.execution.mode} is
+ * {@link Mode#ASYNC}.
+ * <p>
+ * Tasks run on virtual threads when the JDK has them (21+) and on a fixed pool of
+ * {@code movies.execution.threads} platform threads otherwise. Each endpoint has its own
+ * concurrency limit and timeout, {@code movies.execution.endpoints.<name>.max-concurrency} and
+ * {@code .timeout-ms}, falling back to {@code movies.execution.max-concurrency} and
+ * {@code movies.execution.timeout-ms}. A request over the limit is answered with 503 straight
+ * away instead of queueing, so one slow endpoint cannot take every thread; a request that runs
+ * past its timeout gets 503 and its task is interrupted.
+ */
+@Component
+public class RequestExecutor {
+    private static final Logger logger = LogManager.getLogger(RequestExecutor.class);
+
+    public enum Mode {
+        /** Handlers run on the servlet container's request threads. */
+        BLOCKING,
+        /** The details page and JSON endpoints return a {@link DeferredResult} completed on this executor. */
+        ASYNC
+    }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final String executorType;
+    private final Environment environment;
+    private final int defaultMaxConcurrency;
+    private final long defaultTimeoutMillis;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RequestExecutor(@Value("${movies.execution.mode:BLOCKING}") Mode mode,
+                           @Value("${movies.execution.virtual-threads:true}") boolean virtualThreads,
+                           @Value("${movies.execution.threads:200}") int threads,
+                           @Value("${movies.execution.max-concurrency:1000}") int maxConcurrency,
+                           @Value("${movies.execution.timeout-ms:10000}") long timeoutMillis,
+                           Environment environment) {
+        ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.mode = mode;
+        this.executor = virtual != null ? virtual : newPlatformThreadExecutor(threads);
+        this.executorType = virtual != null ? "virtual" : "platform(" + threads + ")";
+        this.environment = environment;
+        this.defaultMaxConcurrency = maxConcurrency;
+        this.defaultTimeoutMillis = timeoutMillis;
+        if (mode == Mode.ASYNC) {
+            logger.info("Asynchronous request execution on {} threads", executorType);
+        }
+    }
+
+    /**
+     * @return an executor starting one virtual thread per task, or {@code null} before JDK 21
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(int threads) {
+        AtomicInteger created = new AtomicInteger();
+        // Endpoint limits bound how much can wait here, so the queue needs no bound of its own
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+            Thread thread = new Thread(runnable, "request-exec-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Runs a handler's work the way {@code movies.execution.mode} says: inline on the request thread,
+     * or {@link #submit submitted} within the endpoint's limits. Handlers calling it declare
+     * {@code Object} as their return type; Spring MVC handles either result by its runtime type.
+     *
+     * @return the task's value when it ran inline, otherwise a {@link DeferredResult} completed with it
+     */
+    public <T> Object run(String endpoint, Supplier<T> task) {
+        if (mode == Mode.BLOCKING) {
+            return task.get();
+        }
+        return submit(endpoint, task::get);
+    }
+
+    /**
+     * Runs {@code task} on the executor within the endpoint's concurrency limit and timeout.
+     *
+     * @param endpoint names the limit, timeout and statistics the task counts against
+     * @return a result completed with the task's value or exception, or with a 503
+     *         {@link ResponseStatusException} when the endpoint is saturated or the task times out
+     */
+    public <T> DeferredResult<T> submit(String endpoint, Callable<T> task) {
+        Endpoint limits = endpoints.computeIfAbsent(endpoint, this::newEndpoint);
+        DeferredResult<T> result = new DeferredResult<>(limits.timeoutMillis);
+        limits.submitted.increment();
+        if (!limits.permits.tryAcquire()) {
+            limits.rejected.increment();
+            result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent " + endpoint + " requests"));
+            return result;
+        }
+        AtomicBoolean claimed = new AtomicBoolean();
+        long queuedAt = System.nanoTime();
+        Future<?> future;
+        try {
+            future = executor.submit(() -> {
+                // Whoever claims the task first, this thread or the timeout, releases the permit
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                long startedAt = System.nanoTime();
+                limits.queueNanos.add(startedAt - queuedAt);
+                limits.active.incrementAndGet();
+                T value = null;
+                Throwable failure = null;
+                try {
+                    value = task.call();
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                // Account for the task before publishing its result, so stats read after the response include it
+                long elapsed = System.nanoTime() - startedAt;
+                limits.executionNanos.add(elapsed);
+                limits.maxExecutionNanos.accumulateAndGet(elapsed, Math::max);
+                (failure == null ? limits.completed : limits.failed).increment();
+                limits.active.decrementAndGet();
+                limits.permits.release();
+                if (failure == null) {
+                    result.setResult(value);
+                } else {
+                    result.setErrorResult(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            limits.permits.release();
+            limits.rejected.increment();
+            result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Request executor is shut down", e));
+            return result;
+        }
+        result.onTimeout(() -> {
+            limits.timedOut.increment();
+            if (claimed.compareAndSet(false, true)) {
+                // Never started: nothing will release the permit for it
+                limits.permits.release();
+            } else {
+                future.cancel(true);
+            }
+            result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, endpoint + " request timed out"));
+        });
+        return result;
+    }
+
+    private Endpoint newEndpoint(String name) {
+        String prefix = "movies.execution.endpoints." + name + ".";
+        return new Endpoint(environment.getProperty(prefix + "max-concurrency", Integer.class, defaultMaxConcurrency),
+            environment.getProperty(prefix + "timeout-ms", Long.class, defaultTimeoutMillis));
+    }
+
+    public Stats stats() {
+        Map<String, EndpointStats> byEndpoint = new TreeMap<>();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            byEndpoint.put(entry.getKey(), entry.getValue().stats());
+        }
+        int queued = executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+        return new Stats(mode, executorType, queued, byEndpoint);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static final class Endpoint {
+        final int maxConcurrency;
+        final long timeoutMillis;
+        final Semaphore permits;
+        final AtomicInteger active = new AtomicInteger();
+        final LongAdder submitted = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder timedOut = new LongAdder();
+        final LongAdder queueNanos = new LongAdder();
+        final LongAdder executionNanos = new LongAdder();
+        final AtomicLong maxExecutionNanos = new AtomicLong();
+
+        Endpoint(int maxConcurrency, long timeoutMillis) {
+            this.maxConcurrency = maxConcurrency;
+            this.timeoutMillis = timeoutMillis;
+            this.permits = new Semaphore(maxConcurrency);
+        }
+
+        EndpointStats stats() {
+            long finished = completed.sum() + failed.sum();
+            return new EndpointStats(maxConcurrency, timeoutMillis, active.get(), submitted.sum(), completed.sum(),
+                failed.sum(), rejected.sum(), timedOut.sum(),
+                finished == 0 ? 0 : queueNanos.sum() / finished / 1000,
+                finished == 0 ? 0 : executionNanos.sum() / finished / 1000,
+                maxExecutionNanos.get() / 1000);
+        }
+    }
+
+    public static final class Stats {
+        private final Mode mode;
+        private final String executor;
+        private final int queued;
+        private final Map<String, EndpointStats> endpoints;
+
+        Stats(Mode mode, String executor, int queued, Map<String, EndpointStats> endpoints) {
+            this.mode = mode;
+            this.executor = executor;
+            this.queued = queued;
+            this.endpoints = endpoints;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        /**
+         * @return {@code virtual}, or {@code platform(n)} for a pool of n threads
+         */
+        public String getExecutor() {
+            return executor;
+        }
+
+        /**
+         * @return tasks waiting for a platform thread; always 0 on virtual threads
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        public Map<String, EndpointStats> getEndpoints() {
+            return endpoints;
+        }
+    }
+
+    public static final class EndpointStats {
+        private final int maxConcurrency;
+        private final long timeoutMillis;
+        private final int active;
+        private final long submitted;
+        private final long completed;
+        private final long failed;
+        private final long rejected;
+        private final long timedOut;
+        private final long averageQueueMicros;
+        private final long averageExecutionMicros;
+        private final long maxExecutionMicros;
+
+        EndpointStats(int maxConcurrency, long timeoutMillis, int active, long submitted, long completed, long failed,
+                      long rejected, long timedOut, long averageQueueMicros, long averageExecutionMicros, long maxExecutionMicros) {
+            this.maxConcurrency = maxConcurrency;
+            this.timeoutMillis = timeoutMillis;
+            this.active = active;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.failed = failed;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+            this.averageQueueMicros = averageQueueMicros;
+            this.averageExecutionMicros = averageExecutionMicros;
+            this.maxExecutionMicros = maxExecutionMicros;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        /**
+         * @return tasks running right now
+         */
+        public int getActive() {
+            return active;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        /**
+         * @return tasks that threw; the exception is handled as if the handler had thrown it
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return requests answered with 503 because the endpoint was at its concurrency limit
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * @return mean time between submission and a thread picking the task up
+         */
+        public long getAverageQueueMicros() {
+            return averageQueueMicros;
+        }
+
+        public long getAverageExecutionMicros() {
+            return averageExecutionMicros;
+        }
+
+        public long getMaxExecutionMicros() {
+            return maxExecutionMicros;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times every controller mapping, and the rendering of the view it returns, into
+ * {@link MovieMetrics}. An asynchronous handler is timed from its first dispatch to the end of the
+ * dispatch that renders its result. Requests answered by the page cache never reach a handler.
+ */
+@Component
+public class RequestMetricsInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+
+    private static final String START_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".start";
+    private static final String RENDER_START_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".renderStart";
+    private static final String VIEW_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".view";
+
+    private final MovieMetrics metrics;
+
+    public RequestMetricsInterceptor(MovieMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // An async dispatch keeps the start of the dispatch that began the request
+        if (handler instanceof HandlerMethod && MovieMetrics.recording(metrics) && request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        if (modelAndView != null && modelAndView.getViewName() != null && !modelAndView.getViewName().startsWith("redirect:")
+            && request.getAttribute(START_ATTRIBUTE) != null) {
+            request.setAttribute(VIEW_ATTRIBUTE, modelAndView.getViewName());
+            request.setAttribute(RENDER_START_ATTRIBUTE, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+        if (start == null || !MovieMetrics.recording(metrics)) {
+            return;
+        }
+        long now = System.nanoTime();
+        Long renderStart = (Long) request.getAttribute(RENDER_START_ATTRIBUTE);
+        if (renderStart != null) {
+            metrics.recordRender((String) request.getAttribute(VIEW_ATTRIBUTE), now - renderStart);
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        int status = ex != null && response.getStatus() < 400 ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+        metrics.recordRequest(request.getMethod(), pattern != null ? pattern.toString() : "UNKNOWN", status, now - start);
+    }
+}
@@ -1,20 +1,29 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
 public class Review {
-    private String userName;
-    private String avatarEmoji;
-    private double rating;
-    private String comment;
+    private final String userName;
+    private final String avatarEmoji;
+    private final double rating;
+    private final String comment;
+    // Derived when the review is added rather than each time a page shows it
+    private final String stars;
+    private final String ratingLabel;
 
     public Review(String userName, String avatarEmoji, double rating, String comment) {
         this.userName = userName;
         this.avatarEmoji = avatarEmoji;
         this.rating = rating;
         this.comment = comment;
+        this.stars = RatingLabels.stars(rating);
+        this.ratingLabel = RatingLabels.decimal(rating);
     }
 
     public String getUserName() { return userName; }
     public String getAvatarEmoji() { return avatarEmoji; }
     public double getRating() { return rating; }
     public String getComment() { return comment; }
+    /** @return the rating as five star glyphs, e.g. {@code ★★★★☆} */
+    public String getStars() { return stars; }
+    /** @return the rating with one decimal, e.g. {@code 4.0} */
+    public String getRatingLabel() { return ratingLabel; }
 }
@@ -0,0 +1,273 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The binary protocol instances of a review cluster speak to each other: a request carries a batch
+ * of operations on single movies, and the response one result per operation, in the same order.
+ * <pre>
+ * request:   [count] then per operation [type][movie id][handoff][hops] and, by type,
+ *            ADD and NOTIFY: one review; TRANSFER: [n] and n reviews
+ * response:  per operation [status] and, when OK, GET: [n] and n reviews;
+ *            RATINGS: [n] and n times [movie id][5 star counts][rating sum in tenths]; others: [value];
+ *            when FAILED: [message]
+ * review:    [user name][avatar][rating][comment]
+ * </pre>
+ * Integers and longs are big-endian, strings {@link DataOutputStream#writeUTF modified UTF-8}.
+ */
+final class ReviewBatch {
+
+    static final String CONTENT_TYPE = "application/vnd.qdevmovies.review-batch";
+
+    static final byte GET = 1;
+    static final byte VERSION = 2;
+    static final byte ADD = 3;
+    /** Stores a movie's reviews handed over by its previous owner; listeners are not told, as the reviews are not new. */
+    static final byte TRANSFER = 4;
+    /** Tells listeners about a review stored on another instance; nothing is stored. */
+    static final byte NOTIFY = 5;
+    /** Asks for the rating totals of every movie the instance owns, e.g. to seed aggregates on startup; the movie id is ignored. */
+    static final byte RATINGS = 6;
+
+    /** Values per movie in a {@link #RATINGS} result. */
+    static final int RATING_FIELDS = 1 + RatingAggregates.TOTALS;
+
+    static final byte OK = 0;
+    /** The instance asked for a handoff no longer holds the movie; its new owner serves it. */
+    static final byte MOVED = 1;
+    static final byte FAILED = 2;
+
+    private ReviewBatch() {
+    }
+
+    static final class Op {
+        final byte type;
+        final long movieId;
+        /** Sent by a movie's new owner to its previous owner, which serves it only while it still holds the movie. */
+        final boolean handoff;
+        /** Times the operation has been forwarded between instances. */
+        final int hops;
+        final Review review;
+        final List<Review> reviews;
+
+        Op(byte type, long movieId, boolean handoff, int hops, Review review, List<Review> reviews) {
+            this.type = type;
+            this.movieId = movieId;
+            this.handoff = handoff;
+            this.hops = hops;
+            this.review = review;
+            this.reviews = reviews;
+        }
+
+        static Op get(long movieId) {
+            return new Op(GET, movieId, false, 0, null, null);
+        }
+
+        static Op version(long movieId) {
+            return new Op(VERSION, movieId, false, 0, null, null);
+        }
+
+        static Op add(long movieId, Review review) {
+            return new Op(ADD, movieId, false, 0, review, null);
+        }
+
+        static Op transfer(long movieId, List<Review> reviews) {
+            return new Op(TRANSFER, movieId, false, 0, null, reviews);
+        }
+
+        static Op notify(long movieId, Review review) {
+            return new Op(NOTIFY, movieId, false, 0, review, null);
+        }
+
+        static Op ratings() {
+            return new Op(RATINGS, 0, false, 0, null, null);
+        }
+
+        Op forwarded() {
+            return new Op(type, movieId, false, hops + 1, review, reviews);
+        }
+
+        Op toPreviousOwner() {
+            return new Op(type, movieId, true, hops + 1, review, reviews);
+        }
+    }
+
+    static final class Result {
+        static final Result MOVED_AWAY = new Result(MOVED, 0, null, null, null);
+
+        final byte status;
+        final long value;
+        final List<Review> reviews;
+        /** Per movie, {@link #RATING_FIELDS} values: its id, then its {@link RatingAggregates#totals totals}. */
+        final long[] ratings;
+        final String message;
+
+        private Result(byte status, long value, List<Review> reviews, long[] ratings, String message) {
+            this.status = status;
+            this.value = value;
+            this.reviews = reviews;
+            this.ratings = ratings;
+            this.message = message;
+        }
+
+        static Result value(long value) {
+            return new Result(OK, value, null, null, null);
+        }
+
+        static Result reviews(List<Review> reviews) {
+            return new Result(OK, reviews.size(), reviews, null, null);
+        }
+
+        static Result ratings(long[] ratings) {
+            return new Result(OK, ratings.length / RATING_FIELDS, null, ratings, null);
+        }
+
+        static Result failed(String message) {
+            return new Result(FAILED, 0, null, null, message == null ? "" : message);
+        }
+
+        /**
+         * @return this result, unless the operation failed on the other instance
+         * @throws IllegalStateException with the other instance's message if it failed
+         */
+        Result orThrow() {
+            if (status == FAILED) {
+                throw new IllegalStateException(message);
+            }
+            return this;
+        }
+    }
+
+    static void writeOps(DataOutputStream out, List<Op> ops) throws IOException {
+        out.writeInt(ops.size());
+        for (Op op : ops) {
+            out.writeByte(op.type);
+            out.writeLong(op.movieId);
+            out.writeBoolean(op.handoff);
+            out.writeByte(op.hops);
+            if (op.type == ADD || op.type == NOTIFY) {
+                writeReview(out, op.review);
+            } else if (op.type == TRANSFER) {
+                writeReviews(out, op.reviews);
+            }
+        }
+    }
+
+    static List<Op> readOps(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Op> ops = new ArrayList<>(Math.min(count, 4096));
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            long movieId = in.readLong();
+            boolean handoff = in.readBoolean();
+            int hops = in.readByte();
+            Review review = null;
+            List<Review> reviews = null;
+            if (type == ADD || type == NOTIFY) {
+                review = readReview(in);
+            } else if (type == TRANSFER) {
+                reviews = readReviews(in);
+            } else if (type != GET && type != VERSION && type != RATINGS) {
+                throw new IOException("Unknown operation " + type);
+            }
+            ops.add(new Op(type, movieId, handoff, hops, review, reviews));
+        }
+        return ops;
+    }
+
+    static void writeResults(DataOutputStream out, List<Op> ops, List<Result> results) throws IOException {
+        for (int i = 0; i < ops.size(); i++) {
+            Result result = results.get(i);
+            out.writeByte(result.status);
+            if (result.status == OK) {
+                if (ops.get(i).type == GET) {
+                    writeReviews(out, result.reviews);
+                } else if (ops.get(i).type == RATINGS) {
+                    writeRatings(out, result.ratings);
+                } else {
+                    out.writeLong(result.value);
+                }
+            } else if (result.status == FAILED) {
+                out.writeUTF(result.message);
+            }
+        }
+    }
+
+    static List<Result> readResults(DataInputStream in, List<Op> ops) throws IOException {
+        List<Result> results = new ArrayList<>(ops.size());
+        for (Op op : ops) {
+            byte status = in.readByte();
+            if (status == OK) {
+                if (op.type == GET) {
+                    results.add(Result.reviews(readReviews(in)));
+                } else if (op.type == RATINGS) {
+                    results.add(Result.ratings(readRatings(in)));
+                } else {
+                    results.add(Result.value(in.readLong()));
+                }
+            } else if (status == MOVED) {
+                results.add(Result.MOVED_AWAY);
+            } else {
+                results.add(Result.failed(in.readUTF()));
+            }
+        }
+        return results;
+    }
+
+    private static void writeReviews(DataOutputStream out, List<Review> reviews) throws IOException {
+        out.writeInt(reviews.size());
+        for (Review review : reviews) {
+            writeReview(out, review);
+        }
+    }
+
+    private static List<Review> readReviews(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<Review> reviews = new ArrayList<>(Math.min(count, 4096));
+        for (int i = 0; i < count; i++) {
+            reviews.add(readReview(in));
+        }
+        return Collections.unmodifiableList(reviews);
+    }
+
+    private static void writeRatings(DataOutputStream out, long[] ratings) throws IOException {
+        out.writeInt(ratings.length / RATING_FIELDS);
+        for (long value : ratings) {
+            out.writeLong(value);
+        }
+    }
+
+    private static long[] readRatings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > Integer.MAX_VALUE / RATING_FIELDS) {
+            throw new IOException("Invalid rating count " + count);
+        }
+        long[] ratings = new long[count * RATING_FIELDS];
+        for (int i = 0; i < ratings.length; i++) {
+            ratings[i] = in.readLong();
+        }
+        return ratings;
+    }
+
+    private static void writeReview(DataOutputStream out, Review review) throws IOException {
+        out.writeUTF(review.getUserName());
+        out.writeUTF(review.getAvatarEmoji());
+        out.writeDouble(review.getRating());
+        out.writeUTF(review.getComment());
+    }
+
+    private static Review readReview(DataInputStream in) throws IOException {
+        String userName = in.readUTF();
+        String avatar = in.readUTF();
+        double rating = in.readDouble();
+        return new Review(userName, avatar, rating, in.readUTF());
+    }
+}
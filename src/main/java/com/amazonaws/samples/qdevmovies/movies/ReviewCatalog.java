@@ -0,0 +1,118 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.amazonaws.samples.qdevmovies.utils.LongIndexMap;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable index of the seed reviews keyed by primitive movie id.
+ * Each entry is an unmodifiable list built once, so lookups neither parse nor copy.
+ */
+public class ReviewCatalog {
+
+    private static final ReviewCatalog EMPTY = builder().build();
+
+    private final LongIndexMap index;
+    private final long[] movieIdsBySlot;
+    private final List<List<Review>> reviewsBySlot;
+    private final int reviewCount;
+
+    private ReviewCatalog(LongIndexMap index, long[] movieIdsBySlot, List<List<Review>> reviewsBySlot, int reviewCount) {
+        this.index = index;
+        this.movieIdsBySlot = movieIdsBySlot;
+        this.reviewsBySlot = reviewsBySlot;
+        this.reviewCount = reviewCount;
+    }
+
+    /**
+     * For catalogs that keep their reviews elsewhere and override every accessor, e.g. a {@link BinaryCatalog}'s.
+     */
+    ReviewCatalog() {
+        this(new LongIndexMap(4), new long[0], Collections.<List<Review>>emptyList(), 0);
+    }
+
+    public static ReviewCatalog empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Parses a document shaped like {@code mock-reviews.json}: an object whose keys are movie ids
+     * and whose values are arrays of reviews.
+     */
+    public static ReviewCatalog fromJson(InputStream inputStream) {
+        return new CatalogLoader().loadReviews(inputStream);
+    }
+
+    /**
+     * @return the unmodifiable reviews for the movie, or an empty list if it has none
+     */
+    public List<Review> get(long movieId) {
+        int slot = index.get(movieId);
+        if (slot == LongIndexMap.MISSING) {
+            return Collections.emptyList();
+        }
+        return reviewsBySlot.get(slot);
+    }
+
+    /**
+     * Visits every movie that has seed reviews, in the order the movies were added.
+     */
+    public void forEach(BiConsumer<Long, List<Review>> action) {
+        for (int slot = 0; slot < reviewsBySlot.size(); slot++) {
+            action.accept(movieIdsBySlot[slot], reviewsBySlot.get(slot));
+        }
+    }
+
+    public int movieCount() {
+        return reviewsBySlot.size();
+    }
+
+    public int reviewCount() {
+        return reviewCount;
+    }
+
+    public static class Builder {
+        private final LongIndexMap index = new LongIndexMap(16);
+        private long[] movieIdsBySlot = new long[16];
+        private final List<List<Review>> reviewsBySlot = new ArrayList<>();
+        private int reviewCount;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the reviews for a movie; the list is wrapped, not copied, so it must not be modified afterwards.
+         */
+        public Builder put(long movieId, List<Review> reviews) {
+            List<Review> unmodifiable = Collections.unmodifiableList(reviews);
+            int slot = index.get(movieId);
+            if (slot == LongIndexMap.MISSING) {
+                int newSlot = reviewsBySlot.size();
+                if (newSlot == movieIdsBySlot.length) {
+                    movieIdsBySlot = Arrays.copyOf(movieIdsBySlot, newSlot * 2);
+                }
+                index.put(movieId, newSlot);
+                movieIdsBySlot[newSlot] = movieId;
+                reviewsBySlot.add(unmodifiable);
+            } else {
+                reviewCount -= reviewsBySlot.get(slot).size();
+                reviewsBySlot.set(slot, unmodifiable);
+            }
+            reviewCount += reviews.size();
+            return this;
+        }
+
+        public ReviewCatalog build() {
+            return new ReviewCatalog(index, movieIdsBySlot, reviewsBySlot, reviewCount);
+        }
+    }
+}
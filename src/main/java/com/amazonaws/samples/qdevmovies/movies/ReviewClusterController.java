@@ -0,0 +1,102 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoints instances of a review cluster call on each other. They answer 404 unless
+ * {@code movies.reviews.cluster.self} is set, and 403 unless the request carries the cluster's
+ * secret in {@value ReviewPeer#SECRET_HEADER}. They should not be reachable from outside the cluster either.
+ */
+@RestController
+@RequestMapping("/internal/reviews")
+public class ReviewClusterController {
+
+    @Autowired
+    private PartitionedReviewStore reviewStore;
+
+    /**
+     * Runs a {@link ReviewBatch} of operations and writes one result for each.
+     */
+    @PostMapping("/batch")
+    public void batch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requireClusterMember(request);
+        List<ReviewBatch.Op> ops;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(request.getInputStream()))) {
+            ops = ReviewBatch.readOps(in);
+        }
+        List<ReviewBatch.Result> results = reviewStore.handleBatch(ops);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + ops.size() * 16);
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            ReviewBatch.writeResults(out, ops, results);
+        }
+        response.setContentType(ReviewBatch.CONTENT_TYPE);
+        response.setContentLength(body.size());
+        body.writeTo(response.getOutputStream());
+    }
+
+    /**
+     * Changes the cluster's members to the instances listed in the body, one base URL per line,
+     * moving the reviews whose owner changes.
+     * @return the number of movies each instance handed over
+     */
+    @PostMapping("/members")
+    public Map<String, Integer> changeMembers(@RequestBody String members, HttpServletRequest request) throws IOException {
+        requireClusterMember(request);
+        try {
+            return reviewStore.changeMembers(PartitionedReviewStore.parseMembers(members));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    @PostMapping("/prepare")
+    public String prepare(@RequestBody String members, HttpServletRequest request) {
+        requireClusterMember(request);
+        try {
+            reviewStore.prepare(PartitionedReviewStore.parseMembers(members));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+        return "";
+    }
+
+    @PostMapping("/migrate")
+    public String migrate(HttpServletRequest request) throws IOException {
+        requireClusterMember(request);
+        return String.valueOf(reviewStore.handOver());
+    }
+
+    @PostMapping("/handover-done")
+    public String handoverDone(@RequestBody String donor, HttpServletRequest request) {
+        requireClusterMember(request);
+        reviewStore.handoverDone(donor);
+        return "";
+    }
+
+    private void requireClusterMember(HttpServletRequest request) {
+        if (!reviewStore.isClustered()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        if (!reviewStore.isClusterSecret(request.getHeader(ReviewPeer.SECRET_HEADER))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * Callback for reviews added to a {@link ReviewStore}.
+ */
+@FunctionalInterface
+public interface ReviewListener {
+
+    void reviewAdded(long movieId, Review review);
+}
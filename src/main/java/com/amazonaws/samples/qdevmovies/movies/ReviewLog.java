@@ -0,0 +1,781 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only log of user reviews, stored as numbered segment files in one directory.
+ * <p>
+ * Each record is {@code [payload length][CRC32 of payload][movie id, rating, user name, avatar, comment]}.
+ * A removal record is just {@code [payload length][CRC32][movie id]}: replay drops every earlier review
+ * of the movie, e.g. once another instance has taken it over, and compaction drops them from disk.
+ * Writers encode their records outside any lock and copy them into a shared buffer; whoever commits
+ * first writes every buffered record with one {@code write} and, when syncing on commit, one
+ * {@code fsync}, so concurrent writers share the cost (group commit). With a positive fsync interval
+ * commits only write, and a background task syncs every interval instead.
+ * <p>
+ * The active segment rolls once it reaches the segment size. On open, segments are memory-mapped
+ * and replayed in order; a torn or corrupt tail left by a crash is cut off. Compaction merges runs of
+ * small sealed segments (e.g. one per restart) into one, up to the segment size, and rewrites any
+ * sealed segment holding reviews a later removal dropped. A merged segment
+ * records the first segment number it replaces, so a crash between writing it and deleting its inputs
+ * is repaired on the next open. After an I/O error the log refuses further appends.
+ */
+class ReviewLog implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ReviewLog.class);
+
+    static final String SEGMENT_PREFIX = "reviews-";
+    static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final int MAGIC = 0x52564C47;
+    private static final int FORMAT_VERSION = 1;
+    /** magic, format version, first segment number covered */
+    static final int SEGMENT_HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 8;
+    /** Every review payload is longer: it has a rating and three string lengths after the movie id. */
+    private static final int REMOVAL_PAYLOAD_BYTES = 8;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+    /** Segments are mapped whole, so each must stay well under 2 GB. */
+    static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_RETAINED_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean syncOnCommit;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object appendLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private long appendedSeq;
+
+    private final Object commitLock = new Object();
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private FileChannel active;
+    private long activeNumber;
+    private final TreeMap<Long, Path> sealed = new TreeMap<>();
+    private IOException failure;
+    private volatile long writtenSeq;
+    private volatile long durableSeq;
+
+    private final Object compactLock = new Object();
+    /** Whether a removal was replayed or appended; until then compaction need not look for dropped reviews. */
+    private volatile boolean removalsLogged;
+
+    private ReviewLog(Path directory, long segmentBytes, boolean syncOnCommit, ScheduledExecutorService scheduler) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncOnCommit = syncOnCommit;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Opens the log in {@code directory}, creating it if needed, replays every stored review into
+     * {@code replay} in append order and starts a new active segment.
+     *
+     * @param fsyncIntervalMillis 0 to fsync before each commit returns; otherwise how often to fsync in the background
+     * @param compactIntervalMillis how often to compact sealed segments; 0 disables compaction
+     */
+    static ReviewLog open(Path directory, long segmentBytes, long fsyncIntervalMillis, long compactIntervalMillis,
+                          Replay replay) throws IOException {
+        if (segmentBytes <= SEGMENT_HEADER_BYTES || segmentBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Segment size must be between " + SEGMENT_HEADER_BYTES + " and "
+                + MAX_SEGMENT_BYTES + " bytes, got " + segmentBytes);
+        }
+        ScheduledExecutorService scheduler = fsyncIntervalMillis > 0 || compactIntervalMillis > 0
+            ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "review-log");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+        ReviewLog log = new ReviewLog(directory, segmentBytes, fsyncIntervalMillis <= 0, scheduler);
+        log.recover(replay);
+        if (fsyncIntervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(log::syncInBackground, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (compactIntervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(log::compactInBackground, compactIntervalMillis, compactIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return log;
+    }
+
+    /**
+     * Buffers one review; it is not written until {@link #commit(long)}.
+     * @return the sequence number to pass to {@link #commit(long)}
+     */
+    long append(long movieId, Review review) {
+        byte[] record = encode(movieId, review);
+        synchronized (appendLock) {
+            pending = ensureCapacity(pending, record.length);
+            pending.put(record);
+            return ++appendedSeq;
+        }
+    }
+
+    /**
+     * Buffers {@code count} reviews under one lock acquisition.
+     * @return the sequence number of the last one
+     */
+    long appendAll(long[] movieIds, Review[] reviews, int count) {
+        byte[][] records = new byte[count][];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            records[i] = encode(movieIds[i], reviews[i]);
+            total += records[i].length;
+        }
+        synchronized (appendLock) {
+            pending = ensureCapacity(pending, total);
+            for (byte[] record : records) {
+                pending.put(record);
+            }
+            appendedSeq += count;
+            return appendedSeq;
+        }
+    }
+
+    /**
+     * Buffers {@code reviews[from..to)} of one movie under one lock acquisition.
+     * @return the sequence number of the last one
+     */
+    long appendAll(long movieId, Review[] reviews, int from, int to) {
+        byte[][] records = new byte[to - from][];
+        int total = 0;
+        for (int i = from; i < to; i++) {
+            records[i - from] = encode(movieId, reviews[i]);
+            total += records[i - from].length;
+        }
+        synchronized (appendLock) {
+            pending = ensureCapacity(pending, total);
+            for (byte[] record : records) {
+                pending.put(record);
+            }
+            appendedSeq += records.length;
+            return appendedSeq;
+        }
+    }
+
+    /**
+     * Buffers a removal of every review logged so far for each movie.
+     * @return the sequence number to pass to {@link #commit(long)}
+     */
+    long appendRemovals(List<Long> movieIds) {
+        byte[][] records = new byte[movieIds.size()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = encodeRemoval(movieIds.get(i));
+        }
+        return appendRecords(records);
+    }
+
+    /**
+     * Buffers a removal of the movie's logged reviews followed by {@code reviews}, so replay ends
+     * with exactly these, however often the movie was handed back and forth.
+     * @return the sequence number to pass to {@link #commit(long)}
+     */
+    long appendReplacement(long movieId, Review[] reviews) {
+        byte[][] records = new byte[reviews.length + 1][];
+        records[0] = encodeRemoval(movieId);
+        for (int i = 0; i < reviews.length; i++) {
+            records[i + 1] = encode(movieId, reviews[i]);
+        }
+        return appendRecords(records);
+    }
+
+    private long appendRecords(byte[][] records) {
+        int total = 0;
+        for (byte[] record : records) {
+            total += record.length;
+        }
+        removalsLogged = true;
+        synchronized (appendLock) {
+            pending = ensureCapacity(pending, total);
+            for (byte[] record : records) {
+                pending.put(record);
+            }
+            appendedSeq += records.length;
+            return appendedSeq;
+        }
+    }
+
+    /**
+     * Returns once every record up to {@code seq} is written to the segment file, and synced to
+     * disk when the log syncs on commit. One caller writes and syncs for everyone waiting.
+     */
+    void commit(long seq) throws IOException {
+        if ((syncOnCommit ? durableSeq : writtenSeq) >= seq) {
+            return;
+        }
+        synchronized (commitLock) {
+            if ((syncOnCommit ? durableSeq : writtenSeq) >= seq) {
+                return;
+            }
+            writePending();
+            if (syncOnCommit) {
+                sync();
+            }
+        }
+    }
+
+    /**
+     * Merges runs of consecutive sealed segments whose combined size fits in one segment, and
+     * rewrites sealed segments holding reviews that a later removal dropped.
+     * @return the number of segments replaced
+     */
+    int compact() throws IOException {
+        synchronized (compactLock) {
+            TreeMap<Long, Path> segments;
+            synchronized (commitLock) {
+                segments = new TreeMap<>(sealed);
+            }
+            if (segments.isEmpty()) {
+                return 0;
+            }
+            // Sealed segments change only here, under the compaction lock
+            List<List<Map.Entry<Long, Path>>> runs = new ArrayList<>();
+            List<Map.Entry<Long, Path>> run = new ArrayList<>();
+            long runBytes = 0;
+            for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+                long size = Files.size(segment.getValue());
+                if (!run.isEmpty() && runBytes + size - SEGMENT_HEADER_BYTES > segmentBytes) {
+                    runs.add(run);
+                    run = new ArrayList<>();
+                    runBytes = 0;
+                }
+                run.add(segment);
+                runBytes += run.size() == 1 ? size : size - SEGMENT_HEADER_BYTES;
+            }
+            runs.add(run);
+            Map<Long, Long> removedAt = removalsLogged ? lastRemovals(segments) : Collections.<Long, Long>emptyMap();
+            int replaced = 0;
+            for (List<Map.Entry<Long, Path>> candidate : runs) {
+                // Nothing older is left for a removal in the oldest segment to drop, so it can go too
+                boolean oldest = candidate.get(0).getKey().equals(segments.firstKey());
+                if (candidate.size() > 1 || !removedAt.isEmpty() && dropsAny(candidate.get(0), removedAt, oldest)) {
+                    merge(candidate, removedAt, oldest);
+                    replaced += candidate.size();
+                }
+            }
+            return replaced;
+        }
+    }
+
+    /**
+     * @return the number of segment files, including the active one
+     */
+    int segmentCount() {
+        synchronized (commitLock) {
+            return sealed.size() + (active != null ? 1 : 0);
+        }
+    }
+
+    /**
+     * Writes and syncs everything buffered, then closes the active segment.
+     */
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        synchronized (compactLock) {
+            synchronized (commitLock) {
+                if (active == null) {
+                    return;
+                }
+                try {
+                    if (failure == null) {
+                        writePending();
+                        sync();
+                    }
+                } finally {
+                    active.close();
+                    active = null;
+                }
+            }
+        }
+    }
+
+    private void recover(Replay replay) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(COMPACTING_SUFFIX)) {
+                    // An interrupted compaction; its inputs are all still in place
+                    Files.delete(file);
+                } else if (name.endsWith(SEGMENT_SUFFIX) && Files.size(file) < SEGMENT_HEADER_BYTES) {
+                    // Created just before a crash, before its header was written
+                    logger.warn("Deleting empty review log segment {}", file);
+                    Files.delete(file);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        long records = 0;
+        ReviewDecoder decoder = new ReviewDecoder();
+        for (Map.Entry<Long, Path> segment : new ArrayList<>(segments.descendingMap().entrySet())) {
+            if (!segments.containsKey(segment.getKey())) {
+                continue;
+            }
+            long coversFrom = readHeader(segment.getValue());
+            // Segments a merged segment replaced but did not get to delete
+            for (Long stale : new ArrayList<>(segments.subMap(coversFrom, segment.getKey()).keySet())) {
+                logger.warn("Deleting review log segment {}, already merged into {}", segments.get(stale), segment.getValue());
+                Files.delete(segments.remove(stale));
+            }
+        }
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            records += replaySegment(segment.getValue(), decoder, replay);
+            sealed.put(segment.getKey(), segment.getValue());
+        }
+        long next = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        openSegment(next);
+        removalsLogged = decoder.removals > 0;
+        logger.info("Replayed {} reviews from {} review log segments in {} ms", records, segments.size(),
+            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long replaySegment(Path file, ReviewDecoder decoder, Replay replay) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Review log segment " + file + " is too large to map: " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ((Buffer) buffer).position(SEGMENT_HEADER_BYTES);
+            long records = decoder.scan(buffer, replay);
+            if (buffer.position() < size) {
+                logger.warn("Truncating review log segment {} from {} to {} bytes after a torn or corrupt record",
+                    file, size, buffer.position());
+                channel.truncate(buffer.position());
+                channel.force(true);
+            }
+            return records;
+        }
+    }
+
+    private static long readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            ((Buffer) header).flip();
+            if (header.remaining() < SEGMENT_HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not a review log segment: " + file);
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported review log format " + version + " in " + file);
+            }
+            return header.getLong();
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        Path file = segmentPath(number);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        writeHeader(channel, number);
+        active = channel;
+        activeNumber = number;
+    }
+
+    private static void writeHeader(FileChannel channel, long coversFrom) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(coversFrom);
+        ((Buffer) header).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private void writePending() throws IOException {
+        checkUsable();
+        ByteBuffer batch;
+        long upTo;
+        synchronized (appendLock) {
+            batch = pending;
+            pending = spare;
+            upTo = appendedSeq;
+        }
+        try {
+            ((Buffer) batch).flip();
+            while (batch.hasRemaining()) {
+                active.write(batch);
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+        ((Buffer) batch).clear();
+        spare = batch.capacity() > MAX_RETAINED_BUFFER_BYTES ? ByteBuffer.allocate(INITIAL_BUFFER_BYTES) : batch;
+        writtenSeq = upTo;
+        if (active.position() >= segmentBytes) {
+            roll();
+        }
+    }
+
+    private void sync() throws IOException {
+        checkUsable();
+        long upTo = writtenSeq;
+        try {
+            active.force(false);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+        durableSeq = upTo;
+    }
+
+    private void roll() throws IOException {
+        sync();
+        active.close();
+        sealed.put(activeNumber, segmentPath(activeNumber));
+        try {
+            openSegment(activeNumber + 1);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            throw new IOException("Review log is unusable after an earlier I/O error", failure);
+        }
+        if (active == null) {
+            throw new IOException("Review log is closed");
+        }
+    }
+
+    /**
+     * @return where each movie's reviews were last removed, as {@link #position(long, int)}s
+     */
+    private static Map<Long, Long> lastRemovals(TreeMap<Long, Path> segments) throws IOException {
+        Map<Long, Long> removedAt = new HashMap<>();
+        ReviewDecoder decoder = new ReviewDecoder();
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            long number = segment.getKey();
+            visit(segment.getValue(), decoder, (movieId, removal, start, end) -> {
+                if (removal) {
+                    removedAt.put(movieId, position(number, start));
+                }
+            });
+        }
+        return removedAt;
+    }
+
+    private static boolean dropsAny(Map.Entry<Long, Path> segment, Map<Long, Long> removedAt, boolean oldest) throws IOException {
+        long number = segment.getKey();
+        boolean[] drops = new boolean[1];
+        visit(segment.getValue(), new ReviewDecoder(), (movieId, removal, start, end) ->
+            drops[0] |= dropped(removedAt, movieId, position(number, start), oldest));
+        return drops[0];
+    }
+
+    /**
+     * Whether a record is dropped by a later removal of its movie, or is the last removal of a
+     * movie with nothing older left to remove.
+     */
+    private static boolean dropped(Map<Long, Long> removedAt, long movieId, long position, boolean oldest) {
+        Long removed = removedAt.get(movieId);
+        return removed != null && (position < removed || oldest && position == removed);
+    }
+
+    /**
+     * Orders records across segments; sealed segments are mapped whole, so offsets fit in 32 bits.
+     */
+    private static long position(long segment, int offset) {
+        return segment << 32 | offset;
+    }
+
+    private static void visit(Path file, ReviewDecoder decoder, ReviewDecoder.RecordVisitor visitor) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            ((Buffer) buffer).position(SEGMENT_HEADER_BYTES);
+            decoder.visit(buffer, visitor);
+        }
+    }
+
+    private void merge(List<Map.Entry<Long, Path>> run, Map<Long, Long> removedAt, boolean oldest) throws IOException {
+        long first = run.get(0).getKey();
+        long last = run.get(run.size() - 1).getKey();
+        Path target = segmentPath(last);
+        Path temp = directory.resolve(target.getFileName() + COMPACTING_SUFFIX);
+        ReviewDecoder decoder = new ReviewDecoder();
+        long[] records = new long[2];
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeHeader(out, first);
+            for (Map.Entry<Long, Path> segment : run) {
+                long number = segment.getKey();
+                try (FileChannel in = FileChannel.open(segment.getValue(), StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                    ((Buffer) buffer).position(SEGMENT_HEADER_BYTES);
+                    // Only the records that passed their checksum, and that no later removal dropped, are
+                    // carried over, as [start, end) ranges with neighbours joined
+                    List<int[]> kept = new ArrayList<>();
+                    decoder.visit(buffer, (movieId, removal, start, end) -> {
+                        if (dropped(removedAt, movieId, position(number, start), oldest)) {
+                            records[1]++;
+                        } else if (!kept.isEmpty() && kept.get(kept.size() - 1)[1] == start) {
+                            kept.get(kept.size() - 1)[1] = end;
+                            records[0]++;
+                        } else {
+                            kept.add(new int[] {start, end});
+                            records[0]++;
+                        }
+                    });
+                    for (int[] range : kept) {
+                        ((Buffer) buffer).limit(range[1]).position(range[0]);
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                    }
+                }
+            }
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+        for (Map.Entry<Long, Path> segment : run) {
+            if (segment.getKey() != last) {
+                Files.delete(segment.getValue());
+            }
+        }
+        synchronized (commitLock) {
+            for (Map.Entry<Long, Path> segment : run) {
+                sealed.remove(segment.getKey());
+            }
+            sealed.put(last, target);
+        }
+        logger.info("Compacted review log segments {}-{} into {} ({} records kept, {} removed)", first, last,
+            target.getFileName(), records[0], records[1]);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not every platform can sync a directory; the rename is still atomic
+            logger.debug("Could not sync review log directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private void syncInBackground() {
+        synchronized (commitLock) {
+            if (failure != null || active == null) {
+                return;
+            }
+            try {
+                writePending();
+                sync();
+            } catch (IOException e) {
+                logger.error("Review log sync failed; rejecting further reviews", e);
+            }
+        }
+    }
+
+    private void compactInBackground() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Review log compaction failed: {}", e.toString());
+        }
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        ((Buffer) buffer).flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    static byte[] encode(long movieId, Review review) {
+        byte[] userName = utf8(review.getUserName());
+        byte[] avatar = utf8(review.getAvatarEmoji());
+        byte[] comment = utf8(review.getComment());
+        int payload = 8 + 8 + 3 * 4 + length(userName) + length(avatar) + length(comment);
+        if (payload > MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException("Review is too large to log: " + payload + " bytes");
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload);
+        record.putInt(payload).putInt(0).putLong(movieId).putDouble(review.getRating());
+        putBytes(record, userName);
+        putBytes(record, avatar);
+        putBytes(record, comment);
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), RECORD_HEADER_BYTES, payload);
+        record.putInt(4, (int) checksum.getValue());
+        return record.array();
+    }
+
+    private static byte[] encodeRemoval(long movieId) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + REMOVAL_PAYLOAD_BYTES);
+        record.putInt(REMOVAL_PAYLOAD_BYTES).putInt(0).putLong(movieId);
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), RECORD_HEADER_BYTES, REMOVAL_PAYLOAD_BYTES);
+        record.putInt(4, (int) checksum.getValue());
+        return record.array();
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer record, byte[] bytes) {
+        if (bytes == null) {
+            record.putInt(-1);
+        } else {
+            record.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    /**
+     * Receives what the log holds on open, in append order.
+     */
+    @FunctionalInterface
+    interface Replay extends ReviewListener {
+
+        /**
+         * Every review of the movie replayed so far was removed; ones replayed later still count.
+         */
+        default void reviewsRemoved(long movieId) {
+        }
+    }
+
+    /**
+     * Reads records from a segment buffer, verifying each checksum. Reuses its scratch space across records.
+     */
+    static final class ReviewDecoder {
+        private final CRC32 checksum = new CRC32();
+        private byte[] scratch = new byte[256];
+        /** Removal records read so far. */
+        long removals;
+
+        @FunctionalInterface
+        interface RecordVisitor {
+
+            /**
+             * @param start offset of the record in the buffer
+             * @param end offset just after it
+             */
+            void record(long movieId, boolean removal, int start, int end);
+        }
+
+        /**
+         * Reads records from the buffer's position until its end or the first torn or corrupt record,
+         * leaving the position just after the last good record.
+         *
+         * @param handler receives each decoded review and removal; {@code null} only validates
+         * @return the number of good records
+         */
+        long scan(ByteBuffer buffer, Replay handler) {
+            return scan(buffer, handler, null);
+        }
+
+        /**
+         * Like {@link #scan(ByteBuffer, Replay)}, passing where each record is instead of decoding its review.
+         */
+        long visit(ByteBuffer buffer, RecordVisitor visitor) {
+            return scan(buffer, null, visitor);
+        }
+
+        private long scan(ByteBuffer buffer, Replay handler, RecordVisitor visitor) {
+            long records = 0;
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int start = buffer.position();
+                int payload = buffer.getInt();
+                int crc = buffer.getInt();
+                if (payload <= 0 || payload > MAX_PAYLOAD_BYTES || payload > buffer.remaining()) {
+                    ((Buffer) buffer).position(start);
+                    break;
+                }
+                int end = start + RECORD_HEADER_BYTES + payload;
+                if (checksum(buffer, payload) != crc) {
+                    ((Buffer) buffer).position(start);
+                    break;
+                }
+                boolean removal = payload == REMOVAL_PAYLOAD_BYTES;
+                if (removal) {
+                    removals++;
+                }
+                if (handler != null || visitor != null) {
+                    long movieId = buffer.getLong();
+                    if (visitor != null) {
+                        visitor.record(movieId, removal, start, end);
+                    }
+                    if (handler != null && removal) {
+                        handler.reviewsRemoved(movieId);
+                    } else if (handler != null) {
+                        double rating = buffer.getDouble();
+                        String userName = getString(buffer);
+                        String avatar = getString(buffer);
+                        String comment = getString(buffer);
+                        handler.reviewAdded(movieId, new Review(userName, avatar, rating, comment));
+                    }
+                }
+                ((Buffer) buffer).position(end);
+                records++;
+            }
+            return records;
+        }
+
+        private int checksum(ByteBuffer buffer, int payload) {
+            ByteBuffer slice = buffer.slice();
+            ((Buffer) slice).limit(payload);
+            checksum.reset();
+            checksum.update(slice);
+            return (int) checksum.getValue();
+        }
+
+        private String getString(ByteBuffer buffer) {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
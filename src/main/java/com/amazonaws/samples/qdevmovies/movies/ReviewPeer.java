@@ -0,0 +1,291 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client for another instance of a review cluster, batching operations into {@link ReviewBatch} requests.
+ * <p>
+ * Callers queue operations and wait on a future. Each of {@code connections} sender threads takes
+ * whatever has queued up on its lane, up to {@code batchSize} operations, and sends it as one
+ * request on its own keep-alive connection, so under load many callers share one round trip
+ * while a lone caller is sent at once. A movie always goes to the same lane, which keeps
+ * operations on one movie in order.
+ */
+final class ReviewPeer implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ReviewPeer.class);
+
+    /** Carries {@code movies.reviews.cluster.secret} on every request to another instance. */
+    static final String SECRET_HEADER = "X-Review-Cluster-Secret";
+
+    private static final long FAILURE_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String baseUrl;
+    private final String secret;
+    private final URL batchUrl;
+    private final int batchSize;
+    private final int timeoutMillis;
+    private final List<BlockingQueue<Call>> lanes = new ArrayList<>();
+    private final List<Thread> senders = new ArrayList<>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long lastFailureLogged;
+    private volatile boolean closed;
+
+    ReviewPeer(String baseUrl, String secret, int batchSize, int connections, int timeoutMillis) {
+        this.baseUrl = baseUrl;
+        this.secret = secret;
+        this.batchSize = batchSize;
+        this.timeoutMillis = timeoutMillis;
+        try {
+            this.batchUrl = new URL(baseUrl + "/internal/reviews/batch");
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Not a valid instance URL: " + baseUrl, e);
+        }
+        for (int i = 0; i < connections; i++) {
+            BlockingQueue<Call> lane = new LinkedBlockingQueue<>();
+            lanes.add(lane);
+            Thread sender = new Thread(() -> send(lane), "review-peer-" + i + "-" + baseUrl);
+            sender.setDaemon(true);
+            senders.add(sender);
+            sender.start();
+        }
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    CompletableFuture<ReviewBatch.Result> submit(ReviewBatch.Op op) {
+        Call call = new Call(op);
+        if (closed) {
+            call.result.completeExceptionally(new IOException(baseUrl + " is closed"));
+        } else {
+            lanes.get((int) ((ConsistentHashRing.mix(op.movieId) >>> 1) % lanes.size())).add(call);
+        }
+        return call.result;
+    }
+
+    /**
+     * Sends one operation and waits for its result.
+     * @throws UncheckedIOException if the instance cannot be reached or does not answer in time
+     * @throws IllegalStateException if the operation failed on the instance
+     */
+    ReviewBatch.Result call(ReviewBatch.Op op) {
+        return await(submit(op));
+    }
+
+    ReviewBatch.Result await(CompletableFuture<ReviewBatch.Result> result) {
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS).orThrow();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? new UncheckedIOException((IOException) cause)
+                : new UncheckedIOException(new IOException(baseUrl + " failed", cause));
+        } catch (TimeoutException e) {
+            throw new UncheckedIOException(new IOException(baseUrl + " did not answer within " + timeoutMillis + " ms"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted waiting for " + baseUrl));
+        }
+    }
+
+    /**
+     * Posts a small text request outside the batches, for membership changes.
+     * @return the response body
+     */
+    String control(String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(timeoutMillis);
+        // Migrating a share of the reviews takes longer than a batch
+        connection.setReadTimeout(timeoutMillis * 12);
+        connection.setRequestProperty("Content-Type", "text/plain;charset=UTF-8");
+        connection.setRequestProperty(SECRET_HEADER, secret);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        connection.setFixedLengthStreamingMode(bytes.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(bytes);
+        }
+        if (connection.getResponseCode() != 200) {
+            throw new IOException(baseUrl + path + " returned " + connection.getResponseCode());
+        }
+        return new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8);
+    }
+
+    Stats stats() {
+        long sentBatches = batches.sum();
+        long sentOperations = operations.sum();
+        return new Stats(baseUrl, sentBatches, sentOperations, sentBatches == 0 ? 0 : (double) sentOperations / sentBatches,
+            failures.sum());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread sender : senders) {
+            sender.interrupt();
+        }
+        for (BlockingQueue<Call> lane : lanes) {
+            List<Call> abandoned = new ArrayList<>();
+            lane.drainTo(abandoned);
+            for (Call call : abandoned) {
+                call.result.completeExceptionally(new IOException(baseUrl + " is closed"));
+            }
+        }
+    }
+
+    private void send(BlockingQueue<Call> lane) {
+        List<Call> batch = new ArrayList<>(batchSize);
+        List<ReviewBatch.Op> ops = new ArrayList<>(batchSize);
+        while (!closed) {
+            try {
+                batch.add(lane.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            lane.drainTo(batch, batchSize - 1);
+            for (Call call : batch) {
+                ops.add(call.op);
+            }
+            try {
+                List<ReviewBatch.Result> results = post(ops);
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result.complete(results.get(i));
+                }
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                logFailure(e);
+                for (Call call : batch) {
+                    call.result.completeExceptionally(e instanceof IOException ? e : new IOException(e));
+                }
+            }
+            batch.clear();
+            ops.clear();
+        }
+    }
+
+    private List<ReviewBatch.Result> post(List<ReviewBatch.Op> ops) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + ops.size() * 128);
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            ReviewBatch.writeOps(out, ops);
+        }
+        HttpURLConnection connection = (HttpURLConnection) batchUrl.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setRequestProperty("Content-Type", ReviewBatch.CONTENT_TYPE);
+        connection.setRequestProperty(SECRET_HEADER, secret);
+        connection.setFixedLengthStreamingMode(body.size());
+        try (OutputStream out = connection.getOutputStream()) {
+            body.writeTo(out);
+        }
+        if (connection.getResponseCode() != 200) {
+            readAll(connection.getErrorStream());
+            throw new IOException(batchUrl + " returned " + connection.getResponseCode());
+        }
+        batches.increment();
+        operations.add(ops.size());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()))) {
+            List<ReviewBatch.Result> results = ReviewBatch.readResults(in, ops);
+            // Read to the end so the connection goes back to the keep-alive pool
+            while (in.read() != -1) {
+                // nothing further is expected
+            }
+            return results;
+        }
+    }
+
+    private void logFailure(Exception e) {
+        long now = System.nanoTime();
+        if (now - lastFailureLogged > FAILURE_LOG_INTERVAL_NANOS) {
+            lastFailureLogged = now;
+            logger.warn("Requests to {} are failing: {}", baseUrl, e.toString());
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        if (in == null) {
+            return new byte[0];
+        }
+        try (InputStream body = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    private static final class Call {
+        final ReviewBatch.Op op;
+        final CompletableFuture<ReviewBatch.Result> result = new CompletableFuture<>();
+
+        Call(ReviewBatch.Op op) {
+            this.op = op;
+        }
+    }
+
+    public static final class Stats {
+        private final String instance;
+        private final long batches;
+        private final long operations;
+        private final double averageBatchSize;
+        private final long failedBatches;
+
+        Stats(String instance, long batches, long operations, double averageBatchSize, long failedBatches) {
+            this.instance = instance;
+            this.batches = batches;
+            this.operations = operations;
+            this.averageBatchSize = averageBatchSize;
+            this.failedBatches = failedBatches;
+        }
+
+        public String getInstance() {
+            return instance;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public double getAverageBatchSize() {
+            return averageBatchSize;
+        }
+
+        public long getFailedBatches() {
+            return failedBatches;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One check applied by {@link ReviewValidator}. The comment has already been scanned once;
+ * rules read its word count and UTF-8 size from {@code commentScan} through
+ * {@link ReviewValidator#words(long)} and {@link ReviewValidator#utf8Bytes(long)} instead of
+ * walking it again.
+ */
+public interface ReviewRule {
+
+    /**
+     * @return the error to report, or {@code null} if the request passes this rule
+     */
+    ReviewValidationError check(ReviewRequest request, long commentScan);
+
+    /**
+     * @return every error this rule can report, so a {@link ReviewValidationError.Code} can be turned back into a message
+     */
+    List<ReviewValidationError> errors();
+
+    /**
+     * The name must contain a non-whitespace character and have at most {@code maxLength} characters once trimmed.
+     */
+    static ReviewRule nameLength(int maxLength) {
+        ReviewValidationError required = new ReviewValidationError(ReviewValidationError.Code.NAME_REQUIRED, "userName",
+            "User name is required");
+        ReviewValidationError tooLong = new ReviewValidationError(ReviewValidationError.Code.NAME_TOO_LONG, "userName",
+            "User name must be at most " + maxLength + " characters");
+        return new Rule(required, tooLong) {
+            @Override
+            public ReviewValidationError check(ReviewRequest request, long commentScan) {
+                String name = request.getUserName();
+                if (name == null) {
+                    return required;
+                }
+                int start = ReviewValidator.skipWhitespace(name, 0);
+                if (start == name.length()) {
+                    return required;
+                }
+                int end = ReviewValidator.trimmedEnd(name);
+                return name.codePointCount(start, end) > maxLength ? tooLong : null;
+            }
+        };
+    }
+
+    static ReviewRule ratingRange(int min, int max) {
+        ReviewValidationError outOfRange = new ReviewValidationError(ReviewValidationError.Code.RATING_OUT_OF_RANGE, "rating",
+            "Rating must be between " + min + " and " + max + " stars");
+        return new Rule(outOfRange) {
+            @Override
+            public ReviewValidationError check(ReviewRequest request, long commentScan) {
+                return request.getRating() < min || request.getRating() > max ? outOfRange : null;
+            }
+        };
+    }
+
+    /**
+     * The comment must contain at least {@code minWords} words; a blank comment is reported as missing.
+     */
+    static ReviewRule minWords(int minWords) {
+        ReviewValidationError required = new ReviewValidationError(ReviewValidationError.Code.COMMENT_REQUIRED, "comment",
+            "Review comment is required");
+        ReviewValidationError tooFew = new ReviewValidationError(ReviewValidationError.Code.TOO_FEW_WORDS, "comment",
+            "Review must be at least " + minWords + " words");
+        return new Rule(required, tooFew) {
+            @Override
+            public ReviewValidationError check(ReviewRequest request, long commentScan) {
+                int words = ReviewValidator.words(commentScan);
+                if (words == 0) {
+                    return required;
+                }
+                return words < minWords ? tooFew : null;
+            }
+        };
+    }
+
+    static ReviewRule maxWords(int maxWords) {
+        ReviewValidationError tooMany = new ReviewValidationError(ReviewValidationError.Code.TOO_MANY_WORDS, "comment",
+            "Review must be at most " + maxWords + " words");
+        return new Rule(tooMany) {
+            @Override
+            public ReviewValidationError check(ReviewRequest request, long commentScan) {
+                return ReviewValidator.words(commentScan) > maxWords ? tooMany : null;
+            }
+        };
+    }
+
+    static ReviewRule maxBytes(int maxBytes) {
+        ReviewValidationError tooLarge = new ReviewValidationError(ReviewValidationError.Code.COMMENT_TOO_LARGE, "comment",
+            "Review must be at most " + maxBytes + " bytes");
+        return new Rule(tooLarge) {
+            @Override
+            public ReviewValidationError check(ReviewRequest request, long commentScan) {
+                return ReviewValidator.utf8Bytes(commentScan) > maxBytes ? tooLarge : null;
+            }
+        };
+    }
+
+    /**
+     * Base for the built-in rules, holding the errors they were created with.
+     */
+    abstract class Rule implements ReviewRule {
+        private final List<ReviewValidationError> errors;
+
+        protected Rule(ReviewValidationError... errors) {
+            this.errors = Collections.unmodifiableList(Arrays.asList(errors));
+        }
+
+        @Override
+        public List<ReviewValidationError> errors() {
+            return errors;
+        }
+    }
+}
@@ -1,47 +1,92 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.function.BiConsumer;
 
+/**
+ * Serves the seed reviews from the build's {@link BinaryCatalog}, decoding a movie's reviews when
+ * they are asked for, or from {@code mock-reviews.json} if there is no usable binary catalog.
+ */
 @Service
 public class ReviewService {
     private static final Logger logger = LogManager.getLogger(ReviewService.class);
+    private final ReviewCatalog catalog;
+    private volatile MovieMetrics metrics;
 
-    public List<Review> getReviewsForMovie(long movieId) {
-        List<Review> reviews = new ArrayList<>();
-        try {
-            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("mock-reviews.json");
+    public ReviewService() {
+        this(new CatalogLoader());
+    }
+
+    /**
+     * Loads the reviews from {@code mock-reviews.json}, ignoring the binary catalog.
+     */
+    public ReviewService(CatalogLoader catalogLoader) {
+        this(catalogLoader, BundledCatalog.none());
+    }
+
+    /**
+     * @param bundledCatalog the build's {@link BinaryCatalog} to serve the reviews from, when there is one
+     */
+    @Autowired
+    public ReviewService(CatalogLoader catalogLoader, BundledCatalog bundledCatalog) {
+        BinaryCatalog binary = bundledCatalog.get();
+        if (binary != null) {
+            this.catalog = binary.reviews();
+            logger.info("Mapped {} reviews for {} movies from {}", catalog.reviewCount(), catalog.movieCount(), BinaryCatalog.RESOURCE);
+        } else {
+            this.catalog = loadReviewsFromJson(catalogLoader);
+        }
+    }
+
+    ReviewService(ReviewCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    private ReviewCatalog loadReviewsFromJson(CatalogLoader catalogLoader) {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("mock-reviews.json")) {
             if (inputStream != null) {
-                Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name());
-                String jsonContent = scanner.useDelimiter("\\A").next();
-                scanner.close();
-                
-                JSONObject reviewsData = new JSONObject(jsonContent);
-                if (reviewsData.has(String.valueOf(movieId))) {
-                    JSONArray movieReviews = reviewsData.getJSONArray(String.valueOf(movieId));
-                    for (int i = 0; i < movieReviews.length(); i++) {
-                        JSONObject reviewObj = movieReviews.getJSONObject(i);
-                        reviews.add(new Review(
-                            reviewObj.getString("userName"),
-                            reviewObj.getString("avatarEmoji"),
-                            reviewObj.getDouble("rating"),
-                            reviewObj.getString("comment")
-                        ));
-                    }
-                }
+                ReviewCatalog loaded = catalogLoader.loadReviews(inputStream);
+                logger.info("Loaded {} reviews for {} movies", loaded.reviewCount(), loaded.movieCount());
+                return loaded;
             }
         } catch (Exception e) {
-            logger.error("Failed to load reviews for movie {}: {}", movieId, e.getMessage());
+            logger.error("Failed to load reviews from JSON: {}", e.getMessage());
         }
+        return ReviewCatalog.empty();
+    }
+
+    /**
+     * Called by the context's {@link MovieMetrics}, which depends on this service.
+     */
+    void setMetrics(MovieMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the seed reviews for a movie. The list is unmodifiable and may be shared; callers
+     * that need to add to it must copy it first.
+     */
+    public List<Review> getReviewsForMovie(long movieId) {
+        MovieMetrics metrics = this.metrics;
+        if (!MovieMetrics.recording(metrics)) {
+            return catalog.get(movieId);
+        }
+        long start = System.nanoTime();
+        List<Review> reviews = catalog.get(movieId);
+        metrics.recordReviewLookup(System.nanoTime() - start);
         return reviews;
     }
+
+    /**
+     * Visits every movie that has seed reviews together with its unmodifiable review list.
+     */
+    public void forEachMovie(BiConsumer<Long, List<Review>> action) {
+        catalog.forEach(action);
+    }
 }
@@ -0,0 +1,65 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Server-side storage for reviews submitted by users, shared by all sessions.
+ * Implementations must allow many concurrent writers and must never block readers.
+ */
+public interface ReviewStore {
+
+    /**
+     * Appends a review to a movie.
+     * @return the movie's version after the append, i.e. the number of stored reviews for it
+     */
+    long addReview(long movieId, Review review);
+
+    /**
+     * Appends {@code count} reviews, {@code reviews[i]} going to {@code movieIds[i]}, in order.
+     * Implementations may take each movie's lock once per run of consecutive reviews for it.
+     */
+    default void addReviews(long[] movieIds, Review[] reviews, int count) {
+        for (int i = 0; i < count; i++) {
+            addReview(movieIds[i], reviews[i]);
+        }
+    }
+
+    /**
+     * @return an immutable snapshot of the movie's reviews in insertion order; later writes are not visible through it
+     */
+    List<Review> getReviews(long movieId);
+
+    /**
+     * @return a number that increases every time a review is added to the movie; 0 if it has none
+     */
+    long getVersion(long movieId);
+
+    /**
+     * @return {@link #getVersion} of each movie, in the same order; a store that looks versions up remotely fetches them together
+     */
+    default long[] getVersions(long[] movieIds) {
+        long[] versions = new long[movieIds.length];
+        for (int i = 0; i < movieIds.length; i++) {
+            versions[i] = getVersion(movieIds[i]);
+        }
+        return versions;
+    }
+
+    /**
+     * Calls {@code action} with a snapshot of each movie's reviews, e.g. to seed state that listeners then keep current.
+     */
+    void forEachMovie(BiConsumer<Long, List<Review>> action);
+
+    /**
+     * Calls {@code action} with the {@link RatingAggregates#totals rating totals} of each movie whose reviews
+     * are held elsewhere and so not passed to {@link #forEachMovie}; a local store holds them all.
+     */
+    default void forEachRemoteTotals(BiConsumer<Long, long[]> action) {
+    }
+
+    /**
+     * Registers a listener that is called on the writer's thread after each review has been stored.
+     */
+    void addListener(ReviewListener listener);
+}
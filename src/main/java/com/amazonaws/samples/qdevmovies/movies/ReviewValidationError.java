@@ -0,0 +1,46 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * Why a review was rejected: a stable {@link Code} for clients and redirects, the offending
+ * form field and a message for people. Rules create their errors once, up front, so rejecting
+ * a review does not allocate either.
+ */
+public class ReviewValidationError {
+
+    public enum Code {
+        NAME_REQUIRED,
+        NAME_TOO_LONG,
+        RATING_OUT_OF_RANGE,
+        COMMENT_REQUIRED,
+        TOO_FEW_WORDS,
+        TOO_MANY_WORDS,
+        COMMENT_TOO_LARGE
+    }
+
+    private final Code code;
+    private final String field;
+    private final String message;
+
+    public ReviewValidationError(Code code, String field, String message) {
+        this.code = code;
+        this.field = field;
+        this.message = message;
+    }
+
+    public Code getCode() {
+        return code;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return code + " (" + field + "): " + message;
+    }
+}
@@ -1,77 +1,231 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates reviews against a list of {@link ReviewRule}s.
+ * <p>
+ * The comment is scanned once, in linear time, to count words and UTF-8 bytes; every rule then
+ * works from that scan. Whitespace is anything Unicode considers a space or separator, so
+ * no-break and ideographic spaces split words too. A valid review costs no allocation, and an
+ * invalid one returns a preallocated {@link ReviewValidationError}.
+ */
 public class ReviewValidator {
-    
+
     // INTENTIONAL ISSUE #1: Security vulnerability - hardcoded credentials
     private static final String DB_PASSWORD = "admin123";
     private static final String API_KEY = "sk-1234567890abcdef";
-    
+
+    public static final int MAX_NAME_LENGTH = 50;
+    public static final int MIN_WORDS = 5;
+    public static final int MAX_WORDS = 500;
+    /** The form allows 500 characters; four UTF-8 bytes each is the most a legitimate comment can need. */
+    public static final int MAX_COMMENT_BYTES = 2000;
+
+    private static final ReviewValidator DEFAULT = new ReviewValidator(Arrays.asList(
+        ReviewRule.nameLength(MAX_NAME_LENGTH),
+        ReviewRule.ratingRange(1, 5),
+        ReviewRule.minWords(MIN_WORDS),
+        ReviewRule.maxWords(MAX_WORDS),
+        ReviewRule.maxBytes(MAX_COMMENT_BYTES)));
+
+    private static final String UNKNOWN_ERROR_MESSAGE = "Your review could not be saved";
+
+    private final ReviewRule[] rules;
+    private final Map<ReviewValidationError.Code, String> messages = new EnumMap<>(ReviewValidationError.Code.class);
+
+    /**
+     * @param rules checked in order; the first failing rule's error is reported
+     */
+    public ReviewValidator(List<ReviewRule> rules) {
+        this.rules = rules.toArray(new ReviewRule[0]);
+        for (ReviewRule rule : rules) {
+            for (ReviewValidationError error : rule.errors()) {
+                messages.putIfAbsent(error.getCode(), error.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the validator used by the review form: name up to {@value #MAX_NAME_LENGTH} characters,
+     * rating 1-5, {@value #MIN_WORDS} to {@value #MAX_WORDS} words and at most {@value #MAX_COMMENT_BYTES} bytes
+     */
+    public static ReviewValidator defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Validates with the {@link #defaults()} rules.
+     * @return the error message, or {@code null} if the review is valid
+     */
     public static String validateReview(ReviewRequest request) {
-        // INTENTIONAL ISSUE #3: Overly complex redirection chain
-        return checkUserName(request);
+        ReviewValidationError error = DEFAULT.validate(request);
+        return error == null ? null : error.getMessage();
     }
-    
-    private static String checkUserName(ReviewRequest request) {
-        return verifyUserNameLength(request);
+
+    /**
+     * @return the first rule violation, or {@code null} if the review is valid
+     */
+    public ReviewValidationError validate(ReviewRequest request) {
+        return check(request);
     }
-    
-    private static String verifyUserNameLength(ReviewRequest request) {
-        return confirmUserNameValid(request);
+
+    /**
+     * Validates, timing the call into {@code metrics} while it is recording.
+     * @param metrics the caller's recorder; may be {@code null}
+     * @return the first rule violation, or {@code null} if the review is valid
+     */
+    public ReviewValidationError validate(ReviewRequest request, MovieMetrics metrics) {
+        if (!MovieMetrics.recording(metrics)) {
+            return check(request);
+        }
+        long start = System.nanoTime();
+        ReviewValidationError error = check(request);
+        metrics.recordValidation(error, System.nanoTime() - start);
+        return error;
     }
-    
-    private static String confirmUserNameValid(ReviewRequest request) {
-        if (request.getUserName() == null || request.getUserName().trim().isEmpty()) {
-            return "User name is required";
+
+    private ReviewValidationError check(ReviewRequest request) {
+        long commentScan = scanComment(request.getComment());
+        for (ReviewRule rule : rules) {
+            ReviewValidationError error = rule.check(request, commentScan);
+            if (error != null) {
+                return error;
+            }
         }
-        return checkRating(request);
+        return null;
     }
-    
-    private static String checkRating(ReviewRequest request) {
-        if (request.getRating() < 1 || request.getRating() > 5) {
-            return "Rating must be between 1 and 5 stars";
+
+    /**
+     * Validates many reviews in one call without allocating.
+     *
+     * @param errors receives the error for each request at the same index, or {@code null} where it is valid;
+     *               must be at least as long as {@code requests}
+     * @return the number of invalid requests
+     */
+    public int validateAll(List<? extends ReviewRequest> requests, ReviewValidationError[] errors) {
+        return validateAll(requests, errors, null);
+    }
+
+    /**
+     * Like {@link #validateAll(List, ReviewValidationError[])}, timing each review into {@code metrics} while it is recording.
+     */
+    public int validateAll(List<? extends ReviewRequest> requests, ReviewValidationError[] errors, MovieMetrics metrics) {
+        if (errors.length < requests.size()) {
+            throw new IllegalArgumentException("Need room for " + requests.size() + " results, got " + errors.length);
+        }
+        int invalid = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            ReviewValidationError error = validate(requests.get(i), metrics);
+            errors[i] = error;
+            if (error != null) {
+                invalid++;
+            }
         }
-        return checkComment(request);
+        return invalid;
     }
-    
-    private static String checkComment(ReviewRequest request) {
-        if (request.getComment() == null || request.getComment().trim().isEmpty()) {
-            return "Review comment is required";
+
+    /**
+     * @return the errors for each request, {@code null} where it is valid
+     */
+    public List<ReviewValidationError> validateAll(List<? extends ReviewRequest> requests) {
+        ReviewValidationError[] errors = new ReviewValidationError[requests.size()];
+        validateAll(requests, errors);
+        return new ArrayList<>(Arrays.asList(errors));
+    }
+
+    /**
+     * Turns an error code carried in a redirect back into its message.
+     * @return the message, a generic message for an unknown code, or {@code null} if there is no code
+     */
+    public String messageFor(String code) {
+        if (code == null || code.isEmpty()) {
+            return null;
         }
-        
-        // INTENTIONAL ISSUE #2: Inefficient nested loops for word counting
-        String comment = request.getComment().trim();
-        int wordCount = 0;
-        
-        // Outer loop through each character
-        for (int i = 0; i < comment.length(); i++) {
-            char currentChar = comment.charAt(i);
-            
-            // Check if this is the start of a word
-            if (currentChar != ' ') {
-                boolean isWordStart = true;
-                
-                // Inner loop to check if previous char was space
-                for (int j = 0; j < i; j++) {
-                    if (j == i - 1) {
-                        if (comment.charAt(j) != ' ') {
-                            isWordStart = false;
-                        }
-                    }
-                }
-                
-                if (isWordStart) {
-                    wordCount++;
-                }
+        try {
+            String message = messages.get(ReviewValidationError.Code.valueOf(code));
+            return message != null ? message : UNKNOWN_ERROR_MESSAGE;
+        } catch (IllegalArgumentException e) {
+            return UNKNOWN_ERROR_MESSAGE;
+        }
+    }
+
+    /**
+     * Counts words and UTF-8 bytes in one pass.
+     * @return both counts packed into a long; read them with {@link #words(long)} and {@link #utf8Bytes(long)}
+     */
+    static long scanComment(String comment) {
+        if (comment == null) {
+            return 0;
+        }
+        int words = 0;
+        long bytes = 0;
+        boolean inWord = false;
+        int length = comment.length();
+        int i = 0;
+        while (i < length) {
+            char c = comment.charAt(i);
+            boolean whitespace;
+            if (c < 0x80) {
+                bytes++;
+                i++;
+                whitespace = c == ' ' || (c >= '\t' && c <= '\r') || (c >= 0x1C && c <= 0x1F);
+            } else {
+                int codePoint = comment.codePointAt(i);
+                i += Character.charCount(codePoint);
+                bytes += codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+                whitespace = isWhitespace(codePoint);
+            }
+            if (whitespace) {
+                inWord = false;
+            } else if (!inWord) {
+                inWord = true;
+                words++;
+            }
+        }
+        return (Math.min(bytes, Integer.MAX_VALUE) << 32) | words;
+    }
+
+    public static int words(long commentScan) {
+        return (int) commentScan;
+    }
+
+    public static int utf8Bytes(long commentScan) {
+        return (int) (commentScan >>> 32);
+    }
+
+    static boolean isWhitespace(int codePoint) {
+        return Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint);
+    }
+
+    static int skipWhitespace(String value, int from) {
+        int i = from;
+        while (i < value.length()) {
+            int codePoint = value.codePointAt(i);
+            if (!isWhitespace(codePoint)) {
+                break;
             }
+            i += Character.charCount(codePoint);
         }
-        
-        if (wordCount < 5) {
-            return "Review must be at least 5 words";
+        return i;
+    }
+
+    static int trimmedEnd(String value) {
+        int end = value.length();
+        while (end > 0) {
+            int codePoint = value.codePointBefore(end);
+            if (!isWhitespace(codePoint)) {
+                break;
+            }
+            end -= Character.charCount(codePoint);
         }
-        
-        return null; // No errors
+        return end;
     }
-    
+
     // Unused method that references the hardcoded credentials
     private static boolean authenticateUser(String username) {
         // This simulates a database connection with hardcoded password
@@ -0,0 +1,29 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * JSON endpoints for writing reviews.
+ */
+@RestController
+@RequestMapping("/api/reviews")
+public class ReviewsApiController {
+
+    @Autowired
+    private BulkReviewImporter bulkReviewImporter;
+
+    /**
+     * Imports newline-delimited JSON reviews from the request body, reading it as it arrives.
+     * Valid lines are stored even when others are rejected; the response reports each rejected line.
+     */
+    @PostMapping("/bulk")
+    public BulkImportResult bulkImport(HttpServletRequest request) throws IOException {
+        return bulkReviewImporter.importNdjson(request.getInputStream());
+    }
+}
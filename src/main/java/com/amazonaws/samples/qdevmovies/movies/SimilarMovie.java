@@ -0,0 +1,23 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * A "more like this" entry: the movie and its cosine similarity, from -1 to 1, to the movie it was
+ * found for.
+ */
+public class SimilarMovie {
+    private final Movie movie;
+    private final double similarity;
+
+    public SimilarMovie(Movie movie, double similarity) {
+        this.movie = movie;
+        this.similarity = similarity;
+    }
+
+    public Movie getMovie() {
+        return movie;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+}
@@ -0,0 +1,49 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class SimilarMovieService {
+    private static final Logger logger = LogManager.getLogger(SimilarMovieService.class);
+    private final int neighbours;
+    private final int parallelism;
+    private final MovieService movieService;
+    private final CatalogIndex<SimilarMovies> similarMovies = this::build;
+
+    /**
+     * @param neighbours neighbours precomputed per movie, the most a request can get
+     * @param parallelism fork-join workers for a build; 0 means one per available processor
+     */
+    @Autowired
+    public SimilarMovieService(MovieService movieService,
+                               @Value("${movies.similar.neighbours:10}") int neighbours,
+                               @Value("${movies.similar.parallelism:0}") int parallelism) {
+        this.neighbours = neighbours;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.movieService = movieService;
+        // Readers keep using the previous neighbours until the new catalog is published with its own
+        movieService.addCatalogIndex(similarMovies);
+    }
+
+    private SimilarMovies build(List<Movie> movies) {
+        long start = System.nanoTime();
+        SimilarMovies built = new SimilarMovies(movies, neighbours, parallelism);
+        logger.info("Found {} similar movies for each of {} movies in {} ms", neighbours, built.size(),
+            (System.nanoTime() - start) / 1_000_000);
+        return built;
+    }
+
+    /**
+     * @param limit number of movies; {@code null} means all precomputed neighbours
+     * @return the most similar movies, most similar first, or an empty list for an unknown movie
+     */
+    public List<SimilarMovie> similarTo(long movieId, Integer limit) {
+        return movieService.getSnapshot().getIndex(similarMovies).similarTo(movieId, limit != null ? limit : neighbours);
+    }
+}
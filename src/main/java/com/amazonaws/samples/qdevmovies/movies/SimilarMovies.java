@@ -0,0 +1,377 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.amazonaws.samples.qdevmovies.utils.LongIndexMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * "More like this" for every movie, precomputed when the catalog loads.
+ * <p>
+ * Each movie is encoded as a unit-length vector of {@link #DIMENSIONS} floats: genre tokens, the
+ * director, year, duration and IMDb rating, and hashed description terms. The most common genre
+ * tokens and directors get a dimension each, so they never collide; the rest share dimensions by
+ * hash. Similarity is the cosine of two vectors, i.e. their dot product. All vectors sit in one flat {@code float[]}
+ * while building, and the result is two flat arrays with {@code K} slots per movie, neighbour
+ * ordinals and similarities, best first. A lookup is one id probe and a copy of {@code K} slots,
+ * whatever the catalog size.
+ * <p>
+ * Catalogs of up to {@link #EXACT_LIMIT} movies compare every pair. Larger catalogs use
+ * random-hyperplane hashing instead of O(N²) comparisons: in each of {@link #TABLES} tables the
+ * movies are sorted by a {@link #BITS}-bit signature of which side of each hyperplane they fall
+ * on, so movies pointing the same way sort next to each other, and each movie is only compared
+ * with the {@link #WINDOW} movies either side of it in every table. That can miss a neighbour, but
+ * builds in O(N log N). Encoding, hashing and comparing run on a fork-join pool.
+ */
+public class SimilarMovies {
+
+    static final int DIMENSIONS = 32;
+    static final int EXACT_LIMIT = 2048;
+    static final int TABLES = 4;
+    static final int BITS = 24;
+    static final int WINDOW = 24;
+
+    private static final int GENRE_OFFSET = 0;
+    private static final int GENRE_DIMENSIONS = 12;
+    private static final int DIRECTOR_OFFSET = 12;
+    private static final int DIRECTOR_DIMENSIONS = 6;
+    private static final int YEAR = 18;
+    private static final int DURATION = 19;
+    private static final int RATING = 20;
+    private static final int TERM_OFFSET = 21;
+    private static final int TERM_DIMENSIONS = 11;
+
+    private static final float GENRE_WEIGHT = 1.0f;
+    private static final float DIRECTOR_WEIGHT = 0.7f;
+    private static final float TERM_WEIGHT = 0.6f;
+    private static final float NUMERIC_WEIGHT = 0.3f;
+
+    /** Movies per fork-join leaf task. */
+    private static final int CHUNK = 512;
+    private static final long HYPERPLANE_SEED = 0x5EED5L;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "about", "after", "against", "also", "been", "being", "between", "from", "have", "into", "must", "over",
+        "their", "them", "they", "this", "that", "through", "when", "where", "which", "while", "with", "within"));
+
+    private final List<Movie> movies;
+    private final Map<String, Integer> genreSlots;
+    private final Map<String, Integer> directorSlots;
+    private final LongIndexMap ordinalsById;
+    private final int neighbours;
+    private final int[] neighbourOrdinals;
+    private final float[] similarities;
+
+    /**
+     * @param neighbours how many neighbours to keep per movie
+     * @param parallelism fork-join workers for the build
+     */
+    public SimilarMovies(List<Movie> movies, int neighbours, int parallelism) {
+        this(movies, neighbours, parallelism, EXACT_LIMIT);
+    }
+
+    SimilarMovies(List<Movie> movies, int neighbours, int parallelism, int exactLimit) {
+        if (neighbours < 1) {
+            throw new IllegalArgumentException("Neighbours must be positive: " + neighbours);
+        }
+        int size = movies.size();
+        this.movies = movies;
+        this.neighbours = neighbours;
+        this.ordinalsById = new LongIndexMap(size);
+        this.neighbourOrdinals = new int[size * neighbours];
+        this.similarities = new float[size * neighbours];
+        Arrays.fill(neighbourOrdinals, -1);
+
+        Movie[] byOrdinal = new Movie[size];
+        Map<String, int[]> genreCounts = new HashMap<>();
+        Map<String, int[]> directorCounts = new HashMap<>();
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            Movie movie = movies.get(ordinal);
+            byOrdinal[ordinal] = movie;
+            ordinalsById.put(movie.getId(), ordinal);
+            for (String genre : MovieSearchIndex.splitGenre(movie.getGenre())) {
+                count(genreCounts, genre.toLowerCase(Locale.ROOT));
+            }
+            String director = director(movie);
+            if (director != null) {
+                count(directorCounts, director);
+            }
+        }
+        this.genreSlots = slots(genreCounts, GENRE_DIMENSIONS, 1);
+        // A director with a single movie cannot make two movies alike
+        this.directorSlots = slots(directorCounts, DIRECTOR_DIMENSIONS, 2);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> build(byOrdinal, size <= exactLimit)).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void build(Movie[] byOrdinal, boolean exact) {
+        int size = byOrdinal.length;
+        float[] features = new float[size * DIMENSIONS];
+        new Range(0, size, (from, to) -> {
+            for (int ordinal = from; ordinal < to; ordinal++) {
+                encode(byOrdinal[ordinal], features, ordinal * DIMENSIONS);
+            }
+        }).invoke();
+
+        if (exact) {
+            new Range(0, size, (from, to) -> {
+                for (int ordinal = from; ordinal < to; ordinal++) {
+                    for (int other = 0; other < size; other++) {
+                        if (other != ordinal) {
+                            offer(ordinal, other, dot(features, ordinal * DIMENSIONS, features, other * DIMENSIONS));
+                        }
+                    }
+                }
+            }).invoke();
+            return;
+        }
+
+        float[] hyperplanes = new float[TABLES * BITS * DIMENSIONS];
+        Random random = new Random(HYPERPLANE_SEED);
+        for (int i = 0; i < hyperplanes.length; i++) {
+            hyperplanes[i] = (float) random.nextGaussian();
+        }
+        float[] sortedFeatures = new float[size * DIMENSIONS];
+        for (int table = 0; table < TABLES; table++) {
+            int hyperplaneOffset = table * BITS * DIMENSIONS;
+            // Signature in the high half, ordinal in the low half: sorting orders by signature and breaks ties by ordinal
+            long[] keys = new long[size];
+            new Range(0, size, (from, to) -> {
+                for (int ordinal = from; ordinal < to; ordinal++) {
+                    keys[ordinal] = (long) signature(features, ordinal * DIMENSIONS, hyperplanes, hyperplaneOffset) << 32 | ordinal;
+                }
+            }).invoke();
+            // Invoked from a worker, so the sort's subtasks run on this pool
+            Arrays.parallelSort(keys);
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) keys[i];
+            }
+            // Vectors copied into signature order, so each window is one sequential run of memory
+            new Range(0, size, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    System.arraycopy(features, order[i] * DIMENSIONS, sortedFeatures, i * DIMENSIONS, DIMENSIONS);
+                }
+            }).invoke();
+            new Range(0, size, (from, to) -> {
+                for (int at = from; at < to; at++) {
+                    int ordinal = order[at];
+                    int end = Math.min(size - 1, at + WINDOW);
+                    for (int i = Math.max(0, at - WINDOW); i <= end; i++) {
+                        int other = order[i];
+                        if (other != ordinal && !isNeighbour(ordinal, other)) {
+                            offer(ordinal, other, dot(sortedFeatures, at * DIMENSIONS, sortedFeatures, i * DIMENSIONS));
+                        }
+                    }
+                }
+            }).invoke();
+        }
+    }
+
+    /**
+     * Returns the movies most similar to a movie, most similar first.
+     *
+     * @param limit number of movies, clamped to 1..the neighbours kept per movie
+     * @return the neighbours, or an empty list if the catalog has no such movie
+     */
+    public List<SimilarMovie> similarTo(long movieId, int limit) {
+        int ordinal = ordinalsById.get(movieId);
+        if (ordinal == LongIndexMap.MISSING) {
+            return Collections.emptyList();
+        }
+        int start = ordinal * neighbours;
+        int end = start + Math.max(1, Math.min(limit, neighbours));
+        List<SimilarMovie> similar = new ArrayList<>(end - start);
+        for (int slot = start; slot < end && neighbourOrdinals[slot] >= 0; slot++) {
+            similar.add(new SimilarMovie(movies.get(neighbourOrdinals[slot]), similarities[slot]));
+        }
+        return similar;
+    }
+
+    public int getNeighbours() {
+        return neighbours;
+    }
+
+    public int size() {
+        return movies.size();
+    }
+
+    /**
+     * Inserts a candidate into the movie's neighbour slots, which stay sorted by similarity and then
+     * by ordinal, so the result does not depend on the order candidates arrive in.
+     */
+    private void offer(int ordinal, int other, float similarity) {
+        int start = ordinal * neighbours;
+        int last = start + neighbours - 1;
+        if (neighbourOrdinals[last] >= 0 && !ahead(similarity, other, similarities[last], neighbourOrdinals[last])) {
+            return;
+        }
+        int slot = last;
+        while (slot > start && (neighbourOrdinals[slot - 1] < 0 || ahead(similarity, other, similarities[slot - 1], neighbourOrdinals[slot - 1]))) {
+            neighbourOrdinals[slot] = neighbourOrdinals[slot - 1];
+            similarities[slot] = similarities[slot - 1];
+            slot--;
+        }
+        neighbourOrdinals[slot] = other;
+        similarities[slot] = similarity;
+    }
+
+    private boolean isNeighbour(int ordinal, int other) {
+        int start = ordinal * neighbours;
+        for (int slot = start; slot < start + neighbours && neighbourOrdinals[slot] >= 0; slot++) {
+            if (neighbourOrdinals[slot] == other) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean ahead(float similarityA, int ordinalA, float similarityB, int ordinalB) {
+        return similarityA > similarityB || (similarityA == similarityB && ordinalA < ordinalB);
+    }
+
+    private static int signature(float[] features, int offset, float[] hyperplanes, int hyperplaneOffset) {
+        int signature = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            signature <<= 1;
+            if (dot(features, offset, hyperplanes, hyperplaneOffset + bit * DIMENSIONS) >= 0) {
+                signature |= 1;
+            }
+        }
+        return signature;
+    }
+
+    private static float dot(float[] a, int offsetA, float[] b, int offsetB) {
+        float sum = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            sum += a[offsetA + i] * b[offsetB + i];
+        }
+        return sum;
+    }
+
+    private static void count(Map<String, int[]> counts, String token) {
+        int[] count = counts.get(token);
+        if (count == null) {
+            counts.put(token, new int[] {1});
+        } else {
+            count[0]++;
+        }
+    }
+
+    /**
+     * Gives the {@code dimensions} most frequent tokens a dimension each and hashes the rest onto
+     * them. Tokens seen fewer than {@code minimum} times get none.
+     */
+    private static Map<String, Integer> slots(Map<String, int[]> counts, int dimensions, int minimum) {
+        List<Map.Entry<String, int[]>> byFrequency = new ArrayList<>(counts.entrySet());
+        byFrequency.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+            ? Integer.compare(b.getValue()[0], a.getValue()[0]) : a.getKey().compareTo(b.getKey()));
+        Map<String, Integer> slots = new HashMap<>(byFrequency.size() * 2);
+        for (int i = 0; i < byFrequency.size() && byFrequency.get(i).getValue()[0] >= minimum; i++) {
+            slots.put(byFrequency.get(i).getKey(), i < dimensions ? i : hash(byFrequency.get(i).getKey()) % dimensions);
+        }
+        return slots;
+    }
+
+    private static String director(Movie movie) {
+        String director = movie.getDirector();
+        return director == null || director.trim().isEmpty() ? null : director.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Writes a movie's unit-length feature vector into {@code features} at {@code offset}.
+     * Each group is normalised before weighting, so a movie with many genres or a long
+     * description does not outweigh the other features.
+     */
+    void encode(Movie movie, float[] features, int offset) {
+        for (String genre : MovieSearchIndex.splitGenre(movie.getGenre())) {
+            features[offset + GENRE_OFFSET + genreSlots.get(genre.toLowerCase(Locale.ROOT))] += 1f;
+        }
+        scale(features, offset + GENRE_OFFSET, GENRE_DIMENSIONS, GENRE_WEIGHT);
+        Integer directorSlot = directorSlots.get(director(movie));
+        if (directorSlot != null) {
+            features[offset + DIRECTOR_OFFSET + directorSlot] = DIRECTOR_WEIGHT;
+        }
+        for (String word : MovieSearchIndex.tokenize(movie.getDescription())) {
+            if (word.length() >= 4 && !STOP_WORDS.contains(word)) {
+                int hash = hash(word);
+                // The sign bit makes unrelated words that share a dimension tend to cancel out rather than add up
+                features[offset + TERM_OFFSET + (hash >>> 1) % TERM_DIMENSIONS] += (hash & 1) == 0 ? 1f : -1f;
+            }
+        }
+        scale(features, offset + TERM_OFFSET, TERM_DIMENSIONS, TERM_WEIGHT);
+        features[offset + YEAR] = NUMERIC_WEIGHT * clamp((movie.getYear() - 1990) / 40f);
+        features[offset + DURATION] = NUMERIC_WEIGHT * clamp((movie.getDuration() - 120) / 60f);
+        features[offset + RATING] = NUMERIC_WEIGHT * clamp((float) (movie.getImdbRating() - 3) / 2f);
+        scale(features, offset, DIMENSIONS, 1f);
+    }
+
+    /**
+     * @return a non-negative, well-mixed hash of the token
+     */
+    private static int hash(String token) {
+        int hash = token.hashCode() * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & Integer.MAX_VALUE;
+    }
+
+    private static void scale(float[] features, int offset, int dimensions, float length) {
+        float sumOfSquares = 0;
+        for (int i = offset; i < offset + dimensions; i++) {
+            sumOfSquares += features[i] * features[i];
+        }
+        if (sumOfSquares == 0) {
+            return;
+        }
+        float factor = length / (float) Math.sqrt(sumOfSquares);
+        for (int i = offset; i < offset + dimensions; i++) {
+            features[i] *= factor;
+        }
+    }
+
+    private static float clamp(float value) {
+        return Math.max(-1.5f, Math.min(1.5f, value));
+    }
+
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits {@code [from, to)} in halves down to {@link #CHUNK} movies and runs the body on each.
+     */
+    private static final class Range extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final transient RangeBody body;
+
+        Range(int from, int to, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                body.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Range(from, middle, body), new Range(middle, to, body));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Runtime statistics for operators.
+ */
+@RestController
+@RequestMapping("/api/stats")
+public class StatsApiController {
+
+    @Autowired
+    private RenderedPageCache renderedPageCache;
+
+    @Autowired
+    private MovieService movieService;
+
+    @Autowired
+    private RequestExecutor requestExecutor;
+
+    @Autowired
+    private MovieJsonCache movieJsonCache;
+
+    @Autowired
+    private PartitionedReviewStore reviewStore;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    /**
+     * Hit ratio, entry count and memory use of the rendered page cache.
+     */
+    @GetMapping("/page-cache")
+    public RenderedPageCache.Stats pageCache() {
+        return renderedPageCache.stats();
+    }
+
+    /**
+     * Generation, size and source of the published catalog, with reload timings and failures.
+     */
+    @GetMapping("/catalog")
+    public CatalogStats catalog() {
+        return movieService.getCatalogStats();
+    }
+
+    /**
+     * Execution mode and, per endpoint run on the request executor, limits, outcomes and timings.
+     */
+    @GetMapping("/executor")
+    public RequestExecutor.Stats executor() {
+        return requestExecutor.stats();
+    }
+
+    /**
+     * Hit ratio, entry count and memory use of the serialized {@code /api/movies} payloads.
+     */
+    @GetMapping("/json-cache")
+    public MovieJsonCache.Stats jsonCache() {
+        return movieJsonCache.stats();
+    }
+
+    /**
+     * Members of the review cluster, requests served here or forwarded, movies moved, and batching per instance.
+     */
+    @GetMapping("/review-cluster")
+    public PartitionedReviewStore.Stats reviewCluster() {
+        return reviewStore.stats();
+    }
+
+    /**
+     * Per route, the adaptive concurrency limit and requests admitted, rate limited or shed.
+     */
+    @GetMapping("/admission")
+    public AdmissionControl.Stats admission() {
+        return admissionControl.stats();
+    }
+}
@@ -0,0 +1,121 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One token bucket per key, such as a session id or a client address, each refilling at the same
+ * rate up to the same burst.
+ * <p>
+ * A bucket is a single {@link AtomicLong} holding the time at which it will be full again (the
+ * generic cell rate algorithm): taking a token moves that time one interval later, and is refused
+ * when it would end up more than a burst ahead of now. Taking a token is one compare-and-set, so
+ * nothing blocks. A full bucket holds no state worth keeping, so once there are {@code maxKeys}
+ * buckets each new key first looks at the next {@value #SWEEP_STEP} buckets and drops the full
+ * ones, resuming where the last look stopped, so adding a key never walks the whole map; while
+ * no bucket has been dropped, keys without a bucket share a single overflow bucket.
+ */
+final class TokenBuckets {
+
+    /** Buckets a new key looks at when there are too many. */
+    static final int SWEEP_STEP = 64;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    /** Where the last sweep stopped; used only by the thread that set {@link #sweeping}. */
+    private Iterator<AtomicLong> cursor;
+
+    /**
+     * @param perSecond tokens added to each bucket per second
+     * @param burst     tokens a bucket holds when full
+     */
+    TokenBuckets(double perSecond, int burst, int maxKeys) {
+        if (perSecond <= 0 || burst < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("Token buckets need a positive rate, burst and key count, got "
+                + perSecond + "/s, burst " + burst + ", " + maxKeys + " keys");
+        }
+        this.intervalNanos = Math.max(1, (long) (1e9 / perSecond));
+        this.toleranceNanos = burst * intervalNanos;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @return 0 when a token was taken from the key's bucket, otherwise the nanoseconds until one will be there
+     */
+    long tryAcquire(String key, long nowNanos) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = newBucket(key, nowNanos);
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long next = (fullAt == Long.MIN_VALUE || fullAt - nowNanos < 0 ? nowNanos : fullAt) + intervalNanos;
+            long ahead = next - nowNanos;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Puts back a token just taken from the key's bucket, when the request it was taken for is refused
+     * for another reason. A key that was given the overflow bucket refunds to it.
+     */
+    void refund(String key) {
+        AtomicLong bucket = buckets.getOrDefault(key, overflow);
+        while (true) {
+            long fullAt = bucket.get();
+            if (fullAt == Long.MIN_VALUE || bucket.compareAndSet(fullAt, fullAt - intervalNanos)) {
+                return;
+            }
+        }
+    }
+
+    private AtomicLong newBucket(String key, long nowNanos) {
+        if (buckets.size() >= maxKeys) {
+            sweep(nowNanos);
+            if (buckets.size() >= maxKeys) {
+                return overflow;
+            }
+        }
+        // computeIfAbsent would lock the bin even when the key is present, so it is only reached for new keys
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+    }
+
+    /**
+     * Drops the full buckets among the next {@value #SWEEP_STEP}; one thread sweeps while the others carry on.
+     */
+    private void sweep(long nowNanos) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Iterator<AtomicLong> bucketsLeft = cursor;
+            if (bucketsLeft == null || !bucketsLeft.hasNext()) {
+                bucketsLeft = buckets.values().iterator();
+            }
+            for (int step = 0; step < SWEEP_STEP && bucketsLeft.hasNext(); step++) {
+                long fullAt = bucketsLeft.next().get();
+                if (fullAt == Long.MIN_VALUE || fullAt - nowNanos <= 0) {
+                    bucketsLeft.remove();
+                }
+            }
+            cursor = bucketsLeft;
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    int size() {
+        return buckets.size();
+    }
+}
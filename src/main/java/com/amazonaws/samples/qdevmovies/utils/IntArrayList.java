@@ -0,0 +1,49 @@
+package com.amazonaws.samples.qdevmovies.utils;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive {@code int}s, used while building posting lists and orderings.
+ */
+public class IntArrayList {
+
+    private int[] values;
+    private int size;
+
+    public IntArrayList() {
+        this(8);
+    }
+
+    public IntArrayList(int initialCapacity) {
+        this.values = new int[Math.max(1, initialCapacity)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * @return the last value added, or {@code -1} if the list is empty
+     */
+    public int last() {
+        return size == 0 ? -1 : values[size - 1];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
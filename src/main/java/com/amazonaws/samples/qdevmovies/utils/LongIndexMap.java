@@ -0,0 +1,106 @@
+package com.amazonaws.samples.qdevmovies.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to {@code int} slots.
+ * Avoids boxing {@code Long} keys and the per-entry node objects of {@link java.util.HashMap},
+ * so a lookup is a multiply, a mask and usually a single array probe.
+ */
+public class LongIndexMap {
+
+    public static final int MISSING = -1;
+
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    public LongIndexMap(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(4, expectedSize));
+        allocate(capacity);
+    }
+
+    /**
+     * Maps the key to the given index, replacing any previous mapping.
+     * @param key the key
+     * @param index a non-negative index
+     */
+    public void put(long key, int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Index must be non-negative: " + index);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = index;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = index;
+        size++;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the mapped index, or {@link #MISSING} if the key is absent
+     */
+    public int get(long key) {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        long h = key * PHI;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(newCapacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(expectedSize * 2 - 1) << 1;
+        return Math.max(capacity, 8);
+    }
+}
@@ -1,22 +1,16 @@
 package com.amazonaws.samples.qdevmovies.utils;
 
+/**
+ * Movie icons come from the catalog: each movie in {@code movies.json} carries its own {@code icon}.
+ */
 public class MovieIconUtils {
-    
-    public static String getMovieIcon(String movieName) {
-        switch (movieName.toLowerCase()) {
-            case "the prison escape": return "🔒";
-            case "the family boss": return "👔";
-            case "the masked hero": return "🦇";
-            case "urban stories": return "🌆";
-            case "life journey": return "🏃";
-            case "dream heist": return "💭";
-            case "the virtual world": return "🕶️";
-            case "the wise guys": return "🤵";
-            case "the quest for the ring": return "💍";
-            case "space wars: the beginning": return "🚀";
-            case "the factory owner": return "🏭";
-            case "underground club": return "👊";
-            default: return "🎬";
-        }
+
+    public static final String DEFAULT_ICON = "🎬";
+
+    /**
+     * @return the icon, or {@link #DEFAULT_ICON} for a movie the catalog gives none
+     */
+    public static String iconOrDefault(String icon) {
+        return icon == null || icon.isEmpty() ? DEFAULT_ICON : icon;
     }
 }
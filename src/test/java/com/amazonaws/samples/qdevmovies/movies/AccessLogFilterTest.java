@@ -0,0 +1,139 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.async.AsyncLoggerConfig;
+import org.apache.logging.log4j.core.config.LoggerConfig;
+import org.apache.logging.log4j.core.config.Property;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessLogFilterTest {
+
+    private final List<String> lines = new CopyOnWriteArrayList<>();
+    private final AbstractAppender capture = new AbstractAppender("capture", null, null, true, Property.EMPTY_ARRAY) {
+        @Override
+        public void append(LogEvent event) {
+            // Formatted here: the asynchronous logger reuses the event once this returns
+            lines.add(event.getMessage().getFormattedMessage());
+        }
+    };
+    private LoggerConfig accessConfig;
+
+    @BeforeEach
+    public void setUp() {
+        capture.start();
+        accessConfig = ((LoggerContext) LogManager.getContext(false)).getConfiguration().getLoggerConfig("access");
+        accessConfig.addAppender(capture, null, null);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        accessConfig.removeAppender("capture");
+        capture.stop();
+    }
+
+    @Test
+    public void testWritesRouteMovieStatusAndLatency() throws Exception {
+        AccessLogFilter filter = new AccessLogFilter(true, 1.0, "");
+
+        run(filter, "/api/movies/7/ratings", "/api/movies/{id}/ratings", "7", HttpServletResponse.SC_NOT_FOUND);
+        run(filter, "/movies", "/movies", null, HttpServletResponse.SC_OK);
+
+        assertTrue(accessConfig instanceof AsyncLoggerConfig, accessConfig.getClass().getName());
+        List<String> written = awaitLines(2);
+        assertTrue(written.get(0).matches("method=GET route=/api/movies/\\{id}/ratings movie=7 status=404 micros=\\d+"), written.get(0));
+        assertTrue(written.get(1).matches("method=GET route=/movies movie=- status=200 micros=\\d+"), written.get(1));
+    }
+
+    @Test
+    public void testSamplesPerRouteButAlwaysWritesServerErrors() throws Exception {
+        AccessLogFilter filter = new AccessLogFilter(true, 0.0, " /movies/{id}/details = 1.0 ");
+
+        run(filter, "/movies", "/movies", null, HttpServletResponse.SC_OK);
+        run(filter, "/api/movies/1/ratings", "/api/movies/{id}/ratings", "1", HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        run(filter, "/movies/2/details", "/movies/{id}/details", "2", HttpServletResponse.SC_OK);
+
+        List<String> written = awaitLines(2);
+        assertTrue(written.get(0).contains("route=/api/movies/{id}/ratings movie=1 status=500"), written.get(0));
+        assertTrue(written.get(1).contains("route=/movies/{id}/details movie=2 status=200"), written.get(1));
+        assertEquals(2, lines.size());
+    }
+
+    @Test
+    public void testRejectsInvalidSampleRates() {
+        assertEquals(Collections.singletonMap("/movies", 0.5), AccessLogFilter.parseRoutes("/movies=0.5,"));
+        assertThrows(IllegalArgumentException.class, () -> AccessLogFilter.parseRoutes("/movies"));
+        assertThrows(IllegalArgumentException.class, () -> new AccessLogFilter(true, 1.5, ""));
+    }
+
+    @Test
+    public void testPageCacheHitsCarryTheirRoute() throws Exception {
+        ReviewStore reviewStore = new InMemoryReviewStore();
+        RenderedPageCacheFilter pageCache = new RenderedPageCacheFilter(new RenderedPageCache(1_000_000, reviewStore),
+            new MovieService(), reviewStore, true);
+        AccessLogFilter filter = new AccessLogFilter(true, 1.0, "");
+        HttpServlet page = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/movies/{id}/details");
+                req.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Collections.singletonMap("id", "3"));
+                resp.setContentType("text/html;charset=UTF-8");
+                resp.getWriter().write("<html>details</html>");
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies/3/details");
+            new MockFilterChain(page, filter, pageCache).doFilter(request, new MockHttpServletResponse());
+        }
+
+        List<String> written = awaitLines(2);
+        assertTrue(written.get(0).contains("route=/movies/{id}/details movie=3 status=200"), written.get(0));
+        assertTrue(written.get(1).contains("route=/movies/{id}/details movie=3 status=200"), written.get(1));
+    }
+
+    private static void run(AccessLogFilter filter, String uri, String route, String movieId, int status) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain handler = (req, resp) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, route);
+            if (movieId != null) {
+                req.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Collections.singletonMap("id", movieId));
+            }
+            ((HttpServletResponse) resp).setStatus(status);
+        };
+        filter.doFilter(request, response, handler);
+    }
+
+    private List<String> awaitLines(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (lines.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // Give a line that should not have been written the same chance to show up
+        Thread.sleep(50);
+        return lines;
+    }
+}
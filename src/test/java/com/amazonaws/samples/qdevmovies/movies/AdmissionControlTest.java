@@ -0,0 +1,259 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControlTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicInteger handled = new AtomicInteger();
+
+    @Test
+    public void testTokenBucketsAllowABurstThenRefillAtTheirRate() {
+        TokenBuckets buckets = new TokenBuckets(2, 3, 10);
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire("a", now));
+        }
+        assertEquals(SECOND / 2, buckets.tryAcquire("a", now));
+        assertEquals(0, buckets.tryAcquire("b", now));
+        assertEquals(SECOND / 4, buckets.tryAcquire("a", now + SECOND / 4));
+        assertEquals(0, buckets.tryAcquire("a", now + SECOND / 2));
+        assertTrue(buckets.tryAcquire("a", now + SECOND / 2) > 0);
+    }
+
+    @Test
+    public void testFullBucketsAreDroppedOnceThereAreTooMany() {
+        TokenBuckets buckets = new TokenBuckets(1, 1, 2);
+        long now = 1_000 * SECOND;
+        assertEquals(0, buckets.tryAcquire("a", now));
+        assertEquals(0, buckets.tryAcquire("b", now));
+        // Neither bucket has refilled, so new keys share the overflow bucket
+        assertEquals(0, buckets.tryAcquire("c", now));
+        assertTrue(buckets.tryAcquire("d", now) > 0);
+        assertEquals(2, buckets.size());
+
+        assertEquals(0, buckets.tryAcquire("e", now + 2 * SECOND));
+        assertEquals(1, buckets.size());
+    }
+
+    @Test
+    public void testNewKeysSweepABoundedStepAtATime() {
+        int maxKeys = 10 * TokenBuckets.SWEEP_STEP;
+        TokenBuckets buckets = new TokenBuckets(1, 1, maxKeys);
+        long now = 1_000 * SECOND;
+        for (int key = 0; key < maxKeys; key++) {
+            assertEquals(0, buckets.tryAcquire("key" + key, now));
+        }
+        // Every bucket has refilled, but a new key drops only the next step of them
+        long later = now + 2 * SECOND;
+        assertEquals(0, buckets.tryAcquire("new", later));
+        assertEquals(maxKeys - TokenBuckets.SWEEP_STEP + 1, buckets.size());
+        for (int key = 0; buckets.size() < maxKeys; key++) {
+            assertEquals(0, buckets.tryAcquire("more" + key, later));
+        }
+        assertEquals(0, buckets.tryAcquire("another", later));
+        assertEquals(maxKeys - TokenBuckets.SWEEP_STEP + 1, buckets.size());
+    }
+
+    @Test
+    public void testAWriteRefusedByItsAddressKeepsItsSessionToken() {
+        // One token per 100 s and a burst of 1, for sessions and addresses alike
+        AdmissionControl admission = new AdmissionControl(true, 0.01, 1, 0.01, 1, 1000, new MockEnvironment());
+        long now = 1_000 * SECOND;
+        assertEquals(0, admission.acquireWriteToken("first", "10.0.0.1", now));
+        assertTrue(admission.acquireWriteToken("second", "10.0.0.1", now) > 0);
+        assertEquals(0, admission.acquireWriteToken("second", "10.0.0.2", now));
+        assertTrue(admission.acquireWriteToken("second", "10.0.0.3", now) > 0);
+    }
+
+    @Test
+    public void testLimitBacksOffOnSlowRequestsAndRecoversOnFastOnes() {
+        long budget = TimeUnit.MILLISECONDS.toNanos(100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(budget, 10, 2, 11);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+
+        long start = System.nanoTime();
+        limit.release(start, start + 2 * budget);
+        assertEquals(9.0, limit.getLimit(), 1e-9);
+        // Started before the cut: the same slow spell does not cut again
+        limit.release(start, start + 3 * budget);
+        assertEquals(9.0, limit.getLimit(), 1e-9);
+        assertEquals(1, limit.getDecreases());
+        assertEquals(8, limit.getInFlight());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        // Fast requests while the limit is well used grow it by 1/limit each
+        for (int i = 0; i < 8; i++) {
+            limit.release(start, start + budget / 2);
+            assertTrue(limit.tryAcquire());
+        }
+        assertEquals(9.0 + 8 / 9.0, limit.getLimit(), 0.1);
+        for (int i = 0; i < 100; i++) {
+            limit.release(start, start + budget / 2);
+            limit.tryAcquire();
+        }
+        assertEquals(11.0, limit.getLimit(), 1e-9);
+
+        long later = start + 3 * budget;
+        for (int i = 0; i < 50; i++) {
+            limit.release(later + 3 * i * budget, later + (3 * i + 2) * budget);
+            limit.tryAcquire();
+        }
+        assertEquals(2.0, limit.getLimit(), 1e-9);
+    }
+
+    @Test
+    public void testGroupsRequestsIntoRoutes() {
+        AdmissionControl admission = admission(new MockEnvironment());
+        assertEquals(AdmissionControl.REVIEW, admission.route("POST", "/movies/12/details").name);
+        assertEquals(AdmissionControl.DETAILS, admission.route("GET", "/movies/12/details").name);
+        assertEquals(AdmissionControl.PAGES, admission.route("GET", "/movies").name);
+        assertEquals(AdmissionControl.PAGES, admission.route("GET", "/movies/search").name);
+        assertEquals(AdmissionControl.PAGES, admission.route("GET", "/movies/12/similar").name);
+        assertEquals(AdmissionControl.API, admission.route("GET", "/api/movies").name);
+        assertEquals(AdmissionControl.API, admission.route("GET", "/api/movies/12/ratings").name);
+        assertNull(admission.route("GET", "/api/stats/admission"));
+        assertEquals(AdmissionControl.BULK, admission.route("POST", "/api/reviews/bulk").name);
+        assertNull(admission.route("GET", "/api/reviews/bulk"));
+        assertNull(admission.route("POST", "/internal/reviews/batch"));
+        assertNull(admission.route("GET", "/moviesx"));
+        assertNull(admission.route("GET", "/actuator/health"));
+    }
+
+    @Test
+    public void testReviewFloodsGetTooManyRequestsWithoutReachingTheHandler() throws Exception {
+        // One token per 100 s, so none come back while the test runs
+        AdmissionControl admission = new AdmissionControl(true, 0.01, 10, 0.01, 100, 1000, new MockEnvironment());
+        AdmissionFilter filter = new AdmissionFilter(admission);
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        MovieMetrics metrics = new MovieMetrics(registry, new MovieService(), new ReviewService(), new RenderedPageCache(1 << 20, new InMemoryReviewStore()), admission, true);
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(200, run(filter, post("flood", "10.0.0.1")).getStatus());
+            }
+            MockHttpServletResponse throttled = run(filter, post("flood", "10.0.0.1"));
+            assertEquals(429, throttled.getStatus());
+            assertEquals("100", throttled.getHeader("Retry-After"));
+            assertEquals(10, handled.get());
+
+            // Another session from the same address has its own bucket, until the address runs out
+            assertEquals(200, run(filter, post("other", "10.0.0.1")).getStatus());
+            for (int i = 0; i < 100; i++) {
+                run(filter, post("s" + i, "10.0.0.2"));
+            }
+            assertEquals(429, run(filter, post("fresh", "10.0.0.2")).getStatus());
+            assertEquals(200, run(filter, post("fresh", "10.0.0.3")).getStatus());
+
+            AdmissionControl.RouteStats review = admission.stats().getRoutes().get(AdmissionControl.REVIEW);
+            assertEquals(112, review.getAdmitted());
+            assertEquals(2, review.getRateLimited());
+            assertEquals(0, review.getInFlight());
+            assertEquals(2.0, registry.get("movies.admission.decisions").tag("route", "review").tag("result", "rate_limited")
+                .functionCounter().count());
+            assertEquals(112.0, registry.get("movies.admission.decisions").tag("route", "review").tag("result", "admitted")
+                .functionCounter().count());
+        } finally {
+            metrics.close();
+        }
+    }
+
+    @Test
+    public void testMadeUpSessionIdsAreChargedToTheAddress() throws Exception {
+        // One token per 100 s: a burst of 1 per session and 3 per address
+        AdmissionControl admission = new AdmissionControl(true, 0.01, 1, 0.01, 3, 1000, new MockEnvironment());
+        AdmissionFilter filter = new AdmissionFilter(admission);
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = post("made-up-" + i, "10.0.0.1");
+            request.setRequestedSessionIdValid(false);
+            assertEquals(200, run(filter, request).getStatus());
+        }
+        MockHttpServletRequest another = post("made-up-3", "10.0.0.1");
+        another.setRequestedSessionIdValid(false);
+        assertEquals(429, run(filter, another).getStatus());
+        assertEquals(0, admission.stats().getSessionBuckets());
+
+        // A live session is limited on its own, and bulk imports draw on the same buckets
+        assertEquals(200, run(filter, post("live", "10.0.0.2")).getStatus());
+        MockHttpServletRequest bulk = new MockHttpServletRequest("POST", "/api/reviews/bulk");
+        bulk.setRequestedSessionId("live");
+        bulk.setRemoteAddr("10.0.0.2");
+        assertEquals(429, run(filter, bulk).getStatus());
+        assertEquals(1, admission.stats().getRoutes().get(AdmissionControl.BULK).getRateLimited());
+    }
+
+    @Test
+    public void testRouteAtItsLimitIsShedWithServiceUnavailable() throws Exception {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("movies.admission.routes.details.initial-limit", "1")
+            .withProperty("movies.admission.routes.details.min-limit", "1");
+        AdmissionFilter filter = new AdmissionFilter(admission(environment));
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[2];
+        Servlet page = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
+                if (req.getRequestURI().startsWith("/movies/1/")) {
+                    // While this request is in flight, the route is full but others are not
+                    nested[0] = run(filter, new MockHttpServletRequest("GET", "/movies/2/details"));
+                    nested[1] = run(filter, new MockHttpServletRequest("GET", "/movies"));
+                }
+                handled.incrementAndGet();
+            }
+        };
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/movies/1/details"), first, new MockFilterChain(page));
+
+        assertEquals(200, first.getStatus());
+        assertEquals(503, nested[0].getStatus());
+        assertEquals("1", nested[0].getHeader("Retry-After"));
+        assertEquals(200, nested[1].getStatus());
+        assertEquals(2, handled.get());
+        assertEquals(200, run(filter, new MockHttpServletRequest("GET", "/movies/2/details")).getStatus());
+    }
+
+    private static AdmissionControl admission(MockEnvironment environment) {
+        return new AdmissionControl(true, 1, 10, 50, 100, 1000, environment);
+    }
+
+    private static MockHttpServletRequest post(String session, String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/movies/1/details");
+        request.setRequestedSessionId(session);
+        request.setRemoteAddr(address);
+        return request;
+    }
+
+    private MockHttpServletResponse run(AdmissionFilter filter, MockHttpServletRequest request) throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                handled.incrementAndGet();
+            }
+        }));
+        return response;
+    }
+}
@@ -0,0 +1,119 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Overloads the application with closed-loop clients that render details pages and flood review
+ * posts, far more at once than one machine can serve within the latency budget, first without and
+ * then with admission control. Prints throughput, latency of the admitted requests, and how many
+ * were rate limited (429) or shed (503). The page cache is off, so every page is rendered. A
+ * rejected client waits for its {@code Retry-After}; with {@code -DbackOff=false} it retries at
+ * once, and the rejections then take CPU from the admitted requests.
+ * <p>
+ * Fails unless, with admission control, the p99 of admitted requests stays within
+ * {@code -Dbound=N} times the latency budget (default 4) and below the p99 without it. Run with
+ * {@code mvn test -Pperf -Dtest=AdmissionOverloadTest}; {@code -Dclients=N} and
+ * {@code -DlatencyMs=N} change the client count and the routes' latency budget.
+ */
+@Tag("perf")
+public class AdmissionOverloadTest {
+
+    private static final int CLIENTS = Integer.getInteger("clients", 150);
+    private static final int LATENCY_MILLIS = Integer.getInteger("latencyMs", 50);
+    private static final int BOUND = Integer.getInteger("bound", 4);
+    private static final boolean BACK_OFF = Boolean.parseBoolean(System.getProperty("backOff", "true"));
+    private static final int WRITER_EVERY = 5;
+    private static final long WARMUP_MILLIS = 10_000;
+    private static final long DURATION_MILLIS = 15_000;
+    private static final int ADMITTED = 0;
+    private static final int THROTTLED = 1;
+    private static final int SHED = 2;
+
+    static {
+        ApplicationHarness.keepAliveConnections(CLIENTS);
+    }
+
+    @Test
+    public void admittedLatencyStaysBoundedUnderOverload() throws Exception {
+        ApplicationHarness.Measurement without = measure(false);
+        ApplicationHarness.Measurement with = measure(true);
+        System.out.printf("%d clients, one writer in %d, latency budget %d ms%n%s%n", CLIENTS, WRITER_EVERY, LATENCY_MILLIS,
+            "admission   admitted/s   p50 ms   p99 ms   max ms   429/s   503/s");
+        System.out.println(row("off", without));
+        System.out.println(row("on", with));
+
+        assertEquals(0, without.errors.get() + with.errors.get(), "failed requests");
+        assertEquals(0, without.count(THROTTLED) + without.count(SHED), "rejections without admission control");
+        assertTrue(with.count(THROTTLED) + with.count(SHED) > 0, "admission control never rejected a request");
+        double p99 = with.percentile(ADMITTED, 0.99);
+        double p99Without = without.percentile(ADMITTED, 0.99);
+        assertTrue(p99 <= BOUND * LATENCY_MILLIS, String.format("p99 %.1f ms over %d x %d ms", p99, BOUND, LATENCY_MILLIS));
+        assertTrue(p99 < p99Without, String.format("p99 %.1f ms, not below %.1f ms without admission control", p99, p99Without));
+    }
+
+    private static ApplicationHarness.Measurement measure(boolean admission) throws Exception {
+        ConfigurableApplicationContext context = ApplicationHarness.start("--movies.admission.enabled=" + admission,
+            "--movies.admission.latency-ms=" + LATENCY_MILLIS,
+            "--movies.page-cache.enabled=false", "--movies.access-log.enabled=false",
+            "--server.tomcat.accept-count=" + CLIENTS);
+        try {
+            String base = ApplicationHarness.baseUrl(context);
+            drive(base, WARMUP_MILLIS);
+            return drive(base, DURATION_MILLIS);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Records admitted requests under {@link #ADMITTED}, and rejected ones under {@link #THROTTLED} or {@link #SHED}.
+     */
+    private static ApplicationHarness.Measurement drive(String base, long millis) throws InterruptedException {
+        return ApplicationHarness.closedLoop(CLIENTS, millis, 3, client -> {
+            String url = base + "/movies/" + (1 + client.random.nextInt(12)) + "/details";
+            int status = client.random.nextInt(WRITER_EVERY) == 0
+                ? check(ApplicationHarness.postForm(url, ApplicationHarness.REVIEW_FORM), url, HttpURLConnection.HTTP_MOVED_TEMP, client.buffer)
+                : check((HttpURLConnection) new URL(url).openConnection(), url, HttpURLConnection.HTTP_OK, client.buffer);
+            if (status == AdmissionFilter.TOO_MANY_REQUESTS) {
+                return THROTTLED;
+            }
+            return status == HttpURLConnection.HTTP_UNAVAILABLE ? SHED : ADMITTED;
+        });
+    }
+
+    private static int check(HttpURLConnection connection, String url, int expected, byte[] buffer) throws IOException {
+        int status = ApplicationHarness.drain(connection, buffer);
+        boolean rejected = status == AdmissionFilter.TOO_MANY_REQUESTS || status == HttpURLConnection.HTTP_UNAVAILABLE;
+        if (status != expected && !rejected) {
+            throw new IOException(url + " returned " + status);
+        }
+        String retryAfter = connection.getHeaderField("Retry-After");
+        if (rejected && retryAfter == null) {
+            throw new IOException(url + " returned " + status + " without Retry-After");
+        }
+        if (rejected && BACK_OFF) {
+            try {
+                TimeUnit.SECONDS.sleep(Long.parseLong(retryAfter));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return status;
+    }
+
+    private static String row(String admission, ApplicationHarness.Measurement result) {
+        return String.format("%-9s %,12.0f %8.1f %8.1f %8.1f %7.0f %7.0f", admission, result.count(ADMITTED) * 1000.0 / DURATION_MILLIS,
+            result.percentile(ADMITTED, 0.50), result.percentile(ADMITTED, 0.99), result.percentile(ADMITTED, 1.0),
+            result.count(THROTTLED) * 1000.0 / DURATION_MILLIS, result.count(SHED) * 1000.0 / DURATION_MILLIS);
+    }
+}
@@ -0,0 +1,328 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Boots the application for tests that talk to it over HTTP, and drives it with closed-loop clients.
+ */
+final class ApplicationHarness {
+
+    static final String REVIEW_FORM = "userName=Load&rating=4&comment=A+gripping+story+with+great+acting+throughout";
+
+    private static final String[] DEFAULT_ARGUMENTS = {
+        "--server.port=0",
+        "--management.server.port=0",
+        "--movies.reviews.log.directory=",
+        "--logging.level.com.amazonaws.samples.qdevmovies=WARN"
+    };
+
+    private ApplicationHarness() {
+    }
+
+    /**
+     * Starts the application, and its Actuator, on random ports, keeping reviews in memory and logging at WARN unless
+     * the arguments say otherwise. Settings are passed as command line arguments rather than default
+     * properties, which application.yml would override; a later argument replaces an earlier one of
+     * the same name instead of joining it into a list.
+     */
+    static ConfigurableApplicationContext start(String... arguments) {
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (String argument : DEFAULT_ARGUMENTS) {
+            merged.put(name(argument), argument);
+        }
+        for (String argument : arguments) {
+            merged.put(name(argument), argument);
+        }
+        return new SpringApplicationBuilder(MoviesApplication.class).run(merged.values().toArray(new String[0]));
+    }
+
+    static String baseUrl(ConfigurableApplicationContext context) {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    private static String name(String argument) {
+        int equals = argument.indexOf('=');
+        return equals < 0 ? argument : argument.substring(0, equals);
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * The JDK keeps only 5 idle connections per host by default; every client needs its own.
+     * Takes effect only before the first connection is made.
+     */
+    static void keepAliveConnections(int connections) {
+        System.setProperty("http.maxConnections", String.valueOf(connections));
+    }
+
+    /**
+     * Writes a catalog of {@code movies} generated movies, ids 1 to {@code movies}, in the shape of {@code movies.json}.
+     */
+    static void writeCatalog(Path file, int movies) throws IOException {
+        String[] genres = {"Drama", "Crime/Drama", "Action/Crime", "Adventure/Drama", "Action/Sci-Fi", "Comedy", "Horror/Thriller"};
+        String[] directors = {"John Director", "Michael Filmmaker", "Chris Moviemaker", "Sofia Auteur", "Akira Lens", "Greta Frame"};
+        String[] words = {"epic", "journey", "heist", "family", "dream", "city", "hero", "prison", "space", "secret", "night"};
+        Random random = new Random(42);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write('[');
+            for (int id = 1; id <= movies; id++) {
+                if (id > 1) {
+                    out.write(',');
+                }
+                StringBuilder description = new StringBuilder();
+                for (int w = 0; w < 16; w++) {
+                    description.append(w > 0 ? " " : "").append(words[random.nextInt(words.length)]);
+                }
+                out.write("{\"id\":" + id + ",\"movieName\":\"Movie " + id + "\",\"director\":\"" + directors[random.nextInt(directors.length)]
+                    + "\",\"year\":" + (1950 + random.nextInt(75)) + ",\"genre\":\"" + genres[random.nextInt(genres.length)]
+                    + "\",\"description\":\"" + description + "\",\"duration\":" + (80 + random.nextInt(120))
+                    + ",\"imdbRating\":" + (2 + random.nextInt(7)) / 2.0 + "}");
+            }
+            out.write(']');
+        }
+    }
+
+    /**
+     * GETs the URL and reads the whole response.
+     *
+     * @throws IOException if the status is not 200
+     */
+    static void fetch(String url, byte[] buffer) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        expect(connection, url, HttpURLConnection.HTTP_OK, buffer);
+    }
+
+    /**
+     * POSTs {@link #REVIEW_FORM} to a details page and reads the whole response.
+     *
+     * @throws IOException if the status is not the redirect back to the page
+     */
+    static void postReview(String url, byte[] buffer) throws IOException {
+        expect(postForm(url, REVIEW_FORM), url, HttpURLConnection.HTTP_MOVED_TEMP, buffer);
+    }
+
+    /**
+     * @return a connection that has sent the form and not yet read the response
+     */
+    static HttpURLConnection postForm(String url, String form) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setInstanceFollowRedirects(false);
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(form.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    private static void expect(HttpURLConnection connection, String url, int status, byte[] buffer) throws IOException {
+        int actual = drain(connection, buffer);
+        if (actual != status) {
+            throw new IOException(url + " returned " + actual);
+        }
+    }
+
+    /**
+     * Reads the whole response, error or not, so the keep-alive connection can be reused.
+     *
+     * @return the status code
+     */
+    static int drain(HttpURLConnection connection, byte[] buffer) throws IOException {
+        int status = connection.getResponseCode();
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            while (body != null && body.read(buffer) != -1) {
+                // discard
+            }
+        }
+        return status;
+    }
+
+    static String read(HttpURLConnection connection) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream input = connection.getInputStream()) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs {@code clients} threads, each sending one request after another until the time is up.
+     * A request's latency is recorded under the kind it returns; one that throws counts as an error.
+     */
+    static Measurement closedLoop(int clients, long millis, int kinds, ClientRequest request) throws InterruptedException {
+        Measurement measurement = new Measurement(kinds);
+        CountDownLatch finished = new CountDownLatch(clients);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (int c = 0; c < clients; c++) {
+            Client client = new Client(c);
+            Thread thread = new Thread(() -> {
+                Latencies[] mine = new Latencies[kinds];
+                for (int kind = 0; kind < kinds; kind++) {
+                    mine[kind] = new Latencies();
+                }
+                try {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            int kind = request.send(client);
+                            mine[kind].add(System.nanoTime() - start);
+                        } catch (IOException e) {
+                            measurement.errors.incrementAndGet();
+                        }
+                        client.requests++;
+                    }
+                } finally {
+                    measurement.add(mine);
+                    finished.countDown();
+                }
+            }, "load-client-" + c);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        finished.await();
+        return measurement;
+    }
+
+    /**
+     * One closed-loop client: its index, a random source seeded by it, a read buffer and the number of requests it has sent.
+     */
+    static final class Client {
+        final int id;
+        final Random random;
+        final byte[] buffer = new byte[8192];
+        long requests;
+
+        Client(int id) {
+            this.id = id;
+            this.random = new Random(id);
+        }
+    }
+
+    @FunctionalInterface
+    interface ClientRequest {
+
+        /**
+         * @return the kind of request sent, from 0, to record its latency under
+         */
+        int send(Client client) throws IOException;
+    }
+
+    private static final class Latencies {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+    }
+
+    /**
+     * Latencies by kind of request, and errors, of one or more closed-loop runs.
+     */
+    static final class Measurement {
+        final AtomicLong errors = new AtomicLong();
+        private final List<Latencies[]> perClient = new ArrayList<>();
+        private final long[][] sorted;
+
+        Measurement(int kinds) {
+            this.sorted = new long[kinds][];
+        }
+
+        private synchronized void add(Latencies[] client) {
+            perClient.add(client);
+            Arrays.fill(sorted, null);
+        }
+
+        /**
+         * Adds another run's latencies and errors to this one's.
+         */
+        synchronized void add(Measurement other) {
+            synchronized (other) {
+                perClient.addAll(other.perClient);
+            }
+            errors.addAndGet(other.errors.get());
+            Arrays.fill(sorted, null);
+        }
+
+        /**
+         * @return the recorded latencies of a kind of request in nanoseconds, ascending
+         */
+        synchronized long[] latencies(int kind) {
+            if (sorted[kind] == null) {
+                int total = 0;
+                for (Latencies[] client : perClient) {
+                    total += client[kind].size;
+                }
+                long[] all = new long[total];
+                int offset = 0;
+                for (Latencies[] client : perClient) {
+                    System.arraycopy(client[kind].values, 0, all, offset, client[kind].size);
+                    offset += client[kind].size;
+                }
+                Arrays.sort(all);
+                sorted[kind] = all;
+            }
+            return sorted[kind];
+        }
+
+        int count(int kind) {
+            return latencies(kind).length;
+        }
+
+        /**
+         * @return requests recorded, of every kind
+         */
+        long requests() {
+            long total = 0;
+            for (int kind = 0; kind < sorted.length; kind++) {
+                total += count(kind);
+            }
+            return total;
+        }
+
+        /**
+         * @return the latency in milliseconds below which the given share of a kind of request completed
+         */
+        double percentile(int kind, double quantile) {
+            long[] latencies = latencies(kind);
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
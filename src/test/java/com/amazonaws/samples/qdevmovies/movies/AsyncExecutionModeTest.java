@@ -0,0 +1,94 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the application in {@code ASYNC} execution mode and checks the asynchronous handlers end to
+ * end, through the rendered page cache filter and Spring's async dispatch.
+ */
+public class AsyncExecutionModeTest {
+
+    private static ConfigurableApplicationContext context;
+    private static String base;
+
+    @BeforeAll
+    public static void start() {
+        context = ApplicationHarness.start("--movies.execution.mode=ASYNC", "--movies.execution.endpoints.api.top.max-concurrency=0");
+        base = ApplicationHarness.baseUrl(context);
+    }
+
+    @AfterAll
+    public static void stop() {
+        context.close();
+    }
+
+    @Test
+    public void testDetailsPageRendersAsynchronouslyAndIsCached() throws Exception {
+        HttpURLConnection first = open("/movies/3/details");
+        assertEquals(200, first.getResponseCode());
+        assertEquals("MISS", first.getHeaderField(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+        String rendered = ApplicationHarness.read(first);
+        assertTrue(rendered.contains("<html"), rendered);
+
+        HttpURLConnection second = open("/movies/3/details");
+        assertEquals(200, second.getResponseCode());
+        assertEquals("HIT", second.getHeaderField(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(rendered, ApplicationHarness.read(second));
+        assertEquals(second.getHeaderField("ETag"), first.getHeaderField("ETag"));
+    }
+
+    @Test
+    public void testJsonEndpointsRunOnTheExecutor() throws Exception {
+        HttpURLConnection list = open("/api/movies?size=2");
+        assertEquals(200, list.getResponseCode());
+        assertTrue(ApplicationHarness.read(list).contains("\"nextCursor\""));
+        HttpURLConnection movie = open("/api/movies/3");
+        assertEquals(200, movie.getResponseCode());
+        assertTrue(ApplicationHarness.read(movie).contains("\"id\":3"));
+        assertEquals(404, open("/api/movies/999").getResponseCode());
+        assertEquals(404, open("/api/movies/999/ratings").getResponseCode());
+        assertEquals(200, open("/api/movies/ratings?ids=1,2").getResponseCode());
+        assertEquals(503, open("/api/movies/top").getResponseCode());
+
+        RequestExecutor.Stats stats = context.getBean(RequestExecutor.class).stats();
+        assertEquals(RequestExecutor.Mode.ASYNC, stats.getMode());
+        assertTrue(stats.getEndpoints().get("api.movies").getCompleted() >= 1);
+        assertEquals(1, stats.getEndpoints().get("api.movie").getFailed());
+        assertEquals(1, stats.getEndpoints().get("api.ratings").getFailed());
+        assertEquals(0, stats.getEndpoints().get("api.ratings").getCompleted());
+        assertEquals(1, stats.getEndpoints().get("api.ratings-batch").getCompleted());
+        assertEquals(1, stats.getEndpoints().get("api.top").getRejected());
+    }
+
+    @Test
+    public void testReviewIsAddedAsynchronously() throws Exception {
+        HttpURLConnection post = ApplicationHarness.postForm(base + "/movies/4/details",
+            "userName=Ana&rating=5&comment=A+gripping+story+with+great+acting");
+        assertEquals(302, post.getResponseCode());
+        assertTrue(post.getHeaderField("Location").endsWith("/movies/4/details?reviewAdded=true"), post.getHeaderField("Location"));
+        assertEquals(1, context.getBean(ReviewStore.class).getReviews(4L).size());
+    }
+
+    @Test
+    public void testActuatorIsServedOnlyOnTheManagementPort() throws Exception {
+        assertEquals(404, open("/actuator/instrumentation").getResponseCode());
+        String management = "http://localhost:" + context.getEnvironment().getProperty("local.management.port");
+        HttpURLConnection instrumentation = (HttpURLConnection) new URL(management + "/actuator/instrumentation").openConnection();
+        assertEquals(200, instrumentation.getResponseCode());
+        assertTrue(ApplicationHarness.read(instrumentation).contains("\"enabled\":true"));
+    }
+
+    private static HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL(base + path).openConnection();
+    }
+}
@@ -0,0 +1,242 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryCatalogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRoundTripsTheBundledCatalog() throws IOException {
+        List<Movie> movies = new MovieService().getAllMovies();
+        ReviewCatalog reviews;
+        try (InputStream json = getClass().getClassLoader().getResourceAsStream("mock-reviews.json")) {
+            reviews = ReviewCatalog.fromJson(json);
+        }
+        Path file = directory.resolve("catalog.bin");
+        BinaryCatalog.write(movies, reviews, file);
+        assertTrue(BinaryCatalog.isBinaryCatalog(file));
+
+        BinaryCatalog catalog = BinaryCatalog.open(file);
+        MappedMovieStore store = catalog.movies();
+        assertEquals(movies.size(), store.size());
+        for (int i = 0; i < movies.size(); i++) {
+            assertSameMovie(movies.get(i), store.getAllMovies().get(i));
+            assertSameMovie(movies.get(i), store.findById(movies.get(i).getId()).get());
+        }
+        assertFalse(store.findById(999L).isPresent());
+        assertFalse(store.contains(0L));
+
+        MovieOrderings sorted = new MovieOrderings(movies);
+        MovieOrderings stored = MovieOrderings.of(store);
+        for (MovieSort sort : MovieSort.values()) {
+            assertEquals(ids(sorted.ordered(sort)), ids(stored.ordered(sort)), sort.name());
+        }
+
+        ReviewCatalog mapped = catalog.reviews();
+        assertEquals(reviews.movieCount(), mapped.movieCount());
+        assertEquals(reviews.reviewCount(), mapped.reviewCount());
+        List<Long> expectedOrder = new ArrayList<>();
+        reviews.forEach((movieId, movieReviews) -> expectedOrder.add(movieId));
+        List<Long> order = new ArrayList<>();
+        mapped.forEach((movieId, movieReviews) -> {
+            order.add(movieId);
+            List<Review> expected = reviews.get(movieId);
+            assertEquals(expected.size(), movieReviews.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getUserName(), movieReviews.get(i).getUserName());
+                assertEquals(expected.get(i).getAvatarEmoji(), movieReviews.get(i).getAvatarEmoji());
+                assertEquals(expected.get(i).getRating(), movieReviews.get(i).getRating());
+                assertEquals(expected.get(i).getComment(), movieReviews.get(i).getComment());
+            }
+            assertEquals(expected.size(), mapped.get(movieId).size());
+        });
+        assertEquals(expectedOrder, order);
+        assertTrue(mapped.get(999L).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> mapped.get(1L).clear());
+    }
+
+    @Test
+    public void testRejectsOtherVersionsAndTruncatedFiles() throws IOException {
+        Path file = directory.resolve("catalog.bin");
+        BinaryCatalog.write(new MovieService().getAllMovies(), ReviewCatalog.empty(), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        byte[] otherVersion = bytes.clone();
+        ByteBuffer.wrap(otherVersion).putInt(4, BinaryCatalog.FORMAT_VERSION + 1);
+        Files.write(file, otherVersion);
+        IOException version = assertThrows(IOException.class, () -> BinaryCatalog.open(file));
+        assertTrue(version.getMessage().contains("format version"), version.getMessage());
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> BinaryCatalog.open(file));
+        Files.write(file, "[{\"id\": 1}]".getBytes());
+        assertFalse(BinaryCatalog.isBinaryCatalog(file));
+    }
+
+    @Test
+    public void testServicesUseTheBuildsBinaryCatalog() throws IOException {
+        // process-classes writes catalog.bin into the test classpath
+        BundledCatalog bundled = new BundledCatalog(true);
+        assertTrue(bundled.get() != null);
+        MovieService movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, null, bundled, false);
+        assertEquals("classpath:catalog.bin", movieService.getSnapshot().getSource());
+        assertTrue(movieService.getSnapshot().getStore() instanceof MappedMovieStore);
+        List<Movie> fromJson = new MovieService().getAllMovies();
+        assertEquals(fromJson.size(), movieService.getAllMovies().size());
+        assertSameMovie(fromJson.get(3), movieService.getMovieById(fromJson.get(3).getId()).get());
+
+        ReviewService reviewService = new ReviewService(new CatalogLoader(), bundled);
+        assertEquals(new ReviewService().getReviewsForMovie(1L).size(), reviewService.getReviewsForMovie(1L).size());
+        assertEquals(new ReviewService().getReviewsForMovie(1L).get(0).getComment(), reviewService.getReviewsForMovie(1L).get(0).getComment());
+    }
+
+    @Test
+    public void testMovieServiceLoadsAnExternalBinaryCatalog() throws IOException {
+        Path file = directory.resolve("movies.bin");
+        List<Movie> movies = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            movies.add(new Movie(id, "Movie " + id, "Director " + (id % 7), 1990 + (int) (id % 30), "Drama", "About movie " + id, 100, 3.5));
+        }
+        BinaryCatalog.write(movies, ReviewCatalog.empty(), file);
+        MovieService movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, file.toString(), BundledCatalog.none(), false);
+        assertEquals(file.toString(), movieService.getSnapshot().getSource());
+        assertEquals(100, movieService.getAllMovies().size());
+        assertEquals("About movie 42", movieService.getMovieById(42L).get().getDescription());
+        assertEquals(2019, movieService.getAllMovies(MovieSort.YEAR).get(0).getYear());
+    }
+
+    @Test
+    public void testRejectsMisplacedSectionsAndCorruptReferences() throws IOException {
+        Path file = directory.resolve("movies.bin");
+        List<Movie> movies = new MovieService().getAllMovies();
+        BinaryCatalog.write(movies, ReviewCatalog.empty(), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        // The id index offset, moved to inside the movie columns
+        byte[] misplaced = bytes.clone();
+        ByteBuffer.wrap(misplaced).putInt(40, ByteBuffer.wrap(bytes).getInt(40) - 8);
+        Files.write(file, misplaced);
+        assertThrows(IOException.class, () -> BinaryCatalog.open(file));
+
+        // The first movie's name, pointing past the string table: only a full decode finds it
+        byte[] badString = bytes.clone();
+        ByteBuffer.wrap(badString).putInt(76 + 8 * movies.size(), Integer.MAX_VALUE / 8);
+        Files.write(file, badString);
+        BinaryCatalog.open(file);
+        IOException corrupt = assertThrows(IOException.class, () -> BinaryCatalog.read(file));
+        assertTrue(corrupt.getMessage().contains("corrupt"), corrupt.getMessage());
+
+        MovieService movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, file.toString(), BundledCatalog.none(), false);
+        assertEquals("classpath:movies.json", movieService.getSnapshot().getSource());
+        assertEquals(1, movieService.getCatalogStats().getReloadFailures());
+    }
+
+    @Test
+    public void testRecordsTheSourcesItWasBuiltFrom() throws IOException {
+        Path moviesJson = directory.resolve("movies.json");
+        Path target = directory.resolve("catalog.bin");
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("movies.json")) {
+            Files.copy(in, moviesJson);
+        }
+        BinaryCatalog.build(moviesJson, directory.resolve("missing.json"), target);
+
+        BinaryCatalog catalog = BinaryCatalog.open(target);
+        assertEquals(BinaryCatalog.SourceStamp.of(Files.readAllBytes(moviesJson)), catalog.moviesSource());
+        assertEquals(Files.size(moviesJson), catalog.moviesSource().size);
+        assertEquals(BinaryCatalog.SourceStamp.MISSING, catalog.reviewsSource());
+        byte[] edited = Files.readAllBytes(moviesJson);
+        edited[edited.length / 2] ^= 1;
+        assertNotEquals(BinaryCatalog.SourceStamp.of(edited), catalog.moviesSource());
+    }
+
+    @Test
+    public void testOpensTheResourceOnlyWhileItsSourcesAreUnchanged() throws IOException {
+        Path moviesJson = directory.resolve("movies.json");
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("movies.json")) {
+            Files.copy(in, moviesJson);
+        }
+        BinaryCatalog.build(moviesJson, directory.resolve("mock-reviews.json"), directory.resolve(BinaryCatalog.RESOURCE));
+        byte[] json = Files.readAllBytes(moviesJson);
+        Path jar = directory.resolve("catalog.jar");
+        writeJar(jar, json);
+
+        assertTrue(BinaryCatalog.openResource(classLoader(directory)) != null);
+        assertTrue(BinaryCatalog.openResource(classLoader(jar)) != null);
+
+        // Same size, edited after the build: only the checksum tells
+        byte[] edited = json.clone();
+        edited[edited.length / 2] ^= 1;
+        Files.write(moviesJson, edited);
+        Files.setLastModifiedTime(moviesJson, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        // A new jar, since jar connections cache the files they open
+        Path editedJar = directory.resolve("edited.jar");
+        writeJar(editedJar, edited);
+        IOException stale = assertThrows(IOException.class, () -> BinaryCatalog.openResource(classLoader(directory)));
+        assertTrue(stale.getMessage().contains("different movies.json"), stale.getMessage());
+        assertThrows(IOException.class, () -> BinaryCatalog.openResource(classLoader(editedJar)));
+
+        Files.write(moviesJson, Arrays.copyOf(json, json.length + 1));
+        assertThrows(IOException.class, () -> BinaryCatalog.openResource(classLoader(directory)));
+        Files.write(directory.resolve("mock-reviews.json"), "[]".getBytes());
+        Files.write(moviesJson, json);
+        assertThrows(IOException.class, () -> BinaryCatalog.openResource(classLoader(directory)));
+    }
+
+    private void writeJar(Path jar, byte[] moviesJson) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(BinaryCatalog.RESOURCE));
+            out.write(Files.readAllBytes(directory.resolve(BinaryCatalog.RESOURCE)));
+            out.putNextEntry(new JarEntry("movies.json"));
+            out.write(moviesJson);
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * @return a loader that finds resources only in {@code root}, a directory or jar
+     */
+    private static ClassLoader classLoader(Path root) throws IOException {
+        return new URLClassLoader(new URL[] {root.toUri().toURL()}, null);
+    }
+
+    private static void assertSameMovie(Movie expected, Movie actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getMovieName(), actual.getMovieName());
+        assertEquals(expected.getDirector(), actual.getDirector());
+        assertEquals(expected.getYear(), actual.getYear());
+        assertEquals(expected.getGenre(), actual.getGenre());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getDuration(), actual.getDuration());
+        assertEquals(expected.getImdbRating(), actual.getImdbRating());
+        assertEquals(expected.getIcon(), actual.getIcon());
+    }
+
+    private static List<Long> ids(List<Movie> movies) {
+        List<Long> ids = new ArrayList<>();
+        movies.forEach(movie -> ids.add(movie.getId()));
+        return ids;
+    }
+}
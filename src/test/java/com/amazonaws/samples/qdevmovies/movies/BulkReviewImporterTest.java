@@ -0,0 +1,252 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkReviewImporterTest {
+
+    private static final String COMMENT = "A gripping story with great acting throughout";
+
+    private final MovieService movieService = new MovieService();
+
+    @Test
+    public void testAcceptsValidLinesAndReportsTheRestInLineOrder() throws Exception {
+        InMemoryReviewStore store = new InMemoryReviewStore();
+        BulkReviewImporter importer = new BulkReviewImporter(movieService, store);
+        String input = line(1, "Ana", 5, COMMENT) + "\n"
+            + "not json\n"
+            + "\n"
+            + line(999, "Ben", 4, COMMENT) + "\n"
+            + line(2, "Cy", 9, COMMENT) + "\n"
+            + "{\"movieId\": 1, \"userName\": \"Di\", \"comment\": \"" + COMMENT + "\"}\n"
+            + "{\"movieId\": \"one\", \"userName\": \"Ed\", \"rating\": 3, \"comment\": \"" + COMMENT + "\"}\n"
+            + line(2, "Flo", 3, "too short") + "\r\n"
+            + "{\"movieId\": 2, \"userName\": \"Gil\", \"rating\": 4, \"comment\": \"" + COMMENT + "\", \"avatarEmoji\": \"👵\"}";
+
+        BulkImportResult result = importer.importNdjson(new StringReader(input));
+
+        assertEquals(9, result.getLines());
+        assertEquals(2, result.getAccepted());
+        assertEquals(6, result.getRejected());
+        assertFalse(result.isErrorsTruncated());
+        List<String> reported = new ArrayList<>();
+        for (BulkReviewError error : result.getErrors()) {
+            reported.add(error.getLine() + ":" + error.getCode());
+        }
+        assertEquals(Arrays.asList("2:INVALID_JSON", "4:UNKNOWN_MOVIE", "5:RATING_OUT_OF_RANGE",
+            "6:MISSING_FIELD", "7:INVALID_FIELD", "8:TOO_FEW_WORDS"), reported);
+        assertEquals(Long.valueOf(1), result.getErrorCounts().get("UNKNOWN_MOVIE"));
+
+        assertEquals(1, store.getReviews(1L).size());
+        assertEquals(BulkReviewImporter.DEFAULT_AVATAR, store.getReviews(1L).get(0).getAvatarEmoji());
+        assertEquals("👵", store.getReviews(2L).get(0).getAvatarEmoji());
+        assertEquals(4.0, store.getReviews(2L).get(0).getRating());
+    }
+
+    @Test
+    public void testAppendsInBatchesAndNotifiesListeners() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        InMemoryReviewStore delegate = new InMemoryReviewStore();
+        AtomicLong notified = new AtomicLong();
+        delegate.addListener((movieId, review) -> notified.incrementAndGet());
+        ReviewStore store = new ForwardingReviewStore(delegate) {
+            @Override
+            public void addReviews(long[] movieIds, Review[] reviews, int count) {
+                batchSizes.add(count);
+                super.addReviews(movieIds, reviews, count);
+            }
+        };
+        int lines = BulkReviewImporter.BATCH_SIZE * 2 + 10;
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            input.append(line(1 + i % 12, "User " + i, 1 + i % 5, COMMENT)).append('\n');
+        }
+
+        BulkImportResult result = new BulkReviewImporter(movieService, store).importNdjson(new StringReader(input.toString()));
+
+        assertEquals(lines, result.getAccepted());
+        assertEquals(Arrays.asList(BulkReviewImporter.BATCH_SIZE, BulkReviewImporter.BATCH_SIZE, 10), batchSizes);
+        assertEquals(lines, notified.get());
+        long stored = 0;
+        for (long id = 1; id <= 12; id++) {
+            stored += delegate.getReviews(id).size();
+        }
+        assertEquals(lines, stored);
+        assertEquals("User 12", delegate.getReviews(1L).get(1).getUserName());
+    }
+
+    @Test
+    public void testSkipsOverlongLineWithoutBufferingIt() throws Exception {
+        InMemoryReviewStore store = new InMemoryReviewStore();
+        StringBuilder huge = new StringBuilder("{\"movieId\": 1, \"comment\": \"");
+        while (huge.length() <= BulkReviewImporter.MAX_LINE_LENGTH) {
+            huge.append("word ");
+        }
+        huge.append("\"}");
+        String input = huge + "\n" + line(1, "Ana", 5, COMMENT) + "\n";
+
+        BulkImportResult result = new BulkReviewImporter(movieService, store).importNdjson(new StringReader(input));
+
+        assertEquals(2, result.getLines());
+        assertEquals(1, result.getAccepted());
+        assertEquals(BulkReviewError.LINE_TOO_LONG, result.getErrors().get(0).getCode());
+        assertEquals(1, result.getErrors().get(0).getLine());
+    }
+
+    @Test
+    public void testReportsOnlyTheFirstErrorsButCountsAll() throws Exception {
+        int lines = BulkReviewImporter.MAX_REPORTED_ERRORS + 500;
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            input.append(i % 2 == 0 ? "{" : line(1, "Ana", 0, COMMENT)).append('\n');
+        }
+
+        BulkImportResult result = new BulkReviewImporter(movieService, new InMemoryReviewStore())
+            .importNdjson(new StringReader(input.toString()));
+
+        assertEquals(lines, result.getRejected());
+        assertEquals(BulkReviewImporter.MAX_REPORTED_ERRORS, result.getErrors().size());
+        assertTrue(result.isErrorsTruncated());
+        for (int i = 0; i < result.getErrors().size(); i++) {
+            assertEquals(i + 1, result.getErrors().get(i).getLine());
+        }
+        assertEquals(Long.valueOf(lines / 2), result.getErrorCounts().get(BulkReviewError.INVALID_JSON));
+        assertEquals(Long.valueOf(lines / 2), result.getErrorCounts().get("RATING_OUT_OF_RANGE"));
+    }
+
+    @Test
+    public void testDecodesUtf8Stream() throws Exception {
+        InMemoryReviewStore store = new InMemoryReviewStore();
+        InputStream input = new ByteArrayInputStream(
+            (line(3, "Zoë", 4, "Ein großartiger Film über Freundschaft") + "\n").getBytes(StandardCharsets.UTF_8));
+
+        BulkImportResult result = new BulkReviewImporter(movieService, store).importNdjson(input);
+
+        assertEquals(1, result.getAccepted());
+        assertEquals("Zoë", store.getReviews(3L).get(0).getUserName());
+    }
+
+    /**
+     * Ingests a generated 1M-line file, one line in ten invalid, into a store that discards
+     * reviews so only the importer's own memory shows. Run with {@code mvn test -Pperf}.
+     */
+    @Test
+    @Tag("perf")
+    public void ingestMillionLineFile() throws Exception {
+        int lines = 1_000_000;
+        Path file = Files.createTempFile("reviews", ".ndjson");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < lines; i++) {
+                    writer.write(i % 10 == 9 ? line(1 + i % 12, "User " + i, 7, COMMENT) : line(1 + i % 12, "User " + i, 1 + i % 5, COMMENT));
+                    writer.write('\n');
+                }
+            }
+            AtomicLong appended = new AtomicLong();
+            ReviewStore discarding = new ForwardingReviewStore(new InMemoryReviewStore()) {
+                @Override
+                public void addReviews(long[] movieIds, Review[] reviews, int count) {
+                    appended.addAndGet(count);
+                }
+            };
+            BulkReviewImporter importer = new BulkReviewImporter(movieService, discarding);
+
+            System.gc();
+            List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                    heapPools.add(pool);
+                }
+            }
+            long start = System.nanoTime();
+            BulkImportResult result;
+            try (InputStream input = Files.newInputStream(file)) {
+                result = importer.importNdjson(input);
+            }
+            long elapsed = System.nanoTime() - start;
+            long peakHeap = 0;
+            long liveAfterGc = 0;
+            for (MemoryPoolMXBean pool : heapPools) {
+                peakHeap += pool.getPeakUsage().getUsed();
+                if (pool.getCollectionUsage() != null) {
+                    liveAfterGc += pool.getCollectionUsage().getUsed();
+                }
+            }
+
+            assertEquals(lines, result.getLines());
+            assertEquals(lines / 10 * 9, result.getAccepted());
+            assertEquals(lines / 10 * 9, appended.get());
+            assertEquals(BulkReviewImporter.MAX_REPORTED_ERRORS, result.getErrors().size());
+            System.out.printf("Bulk import: %,d lines (%,d MB) in %d ms = %,d records/s; peak heap %,d MB, live after last GC %,d MB%n",
+                lines, Files.size(file) >> 20, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                lines * TimeUnit.SECONDS.toNanos(1) / elapsed, peakHeap >> 20, liveAfterGc >> 20);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String line(long movieId, String userName, int rating, String comment) {
+        return "{\"movieId\": " + movieId + ", \"userName\": \"" + userName + "\", \"rating\": " + rating
+            + ", \"comment\": \"" + comment + "\"}";
+    }
+
+    private static class ForwardingReviewStore implements ReviewStore {
+        private final ReviewStore delegate;
+
+        ForwardingReviewStore(ReviewStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long addReview(long movieId, Review review) {
+            return delegate.addReview(movieId, review);
+        }
+
+        @Override
+        public void addReviews(long[] movieIds, Review[] reviews, int count) {
+            delegate.addReviews(movieIds, reviews, count);
+        }
+
+        @Override
+        public List<Review> getReviews(long movieId) {
+            return delegate.getReviews(movieId);
+        }
+
+        @Override
+        public long getVersion(long movieId) {
+            return delegate.getVersion(movieId);
+        }
+
+        @Override
+        public void forEachMovie(BiConsumer<Long, List<Review>> action) {
+            delegate.forEachMovie(action);
+        }
+
+        @Override
+        public void addListener(ReviewListener listener) {
+            delegate.addListener(listener);
+        }
+    }
+}
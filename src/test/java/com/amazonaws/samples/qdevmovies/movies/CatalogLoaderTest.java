@@ -0,0 +1,75 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CatalogLoaderTest {
+
+    private static final String TRICKY_MOVIES = "[\n"
+        + "  {\"id\": 1, \"movieName\": \"Brackets {[ ]}\", \"director\": \"A \\\"Quoted\\\" Name\", \"year\": 2001,"
+        + " \"genre\": \"Drama\", \"description\": \"Has, commas ] and \\\\ slashes\", \"duration\": 90, \"imdbRating\": 4.5},\n"
+        + "  {\"id\": 2, \"movieName\": \"Second\", \"director\": \"B\", \"year\": 2002,"
+        + " \"genre\": \"Comedy\", \"description\": \"Plain\", \"duration\": 100, \"imdbRating\": 3.0},\n"
+        + "  {\"id\": 3, \"movieName\": \"Third\", \"director\": \"C\", \"year\": 2003,"
+        + " \"genre\": \"Horror\", \"description\": \"Plain\", \"duration\": 110, \"imdbRating\": 2.5}\n"
+        + "]";
+
+    @Test
+    public void testAllModesLoadBundledCatalogIdentically() throws Exception {
+        List<Movie> dom = loadBundled(new CatalogLoader(CatalogLoader.Mode.DOM, 4096, 1));
+        List<Movie> streaming = loadBundled(new CatalogLoader(CatalogLoader.Mode.STREAMING, 4096, 1));
+        List<Movie> parallel = loadBundled(new CatalogLoader(CatalogLoader.Mode.PARALLEL, 5, 3));
+
+        assertEquals(12, dom.size());
+        assertSameMovies(dom, streaming);
+        assertSameMovies(dom, parallel);
+    }
+
+    @Test
+    public void testParallelModeKeepsDocumentOrderAcrossChunks() throws Exception {
+        CatalogLoader loader = new CatalogLoader(CatalogLoader.Mode.PARALLEL, 1, 4);
+        List<Movie> movies = loader.loadMovies(stream(TRICKY_MOVIES));
+
+        assertEquals(3, movies.size());
+        assertEquals(1L, movies.get(0).getId());
+        assertEquals("Brackets {[ ]}", movies.get(0).getMovieName());
+        assertEquals("A \"Quoted\" Name", movies.get(0).getDirector());
+        assertEquals("Has, commas ] and \\ slashes", movies.get(0).getDescription());
+        assertEquals(3L, movies.get(2).getId());
+    }
+
+    @Test
+    public void testEmptyDocuments() throws Exception {
+        for (CatalogLoader.Mode mode : CatalogLoader.Mode.values()) {
+            assertTrue(new CatalogLoader(mode, 2, 2).loadMovies(stream(" [ ] ")).isEmpty());
+        }
+        assertEquals(0, new CatalogLoader().loadReviews(stream("{}")).movieCount());
+    }
+
+    private List<Movie> loadBundled(CatalogLoader loader) throws Exception {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("movies.json")) {
+            return loader.loadMovies(inputStream);
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameMovies(List<Movie> expected, List<Movie> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getMovieName(), actual.get(i).getMovieName());
+            assertEquals(expected.get(i).getDescription(), actual.get(i).getDescription());
+            assertEquals(expected.get(i).getImdbRating(), actual.get(i).getImdbRating());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Compares cold starts from a JSON catalog and from the same catalog as a {@link BinaryCatalog}.
+ * Each run launches the application in a new JVM and reports the time from launch to the first
+ * served request, and the process's resident set size at that moment. The JSON runs also turn the
+ * bundled binary catalog off, so they start exactly as before it existed.
+ * <p>
+ * Run with {@code mvn test -Pperf -Dtest=CatalogStartupTest}; {@code -Dmovies=N}, {@code -Druns=N}
+ * and {@code -Dheap=2g} change the catalog size, the runs per format and the instances' maximum heap.
+ */
+@Tag("perf")
+public class CatalogStartupTest {
+
+    private static final int MOVIES = Integer.getInteger("movies", 1_000_000);
+    private static final int RUNS = Integer.getInteger("runs", 3);
+    private static final String HEAP = System.getProperty("heap", "2g");
+    private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void reportColdStartByCatalogFormat() throws Exception {
+        Path json = directory.resolve("movies.json");
+        ApplicationHarness.writeCatalog(json, MOVIES);
+        Path binary = directory.resolve("movies.bin");
+        try (InputStream in = Files.newInputStream(json)) {
+            BinaryCatalog.write(new CatalogLoader().loadMovies(in), ReviewCatalog.empty(), binary);
+        }
+
+        List<String> report = new ArrayList<>();
+        for (Path catalog : Arrays.asList(json, binary)) {
+            boolean isBinary = catalog.equals(binary);
+            long[] readyMillis = new long[RUNS];
+            long[] rssKb = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                long[] measured = coldStart(catalog, isBinary, directory.resolve((isBinary ? "binary-" : "json-") + run + ".log"));
+                readyMillis[run] = measured[0];
+                rssKb[run] = measured[1];
+            }
+            Arrays.sort(readyMillis);
+            Arrays.sort(rssKb);
+            report.add(String.format("%-7s %,10.1f %,14d %,12d", isBinary ? "binary" : "json", Files.size(catalog) / 1048576.0,
+                readyMillis[RUNS / 2], rssKb[RUNS / 2] / 1024));
+        }
+        System.out.printf("%,d movies, -Xmx%s, median of %d cold starts%n%s%n", MOVIES, HEAP, RUNS,
+            "format     file MB  first request ms       RSS MB");
+        report.forEach(System.out::println);
+    }
+
+    /**
+     * @return milliseconds from launch to the first served request, and the resident set size then in kB
+     */
+    private static long[] coldStart(Path catalog, boolean binary, Path log) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-Xmx" + HEAP,
+            "-cp", System.getProperty("java.class.path"), MoviesApplication.class.getName(),
+            "--server.port=" + port, "--management.server.port=0", "--movies.catalog.path=" + catalog, "--movies.catalog.binary=" + binary,
+            "--movies.reviews.log.directory=", "--movies.access-log.enabled=false"));
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile());
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try {
+            URL url = new URL("http://localhost:" + port + "/api/movies/1");
+            while (!served(url)) {
+                if (!process.isAlive() || System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(STARTUP_TIMEOUT_MILLIS)) {
+                    fail("Instance did not start; see its log:\n" + tail(log));
+                }
+                Thread.sleep(10);
+            }
+            long readyMillis = (System.nanoTime() - start) / 1_000_000;
+            return new long[] {readyMillis, residentKb(process)};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static boolean served(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(1000);
+            connection.setReadTimeout(60_000);
+            int status = connection.getResponseCode();
+            try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                while (body != null && body.read() != -1) {
+                    // drain
+                }
+            }
+            return status == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long residentKb(Process process) throws Exception {
+        // Process.pid() exists from Java 9
+        long pid = (Long) Process.class.getMethod("pid").invoke(process);
+        File status = new File("/proc/" + pid + "/status");
+        assertTrue(status.exists(), "RSS is read from /proc, which this system does not have");
+        for (String line : Files.readAllLines(status.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        throw new IOException("No VmRSS in " + status);
+    }
+
+    private static String tail(Path log) throws IOException {
+        List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+        return String.join("\n", lines.subList(Math.max(0, lines.size() - 40), lines.size()));
+    }
+}
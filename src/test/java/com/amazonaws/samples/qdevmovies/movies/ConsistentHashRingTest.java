@@ -0,0 +1,68 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConsistentHashRingTest {
+
+    private static final int MOVIES = 100_000;
+
+    @Test
+    public void testVirtualNodesBalanceOwnership() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("http://a:8080", "http://b:8080", "http://c:8080", "http://d:8080"), 256);
+        Map<String, Integer> owned = new HashMap<>();
+        for (long movieId = 1; movieId <= MOVIES; movieId++) {
+            owned.merge(ring.ownerOf(movieId), 1, Integer::sum);
+        }
+        assertEquals(4, owned.size());
+        for (int count : owned.values()) {
+            // A quarter each, within 15%
+            assertTrue(Math.abs(count - MOVIES / 4) < MOVIES / 4 * 15 / 100, owned.toString());
+        }
+    }
+
+    @Test
+    public void testJoiningMovesOnlyMoviesToTheNewMember() {
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList("http://a:8080", "http://b:8080", "http://c:8080"), 256);
+        ConsistentHashRing after = before.withMembers(Arrays.asList("http://a:8080", "http://b:8080", "http://c:8080", "http://d:8080"));
+        int moved = 0;
+        for (long movieId = 1; movieId <= MOVIES; movieId++) {
+            String owner = after.ownerOf(movieId);
+            if (!owner.equals(before.ownerOf(movieId))) {
+                assertEquals("http://d:8080", owner);
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - MOVIES / 4) < MOVIES / 4 * 15 / 100, "moved " + moved);
+    }
+
+    @Test
+    public void testLeavingMovesOnlyTheLeaversMovies() {
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList("http://a:8080", "http://b:8080", "http://c:8080"), 256);
+        ConsistentHashRing after = before.withMembers(Arrays.asList("http://a:8080", "http://c:8080"));
+        for (long movieId = 1; movieId <= MOVIES; movieId++) {
+            String owner = before.ownerOf(movieId);
+            if (!owner.equals("http://b:8080")) {
+                assertEquals(owner, after.ownerOf(movieId));
+            }
+        }
+    }
+
+    @Test
+    public void testOwnershipDependsOnlyOnMembers() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("http://a:8080", "http://b:8080"), 64);
+        ConsistentHashRing reordered = new ConsistentHashRing(Arrays.asList("http://b:8080", "http://a:8080", "http://a:8080"), 64);
+        assertEquals(2, reordered.getMembers().size());
+        for (long movieId = 1; movieId <= 1000; movieId++) {
+            assertEquals(ring.ownerOf(movieId), reordered.ownerOf(movieId));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(Arrays.<String>asList(), 64));
+    }
+}
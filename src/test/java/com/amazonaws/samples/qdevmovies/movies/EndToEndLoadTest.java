@@ -0,0 +1,265 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the application on a random port with a synthetic catalog of {@code load.movies} movies
+ * and {@code load.reviews} imported reviews, and drives it over HTTP with a mix of listing pages,
+ * details pages and review posts. Requests are started at a constant arrival rate, open loop: each
+ * one is due at a fixed time whether or not earlier ones have finished, and its latency is measured
+ * from that time. A slow server then shows up as queueing in the latencies, not as fewer requests
+ * sent. Latencies go into HdrHistograms, which are printed and written to {@code target/load-test}
+ * as {@code .hgrm} files; the test fails when any request fails, when the completed rate falls
+ * below {@code load.min-throughput} or when a kind of request's p99 exceeds its
+ * {@code load.budget.<kind>.p99-ms}. The defaults are below.
+ * Run with {@code mvn test -Pload}, e.g. {@code -Dload.rate=500} to raise the arrival rate.
+ */
+@Tag("load")
+public class EndToEndLoadTest {
+
+    private static final int MOVIES = Integer.getInteger("load.movies", 100_000);
+    private static final int REVIEWS = Integer.getInteger("load.reviews", 200_000);
+    private static final int RATE = Integer.getInteger("load.rate", 200);
+    private static final int CONNECTIONS = Integer.getInteger("load.connections", 64);
+    private static final long WARMUP_SECONDS = Long.getLong("load.warmup-seconds", 20);
+    private static final long DURATION_SECONDS = Long.getLong("load.duration-seconds", 30);
+    private static final double MIN_THROUGHPUT = Double.parseDouble(System.getProperty("load.min-throughput", "190"));
+    private static final String[] COMMENTS = {
+        "A gripping story with great acting throughout",
+        "Slow to start but the last hour is worth it",
+        "Beautifully shot and scored, a real cinema experience",
+        "Not my kind of film but well made all the same"
+    };
+    private static final String[] SORTS = {"id", "name", "year", "rating"};
+    /** Each worker thread is one visitor, sending back the session cookie it was given. */
+    private static final ThreadLocal<String> SESSION = new ThreadLocal<>();
+
+    /** Kinds of request, their share of the arrival rate in percent, and their default p99 budgets. */
+    private enum Kind {
+        LISTING(30, 150), DETAILS(60, 150), REVIEW(10, 300);
+
+        final int percent;
+        final long p99BudgetMillis;
+
+        Kind(int percent, long defaultBudgetMillis) {
+            this.percent = percent;
+            this.p99BudgetMillis = Long.getLong("load.budget." + name().toLowerCase() + ".p99-ms", defaultBudgetMillis);
+        }
+    }
+
+    static {
+        ApplicationHarness.keepAliveConnections(CONNECTIONS);
+    }
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void meetsLatencyAndThroughputBudgets() throws Exception {
+        Path catalog = directory.resolve("movies.json");
+        ApplicationHarness.writeCatalog(catalog, MOVIES);
+        ConfigurableApplicationContext context = ApplicationHarness.start("--movies.catalog.path=" + catalog,
+            "--movies.reviews.log.directory=" + directory.resolve("review-log"),
+            "--movies.access-log.enabled=false");
+        try {
+            String base = ApplicationHarness.baseUrl(context);
+            importReviews(base);
+
+            Run warmup = drive(base, WARMUP_SECONDS);
+            System.out.printf("Warm-up: %,d requests, %d errors%n", warmup.completed.get(), warmup.errors.get());
+            Run run = drive(base, DURATION_SECONDS);
+            report(run);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Schedules {@link #RATE} requests a second for the given time on a pool of {@link #CONNECTIONS}
+     * keep-alive connections, then waits for the ones still queued or in flight.
+     */
+    private static Run drive(String base, long seconds) throws InterruptedException {
+        Run run = new Run();
+        ExecutorService workers = Executors.newFixedThreadPool(CONNECTIONS);
+        Random random = new Random(seconds);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / RATE;
+        long total = seconds * RATE;
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            Kind kind = pick(random.nextInt(100));
+            long movieId = 1 + random.nextInt(MOVIES);
+            String sort = SORTS[random.nextInt(SORTS.length)];
+            workers.execute(() -> {
+                try {
+                    switch (kind) {
+                        case LISTING:
+                            get(base + "/movies?sort=" + sort);
+                            break;
+                        case DETAILS:
+                            get(base + "/movies/" + movieId + "/details");
+                            break;
+                        default:
+                            postReview(base + "/movies/" + movieId + "/details");
+                    }
+                    run.latencies[kind.ordinal()].recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+                    run.completed.incrementAndGet();
+                } catch (IOException e) {
+                    if (run.errors.getAndIncrement() < 10) {
+                        System.out.println(kind + " failed: " + e);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        run.elapsedNanos = System.nanoTime() - start;
+        return run;
+    }
+
+    private static Kind pick(int percentile) {
+        int cumulative = 0;
+        for (Kind kind : Kind.values()) {
+            cumulative += kind.percent;
+            if (percentile < cumulative) {
+                return kind;
+            }
+        }
+        return Kind.REVIEW;
+    }
+
+    private static void report(Run run) throws IOException {
+        double throughput = run.completed.get() / (run.elapsedNanos / 1e9);
+        System.out.printf("Offered %,d req/s for %d s: completed %,.0f req/s, %d errors%n",
+            RATE, DURATION_SECONDS, throughput, run.errors.get());
+        Path output = Paths.get("target", "load-test");
+        Files.createDirectories(output);
+        List<String> overBudget = new ArrayList<>();
+        for (Kind kind : Kind.values()) {
+            Histogram histogram = run.latencies[kind.ordinal()].getIntervalHistogram();
+            double p99 = histogram.getValueAtPercentile(99) / 1000.0;
+            System.out.printf("  %-8s %,7d requests  p50 %6.1f ms  p99 %7.1f ms (budget %d)  max %7.1f ms%n",
+                kind, histogram.getTotalCount(), histogram.getValueAtPercentile(50) / 1000.0, p99,
+                kind.p99BudgetMillis, histogram.getMaxValue() / 1000.0);
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(output.resolve(kind.name().toLowerCase() + ".hgrm")),
+                false, StandardCharsets.UTF_8.name())) {
+                // Recorded in microseconds, written in milliseconds
+                histogram.outputPercentileDistribution(hgrm, 1000.0);
+            }
+            if (p99 > kind.p99BudgetMillis) {
+                overBudget.add(String.format("%s p99 %.1f ms > %d ms", kind, p99, kind.p99BudgetMillis));
+            }
+        }
+        assertEquals(0, run.errors.get(), "failed requests");
+        assertTrue(throughput >= MIN_THROUGHPUT,
+            String.format("completed %.0f req/s, below the budget of %.0f", throughput, MIN_THROUGHPUT));
+        assertTrue(overBudget.isEmpty(), String.join(", ", overBudget));
+    }
+
+    /**
+     * Streams {@link #REVIEWS} reviews of random movies to the bulk import endpoint.
+     */
+    private static void importReviews(String base) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + "/api/reviews/bulk").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(64 * 1024);
+        connection.setRequestProperty("Content-Type", "application/x-ndjson");
+        Random random = new Random(7);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+            for (int r = 0; r < REVIEWS; r++) {
+                out.write("{\"movieId\":" + (1 + random.nextInt(MOVIES)) + ",\"userName\":\"User" + random.nextInt(100_000)
+                    + "\",\"rating\":" + (1 + random.nextInt(5)) + ",\"comment\":\"" + COMMENTS[random.nextInt(COMMENTS.length)] + "\"}\n");
+            }
+        }
+        assertEquals(200, connection.getResponseCode());
+        String result = ApplicationHarness.read(connection);
+        assertTrue(result.contains("\"accepted\":" + REVIEWS), result);
+    }
+
+    private static void get(String url) throws IOException {
+        HttpURLConnection connection = open(url);
+        if (connection.getResponseCode() != 200) {
+            throw new IOException(url + " returned " + connection.getResponseCode());
+        }
+        drain(connection);
+    }
+
+    private static void postReview(String url) throws IOException {
+        HttpURLConnection connection = open(url);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setInstanceFollowRedirects(false);
+        String comment = COMMENTS[ThreadLocalRandom.current().nextInt(COMMENTS.length)];
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(("userName=Load&rating=4&comment=" + comment.replace(' ', '+')).getBytes(StandardCharsets.UTF_8));
+        }
+        if (connection.getResponseCode() != 302) {
+            throw new IOException(url + " returned " + connection.getResponseCode());
+        }
+        drain(connection);
+    }
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        String session = SESSION.get();
+        if (session != null) {
+            connection.setRequestProperty("Cookie", session);
+        }
+        return connection;
+    }
+
+    private static void drain(HttpURLConnection connection) throws IOException {
+        String cookie = connection.getHeaderField("Set-Cookie");
+        if (cookie != null && cookie.startsWith("JSESSIONID=")) {
+            SESSION.set(cookie.substring(0, cookie.indexOf(';') > 0 ? cookie.indexOf(';') : cookie.length()));
+        }
+        ApplicationHarness.drain(connection, new byte[8192]);
+    }
+
+    private static final class Run {
+        final Recorder[] latencies = new Recorder[Kind.values().length];
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        long elapsedNanos;
+
+        Run() {
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new Recorder(3);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Boots the application in each execution mode and drives it with 1,000 concurrent keep-alive
+ * clients: one in ten posts reviews, which wait for the review log's fsync, and the rest read the
+ * listing, details pages and ratings. Reports throughput and p50/p99 latency per kind of request.
+ * Both modes share one JVM, so both are warmed up first and then measured in A-B-B-A order; the
+ * mode measured second would otherwise win on JIT warm-up alone.
+ * Run with {@code mvn test -Pperf -Dtest=ExecutionModeLoadTest}; {@code -Dclients=N} and
+ * {@code -DwriterEvery=N} change the client count and the share of writers.
+ */
+@Tag("perf")
+public class ExecutionModeLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("clients", 1_000);
+    private static final int WRITER_EVERY = Integer.getInteger("writerEvery", 10);
+    private static final long WARMUP_MILLIS = 10_000;
+    private static final long DURATION_MILLIS = 10_000;
+    private static final String[] KINDS = {"listing", "details", "ratings", "review"};
+
+    static {
+        ApplicationHarness.keepAliveConnections(CLIENTS);
+    }
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void compareBlockingAndAsync() throws Exception {
+        RequestExecutor.Mode[] modes = RequestExecutor.Mode.values();
+        for (RequestExecutor.Mode mode : modes) {
+            run(mode, WARMUP_MILLIS);
+        }
+        Map<RequestExecutor.Mode, ApplicationHarness.Measurement> results = new EnumMap<>(RequestExecutor.Mode.class);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < modes.length; i++) {
+                RequestExecutor.Mode mode = modes[round == 0 ? i : modes.length - 1 - i];
+                results.computeIfAbsent(mode, m -> new ApplicationHarness.Measurement(KINDS.length)).add(run(mode, DURATION_MILLIS));
+            }
+        }
+        for (Map.Entry<RequestExecutor.Mode, ApplicationHarness.Measurement> entry : results.entrySet()) {
+            ApplicationHarness.Measurement result = entry.getValue();
+            System.out.printf("%-8s %,7.0f req/s, %d errors%n", entry.getKey(), result.requests() * 1000.0 / (2 * DURATION_MILLIS),
+                result.errors.get());
+            for (int kind = 0; kind < KINDS.length; kind++) {
+                System.out.printf("  %-8s %,7d requests  p50 %6.1f ms  p99 %7.1f ms  max %7.1f ms%n", KINDS[kind], result.count(kind),
+                    result.percentile(kind, 0.50), result.percentile(kind, 0.99), result.percentile(kind, 1.0));
+            }
+            assertEquals(0, result.errors.get());
+        }
+    }
+
+    private ApplicationHarness.Measurement run(RequestExecutor.Mode mode, long millis) throws Exception {
+        ConfigurableApplicationContext context = ApplicationHarness.start("--movies.execution.mode=" + mode,
+            "--movies.reviews.log.directory=" + directory.resolve(mode.name()),
+            // Every client connects at once; the default backlog of 100 would cost the rest SYN retries
+            "--server.tomcat.accept-count=" + CLIENTS,
+            // Compares the execution modes at full load, not what admission control lets through
+            "--movies.admission.enabled=false");
+        try {
+            String base = ApplicationHarness.baseUrl(context);
+            return ApplicationHarness.closedLoop(CLIENTS, millis, KINDS.length, client -> {
+                long movieId = 1 + (client.id + client.requests) % 12;
+                int kind = client.id % WRITER_EVERY == WRITER_EVERY - 1 ? 3 : (int) ((client.id + client.requests) % 3);
+                switch (kind) {
+                    case 0:
+                        ApplicationHarness.fetch(base + "/movies", client.buffer);
+                        break;
+                    case 1:
+                        ApplicationHarness.fetch(base + "/movies/" + movieId + "/details", client.buffer);
+                        break;
+                    case 2:
+                        ApplicationHarness.fetch(base + "/api/movies/" + movieId + "/ratings", client.buffer);
+                        break;
+                    default:
+                        ApplicationHarness.postReview(base + "/movies/" + movieId + "/details", client.buffer);
+                }
+                return kind;
+            });
+        } finally {
+            context.close();
+        }
+    }
+}
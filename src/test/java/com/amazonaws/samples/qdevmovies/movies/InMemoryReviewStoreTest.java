@@ -0,0 +1,177 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InMemoryReviewStoreTest {
+
+    @Test
+    public void testAppendAndSnapshot() {
+        InMemoryReviewStore store = new InMemoryReviewStore();
+        assertTrue(store.getReviews(1L).isEmpty());
+        assertEquals(0, store.getVersion(1L));
+
+        assertEquals(1, store.addReview(1L, review("a", 0)));
+        List<Review> snapshot = store.getReviews(1L);
+        assertEquals(2, store.addReview(1L, review("b", 1)));
+
+        assertEquals(1, snapshot.size());
+        assertEquals(2, store.getReviews(1L).size());
+        assertEquals(2, store.getVersion(1L));
+        assertTrue(store.getReviews(2L).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(review("c", 2)));
+    }
+
+    @Test
+    public void testGrowsAcrossChunks() {
+        InMemoryReviewStore store = new InMemoryReviewStore();
+        for (int i = 0; i < 1000; i++) {
+            store.addReview(7L, review("user", i));
+        }
+        List<Review> reviews = store.getReviews(7L);
+        assertEquals(1000, reviews.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("comment " + i, reviews.get(i).getComment());
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersAndReaders() throws Exception {
+        InMemoryReviewStore store = new InMemoryReviewStore();
+        int writers = 4;
+        int perWriter = 5000;
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 2);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(pool.submit(() -> {
+                    while (!done.get()) {
+                        List<Review> snapshot = store.getReviews(1L);
+                        // Every visible slot is populated and the snapshot does not change afterwards
+                        int size = snapshot.size();
+                        for (Review review : snapshot) {
+                            assertTrue(review != null);
+                        }
+                        assertEquals(size, snapshot.size());
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> writes = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                writes.add(pool.submit(() -> {
+                    for (int i = 0; i < perWriter; i++) {
+                        store.addReview(1L, review("writer" + writer, i));
+                    }
+                }));
+            }
+            for (Future<?> write : writes) {
+                write.get(30, TimeUnit.SECONDS);
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(writers * perWriter, store.getReviews(1L).size());
+        assertEquals(writers * perWriter, store.getVersion(1L));
+    }
+
+    /**
+     * Write throughput and read latency under contention: 8 writers spread over 100 hot movies while
+     * 8 readers snapshot random movies. Run with {@code mvn test -Pperf}.
+     */
+    @Test
+    @Tag("perf")
+    public void stressWriteThroughputAndReadLatency() throws Exception {
+        InMemoryReviewStore store = new InMemoryReviewStore();
+        int threads = 8;
+        int movies = 100;
+        long durationNanos = TimeUnit.SECONDS.toNanos(5);
+        ExecutorService pool = Executors.newFixedThreadPool(threads * 2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> writers = new ArrayList<>();
+        List<Future<long[]>> readers = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                writers.add(pool.submit(() -> {
+                    start.await();
+                    long writes = 0;
+                    long deadline = System.nanoTime() + durationNanos;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    Review review = review("writer", 0);
+                    while (System.nanoTime() < deadline) {
+                        store.addReview(1 + random.nextInt(movies), review);
+                        writes++;
+                    }
+                    return writes;
+                }));
+                readers.add(pool.submit(() -> {
+                    start.await();
+                    long[] samples = new long[1 << 20];
+                    int count = 0;
+                    long deadline = System.nanoTime() + durationNanos;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline && count < samples.length) {
+                        long begin = System.nanoTime();
+                        List<Review> snapshot = store.getReviews(1 + random.nextInt(movies));
+                        if (!snapshot.isEmpty()) {
+                            snapshot.get(snapshot.size() - 1);
+                        }
+                        samples[count++] = System.nanoTime() - begin;
+                    }
+                    return Arrays.copyOf(samples, count);
+                }));
+            }
+            start.countDown();
+            long totalWrites = 0;
+            for (Future<Long> writer : writers) {
+                totalWrites += writer.get();
+            }
+            List<long[]> allSamples = new ArrayList<>();
+            int sampleCount = 0;
+            for (Future<long[]> reader : readers) {
+                long[] samples = reader.get();
+                allSamples.add(samples);
+                sampleCount += samples.length;
+            }
+            long[] latencies = new long[sampleCount];
+            int offset = 0;
+            for (long[] samples : allSamples) {
+                System.arraycopy(samples, 0, latencies, offset, samples.length);
+                offset += samples.length;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("ReviewStore stress: %,d writes/s across %d writers; read latency p50=%dns p99=%dns p99.9=%dns over %,d reads%n",
+                totalWrites * TimeUnit.SECONDS.toNanos(1) / durationNanos, threads,
+                latencies[latencies.length / 2], latencies[(int) (latencies.length * 0.99)],
+                latencies[(int) (latencies.length * 0.999)], latencies.length);
+            assertTrue(totalWrites > 0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Review review(String userName, int index) {
+        return new Review(userName, "👩", 4.0, "comment " + index);
+    }
+}
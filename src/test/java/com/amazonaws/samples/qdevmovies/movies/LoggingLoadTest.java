@@ -0,0 +1,127 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the application with logging off, with the access log and the controllers' DEBUG lines on
+ * synchronous loggers ({@code log4j2-sync.xml}), and with the same logging on the asynchronous
+ * loggers of {@code log4j2.xml}, and drives the details page and the ratings API over HTTP. The
+ * page cache is off so every request reaches a controller. Standard output goes to a consumer that
+ * reads in bursts, stalling for {@value #STALL_MILLIS} ms out of every {@value #STALL_PERIOD_MILLIS}
+ * ms, like a log collector behind a full pipe; a synchronous logger blocks the request thread for
+ * the stall. All three share one JVM, so each is warmed up first and then measured in forward and
+ * reverse order. Run with {@code mvn test -Pperf -Dtest=LoggingLoadTest}.
+ */
+@Tag("perf")
+public class LoggingLoadTest {
+
+    private static final int CLIENTS = 16;
+    private static final long WARMUP_MILLIS = 5_000;
+    private static final long DURATION_MILLIS = 10_000;
+    private static final long STALL_PERIOD_MILLIS = 250;
+    private static final long STALL_MILLIS = 100;
+    private static final String[] PATHS = {"/movies/1/details", "/movies/5/details", "/api/movies/3/ratings", "/api/movies/9/ratings"};
+
+    private enum Logging {
+        OFF("--logging.level.root=OFF", "--logging.level.com.amazonaws.samples.qdevmovies=OFF", "--movies.access-log.enabled=false"),
+        SYNC("--logging.config=classpath:log4j2-sync.xml", "--logging.level.com.amazonaws.samples.qdevmovies=DEBUG"),
+        ASYNC("--logging.level.com.amazonaws.samples.qdevmovies=DEBUG");
+
+        final String[] arguments;
+
+        Logging(String... arguments) {
+            this.arguments = arguments;
+        }
+    }
+
+    @Test
+    public void asyncLoggingKeepsUpWithRequests() throws Exception {
+        PrintStream console = System.out;
+        StalledOutput output = new StalledOutput();
+        // Set before the first context starts: Log4j's console appender keeps the stream it was created with
+        System.setOut(new PrintStream(output, true));
+        Map<Logging, Long> requests;
+        try {
+            requests = compare();
+        } finally {
+            System.setOut(console);
+        }
+        StringBuilder report = new StringBuilder("Logging load test:");
+        for (Map.Entry<Logging, Long> entry : requests.entrySet()) {
+            report.append(String.format(" %s %.0f req/s,", entry.getKey(), entry.getValue() * 1000.0 / (2 * DURATION_MILLIS)));
+        }
+        System.out.println(report.substring(0, report.length() - 1) + String.format(" (%,d bytes logged)", output.bytes.get()));
+        assertTrue(requests.get(Logging.ASYNC) > requests.get(Logging.SYNC));
+    }
+
+    private static Map<Logging, Long> compare() throws Exception {
+        Logging[] configurations = Logging.values();
+        for (Logging logging : configurations) {
+            measure(logging, WARMUP_MILLIS);
+        }
+        Map<Logging, Long> requests = new EnumMap<>(Logging.class);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < configurations.length; i++) {
+                Logging logging = configurations[round == 0 ? i : configurations.length - 1 - i];
+                requests.merge(logging, measure(logging, DURATION_MILLIS), Long::sum);
+            }
+        }
+        return requests;
+    }
+
+    private static long measure(Logging logging, long millis) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList("--movies.page-cache.enabled=false"));
+        arguments.addAll(Arrays.asList(logging.arguments));
+        ConfigurableApplicationContext context = ApplicationHarness.start(arguments.toArray(new String[0]));
+        try {
+            String base = ApplicationHarness.baseUrl(context);
+            ApplicationHarness.Measurement measurement = ApplicationHarness.closedLoop(CLIENTS, millis, 1, client -> {
+                ApplicationHarness.fetch(base + PATHS[(int) ((client.id + client.requests) % PATHS.length)], client.buffer);
+                return 0;
+            });
+            assertEquals(0, measurement.errors.get(), "failed requests");
+            return measurement.requests();
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Discards what is written, after waiting out the stall if one is in progress.
+     */
+    private static final class StalledOutput extends OutputStream {
+        final AtomicLong bytes = new AtomicLong();
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] buffer, int offset, int length) {
+            long phase = System.currentTimeMillis() % STALL_PERIOD_MILLIS;
+            if (phase < STALL_MILLIS) {
+                try {
+                    Thread.sleep(STALL_MILLIS - phase);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            bytes.addAndGet(length);
+        }
+    }
+}
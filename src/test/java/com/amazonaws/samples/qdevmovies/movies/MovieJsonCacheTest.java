@@ -0,0 +1,142 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MovieJsonCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MovieService movieService;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (movieService != null) {
+            movieService.close();
+        }
+    }
+
+    @Test
+    public void testSerializesOnceAndCompresses() throws Exception {
+        movieService = new MovieService();
+        MovieJsonCache cache = new MovieJsonCache(objectMapper, movieService, 1 << 20);
+
+        MovieJsonCache.Payload page = cache.page(MovieSort.RATING, null, 5);
+        assertArrayEquals(objectMapper.writeValueAsBytes(movieService.getMoviePage(MovieSort.RATING, null, 5)), page.getJson());
+        assertSame(page, cache.page(MovieSort.RATING, null, 5));
+        assertArrayEquals(page.getJson(), gunzip(page.getGzip()));
+
+        MovieJsonCache.Payload movie = cache.movie(3L).get();
+        assertArrayEquals(objectMapper.writeValueAsBytes(movieService.getMovieById(3L).get()), movie.getJson());
+        assertFalse(cache.movie(999L).isPresent());
+
+        MovieJsonCache.Stats stats = cache.stats();
+        assertEquals(2, stats.getEntries());
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertTrue(stats.getBytes() > page.getJson().length + movie.getJson().length);
+    }
+
+    @Test
+    public void testWritesBodyForAcceptEncoding() throws Exception {
+        movieService = new MovieService();
+        MovieJsonCache.Payload page = new MovieJsonCache(objectMapper, movieService, 1 << 20).page(MovieSort.ID, null, 12);
+
+        MockHttpServletResponse plain = write(page, null, null);
+        assertArrayEquals(page.getJson(), plain.getContentAsByteArray());
+        assertEquals("application/json", plain.getContentType());
+        assertNull(plain.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, plain.getHeader(HttpHeaders.VARY));
+
+        MockHttpServletResponse compressed = write(page, "gzip, deflate, br", null);
+        assertArrayEquals(page.getGzip(), compressed.getContentAsByteArray());
+        assertEquals("gzip", compressed.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(page.getGzip().length, compressed.getContentLength());
+        assertNotEquals(plain.getHeader(HttpHeaders.ETAG), compressed.getHeader(HttpHeaders.ETAG));
+
+        MockHttpServletResponse notModified = write(page, "gzip", compressed.getHeader(HttpHeaders.ETAG));
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+        assertEquals(200, write(page, null, compressed.getHeader(HttpHeaders.ETAG)).getStatus());
+
+        assertTrue(MovieJsonCache.acceptsGzip("deflate, gzip;q=0.5"));
+        assertFalse(MovieJsonCache.acceptsGzip("gzip;q=0, deflate"));
+        assertFalse(MovieJsonCache.acceptsGzip("gzip; q=0.000"));
+        assertFalse(MovieJsonCache.acceptsGzip("identity"));
+    }
+
+    @Test
+    public void testCatalogReloadInvalidates() throws Exception {
+        Path catalog = directory.resolve("movies.json");
+        writeCatalog(catalog, "First cut");
+        movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, catalog.toString(), BundledCatalog.none(), false);
+        MovieJsonCache cache = new MovieJsonCache(objectMapper, movieService, 1 << 20);
+        assertTrue(new String(cache.movie(1L).get().getJson(), StandardCharsets.UTF_8).contains("First cut"));
+
+        writeCatalog(catalog, "Director's cut");
+        assertTrue(movieService.reload());
+
+        assertEquals(0, cache.stats().getEntries());
+        assertTrue(new String(cache.movie(1L).get().getJson(), StandardCharsets.UTF_8).contains("Director's cut"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWithinByteBudget() {
+        movieService = new MovieService();
+        MovieJsonCache cache = new MovieJsonCache(objectMapper, movieService, 8 * 1024);
+        for (long id = 1; id <= 12; id++) {
+            cache.movie(id);
+        }
+        MovieJsonCache.Stats stats = cache.stats();
+        assertTrue(stats.getBytes() <= 8 * 1024, String.valueOf(stats.getBytes()));
+        assertTrue(stats.getEvictions() > 0);
+        assertEquals(12 - stats.getEvictions(), stats.getEntries());
+    }
+
+    private static void writeCatalog(Path catalog, String name) throws IOException {
+        Files.write(catalog, ("[{\"id\": 1, \"movieName\": \"" + name + "\", \"director\": \"Director\", \"year\": 2000,"
+            + " \"genre\": \"Drama\", \"description\": \"Plot\", \"duration\": 100, \"imdbRating\": 4.0}]").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MockHttpServletResponse write(MovieJsonCache.Payload payload, String acceptEncoding, String ifNoneMatch) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/movies");
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        payload.write(request, response);
+        return response;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return StreamUtils.copyToByteArray(input);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MovieLeaderboardsTest {
+
+    private static final String[] GENRES = {"Drama", "Crime/Drama", "Action/Sci-Fi", "Comedy"};
+    private static final String[] DIRECTORS = {"Ann Lee", "Bo Kim", "Cy Dao"};
+
+    @Test
+    public void testFacetsMatchSortAndLimit() {
+        List<Movie> movies = catalog(2000, new Random(1));
+        Map<Long, RatingSummary> ratings = new HashMap<>();
+        MovieLeaderboards leaderboards = new MovieLeaderboards(movies, id -> rating(ratings, id));
+
+        assertTopMatches(movies, ratings, leaderboards, null, null, null, 10);
+        assertTopMatches(movies, ratings, leaderboards, "drama", null, null, 100);
+        assertTopMatches(movies, ratings, leaderboards, null, 1990, null, 25);
+        assertTopMatches(movies, ratings, leaderboards, "Sci-Fi", 1970, null, 5);
+        assertTopMatches(movies, ratings, leaderboards, null, null, "bo kim", 50);
+        assertTopMatches(movies, ratings, leaderboards, "Comedy", 2000, "Cy Dao", 10);
+        assertTrue(leaderboards.top("Western", null, null, 10).isEmpty());
+    }
+
+    @Test
+    public void testIncrementalUpdatesMatchFullRecompute() {
+        Random random = new Random(2);
+        List<Movie> movies = catalog(3000, random);
+        Map<Long, RatingSummary> ratings = new HashMap<>();
+        MovieLeaderboards leaderboards = new MovieLeaderboards(movies, id -> rating(ratings, id));
+
+        for (int round = 0; round < 2000; round++) {
+            long movieId = 1 + random.nextInt(movies.size());
+            // Push some movies up with many 5-star reviews and others down with 1-star reviews
+            boolean up = random.nextBoolean();
+            ratings.put(movieId, new RatingSummary(movieId, 20, up ? 100.0 : 20.0, new long[5]));
+            leaderboards.ratingChanged(movieId);
+            if (round % 100 == 0) {
+                assertTopMatches(movies, ratings, leaderboards, null, null, null, MovieLeaderboards.MAX_LIMIT);
+                assertTopMatches(movies, ratings, leaderboards, "Drama", 1980, null, 20);
+                assertTopMatches(movies, ratings, leaderboards, null, null, "Ann Lee", 100);
+            }
+        }
+        assertTopMatches(movies, ratings, leaderboards, null, null, null, MovieLeaderboards.MAX_LIMIT);
+    }
+
+    @Test
+    public void testCommunityReviewsOutweighSingleReview() {
+        Movie steady = new Movie(1L, "Steady", "Ann Lee", 1999, "Drama", "d", 100, 4.5);
+        Movie hyped = new Movie(2L, "Hyped", "Ann Lee", 1999, "Drama", "d", 100, 4.0);
+        Map<Long, RatingSummary> ratings = new HashMap<>();
+        ratings.put(2L, new RatingSummary(2L, 1, 5.0, new long[] {0, 0, 0, 0, 1}));
+        MovieLeaderboards leaderboards = new MovieLeaderboards(Arrays.asList(steady, hyped), id -> rating(ratings, id));
+
+        List<RankedMovie> top = leaderboards.top(null, null, null, 2);
+        assertEquals(1L, top.get(0).getMovie().getId());
+        assertEquals(1, top.get(0).getRank());
+        assertEquals(4.5, top.get(0).getScore(), 0.0001);
+    }
+
+    @Test
+    public void testParseDecade() {
+        assertEquals(Integer.valueOf(1990), MovieLeaderboards.parseDecade("1990s"));
+        assertEquals(Integer.valueOf(1990), MovieLeaderboards.parseDecade("1994"));
+        assertNull(MovieLeaderboards.parseDecade(" "));
+        assertThrows(IllegalArgumentException.class, () -> MovieLeaderboards.parseDecade("nineties"));
+    }
+
+    private static void assertTopMatches(List<Movie> movies, Map<Long, RatingSummary> ratings, MovieLeaderboards leaderboards,
+                                         String genre, Integer decade, String director, int limit) {
+        List<Long> expected = movies.stream()
+            .filter(m -> genre == null || Arrays.stream(m.getGenre().split("/")).anyMatch(g -> g.equalsIgnoreCase(genre)))
+            .filter(m -> decade == null || m.getYear() / 10 * 10 == decade)
+            .filter(m -> director == null || m.getDirector().equalsIgnoreCase(director))
+            .sorted(Comparator.comparingDouble((Movie m) -> -MovieLeaderboards.score(m, rating(ratings, m.getId())))
+                .thenComparingLong(Movie::getId))
+            .limit(limit)
+            .map(Movie::getId)
+            .collect(Collectors.toList());
+        List<Long> actual = leaderboards.top(genre, decade, director, limit).stream()
+            .map(ranked -> ranked.getMovie().getId())
+            .collect(Collectors.toList());
+        assertEquals(expected, actual, "genre=" + genre + " decade=" + decade + " director=" + director);
+    }
+
+    private static RatingSummary rating(Map<Long, RatingSummary> ratings, long movieId) {
+        RatingSummary summary = ratings.get(movieId);
+        return summary != null ? summary : new RatingSummary(movieId, 0, 0.0, new long[5]);
+    }
+
+    private static List<Movie> catalog(int size, Random random) {
+        List<Movie> movies = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            movies.add(new Movie(i, "Movie " + i, DIRECTORS[random.nextInt(DIRECTORS.length)], 1950 + random.nextInt(70),
+                GENRES[random.nextInt(GENRES.length)], "description", 100, (2 + random.nextInt(7)) / 2.0));
+        }
+        return movies;
+    }
+}
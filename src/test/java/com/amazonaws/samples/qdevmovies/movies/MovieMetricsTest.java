@@ -0,0 +1,149 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MovieMetricsTest {
+
+    private static final String COMMENT = "A gripping story with great acting throughout";
+
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    private final MovieService movieService = new MovieService();
+    private final ReviewService reviewService = new ReviewService();
+    private MovieMetrics metrics;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = metrics(registry, movieService, reviewService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        metrics.close();
+    }
+
+    @Test
+    public void testRecordsLookupsAndValidationsByOutcome() {
+        movieService.getMovieById(1L);
+        movieService.getMovieById(2L);
+        movieService.getMovieById(999L);
+        reviewService.getReviewsForMovie(1L);
+        ReviewValidator.defaults().validate(new ReviewRequest("Ana", 5, COMMENT), metrics);
+        ReviewValidator.defaults().validate(new ReviewRequest("Ana", 9, COMMENT), metrics);
+        ReviewValidator.defaults().validate(new ReviewRequest("Ana", 4, "too short"), metrics);
+        // Without the caller's recorder nothing is timed
+        ReviewValidator.validateReview(new ReviewRequest("Ana", 4, "too short"));
+
+        assertEquals(2, timer("movies.catalog.lookups", "result", "hit").count());
+        assertEquals(1, timer("movies.catalog.lookups", "result", "miss").count());
+        assertEquals(1, timer("movies.reviews.lookups", null, null).count());
+        assertEquals(1, timer("movies.reviews.validations", "result", "ACCEPTED").count());
+        assertEquals(1, timer("movies.reviews.validations", "result", "RATING_OUT_OF_RANGE").count());
+        assertEquals(1, timer("movies.reviews.validations", "result", "TOO_FEW_WORDS").count());
+        assertEquals(1, timer("movies.catalog.loads", null, null).count());
+        assertTrue(timer("movies.catalog.loads", null, null).totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(12.0, registry.get("movies.catalog.movies").gauge().value());
+    }
+
+    @Test
+    public void testSwitchedOffAtRuntime() {
+        metrics.setEnabled(false);
+        assertFalse(MovieMetrics.recording(metrics));
+        movieService.getMovieById(1L);
+        ReviewValidator.defaults().validate(new ReviewRequest("Ana", 5, COMMENT), metrics);
+        assertEquals(0, timer("movies.catalog.lookups", "result", "hit").count());
+        assertEquals(0, timer("movies.reviews.validations", "result", "ACCEPTED").count());
+
+        metrics.setEnabled(true);
+        movieService.getMovieById(1L);
+        assertEquals(1, timer("movies.catalog.lookups", "result", "hit").count());
+    }
+
+    /**
+     * Several application contexts in one JVM each record into their own registry.
+     */
+    @Test
+    public void testEachContextRecordsIntoItsOwnRegistry() {
+        PrometheusMeterRegistry otherRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        MovieService otherMovieService = new MovieService();
+        MovieMetrics other = metrics(otherRegistry, otherMovieService, new ReviewService());
+        try {
+            movieService.getMovieById(1L);
+            otherMovieService.getMovieById(1L);
+            otherMovieService.getMovieById(2L);
+            assertEquals(1, timer("movies.catalog.lookups", "result", "hit").count());
+            assertEquals(2, otherRegistry.get("movies.catalog.lookups").tag("result", "hit").timer().count());
+
+            other.close();
+            otherMovieService.getMovieById(1L);
+            assertEquals(2, otherRegistry.get("movies.catalog.lookups").tag("result", "hit").timer().count());
+            movieService.getMovieById(1L);
+            assertEquals(2, timer("movies.catalog.lookups", "result", "hit").count());
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void testRequestTimersAreRegisteredOncePerMethodUriAndStatus() {
+        metrics.recordRequest("GET", "/movies", 200, 1_000);
+        metrics.recordRequest("GET", "/movies", 200, 2_000);
+        metrics.recordRequest("GET", "/movies", 404, 3_000);
+        assertEquals(2, registry.get("movies.http.requests").timers().size());
+        assertEquals(2, registry.get("movies.http.requests").tag("status", "200").timer().count());
+        assertEquals(1, registry.get("movies.http.requests").tag("status", "404").timer().count());
+    }
+
+    @Test
+    public void testInterceptorTimesHandlerAndViewRendering() throws Exception {
+        RequestMetricsInterceptor interceptor = new RequestMetricsInterceptor(metrics);
+        HandlerMethod handler = new HandlerMethod(new MoviesController(), "getMovieDetails",
+            Long.class, org.springframework.ui.Model.class, javax.servlet.http.HttpSession.class, String.class);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies/1/details");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/movies/{id}/details");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(request, response, handler);
+        interceptor.postHandle(request, response, handler, new ModelAndView("movie-details"));
+        interceptor.afterCompletion(request, response, handler, null);
+
+        Timer requests = registry.get("movies.http.requests").tag("uri", "/movies/{id}/details").tag("status", "200").timer();
+        assertEquals(1, requests.count());
+        assertEquals(1, timer("movies.views.render", "view", "movie-details").count());
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("movies_http_requests_seconds_bucket{method=\"GET\",status=\"200\",uri=\"/movies/{id}/details\""), scrape);
+        assertTrue(scrape.contains("movies_views_render_seconds_bucket{view=\"movie-details\""), scrape);
+
+        metrics.setEnabled(false);
+        MockHttpServletRequest untimed = new MockHttpServletRequest("GET", "/movies/1/details");
+        interceptor.preHandle(untimed, response, handler);
+        interceptor.afterCompletion(untimed, response, handler, null);
+        assertEquals(1, requests.count());
+        assertFalse(metrics.isEnabled());
+    }
+
+    private static MovieMetrics metrics(PrometheusMeterRegistry registry, MovieService movieService, ReviewService reviewService) {
+        return new MovieMetrics(registry, movieService, reviewService, new RenderedPageCache(1 << 20, new InMemoryReviewStore()),
+            new AdmissionControl(true, 1, 10, 50, 100, 100_000, new StandardEnvironment()), true);
+    }
+
+    private Timer timer(String name, String tag, String value) {
+        return tag == null ? registry.get(name).timer() : registry.get(name).tag(tag, value).timer();
+    }
+}
@@ -0,0 +1,78 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MovieOrderingsTest {
+
+    private final List<Movie> catalog = new MovieService().getAllMovies();
+    private final MovieOrderings orderings = new MovieOrderings(catalog);
+
+    @Test
+    public void testKeysetPagesWalkEveryOrderCompletely() {
+        for (MovieSort sort : MovieSort.values()) {
+            List<Movie> walked = new ArrayList<>();
+            String cursor = null;
+            do {
+                MoviePage page = orderings.page(sort, cursor, 5);
+                walked.addAll(page.getMovies());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            List<Movie> expected = new ArrayList<>(catalog);
+            expected.sort(sort.comparator());
+            assertEquals(expected.size(), walked.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getId(), walked.get(i).getId(), sort + " position " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testOrderings() {
+        List<Movie> byRating = orderings.ordered(MovieSort.RATING);
+        for (int i = 1; i < byRating.size(); i++) {
+            assertTrue(byRating.get(i - 1).getImdbRating() >= byRating.get(i).getImdbRating());
+        }
+        List<Movie> byYear = orderings.ordered(MovieSort.YEAR);
+        for (int i = 1; i < byYear.size(); i++) {
+            assertTrue(byYear.get(i - 1).getYear() >= byYear.get(i).getYear());
+        }
+    }
+
+    @Test
+    public void testLastPageHasNoCursor() {
+        MoviePage page = orderings.page(MovieSort.ID, null, 100);
+        assertEquals(12, page.getMovies().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void testRejectsBadCursors() {
+        String nameCursor = orderings.page(MovieSort.NAME, null, 2).getNextCursor();
+        assertThrows(IllegalArgumentException.class, () -> orderings.page(MovieSort.YEAR, nameCursor, 2));
+        assertThrows(IllegalArgumentException.class, () -> orderings.page(MovieSort.NAME, "not*base64", 2));
+        assertThrows(IllegalArgumentException.class, () -> MovieSort.fromParameter("popularity"));
+    }
+
+    @Test
+    public void testParsesSortNamesInAnyDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        // Turkish upper-cases 'i' to a dotted 'İ', which no constant is named with
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals(MovieSort.ID, MovieSort.fromParameter("id"));
+            assertEquals(MovieSort.RATING, MovieSort.fromParameter("rating"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MovieSearchIndexTest {
+
+    private MovieSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new MovieSearchIndex(new MovieService().getAllMovies());
+    }
+
+    @Test
+    public void testWordPrefixMatchesAcrossFields() {
+        assertEquals(Arrays.asList(1L), ids(query("pris")));
+        assertEquals(Arrays.asList(2L), ids(query("michael")));
+        assertTrue(ids(query("redemption")).contains(1L));
+    }
+
+    @Test
+    public void testSubstringMatchesNameAndDirector() {
+        assertEquals(Arrays.asList(3L), ids(query("asked")));
+        assertTrue(query("ilmmak").getMovies().size() > 0);
+        // Substring matching does not extend to descriptions
+        assertTrue(query("emption").getMovies().isEmpty());
+    }
+
+    @Test
+    public void testAllTermsMustMatch() {
+        assertEquals(Arrays.asList(1L), ids(query("prison escape")));
+        assertTrue(query("prison heist").getMovies().isEmpty());
+    }
+
+    @Test
+    public void testFacetsAndRanges() {
+        MovieSearchResult crime = index.search(new MovieSearchQuery(null, "crime", null, null, null, null));
+        for (Movie movie : crime.getMovies()) {
+            assertTrue(movie.getGenre().contains("Crime"));
+        }
+        assertTrue(crime.getMovies().size() >= 3);
+
+        MovieSearchResult nineties = index.search(new MovieSearchQuery(null, null, 1990, 1999, null, null));
+        for (Movie movie : nineties.getMovies()) {
+            assertTrue(movie.getYear() >= 1990 && movie.getYear() <= 1999);
+        }
+
+        MovieSearchResult topRated = index.search(new MovieSearchQuery(null, null, null, null, 5.0, null));
+        for (Movie movie : topRated.getMovies()) {
+            assertEquals(5.0, movie.getImdbRating());
+        }
+        assertTrue(index.search(new MovieSearchQuery(null, "western", null, null, null, null)).getMovies().isEmpty());
+        assertTrue(index.getGenres().contains("Drama"));
+    }
+
+    @Test
+    public void testGenreFacetIgnoresTheDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        // Turkish lower-cases 'I' to a dotless 'ı', so "CRIME" would not match "crime"
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals(ids(index.search(new MovieSearchQuery(null, "crime", null, null, null, null))),
+                ids(index.search(new MovieSearchQuery(null, "CRIME", null, null, null, null))));
+            assertFalse(index.search(new MovieSearchQuery(null, "CRIME", null, null, null, null)).getMovies().isEmpty());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void testLimitStopsEarly() {
+        List<Movie> movies = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            movies.add(new Movie(id, "Heist " + id, "Director", 2000, "Crime", "A heist", 100, 4.0));
+        }
+        MovieSearchIndex large = new MovieSearchIndex(movies);
+        MovieSearchResult result = large.search(new MovieSearchQuery("heist", null, null, null, null, 10));
+        assertEquals(10, result.getMovies().size());
+        assertTrue(result.isHasMore());
+        assertEquals(1L, result.getMovies().get(0).getId());
+
+        MovieSearchResult all = large.search(new MovieSearchQuery("heist", null, null, null, null, 200));
+        assertEquals(100, all.getMovies().size());
+        assertFalse(all.isHasMore());
+    }
+
+    @Test
+    public void testShortPrefixesMatchingManyWordsGiveTheSameHits() {
+        // Movie i is named after the number 10000 + i: "1" prefixes 5,000 words and "10" 999
+        List<Movie> movies = new ArrayList<>();
+        for (long id = 1; id <= 5000; id++) {
+            movies.add(new Movie(id, "Take " + (10000 + id), "Director", 1990 + (int) (id % 20), id % 2 == 0 ? "Drama" : "Comedy",
+                "Number " + (id * 7), 100, 4.0));
+        }
+        MovieSearchIndex large = new MovieSearchIndex(movies);
+        assertTrue(999 > MovieSearchIndex.MAX_EXPANDED_WORDS);
+
+        MovieSearchResult numeric = large.search(new MovieSearchQuery("1", null, null, null, null, 200));
+        assertEquals(200, numeric.getMovies().size());
+        assertTrue(numeric.isHasMore());
+        assertEquals(1L, numeric.getMovies().get(0).getId());
+
+        for (String prefix : Arrays.asList("1", "10", "3", "35")) {
+            List<Long> expected = new ArrayList<>();
+            for (Movie movie : movies) {
+                boolean startsWord = (10000 + movie.getId() + " ").startsWith(prefix) || (movie.getId() * 7 + " ").startsWith(prefix);
+                if (startsWord && movie.getYear() == 1995 && "Comedy".equals(movie.getGenre())) {
+                    expected.add(movie.getId());
+                }
+            }
+            MovieSearchResult facetted = large.search(new MovieSearchQuery(prefix, "comedy", 1995, 1995, null, 200));
+            assertEquals(expected.subList(0, Math.min(expected.size(), 200)), ids(facetted), prefix);
+            assertEquals(expected.size() > 200, facetted.isHasMore(), prefix);
+        }
+
+        // Still ANDed with a selective term
+        assertEquals(Arrays.asList(7L), ids(large.search(new MovieSearchQuery("1 10007", null, null, null, null, 10))));
+        assertEquals(10, large.search(new MovieSearchQuery("10", null, null, null, null, 10)).getMovies().size());
+    }
+
+    private MovieSearchResult query(String text) {
+        return index.search(new MovieSearchQuery(text, null, null, null, null, null));
+    }
+
+    private static List<Long> ids(MovieSearchResult result) {
+        List<Long> ids = new ArrayList<>();
+        for (Movie movie : result.getMovies()) {
+            ids.add(movie.getId());
+        }
+        return ids;
+    }
+}
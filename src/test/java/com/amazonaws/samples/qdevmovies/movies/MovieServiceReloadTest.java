@@ -0,0 +1,305 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MovieServiceReloadTest {
+
+    private static final int MOVIES = 500;
+
+    @TempDir
+    Path directory;
+
+    private MovieService movieService;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (movieService != null) {
+            movieService.close();
+        }
+    }
+
+    @Test
+    public void testLoadsExternalCatalogAndPublishesReloads() throws Exception {
+        Path catalog = writeCatalog(1);
+        movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, catalog.toString(), BundledCatalog.none(), false);
+        List<Long> notified = new ArrayList<>();
+        movieService.addCatalogListener(snapshot -> notified.add(snapshot.getGeneration()));
+
+        assertEquals(1, movieService.getSnapshot().getGeneration());
+        assertEquals("Movie 7 v1", movieService.getMovieById(7L).get().getMovieName());
+
+        writeCatalog(2);
+        assertTrue(movieService.reload());
+        assertEquals("Movie 7 v2", movieService.getMovieById(7L).get().getMovieName());
+        CatalogStats stats = movieService.getCatalogStats();
+        assertEquals(2, stats.getGeneration());
+        assertEquals(MOVIES, stats.getMovies());
+        assertEquals(1, stats.getReloads());
+        assertEquals(0, stats.getReloadFailures());
+        assertTrue(stats.getLastReloadMillis() >= 0);
+        assertEquals(catalog.toString(), stats.getSource());
+        assertEquals(1, notified.size());
+        assertEquals(Long.valueOf(2), notified.get(0));
+    }
+
+    @Test
+    public void testFailedReloadKeepsCurrentSnapshot() throws Exception {
+        Path catalog = writeCatalog(1);
+        movieService = new MovieService(new CatalogLoader(), MovieStore.Type.COLUMNAR, catalog.toString(), BundledCatalog.none(), false);
+        CatalogSnapshot before = movieService.getSnapshot();
+
+        Files.write(catalog, "[{\"id\": 1, \"movieName\": ".getBytes(StandardCharsets.UTF_8));
+        assertFalse(movieService.reload());
+        Files.write(catalog, "[]".getBytes(StandardCharsets.UTF_8));
+        assertFalse(movieService.reload());
+
+        assertTrue(before == movieService.getSnapshot());
+        CatalogStats stats = movieService.getCatalogStats();
+        assertEquals(2, stats.getReloadFailures());
+        assertEquals(0, stats.getReloads());
+        assertTrue(stats.getLastFailure().contains("no movies"), stats.getLastFailure());
+        assertEquals("Movie 1 v1", movieService.getMovieById(1L).get().getMovieName());
+    }
+
+    @Test
+    public void testFallsBackToBundledCatalogWhenFileIsMissing() {
+        movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, directory.resolve("missing.json").toString());
+        assertEquals(12, movieService.getAllMovies().size());
+        assertEquals("classpath:movies.json", movieService.getCatalogStats().getSource());
+        assertEquals(1, movieService.getCatalogStats().getReloadFailures());
+    }
+
+    @Test
+    public void testBundledCatalogCannotReload() {
+        movieService = new MovieService();
+        assertNull(movieService.getCatalogStats().getLastFailure());
+        try {
+            movieService.reload();
+        } catch (IllegalStateException expected) {
+            return;
+        }
+        throw new AssertionError("reload() should fail without a catalog file");
+    }
+
+    @Test
+    public void testReloadsWhenTheFileIsReplaced() throws Exception {
+        Path catalog = writeCatalog(1);
+        movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, catalog.toString());
+
+        writeCatalog(2);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (movieService.getSnapshot().getGeneration() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, movieService.getSnapshot().getGeneration());
+        assertEquals("Movie 3 v2", movieService.getMovieById(3L).get().getMovieName());
+    }
+
+    @Test
+    public void testSearchLeaderboardsAndPageCacheFollowReloads() throws Exception {
+        Path catalog = writeCatalog(1);
+        movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, catalog.toString(), BundledCatalog.none(), false);
+        InMemoryReviewStore reviewStore = new InMemoryReviewStore();
+        MovieSearchService search = new MovieSearchService(movieService);
+        LeaderboardService leaderboards = new LeaderboardService(movieService,
+            new RatingAggregates(new ReviewService(ReviewCatalog.empty()), reviewStore), reviewStore);
+        RenderedPageCache cache = new RenderedPageCache(1 << 20, reviewStore);
+        new RenderedPageCacheFilter(cache, movieService, reviewStore, true);
+        cache.put("g1:details:1:v0", new RenderedPageCache.Page("text/html", new byte[10], new long[] {1L}));
+
+        writeCatalog(2);
+        assertTrue(movieService.reload());
+
+        MovieSearchResult result = search.search(new MovieSearchQuery("v2", null, null, null, null, 5));
+        assertEquals(5, result.getMovies().size());
+        assertTrue(leaderboards.top(null, null, null, 1).get(0).getMovie().getMovieName().endsWith("v2"));
+        assertEquals(0, cache.stats().getEntries());
+    }
+
+    /**
+     * Reviews keep arriving while the catalog is reloaded in a loop. Rating updates take no lock
+     * against the rebuilds, yet the boards left at the end must rank like ones built from scratch.
+     */
+    @Test
+    public void testRatingsChangedDuringReloadsReachTheRebuiltLeaderboards() throws Exception {
+        Path catalog = writeCatalog(1);
+        movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, catalog.toString(), BundledCatalog.none(), false);
+        InMemoryReviewStore reviewStore = new InMemoryReviewStore();
+        RatingAggregates aggregates = new RatingAggregates(new ReviewService(ReviewCatalog.empty()), reviewStore);
+        LeaderboardService leaderboards = new LeaderboardService(movieService, aggregates, reviewStore);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            Thread writer = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    reviewStore.addReview(1 + random.nextInt(MOVIES), new Review("Writer", "A", 1 + random.nextInt(5), "Written during a reload"));
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+
+        for (int generation = 2; generation <= 21; generation++) {
+            writeCatalog(generation);
+            assertTrue(movieService.reload());
+        }
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        List<RankedMovie> expected = new MovieLeaderboards(movieService.getAllMovies(), aggregates::get)
+            .top(null, null, null, MovieLeaderboards.MAX_LIMIT);
+        List<RankedMovie> actual = leaderboards.top(null, null, null, MovieLeaderboards.MAX_LIMIT);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getMovie().getId(), actual.get(i).getMovie().getId(), "rank " + (i + 1));
+        }
+    }
+
+    /**
+     * Readers hammer lookups while the catalog is reloaded in a loop. Every read must find its movie,
+     * and a whole ordering read in one call must come from a single generation.
+     */
+    @Test
+    public void testReadersSeeConsistentSnapshotsDuringReloads() throws Exception {
+        Path catalog = writeCatalog(1);
+        movieService = new MovieService(new CatalogLoader(), MovieStore.Type.COLUMNAR, catalog.toString(), BundledCatalog.none(), false);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            Thread reader = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while (running.get() && failure.get() == null) {
+                    long id = 1 + random.nextInt(MOVIES);
+                    Optional<Movie> movie = movieService.getMovieById(id);
+                    if (!movie.isPresent() || !movie.get().getMovieName().startsWith("Movie " + id + " v")) {
+                        failure.set("Lookup of " + id + " returned " + movie);
+                    }
+                    if (++done % 1000 == 0) {
+                        String version = null;
+                        for (Movie each : movieService.getAllMovies(MovieSort.NAME)) {
+                            String movieVersion = each.getMovieName().substring(each.getMovieName().lastIndexOf(' '));
+                            if (version != null && !version.equals(movieVersion)) {
+                                failure.set("Mixed generations in one ordering: " + version + " and " + movieVersion);
+                            }
+                            version = movieVersion;
+                        }
+                    }
+                }
+                reads.addAndGet(done);
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        int reloads = 40;
+        for (int generation = 2; generation <= reloads + 1 && failure.get() == null; generation++) {
+            writeCatalog(generation);
+            assertTrue(movieService.reload());
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(reloads + 1, movieService.getSnapshot().getGeneration());
+        assertNotNull(movieService.getMovieById((long) MOVIES).orElse(null));
+        assertTrue(reads.get() > 0);
+        assertEquals(reloads, movieService.getCatalogStats().getReloads());
+    }
+
+    /**
+     * While a reload is building its indexes, readers keep the previous catalog together with the
+     * previous indexes, and stats are served without waiting for the reload.
+     */
+    @Test
+    public void testIndexesArePublishedWithTheirCatalog() throws Exception {
+        Path catalog = writeCatalog(1);
+        movieService = new MovieService(new CatalogLoader(), MovieStore.Type.HEAP, catalog.toString(), BundledCatalog.none(), false);
+        MovieSearchService search = new MovieSearchService(movieService);
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean started = new AtomicBoolean();
+        movieService.addCatalogIndex(movies -> {
+            if (started.getAndSet(true)) {
+                building.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return movies.size();
+        });
+
+        writeCatalog(2);
+        CompletableFuture<Boolean> reload = CompletableFuture.supplyAsync(movieService::reload);
+        assertTrue(building.await(10, TimeUnit.SECONDS));
+        CatalogStats stats = CompletableFuture.supplyAsync(movieService::getCatalogStats).get(5, TimeUnit.SECONDS);
+        assertEquals(1, stats.getGeneration());
+        assertEquals(1, movieService.getSnapshot().getGeneration());
+        assertTrue(search.search(new MovieSearchQuery("v1", null, null, null, null, 5)).getMovies().size() > 0);
+        assertEquals(0, search.search(new MovieSearchQuery("v2", null, null, null, null, 5)).getMovies().size());
+
+        release.countDown();
+        assertTrue(reload.get(10, TimeUnit.SECONDS));
+        assertEquals(2, movieService.getCatalogStats().getGeneration());
+        assertEquals(5, search.search(new MovieSearchQuery("v2", null, null, null, null, 5)).getMovies().size());
+    }
+
+    private Path writeCatalog(int version) throws IOException {
+        Path catalog = directory.resolve("movies.json");
+        Path staged = directory.resolve("movies.json.tmp");
+        Files.write(staged, catalogJson(version).getBytes(StandardCharsets.UTF_8));
+        Files.move(staged, catalog, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return catalog;
+    }
+
+    private static String catalogJson(int version) {
+        StringBuilder json = new StringBuilder("[");
+        for (int id = 1; id <= MOVIES; id++) {
+            if (id > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\": ").append(id)
+                .append(", \"movieName\": \"Movie ").append(id).append(" v").append(version)
+                .append("\", \"director\": \"Director ").append(id % 17)
+                .append("\", \"year\": ").append(1950 + id % 70)
+                .append(", \"genre\": \"Genre ").append(id % 5)
+                .append("\", \"description\": \"Generated\", \"duration\": 100, \"imdbRating\": ")
+                .append(1 + (id * version) % 40 / 10.0).append('}');
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MovieStoreTest {
+
+    private static final List<Movie> MOVIES = Arrays.asList(
+        new Movie(10L, "First", "Same Director", 1999, "Drama", "One", 100, 4.5, "🔒"),
+        new Movie(20L, "Second", "Same Director", 2005, "Drama", "Two", 110, 3.0),
+        new Movie(30L, "Third", "Other Director", 2010, "Comedy", "Three", 95, 2.5)
+    );
+
+    @Test
+    public void testColumnarStoreMatchesHeapStore() {
+        MovieStore heap = new HeapMovieStore(MOVIES);
+        MovieStore columnar = columnar(MOVIES);
+
+        assertEquals(heap.size(), columnar.size());
+        for (int i = 0; i < MOVIES.size(); i++) {
+            Movie expected = heap.getAllMovies().get(i);
+            Movie actual = columnar.getAllMovies().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getMovieName(), actual.getMovieName());
+            assertEquals(expected.getDirector(), actual.getDirector());
+            assertEquals(expected.getYear(), actual.getYear());
+            assertEquals(expected.getGenre(), actual.getGenre());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getDuration(), actual.getDuration());
+            assertEquals(expected.getImdbRating(), actual.getImdbRating());
+            assertEquals(expected.getIcon(), actual.getIcon());
+        }
+        assertEquals("Third", columnar.findById(30L).get().getMovieName());
+        assertFalse(columnar.findById(40L).isPresent());
+        assertTrue(columnar.contains(30L));
+        assertFalse(columnar.contains(40L));
+        assertTrue(heap.contains(30L));
+        assertFalse(heap.contains(40L));
+    }
+
+    @Test
+    public void testColumnarStoreDictionaryEncodesRepeatedStrings() {
+        ColumnarMovieStore columnar = columnar(MOVIES);
+        assertEquals(2, columnar.genreCount());
+        assertEquals(2, columnar.directorCount());
+        assertSame(columnar.findById(10L).get().getDirector(), columnar.findById(20L).get().getDirector());
+    }
+
+    @Test
+    public void testColumnarStoreGrowsAndRejectsOutOfRange() {
+        ColumnarMovieStore.Builder builder = ColumnarMovieStore.builder();
+        for (long id = 1; id <= 1000; id++) {
+            builder.add(new Movie(id, "Movie " + id, "Director " + (id % 7), 2000, "Genre " + (id % 3), "", 90, 3.0));
+        }
+        ColumnarMovieStore store = builder.build();
+        assertEquals(1000, store.size());
+        assertEquals("Movie 777", store.findById(777L).get().getMovieName());
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getAllMovies().get(1000));
+    }
+
+    @Test
+    public void testMovieServiceWithColumnarStore() {
+        MovieService movieService = new MovieService(new CatalogLoader(), MovieStore.Type.COLUMNAR);
+        assertEquals(12, movieService.getAllMovies().size());
+        assertEquals("The Prison Escape", movieService.getMovieById(1L).get().getMovieName());
+        assertFalse(movieService.getMovieById(0L).isPresent());
+    }
+
+    private static ColumnarMovieStore columnar(List<Movie> movies) {
+        ColumnarMovieStore.Builder builder = ColumnarMovieStore.builder();
+        movies.forEach(builder::add);
+        return builder.build();
+    }
+}
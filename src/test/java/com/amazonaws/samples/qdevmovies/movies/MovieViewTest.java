@@ -0,0 +1,62 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import com.amazonaws.samples.qdevmovies.utils.MovieIconUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class MovieViewTest {
+
+    @Test
+    public void testLabelsMatchWhatTheTemplatesUsedToBuild() {
+        MovieView view = new MovieView(new Movie(1L, "Film", "Director", 2000, "Drama", "Plot", 142, 4.5, "🔒"));
+        assertEquals("★★★★⭐", view.getStars());
+        assertEquals("4.5/5", view.getRatingLabel());
+        assertEquals("142 minutes", view.getDurationLabel());
+        assertEquals("🔒", view.getIcon());
+        assertEquals("Film", view.getMovieName());
+
+        assertEquals("★★★★★", RatingLabels.stars(5.0));
+        assertEquals("☆☆☆☆☆", RatingLabels.stars(0));
+        assertEquals("★★★☆☆", RatingLabels.stars(3.7));
+        assertEquals("3.7", RatingLabels.decimal(3.7));
+        assertEquals("4.2", RatingLabels.decimal(4.25));
+        assertEquals("★★★★☆", new Review("Ana", "👩", 4, "comment").getStars());
+        assertEquals("4.0", new Review("Ana", "👩", 4, "comment").getRatingLabel());
+    }
+
+    @Test
+    public void testIconsComeFromTheCatalog() {
+        MovieService movieService = new MovieService();
+        assertEquals("🔒", movieService.getMovieById(1L).get().getIcon());
+        assertEquals("🚀", movieService.getMovieById(10L).get().getIcon());
+        assertEquals(MovieIconUtils.DEFAULT_ICON, new Movie(99L, "Unknown", "Director", 2000, "Drama", "Plot", 90, 3.0).getIcon());
+        assertEquals("🔒", new MovieService(new CatalogLoader(), MovieStore.Type.COLUMNAR).getMovieById(1L).get().getIcon());
+    }
+
+    @Test
+    public void testViewsAreBuiltOncePerSnapshot() {
+        List<Movie> movies = Arrays.asList(
+            new Movie(10L, "First", "Director", 1999, "Drama", "One", 100, 4.5),
+            new Movie(20L, "Second", "Director", 2005, "Drama", "Two", 110, 3.0));
+        MovieViews views = MovieViews.of(new HeapMovieStore(movies));
+
+        assertSame(views.get(movies.get(1)), views.get(movies.get(1)));
+        assertSame(views.get(movies.get(0)), views.of(movies).get(0));
+        // A movie from another catalog version gets a view of its own
+        Movie replaced = new Movie(10L, "First, recut", "Director", 1999, "Drama", "One", 120, 4.5);
+        assertEquals("120 minutes", views.get(replaced).getDurationLabel());
+
+        ColumnarMovieStore.Builder builder = ColumnarMovieStore.builder();
+        movies.forEach(builder::add);
+        MovieViews columnar = MovieViews.of(builder.build());
+        Movie row = builder.build().getAllMovies().get(0);
+        assertNotSame(columnar.get(row), columnar.get(row));
+        assertEquals("4.5/5", columnar.get(row).getRatingLabel());
+    }
+}
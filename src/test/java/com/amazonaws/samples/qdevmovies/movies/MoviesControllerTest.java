@@ -2,16 +2,31 @@ package com.amazonaws.samples.qdevmovies.movies;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
 import org.springframework.ui.Model;
 import org.springframework.ui.ExtendedModelMap;
+import org.springframework.util.FileCopyUtils;
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.templateresource.ITemplateResource;
+import org.thymeleaf.templateresource.StringTemplateResource;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MoviesControllerTest {
 
@@ -19,11 +34,13 @@ public class MoviesControllerTest {
     private Model model;
     private MovieService mockMovieService;
     private ReviewService mockReviewService;
+    private ReviewStore reviewStore;
 
     @BeforeEach
     public void setUp() {
         moviesController = new MoviesController();
         model = new ExtendedModelMap();
+        reviewStore = new InMemoryReviewStore();
         
         // Create mock services
         mockMovieService = new MovieService() {
@@ -57,6 +74,32 @@ public class MoviesControllerTest {
             java.lang.reflect.Field reviewServiceField = MoviesController.class.getDeclaredField("reviewService");
             reviewServiceField.setAccessible(true);
             reviewServiceField.set(moviesController, mockReviewService);
+
+            java.lang.reflect.Field searchServiceField = MoviesController.class.getDeclaredField("movieSearchService");
+            searchServiceField.setAccessible(true);
+            searchServiceField.set(moviesController, new MovieSearchService(mockMovieService));
+
+            java.lang.reflect.Field reviewStoreField = MoviesController.class.getDeclaredField("reviewStore");
+            reviewStoreField.setAccessible(true);
+            reviewStoreField.set(moviesController, reviewStore);
+
+            java.lang.reflect.Field ratingAggregatesField = MoviesController.class.getDeclaredField("ratingAggregates");
+            ratingAggregatesField.setAccessible(true);
+            RatingAggregates ratingAggregates = new RatingAggregates(new ReviewService(ReviewCatalog.empty()), reviewStore);
+            ratingAggregatesField.set(moviesController, ratingAggregates);
+
+            java.lang.reflect.Field leaderboardServiceField = MoviesController.class.getDeclaredField("leaderboardService");
+            leaderboardServiceField.setAccessible(true);
+            leaderboardServiceField.set(moviesController, new LeaderboardService(mockMovieService, ratingAggregates, reviewStore));
+
+            java.lang.reflect.Field requestExecutorField = MoviesController.class.getDeclaredField("requestExecutor");
+            requestExecutorField.setAccessible(true);
+            requestExecutorField.set(moviesController, new RequestExecutor(RequestExecutor.Mode.BLOCKING, false, 1, 1000, 10_000,
+                new org.springframework.mock.env.MockEnvironment()));
+
+            java.lang.reflect.Field similarMovieServiceField = MoviesController.class.getDeclaredField("similarMovieService");
+            similarMovieServiceField.setAccessible(true);
+            similarMovieServiceField.set(moviesController, new SimilarMovieService(mockMovieService, 10, 1));
         } catch (Exception e) {
             throw new RuntimeException("Failed to inject mock services", e);
         }
@@ -64,25 +107,141 @@ public class MoviesControllerTest {
 
     @Test
     public void testGetMovies() {
-        String result = moviesController.getMovies(model);
+        String result = moviesController.getMovies(null, null, null, model);
         assertNotNull(result);
         assertEquals("movies", result);
     }
 
     @Test
     public void testGetMovieDetails() {
-        String result = moviesController.getMovieDetails(1L, model, null, null);
+        String result = (String) moviesController.getMovieDetails(1L, model, null, null);
         assertNotNull(result);
         assertEquals("movie-details", result);
     }
 
+    @Test
+    public void testSimilarMovies() {
+        assertEquals("movies", moviesController.similarMovies(1L, null, model));
+        assertEquals("More like Test Movie", model.getAttribute("leaderboard"));
+        assertEquals("error", moviesController.similarMovies(999L, null, new ExtendedModelMap()));
+    }
+
     @Test
     public void testGetMovieDetailsNotFound() {
-        String result = moviesController.getMovieDetails(999L, model, null, null);
+        String result = (String) moviesController.getMovieDetails(999L, model, null, null);
         assertNotNull(result);
         assertEquals("error", result);
     }
 
+    @Test
+    public void testSearchMovies() {
+        String result = moviesController.searchMovies("test", "drama", null, null, null, null, model);
+        assertEquals("movies", result);
+        assertEquals(1, ((List<?>) model.getAttribute("movies")).size());
+    }
+
+    @Test
+    public void testTopMovies() {
+        String result = moviesController.topMovies("Drama", "2020s", null, null, model);
+        assertEquals("movies", result);
+        assertEquals("Top rated Drama movies of the 2020s", model.getAttribute("leaderboard"));
+        assertEquals(1, ((List<?>) model.getAttribute("movies")).size());
+
+        assertEquals("error", moviesController.topMovies(null, "soon", null, null, new ExtendedModelMap()));
+    }
+
+    @Test
+    public void testStreamMovies() throws Exception {
+        setTemplateEngine(templateEngine(new ClassLoaderTemplateResolver()));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        moviesController.streamMovies("name", new MockHttpServletRequest("GET", "/movies"), response);
+
+        String html = response.getContentAsString();
+        assertEquals(mockMovieService.getAllMovies(MovieSort.NAME).size(), count(html, "class=\"movie-card\""));
+        assertFalse(html.contains("<!--movie-cards-->"));
+        assertTrue(html.trim().endsWith("</html>"));
+
+        MockHttpServletResponse badSort = new MockHttpServletResponse();
+        moviesController.streamMovies("price", new MockHttpServletRequest("GET", "/movies"), badSort);
+        assertEquals(400, badSort.getStatus());
+    }
+
+    @Test
+    public void testStreamMoviesWithoutMarkerRendersWholePage() throws Exception {
+        // A template edit that drops the marker falls back to one ordinary render
+        ClassLoaderTemplateResolver withoutMarker = new ClassLoaderTemplateResolver() {
+            @Override
+            protected ITemplateResource computeTemplateResource(IEngineConfiguration configuration, String ownerTemplate, String template,
+                                                                String resourceName, String characterEncoding, Map<String, Object> attributes) {
+                ITemplateResource resource = super.computeTemplateResource(configuration, ownerTemplate, template, resourceName, characterEncoding, attributes);
+                if (!"movies".equals(template)) {
+                    return resource;
+                }
+                try (Reader reader = resource.reader()) {
+                    return new StringTemplateResource(FileCopyUtils.copyToString(reader).replace("<!--movie-cards-->", ""));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        setTemplateEngine(templateEngine(withoutMarker));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        moviesController.streamMovies(null, new MockHttpServletRequest("GET", "/movies"), response);
+
+        String html = response.getContentAsString();
+        assertEquals(200, response.getStatus());
+        assertEquals(mockMovieService.getAllMovies(MovieSort.ID).size(), count(html, "class=\"movie-card\""));
+        assertTrue(html.trim().endsWith("</html>"));
+    }
+
+    @Test
+    public void testAddedReviewIsVisibleToOtherSessions() {
+        String redirect = (String) moviesController.addReview(1L, "Reviewer", 4, "A really gripping film overall", new MockHttpSession());
+        assertEquals("redirect:/movies/1/details?reviewAdded=true", redirect);
+
+        moviesController.getMovieDetails(1L, model, new MockHttpSession(), null);
+        List<?> allReviews = (List<?>) model.getAttribute("allReviews");
+        assertEquals(1, allReviews.size());
+        assertEquals("Reviewer", ((Review) allReviews.get(0)).getUserName());
+
+        RatingSummary summary = (RatingSummary) model.getAttribute("ratingSummary");
+        assertEquals(1, summary.getCount());
+        assertEquals(4.0, summary.getAverage(), 0.001);
+    }
+
+    @Test
+    public void testInvalidReviewIsNotStored() {
+        String redirect = (String) moviesController.addReview(1L, "Reviewer", 4, "Too short", new MockHttpSession());
+        assertEquals("redirect:/movies/1/details?error=TOO_FEW_WORDS", redirect);
+        assertEquals(0, reviewStore.getVersion(1L));
+
+        moviesController.getMovieDetails(1L, model, new MockHttpSession(), "TOO_FEW_WORDS");
+        assertEquals("Review must be at least 5 words", model.getAttribute("error"));
+    }
+
+    private void setTemplateEngine(SpringTemplateEngine templateEngine) throws Exception {
+        java.lang.reflect.Field templateEngineField = MoviesController.class.getDeclaredField("templateEngine");
+        templateEngineField.setAccessible(true);
+        templateEngineField.set(moviesController, templateEngine);
+    }
+
+    private static SpringTemplateEngine templateEngine(ClassLoaderTemplateResolver resolver) {
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        return templateEngine;
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
     @Test
     public void testMovieServiceIntegration() {
         List<Movie> movies = mockMovieService.getAllMovies();
@@ -0,0 +1,89 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RatingAggregatesTest {
+
+    @Test
+    public void testSeededFromCatalog() {
+        ReviewCatalog catalog = ReviewCatalog.builder()
+            .put(1L, Arrays.asList(review(4.5), review(5.0), review(4.0)))
+            .put(2L, Arrays.asList(review(2.0)))
+            .build();
+        RatingAggregates aggregates = new RatingAggregates(new ReviewService(catalog), new InMemoryReviewStore());
+
+        RatingSummary summary = aggregates.get(1L);
+        assertEquals(3, summary.getCount());
+        assertEquals(4.5, summary.getAverage(), 0.0001);
+        assertArrayEquals(new long[] {0, 0, 0, 1, 2}, summary.getHistogram());
+        assertEquals(67, summary.percentOf(5));
+        assertEquals(1, aggregates.get(2L).countOf(2));
+    }
+
+    @Test
+    public void testMovieWithoutReviewsIsEmpty() {
+        RatingAggregates aggregates = new RatingAggregates(new ReviewService(ReviewCatalog.empty()), new InMemoryReviewStore());
+        RatingSummary summary = aggregates.get(42L);
+        assertTrue(summary.isEmpty());
+        assertEquals(0.0, summary.getAverage());
+        assertEquals(0, summary.percentOf(3));
+    }
+
+    @Test
+    public void testStoreWritesUpdateAggregates() {
+        ReviewStore store = new InMemoryReviewStore();
+        RatingAggregates aggregates = new RatingAggregates(new ReviewService(ReviewCatalog.empty()), store);
+
+        store.addReview(3L, review(1.0));
+        store.addReview(3L, review(3.0));
+        RatingSummary summary = aggregates.get(3L);
+        assertEquals(2, summary.getCount());
+        assertEquals(2.0, summary.getAverage(), 0.0001);
+        assertArrayEquals(new long[] {1, 0, 1, 0, 0}, summary.getHistogram());
+    }
+
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        ReviewStore store = new InMemoryReviewStore();
+        RatingAggregates aggregates = new RatingAggregates(new ReviewService(ReviewCatalog.empty()), store);
+        int threads = 4;
+        int perThread = 10000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            double rating = t + 1;
+            pool.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    aggregates.reviewAdded(1L, review(rating));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        RatingSummary summary = aggregates.get(1L);
+        assertEquals(threads * perThread, summary.getCount());
+        assertEquals(2.5, summary.getAverage(), 0.0001);
+        assertArrayEquals(new long[] {perThread, perThread, perThread, perThread, 0}, summary.getHistogram());
+    }
+
+    @Test
+    public void testStarsRoundHalfUpAndClamp() {
+        assertEquals(1, RatingAggregates.stars(0.0));
+        assertEquals(5, RatingAggregates.stars(4.5));
+        assertEquals(4, RatingAggregates.stars(4.0));
+        assertEquals(5, RatingAggregates.stars(7.0));
+    }
+
+    private static Review review(double rating) {
+        return new Review("user", "👩", rating, "comment");
+    }
+}
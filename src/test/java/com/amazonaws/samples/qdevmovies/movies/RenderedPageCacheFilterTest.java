@@ -0,0 +1,116 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RenderedPageCacheFilterTest {
+
+    private ReviewStore reviewStore;
+    private RenderedPageCacheFilter filter;
+    private AtomicInteger renders;
+
+    @BeforeEach
+    public void setUp() {
+        reviewStore = new InMemoryReviewStore();
+        RenderedPageCache cache = new RenderedPageCache(1_000_000, reviewStore);
+        filter = new RenderedPageCacheFilter(cache, new MovieService(), reviewStore, true);
+        renders = new AtomicInteger();
+    }
+
+    @Test
+    public void testSecondRequestIsServedFromCache() throws Exception {
+        MockHttpServletResponse first = get("/movies/1/details", null);
+        MockHttpServletResponse second = get("/movies/1/details", null);
+
+        assertEquals(1, renders.get());
+        assertEquals("MISS", first.getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("HIT", second.getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(first.getContentAsString(), second.getContentAsString());
+        assertEquals(first.getHeader("ETag"), second.getHeader("ETag"));
+    }
+
+    @Test
+    public void testMatchingEtagReturnsNotModifiedWithoutRendering() throws Exception {
+        String etag = get("/movies", null).getHeader("ETag");
+        assertNotNull(etag);
+
+        MockHttpServletResponse conditional = get("/movies", etag);
+        assertEquals(304, conditional.getStatus());
+        assertEquals(0, conditional.getContentLength());
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    public void testReviewChangesEtagAndRerenders() throws Exception {
+        String etag = get("/movies/1/details", null).getHeader("ETag");
+        reviewStore.addReview(1L, new Review("user", "👩", 4.0, "comment"));
+
+        MockHttpServletResponse afterReview = get("/movies/1/details", etag);
+        assertEquals(200, afterReview.getStatus());
+        assertEquals("MISS", afterReview.getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(2, renders.get());
+
+        // The listing shows movie 1, so its key moves on as well
+        String listingEtag = get("/movies", null).getHeader("ETag");
+        reviewStore.addReview(1L, new Review("user", "👩", 4.0, "comment"));
+        assertEquals(200, get("/movies", listingEtag).getStatus());
+    }
+
+    @Test
+    public void testPersonalisedAndUnknownRequestsBypassCache() throws Exception {
+        MockHttpServletRequest withError = request("/movies/1/details", null);
+        withError.setParameter("error", "Too short");
+        assertNull(run(withError).getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+
+        MockHttpServletRequest withName = request("/movies/1/details", null);
+        withName.getSession().setAttribute("user_name", "Ann");
+        assertNull(run(withName).getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+
+        MockHttpServletRequest badCursor = request("/movies", null);
+        badCursor.setParameter("after", "not-a-cursor");
+        assertNull(run(badCursor).getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+
+        assertNull(get("/movies/search", null).getHeader(RenderedPageCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(4, renders.get());
+    }
+
+    private MockHttpServletResponse get(String path, String ifNoneMatch) throws Exception {
+        return run(request(path, ifNoneMatch));
+    }
+
+    private static MockHttpServletRequest request(String path, String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse run(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Servlet page = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                int render = renders.incrementAndGet();
+                resp.setContentType("text/html;charset=UTF-8");
+                resp.getWriter().write("<html>render " + render + " of " + req.getRequestURI() + "</html>");
+            }
+        };
+        filter.doFilter(request, response, new MockFilterChain(page));
+        return response;
+    }
+}
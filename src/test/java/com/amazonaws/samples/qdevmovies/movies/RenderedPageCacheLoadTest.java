@@ -0,0 +1,50 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the application with and without the rendered page cache and drives the listing and
+ * details pages over HTTP. Run with {@code mvn test -Pperf -Dtest=RenderedPageCacheLoadTest}.
+ */
+@Tag("perf")
+public class RenderedPageCacheLoadTest {
+
+    private static final int CLIENTS = 8;
+    private static final long WARMUP_MILLIS = 3_000;
+    private static final long DURATION_MILLIS = 10_000;
+    private static final String[] PATHS = {"/movies", "/movies?sort=rating", "/movies/1/details", "/movies/5/details", "/movies/9/details"};
+
+    @Test
+    public void cachedPagesServeMoreRequests() throws Exception {
+        double uncached = measure(false);
+        double cached = measure(true);
+        System.out.printf("Rendered page cache load test: %.0f req/s without cache, %.0f req/s with cache (%.1fx)%n",
+            uncached, cached, cached / uncached);
+        assertTrue(cached > uncached);
+    }
+
+    private static double measure(boolean cacheEnabled) throws Exception {
+        ConfigurableApplicationContext context = ApplicationHarness.start("--movies.page-cache.enabled=" + cacheEnabled);
+        try {
+            String base = ApplicationHarness.baseUrl(context);
+            drive(base, WARMUP_MILLIS);
+            return drive(base, DURATION_MILLIS) * 1000.0 / DURATION_MILLIS;
+        } finally {
+            context.close();
+        }
+    }
+
+    private static long drive(String base, long millis) throws Exception {
+        ApplicationHarness.Measurement measurement = ApplicationHarness.closedLoop(CLIENTS, millis, 1, client -> {
+            ApplicationHarness.fetch(base + PATHS[(int) ((client.requests + client.id) % PATHS.length)], client.buffer);
+            return 0;
+        });
+        assertEquals(0, measurement.errors.get(), "failed requests");
+        return measurement.requests();
+    }
+}
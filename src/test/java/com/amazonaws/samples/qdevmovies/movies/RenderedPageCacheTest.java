@@ -0,0 +1,77 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RenderedPageCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWithinByteBudget() {
+        RenderedPageCache cache = new RenderedPageCache(40_000, new InMemoryReviewStore());
+        cache.put("a", page(4_000, 1L));
+        cache.put("b", page(4_000, 2L));
+        cache.get("a");
+        for (int i = 0; i < 8; i++) {
+            cache.put("filler" + i, page(4_000, 100L + i));
+        }
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        RenderedPageCache.Stats stats = cache.stats();
+        assertEquals(true, stats.getBytes() <= 40_000);
+        assertEquals(true, stats.getEvictions() > 0);
+    }
+
+    @Test
+    public void testDoesNotCacheOversizedPages() {
+        RenderedPageCache cache = new RenderedPageCache(8_000, new InMemoryReviewStore());
+        cache.put("big", page(2_000, 1L));
+        assertNull(cache.get("big"));
+        assertEquals(0, cache.stats().getBytes());
+    }
+
+    @Test
+    public void testReviewInvalidatesOnlyPagesShowingThatMovie() {
+        ReviewStore store = new InMemoryReviewStore();
+        RenderedPageCache cache = new RenderedPageCache(1_000_000, store);
+        cache.put("details:1", page(100, 1L));
+        cache.put("listing", page(100, 1L, 2L, 3L));
+        cache.put("details:2", page(100, 2L));
+
+        store.addReview(1L, new Review("user", "👩", 4.0, "comment"));
+
+        assertNull(cache.get("details:1"));
+        assertNull(cache.get("listing"));
+        assertNotNull(cache.get("details:2"));
+        assertEquals(2, cache.stats().getInvalidations());
+
+        store.addReview(2L, new Review("user", "👩", 4.0, "comment"));
+        assertEquals(0, cache.stats().getEntries());
+        assertEquals(0, cache.stats().getBytes());
+    }
+
+    @Test
+    public void testStatsAndEtags() {
+        RenderedPageCache cache = new RenderedPageCache(1_000_000, new InMemoryReviewStore());
+        cache.put("k", page(10, 1L));
+        cache.get("k");
+        cache.get("k");
+        cache.get("missing");
+        cache.recordNotModified();
+
+        RenderedPageCache.Stats stats = cache.stats();
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.75, stats.getHitRatio(), 0.0001);
+        assertEquals(cache.etag("details:1:v0"), cache.etag("details:1:v0"));
+        assertNotEquals(cache.etag("details:1:v0"), cache.etag("details:1:v1"));
+    }
+
+    private static RenderedPageCache.Page page(int bytes, long... movieIds) {
+        return new RenderedPageCache.Page("text/html;charset=UTF-8", new byte[bytes], movieIds);
+    }
+}
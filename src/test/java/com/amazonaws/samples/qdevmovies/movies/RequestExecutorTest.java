@@ -0,0 +1,123 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestExecutorTest {
+
+    private RequestExecutor executor;
+
+    @AfterEach
+    public void tearDown() {
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testRunsTaskAndRecordsIt() throws Exception {
+        executor = new RequestExecutor(RequestExecutor.Mode.ASYNC, true, 4, 10, 5000, new MockEnvironment());
+
+        DeferredResult<String> result = executor.submit("details", () -> "movie-details");
+
+        assertEquals("movie-details", await(result));
+        RequestExecutor.Stats stats = executor.stats();
+        assertEquals(RequestExecutor.Mode.ASYNC, stats.getMode());
+        RequestExecutor.EndpointStats details = stats.getEndpoints().get("details");
+        assertEquals(1, details.getSubmitted());
+        assertEquals(1, details.getCompleted());
+        assertEquals(10, details.getMaxConcurrency());
+        assertEquals(5000, details.getTimeoutMillis());
+        assertEquals(0, details.getActive());
+    }
+
+    @Test
+    public void testRejectsRequestsOverTheEndpointLimit() throws Exception {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("movies.execution.endpoints.review.max-concurrency", "1")
+            .withProperty("movies.execution.endpoints.review.timeout-ms", "250");
+        executor = new RequestExecutor(RequestExecutor.Mode.ASYNC, true, 4, 10, 5000, environment);
+        CountDownLatch release = new CountDownLatch(1);
+
+        DeferredResult<String> slow = executor.submit("review", () -> {
+            release.await();
+            return "redirect:/movies/1/details";
+        });
+        DeferredResult<String> rejected = executor.submit("review", () -> "never runs");
+        DeferredResult<String> otherEndpoint = executor.submit("details", () -> "movie-details");
+
+        Object error = await(rejected);
+        assertTrue(error instanceof ResponseStatusException);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseStatusException) error).getStatus());
+        assertEquals("movie-details", await(otherEndpoint));
+        assertEquals(250, executor.stats().getEndpoints().get("review").getTimeoutMillis());
+        assertFalse(slow.hasResult());
+
+        release.countDown();
+        assertEquals("redirect:/movies/1/details", await(slow));
+        assertEquals("redirect:/movies/1/details", await(executor.submit("review", () -> "redirect:/movies/1/details")));
+        RequestExecutor.EndpointStats review = executor.stats().getEndpoints().get("review");
+        assertEquals(3, review.getSubmitted());
+        assertEquals(2, review.getCompleted());
+        assertEquals(1, review.getRejected());
+    }
+
+    @Test
+    public void testRunsHandlersInlineOnlyWhenBlocking() throws Exception {
+        executor = new RequestExecutor(RequestExecutor.Mode.BLOCKING, false, 2, 10, 5000, new MockEnvironment());
+        Thread caller = Thread.currentThread();
+        assertEquals("movie-details", executor.run("details", () -> Thread.currentThread() == caller ? "movie-details" : "elsewhere"));
+        assertTrue(executor.stats().getEndpoints().isEmpty());
+        executor.close();
+
+        executor = new RequestExecutor(RequestExecutor.Mode.ASYNC, false, 2, 10, 5000, new MockEnvironment());
+        Object result = executor.run("details", () -> Thread.currentThread() == caller ? "inline" : "movie-details");
+        assertTrue(result instanceof DeferredResult);
+        assertEquals("movie-details", await((DeferredResult<?>) result));
+    }
+
+    @Test
+    public void testPassesHandlerExceptionsThrough() throws Exception {
+        executor = new RequestExecutor(RequestExecutor.Mode.ASYNC, false, 2, 10, 5000, new MockEnvironment());
+        IllegalStateException failure = new IllegalStateException("boom");
+
+        Object error = await(executor.submit("api.movies", () -> {
+            throw failure;
+        }));
+
+        assertTrue(error == failure);
+        assertEquals(1, executor.stats().getEndpoints().get("api.movies").getFailed());
+        assertEquals("platform(2)", executor.stats().getExecutor());
+    }
+
+    @Test
+    public void testUsesVirtualThreadsWhenTheJdkHasThem() {
+        executor = new RequestExecutor(RequestExecutor.Mode.ASYNC, true, 2, 10, 5000, new MockEnvironment());
+        boolean available;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            available = true;
+        } catch (NoSuchMethodException e) {
+            available = false;
+        }
+        assertEquals(available ? "virtual" : "platform(2)", executor.stats().getExecutor());
+    }
+
+    private static Object await(DeferredResult<?> result) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        result.setResultHandler(value -> done.countDown());
+        assertTrue(done.await(10, TimeUnit.SECONDS), "result was not set");
+        return result.getResult();
+    }
+}
@@ -0,0 +1,108 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Reports how aggregate throughput changes with the number of instances in a review cluster. For
+ * each cluster size, starts that many instances on localhost with a generated catalog, and has
+ * closed-loop clients spread over all of them post reviews and read details pages of random movies,
+ * so most requests need a movie owned by another instance. Prints requests per second, latency,
+ * store operations forwarded to another instance per request, and the average batch size.
+ * <p>
+ * All instances share this JVM and machine, so on one box the report shows what routing and
+ * batching cost rather than the capacity more machines add; run the instances on separate hosts
+ * for that. Run with {@code mvn test -Pperf -Dtest=ReviewClusterScalingTest}; {@code -Dnodes=1,2,4},
+ * {@code -Dclients=N} and {@code -DwriterEvery=N} change the cluster sizes, client count and share of writers.
+ */
+@Tag("perf")
+public class ReviewClusterScalingTest {
+
+    private static final int MOVIES = 10_000;
+    private static final int CLIENTS = Integer.getInteger("clients", 32);
+    private static final int WRITER_EVERY = Integer.getInteger("writerEvery", 5);
+    private static final long WARMUP_MILLIS = 5_000;
+    private static final long DURATION_MILLIS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void reportThroughputByClusterSize() throws Exception {
+        Path catalog = directory.resolve("movies.json");
+        ApplicationHarness.writeCatalog(catalog, MOVIES);
+        List<String> report = new ArrayList<>();
+        for (String size : System.getProperty("nodes", "1,2,4").split(",")) {
+            int nodes = Integer.parseInt(size.trim());
+            List<String> members = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                members.add("http://localhost:" + ApplicationHarness.freePort());
+            }
+            List<ConfigurableApplicationContext> instances = new ArrayList<>();
+            try {
+                for (String member : members) {
+                    instances.add(ApplicationHarness.start("--server.port=" + member.substring(member.lastIndexOf(':') + 1),
+                        "--movies.catalog.path=" + catalog,
+                        "--movies.reviews.cluster.self=" + member, "--movies.reviews.cluster.nodes=" + String.join(",", members),
+                        "--movies.reviews.cluster.secret=scaling-test",
+                        "--movies.access-log.enabled=false", "--movies.admission.enabled=false"));
+                }
+                // The first cluster also warms up the JIT for the ones after it
+                drive(members, report.isEmpty() ? 3 * WARMUP_MILLIS : WARMUP_MILLIS);
+                long[] before = storeCounts(instances);
+                ApplicationHarness.Measurement result = drive(members, DURATION_MILLIS);
+                long[] after = storeCounts(instances);
+                long forwarded = after[1] - before[1];
+                double batchSize = after[3] == before[3] ? 0 : (double) (after[2] - before[2]) / (after[3] - before[3]);
+                report.add(String.format("%5d %,10.0f %8.1f %8.1f %13.2f %10.1f", nodes,
+                    result.requests() * 1000.0 / DURATION_MILLIS, result.percentile(0, 0.50), result.percentile(0, 0.99),
+                    (double) forwarded / Math.max(1, result.requests()), batchSize));
+                assertEquals(0, result.errors.get(), nodes + " nodes");
+            } finally {
+                instances.forEach(ConfigurableApplicationContext::close);
+            }
+        }
+        System.out.printf("%d clients, one writer in %d%n%s%n", CLIENTS, WRITER_EVERY,
+            "nodes      req/s   p50 ms   p99 ms forwarded/req batch size");
+        report.forEach(System.out::println);
+    }
+
+    /**
+     * @return operations served locally, operations forwarded, operations sent to peers and batches sent to peers, summed over the instances
+     */
+    private static long[] storeCounts(List<ConfigurableApplicationContext> instances) {
+        long[] counts = new long[4];
+        for (ConfigurableApplicationContext instance : instances) {
+            PartitionedReviewStore.Stats stats = instance.getBean(PartitionedReviewStore.class).stats();
+            counts[0] += stats.getServedLocally();
+            counts[1] += stats.getForwarded();
+            for (ReviewPeer.Stats peer : stats.getPeers()) {
+                counts[2] += peer.getOperations();
+                counts[3] += peer.getBatches();
+            }
+        }
+        return counts;
+    }
+
+    private static ApplicationHarness.Measurement drive(List<String> members, long millis) throws InterruptedException {
+        return ApplicationHarness.closedLoop(CLIENTS, millis, 1, client -> {
+            Random random = client.random;
+            String url = members.get(random.nextInt(members.size())) + "/movies/" + (1 + random.nextInt(MOVIES)) + "/details";
+            if (random.nextInt(WRITER_EVERY) == 0) {
+                ApplicationHarness.postReview(url, client.buffer);
+            } else {
+                ApplicationHarness.fetch(url, client.buffer);
+            }
+            return 0;
+        });
+    }
+}
@@ -0,0 +1,235 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts several instances on localhost, each owning a share of the reviews, and checks that every
+ * instance reads and writes every movie's reviews, that instances join and leave without losing any,
+ * and that a restarted instance's ratings still cover every owner's reviews.
+ */
+public class ReviewClusterTest {
+
+    private static final int MOVIES = 600;
+    private static final String SECRET = "test-cluster-secret";
+
+    private final Map<String, ConfigurableApplicationContext> instances = new LinkedHashMap<>();
+
+    @AfterEach
+    public void stop() {
+        instances.values().forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    public void testEveryInstanceServesEveryMovie() throws Exception {
+        List<String> members = Arrays.asList(url(ApplicationHarness.freePort()), url(ApplicationHarness.freePort()), url(ApplicationHarness.freePort()));
+        for (String member : members) {
+            start(member, members);
+        }
+        ReviewStore first = store(members.get(0));
+        for (long movieId = 1; movieId <= MOVIES; movieId++) {
+            first.addReview(movieId, review(movieId, 1));
+        }
+        for (String member : members) {
+            ReviewStore store = store(member);
+            for (long movieId = 1; movieId <= MOVIES; movieId += 7) {
+                assertEquals(1, store.getVersion(movieId));
+                assertEquals(comment(movieId, 1), store.getReviews(movieId).get(0).getComment());
+            }
+            long[] versions = store.getVersions(new long[] {1, 2, 3, 4, 5});
+            assertEquals("[1, 1, 1, 1, 1]", Arrays.toString(versions));
+        }
+        // Each instance holds only its own share
+        int held = 0;
+        for (String member : members) {
+            int[] count = new int[1];
+            instances.get(member).getBean(InMemoryReviewStore.class).forEachMovie((movieId, reviews) -> count[0]++);
+            assertTrue(count[0] > MOVIES / 6 && count[0] < MOVIES / 2, member + " holds " + count[0]);
+            held += count[0];
+        }
+        assertEquals(MOVIES, held);
+        assertTrue(instances.get(members.get(0)).getBean(PartitionedReviewStore.class).stats().getForwarded() > 0);
+
+        // A review posted through one instance shows on another's page and in a third's ratings
+        RatingAggregates ratings = instances.get(members.get(0)).getBean(RatingAggregates.class);
+        long fiveStars = ratings.get(4L).countOf(5);
+        HttpURLConnection post = ApplicationHarness.postForm(members.get(1) + "/movies/4/details",
+            "userName=Ana&rating=5&comment=A+gripping+story+with+great+acting");
+        assertEquals(302, post.getResponseCode());
+        HttpURLConnection details = (HttpURLConnection) new URL(members.get(2) + "/movies/4/details").openConnection();
+        assertEquals(200, details.getResponseCode());
+        assertTrue(ApplicationHarness.read(details).contains("A gripping story with great acting"));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (ratings.get(4L).countOf(5) == fiveStars && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(fiveStars + 1, ratings.get(4L).countOf(5));
+    }
+
+    @Test
+    public void testInstancesJoinAndLeave() throws Exception {
+        List<String> members = Arrays.asList(url(ApplicationHarness.freePort()), url(ApplicationHarness.freePort()));
+        for (String member : members) {
+            start(member, members);
+        }
+        for (long movieId = 1; movieId <= MOVIES; movieId++) {
+            store(members.get((int) (movieId % 2))).addReview(movieId, review(movieId, 1));
+        }
+
+        // A new instance starts with the current members, owning nothing, and asks to join
+        String joining = url(ApplicationHarness.freePort());
+        start(joining, members);
+        List<String> grown = new ArrayList<>(members);
+        grown.add(joining);
+        Map<String, Integer> handedOver = instances.get(joining).getBean(PartitionedReviewStore.class).changeMembers(grown);
+        int moved = handedOver.values().stream().mapToInt(Integer::intValue).sum();
+        assertEquals(0, (int) handedOver.get(joining));
+        assertTrue(moved > MOVIES / 6 && moved < MOVIES / 2, "moved " + moved);
+        for (long movieId = 1; movieId <= MOVIES; movieId++) {
+            store(joining).addReview(movieId, review(movieId, 2));
+        }
+        assertAllReviewsEverywhere(grown, 2);
+
+        // The first instance leaves: only its movies move, and nothing is lost
+        String leaving = members.get(0);
+        List<String> shrunk = grown.subList(1, grown.size());
+        handedOver = instances.get(members.get(1)).getBean(PartitionedReviewStore.class).changeMembers(shrunk);
+        assertEquals(handedOver.values().stream().mapToInt(Integer::intValue).sum(), (int) handedOver.get(leaving));
+        int[] left = new int[1];
+        instances.get(leaving).getBean(InMemoryReviewStore.class).forEachMovie((movieId, reviews) -> left[0]++);
+        assertEquals(0, left[0]);
+        assertAllReviewsEverywhere(shrunk, 2);
+        // Until it is stopped, the instance that left forwards everything to the owners
+        assertAllReviewsEverywhere(Arrays.asList(leaving), 2);
+        assertFalse(instances.get(leaving).getBean(PartitionedReviewStore.class).stats().isChangingMembers());
+    }
+
+    @Test
+    public void testInternalEndpointsNeedTheSecretAndValidateReviews() throws Exception {
+        List<String> members = Arrays.asList(url(ApplicationHarness.freePort()), url(ApplicationHarness.freePort()));
+        for (String member : members) {
+            start(member, members);
+        }
+        String body = String.join("\n", members);
+        assertEquals(403, ApplicationHarness.postForm(members.get(0) + "/internal/reviews/members", body).getResponseCode());
+        HttpURLConnection wrongSecret = (HttpURLConnection) new URL(members.get(0) + "/internal/reviews/prepare").openConnection();
+        wrongSecret.setRequestMethod("POST");
+        wrongSecret.setDoOutput(true);
+        wrongSecret.setRequestProperty(ReviewPeer.SECRET_HEADER, SECRET + "x");
+        try (OutputStream out = wrongSecret.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(403, wrongSecret.getResponseCode());
+        assertFalse(instances.get(members.get(0)).getBean(PartitionedReviewStore.class).stats().isChangingMembers());
+
+        // An addition from another instance is validated like a form post, wherever the movie lives
+        PartitionedReviewStore owner = instances.get(members.get(1)).getBean(PartitionedReviewStore.class);
+        List<ReviewBatch.Result> results = owner.handleBatch(Arrays.asList(
+            ReviewBatch.Op.add(4L, new Review("Mallory", "🧑", 4.0, "too short")),
+            ReviewBatch.Op.add(5L, new Review("Mallory", "🧑", 4.5, comment(5L, 1))),
+            ReviewBatch.Op.add(6L, review(6L, 1))));
+        assertEquals(ReviewBatch.FAILED, results.get(0).status);
+        assertEquals(ReviewBatch.FAILED, results.get(1).status);
+        assertEquals(ReviewBatch.OK, results.get(2).status);
+        assertEquals(0, store(members.get(0)).getVersion(4L));
+        assertEquals(0, store(members.get(0)).getVersion(5L));
+        assertEquals(1, store(members.get(0)).getVersion(6L));
+    }
+
+    @Test
+    public void testRestartedInstanceSeedsRatingsOfOtherOwners(@TempDir Path logs) throws Exception {
+        List<String> members = Arrays.asList(url(ApplicationHarness.freePort()), url(ApplicationHarness.freePort()));
+        for (String member : members) {
+            start(member, members, "--movies.reviews.log.directory=" + logs.resolve(String.valueOf(members.indexOf(member))));
+        }
+        for (long movieId = 1; movieId <= MOVIES; movieId++) {
+            store(members.get((int) (movieId % 2))).addReview(movieId,
+                new Review("User1", "🧑", 1 + movieId % 5, comment(movieId, 1)));
+        }
+        RatingAggregates survivor = instances.get(members.get(0)).getBean(RatingAggregates.class);
+        RatingAggregates before = instances.get(members.get(1)).getBean(RatingAggregates.class);
+        // Owners tell the others about reviews asynchronously
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!sameRatings(survivor, before) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(sameRatings(survivor, before));
+
+        String restarting = members.get(1);
+        instances.remove(restarting).close();
+        start(restarting, members, "--movies.reviews.log.directory=" + logs.resolve("1"));
+        RatingAggregates after = instances.get(restarting).getBean(RatingAggregates.class);
+        for (long movieId = 1; movieId <= MOVIES; movieId++) {
+            RatingSummary expected = survivor.get(movieId);
+            RatingSummary actual = after.get(movieId);
+            assertEquals(expected.getCount(), actual.getCount(), "movie " + movieId);
+            assertEquals(Arrays.toString(expected.getHistogram()), Arrays.toString(actual.getHistogram()), "movie " + movieId);
+            assertEquals(expected.getAverage(), actual.getAverage(), 1e-9, "movie " + movieId);
+        }
+        assertTrue(after.get(1L).getCount() > 0);
+    }
+
+    private static boolean sameRatings(RatingAggregates a, RatingAggregates b) {
+        for (long movieId = 1; movieId <= MOVIES; movieId++) {
+            if (!Arrays.equals(a.get(movieId).getHistogram(), b.get(movieId).getHistogram())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void assertAllReviewsEverywhere(List<String> members, int reviewsEach) {
+        for (String member : members) {
+            ReviewStore store = store(member);
+            for (long movieId = 1; movieId <= MOVIES; movieId += 5) {
+                List<Review> reviews = store.getReviews(movieId);
+                assertEquals(reviewsEach, reviews.size(), member + " movie " + movieId);
+                for (int i = 0; i < reviewsEach; i++) {
+                    assertEquals(comment(movieId, i + 1), reviews.get(i).getComment());
+                }
+            }
+        }
+    }
+
+    private void start(String self, List<String> members, String... extraArgs) {
+        List<String> args = new ArrayList<>(Arrays.asList("--server.port=" + self.substring(self.lastIndexOf(':') + 1),
+            "--movies.reviews.cluster.self=" + self, "--movies.reviews.cluster.nodes=" + String.join(",", members),
+            "--movies.reviews.cluster.secret=" + SECRET,
+            "--movies.access-log.enabled=false"));
+        args.addAll(Arrays.asList(extraArgs));
+        instances.put(self, ApplicationHarness.start(args.toArray(new String[0])));
+    }
+
+    private ReviewStore store(String member) {
+        return instances.get(member).getBean(ReviewStore.class);
+    }
+
+    private static Review review(long movieId, int n) {
+        return new Review("User" + n, "🧑", 4.0, comment(movieId, n));
+    }
+
+    private static String comment(long movieId, int n) {
+        return "Review " + n + " of movie " + movieId + " is here";
+    }
+
+    private static String url(int port) {
+        return "http://localhost:" + port;
+    }
+}
@@ -0,0 +1,394 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReviewLogTest {
+
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReplaysCommittedReviewsInOrder() throws Exception {
+        try (ReviewLog log = open(SEGMENT_BYTES, new ArrayList<>())) {
+            log.commit(log.append(1L, new Review("Ana", "👩", 5.0, "Loved every minute of it")));
+            log.commit(log.appendAll(new long[] {2L, 1L}, new Review[] {
+                new Review("Ben", "👨", 3.5, "Good but long"),
+                new Review("Zoë", null, 4.0, "Ein großartiger Film")}, 2));
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (ReviewLog log = open(SEGMENT_BYTES, replayed)) {
+            assertEquals(2, log.segmentCount());
+        }
+        assertEquals(3, replayed.size());
+        assertEquals("1|Ana|👩|5.0|Loved every minute of it", replayed.get(0));
+        assertEquals("2|Ben|👨|3.5|Good but long", replayed.get(1));
+        assertEquals("1|Zoë|null|4.0|Ein großartiger Film", replayed.get(2));
+    }
+
+    @Test
+    public void testCutsOffTornTailAndKeepsAppending() throws Exception {
+        try (ReviewLog log = open(SEGMENT_BYTES, new ArrayList<>())) {
+            for (int i = 0; i < 10; i++) {
+                log.commit(log.append(i, review(i)));
+            }
+        }
+        Path segment = segments().get(0);
+        long intact = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // A record header promising more bytes than were written before the crash
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 100, 1, 2, 3, 4, 9, 9}));
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (ReviewLog log = open(SEGMENT_BYTES, replayed)) {
+            log.commit(log.append(10L, review(10)));
+        }
+        assertEquals(10, replayed.size());
+        assertEquals(intact, Files.size(segment));
+
+        replayed.clear();
+        open(SEGMENT_BYTES, replayed).close();
+        assertEquals(11, replayed.size());
+        assertTrue(replayed.get(10).startsWith("10|"));
+    }
+
+    @Test
+    public void testStopsAtCorruptRecord() throws Exception {
+        try (ReviewLog log = open(SEGMENT_BYTES, new ArrayList<>())) {
+            for (int i = 0; i < 3; i++) {
+                log.commit(log.append(i, review(i)));
+            }
+        }
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 3] ^= 0x7F;
+        Files.write(segment, bytes);
+
+        List<String> replayed = new ArrayList<>();
+        open(SEGMENT_BYTES, replayed).close();
+        assertEquals(2, replayed.size());
+    }
+
+    @Test
+    public void testRollsSegmentsAndReplaysAcrossThem() throws Exception {
+        try (ReviewLog log = open(1024, new ArrayList<>())) {
+            for (int i = 0; i < 200; i++) {
+                log.commit(log.append(i % 7, review(i)));
+            }
+            assertTrue(log.segmentCount() > 10, "segments: " + log.segmentCount());
+        }
+        List<String> replayed = new ArrayList<>();
+        open(1024, replayed).close();
+        assertEquals(200, replayed.size());
+        for (int i = 0; i < 200; i++) {
+            assertTrue(replayed.get(i).startsWith((i % 7) + "|User " + i + "|"));
+        }
+    }
+
+    @Test
+    public void testCompactionMergesSmallSegments() throws Exception {
+        int restarts = 6;
+        for (int r = 0; r < restarts; r++) {
+            try (ReviewLog log = open(SEGMENT_BYTES, new ArrayList<>())) {
+                log.commit(log.append(r, review(r)));
+            }
+        }
+        List<String> before = new ArrayList<>();
+        try (ReviewLog log = open(SEGMENT_BYTES, before)) {
+            assertEquals(restarts + 1, log.segmentCount());
+            assertEquals(restarts, log.compact());
+            assertEquals(2, log.segmentCount());
+            assertEquals(0, log.compact());
+            log.commit(log.append(99L, review(99)));
+        }
+
+        List<String> after = new ArrayList<>();
+        open(SEGMENT_BYTES, after).close();
+        assertEquals(before, after.subList(0, restarts));
+        assertEquals(restarts + 1, after.size());
+    }
+
+    @Test
+    public void testRecoversFromCrashBetweenMergeAndDelete() throws Exception {
+        for (int r = 0; r < 3; r++) {
+            try (ReviewLog log = open(SEGMENT_BYTES, new ArrayList<>())) {
+                log.commit(log.append(r, review(r)));
+            }
+        }
+        List<Path> inputs = segments();
+        List<byte[]> saved = new ArrayList<>();
+        for (Path input : inputs) {
+            saved.add(Files.readAllBytes(input));
+        }
+        try (ReviewLog log = open(SEGMENT_BYTES, new ArrayList<>())) {
+            assertEquals(3, log.compact());
+        }
+        // Put back the inputs the merge deleted, as if the process died before deleting them
+        for (int i = 0; i < inputs.size() - 1; i++) {
+            Files.write(inputs.get(i), saved.get(i));
+        }
+        Files.write(directory.resolve(inputs.get(0).getFileName() + ".compacting"), saved.get(0));
+
+        List<String> replayed = new ArrayList<>();
+        open(SEGMENT_BYTES, replayed).close();
+        assertEquals(3, replayed.size());
+        assertTrue(replayed.get(0).startsWith("0|"));
+        assertTrue(replayed.get(2).startsWith("2|"));
+    }
+
+    @Test
+    public void testConcurrentWritersShareCommits() throws Exception {
+        int threads = 4;
+        int perThread = 200;
+        try (ReviewLog log = open(SEGMENT_BYTES, new ArrayList<>())) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                pool.execute(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        try {
+                            log.commit(log.append(thread, review(i)));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        }
+        List<String> replayed = new ArrayList<>();
+        open(SEGMENT_BYTES, replayed).close();
+        assertEquals(threads * perThread, replayed.size());
+    }
+
+    @Test
+    public void testStoreReplaysLogIntoMemoryAndAggregates() throws Exception {
+        String dir = directory.toString();
+        InMemoryReviewStore store = new InMemoryReviewStore(dir, SEGMENT_BYTES, 0, 0);
+        store.addReview(1L, new Review("Ana", "👩", 5.0, "Loved every minute of it"));
+        store.addReviews(new long[] {1L, 2L}, new Review[] {review(1), review(2)}, 2);
+        store.close();
+
+        InMemoryReviewStore reopened = new InMemoryReviewStore(dir, SEGMENT_BYTES, 0, 0);
+        try {
+            assertEquals(2, reopened.getReviews(1L).size());
+            assertEquals("Ana", reopened.getReviews(1L).get(0).getUserName());
+            assertEquals(1, reopened.getVersion(2L));
+            RatingAggregates aggregates = new RatingAggregates(new ReviewService(ReviewCatalog.empty()), reopened);
+            assertEquals(2, aggregates.get(1L).getCount());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersToOneMovieReplayInTheOrderReadersSaw() throws Exception {
+        String dir = directory.toString();
+        InMemoryReviewStore store = new InMemoryReviewStore(dir, SEGMENT_BYTES, 1000, 0);
+        int threads = 4;
+        int perThread = 300;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                for (int i = 0; i < perThread; i += 2) {
+                    store.addReview(1L, review(thread * perThread + i));
+                    store.addReviews(new long[] {1L, 2L}, new Review[] {review(thread * perThread + i + 1), review(i)}, 2);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        List<String> seen = new ArrayList<>();
+        store.getReviews(1L).forEach(review -> seen.add(describe(review)));
+        store.close();
+
+        InMemoryReviewStore reopened = new InMemoryReviewStore(dir, SEGMENT_BYTES, 1000, 0);
+        try {
+            List<String> replayed = new ArrayList<>();
+            reopened.getReviews(1L).forEach(review -> replayed.add(describe(review)));
+            assertEquals(threads * perThread, seen.size());
+            assertEquals(seen, replayed);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testRemovalsDropEarlierReviewsOnReplayAndCompaction() throws Exception {
+        for (int r = 0; r < 3; r++) {
+            try (ReviewLog log = open(SEGMENT_BYTES, new ArrayList<>())) {
+                log.commit(log.appendAll(new long[] {1L, 2L}, new Review[] {review(r), review(r)}, 2));
+            }
+        }
+        try (ReviewLog log = open(SEGMENT_BYTES, new ArrayList<>())) {
+            log.commit(log.appendRemovals(Arrays.asList(1L)));
+            log.commit(log.appendReplacement(2L, new Review[] {review(7)}));
+            log.commit(log.append(1L, review(8)));
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (ReviewLog log = open(SEGMENT_BYTES, replayed)) {
+            assertEquals(Arrays.asList("1|removed", "2|removed", "2|" + describe(review(7)), "1|" + describe(review(8))),
+                replayed.subList(6, replayed.size()));
+            assertEquals(4, log.compact());
+        }
+
+        // The reviews and removals the removals made redundant are gone from disk
+        replayed.clear();
+        open(SEGMENT_BYTES, replayed).close();
+        assertEquals(Arrays.asList("2|" + describe(review(7)), "1|" + describe(review(8))), replayed);
+    }
+
+    @Test
+    public void testStoreKeepsOneCopyOfHandedOverReviewsAcrossRestarts() throws Exception {
+        String dir = directory.toString();
+        InMemoryReviewStore store = new InMemoryReviewStore(dir, SEGMENT_BYTES, 0, 0);
+        store.addReview(1L, review(1));
+        store.restore(2L, Arrays.asList(review(2), review(3)));
+        // Handed away and back again
+        store.restore(2L, Arrays.asList(review(2), review(3)));
+        store.removeAll(Arrays.asList(1L));
+        assertTrue(store.getReviews(1L).isEmpty());
+        assertEquals(2, store.getReviews(2L).size());
+        store.close();
+
+        InMemoryReviewStore reopened = new InMemoryReviewStore(dir, SEGMENT_BYTES, 0, 0);
+        try {
+            assertTrue(reopened.getReviews(1L).isEmpty());
+            assertEquals(2, reopened.getReviews(2L).size());
+            assertEquals(review(3).getComment(), reopened.getReviews(2L).get(1).getComment());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Measures append throughput with fsync on every commit (one writer, then 8 sharing commits) and
+     * with background fsync, then writes 10M reviews and times replaying them. Run with {@code mvn test -Pperf}.
+     */
+    @Test
+    @Tag("perf")
+    public void measureAppendThroughputAndReplay() throws Exception {
+        System.out.printf("Review log append, fsync per commit, 1 writer: %,d reviews/s%n",
+            appendRate(directory.resolve("single"), 0, 1, 2_000));
+        System.out.printf("Review log append, fsync per commit, 8 writers: %,d reviews/s%n",
+            appendRate(directory.resolve("group"), 0, 8, 2_000));
+        System.out.printf("Review log append, fsync every 100 ms, 8 writers: %,d reviews/s%n",
+            appendRate(directory.resolve("interval"), 100, 8, 200_000));
+
+        int total = 10_000_000;
+        int batch = 1000;
+        Path replayDir = directory.resolve("replay");
+        long[] movieIds = new long[batch];
+        Review[] reviews = new Review[batch];
+        long start = System.nanoTime();
+        try (ReviewLog log = ReviewLog.open(replayDir, SEGMENT_BYTES, 1000, 0, (movieId, review) -> { })) {
+            for (int written = 0; written < total; written += batch) {
+                for (int i = 0; i < batch; i++) {
+                    movieIds[i] = 1 + (written + i) % 1000;
+                    reviews[i] = review(written + i);
+                }
+                log.commit(log.appendAll(movieIds, reviews, batch));
+            }
+        }
+        long writeNanos = System.nanoTime() - start;
+        long bytes = 0;
+        for (Path segment : segments(replayDir)) {
+            bytes += Files.size(segment);
+        }
+
+        AtomicLong replayed = new AtomicLong();
+        start = System.nanoTime();
+        ReviewLog.open(replayDir, SEGMENT_BYTES, 0, 0, (movieId, review) -> replayed.incrementAndGet()).close();
+        long replayNanos = System.nanoTime() - start;
+        assertEquals(total, replayed.get());
+        System.out.printf("Review log: wrote %,d reviews (%,d MB, %d segments) in %d ms = %,d reviews/s; replayed in %d ms = %,d reviews/s%n",
+            total, bytes >> 20, segments(replayDir).size(), TimeUnit.NANOSECONDS.toMillis(writeNanos),
+            total * TimeUnit.SECONDS.toNanos(1) / writeNanos, TimeUnit.NANOSECONDS.toMillis(replayNanos),
+            total * TimeUnit.SECONDS.toNanos(1) / replayNanos);
+    }
+
+    private static long appendRate(Path dir, long fsyncIntervalMillis, int threads, int perThread) throws Exception {
+        try (ReviewLog log = ReviewLog.open(dir, SEGMENT_BYTES, fsyncIntervalMillis, 0, (movieId, review) -> { })) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                pool.execute(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        try {
+                            log.commit(log.append(thread, review(i)));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.MINUTES));
+            return (long) threads * perThread * TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - start);
+        }
+    }
+
+    private ReviewLog open(long segmentBytes, List<String> replayed) throws IOException {
+        return ReviewLog.open(directory, segmentBytes, 0, 0, new ReviewLog.Replay() {
+            @Override
+            public void reviewAdded(long movieId, Review review) {
+                replayed.add(movieId + "|" + describe(review));
+            }
+
+            @Override
+            public void reviewsRemoved(long movieId) {
+                replayed.add(movieId + "|removed");
+            }
+        });
+    }
+
+    private List<Path> segments() throws IOException {
+        return segments(directory);
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, ReviewLog.SEGMENT_PREFIX + "*" + ReviewLog.SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static String describe(Review review) {
+        return review.getUserName() + "|" + review.getAvatarEmoji() + "|" + review.getRating() + "|" + review.getComment();
+    }
+
+    private static Review review(int i) {
+        return new Review("User " + i, "🧑", 1 + i % 5, "A gripping story with great acting, review number " + i);
+    }
+}
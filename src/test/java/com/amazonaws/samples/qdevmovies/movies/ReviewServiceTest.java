@@ -0,0 +1,47 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReviewServiceTest {
+
+    @Test
+    public void testLoadsSeedReviews() {
+        ReviewService reviewService = new ReviewService();
+        List<Review> reviews = reviewService.getReviewsForMovie(1L);
+        assertEquals(3, reviews.size());
+        assertEquals("MovieBuff87", reviews.get(0).getUserName());
+    }
+
+    @Test
+    public void testUnknownMovieHasNoReviews() {
+        ReviewService reviewService = new ReviewService();
+        assertTrue(reviewService.getReviewsForMovie(999L).isEmpty());
+    }
+
+    @Test
+    public void testReviewListsAreSharedAndUnmodifiable() {
+        ReviewService reviewService = new ReviewService();
+        List<Review> first = reviewService.getReviewsForMovie(2L);
+        assertSame(first, reviewService.getReviewsForMovie(2L));
+        assertThrows(UnsupportedOperationException.class, () -> first.add(new Review("u", "👨", 5.0, "c")));
+    }
+
+    @Test
+    public void testCatalogFromJson() {
+        String json = "{\"7\": [{\"userName\": \"A\", \"avatarEmoji\": \"👩\", \"rating\": 4.0, \"comment\": \"Nice\"}], \"8\": []}";
+        ReviewCatalog catalog = ReviewCatalog.fromJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, catalog.movieCount());
+        assertEquals(1, catalog.reviewCount());
+        assertEquals("A", catalog.get(7L).get(0).getUserName());
+        assertTrue(catalog.get(8L).isEmpty());
+    }
+}
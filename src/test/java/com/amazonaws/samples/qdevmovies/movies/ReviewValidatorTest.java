@@ -0,0 +1,129 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReviewValidatorTest {
+
+    private final ReviewValidator validator = ReviewValidator.defaults();
+
+    @Test
+    public void testValidReview() {
+        assertNull(validator.validate(new ReviewRequest("Ann", 4, "A really gripping film overall")));
+        assertNull(ReviewValidator.validateReview(new ReviewRequest("Ann", 4, "A really gripping film overall")));
+    }
+
+    @Test
+    public void testEachDefaultRule() {
+        assertEquals(ReviewValidationError.Code.NAME_REQUIRED, code(null, 4, "one two three four five"));
+        assertEquals(ReviewValidationError.Code.NAME_REQUIRED, code("  　", 4, "one two three four five"));
+        assertEquals(ReviewValidationError.Code.NAME_TOO_LONG, code(repeat("n", 51), 4, "one two three four five"));
+        assertNull(code("  " + repeat("n", 50) + "  ", 4, "one two three four five"));
+        assertEquals(ReviewValidationError.Code.RATING_OUT_OF_RANGE, code("Ann", 0, "one two three four five"));
+        assertEquals(ReviewValidationError.Code.RATING_OUT_OF_RANGE, code("Ann", 6, "one two three four five"));
+        assertEquals(ReviewValidationError.Code.COMMENT_REQUIRED, code("Ann", 4, "  \t\n "));
+        assertEquals(ReviewValidationError.Code.COMMENT_REQUIRED, code("Ann", 4, null));
+        assertEquals(ReviewValidationError.Code.TOO_FEW_WORDS, code("Ann", 4, "one two three four"));
+        assertEquals(ReviewValidationError.Code.TOO_MANY_WORDS, code("Ann", 4, repeat("w ", 501)));
+        assertEquals(ReviewValidationError.Code.COMMENT_TOO_LARGE, code("Ann", 4, "one two three four " + repeat("é", 1000)));
+    }
+
+    @Test
+    public void testLegacyMessagesAreKept() {
+        assertEquals("User name is required", ReviewValidator.validateReview(new ReviewRequest(" ", 4, "a b c d e")));
+        assertEquals("Rating must be between 1 and 5 stars", ReviewValidator.validateReview(new ReviewRequest("Ann", 9, "a b c d e")));
+        assertEquals("Review comment is required", ReviewValidator.validateReview(new ReviewRequest("Ann", 4, "")));
+        assertEquals("Review must be at least 5 words", ReviewValidator.validateReview(new ReviewRequest("Ann", 4, "a b c d")));
+    }
+
+    @Test
+    public void testScanCountsUnicodeWhitespaceAndUtf8Bytes() {
+        long scan = ReviewValidator.scanComment("one two　three four\tfive  six");
+        assertEquals(6, ReviewValidator.words(scan));
+
+        scan = ReviewValidator.scanComment("aé€😀");
+        assertEquals(1, ReviewValidator.words(scan));
+        assertEquals(1 + 2 + 3 + 4, ReviewValidator.utf8Bytes(scan));
+        assertEquals("aé€😀".getBytes(java.nio.charset.StandardCharsets.UTF_8).length, ReviewValidator.utf8Bytes(scan));
+    }
+
+    @Test
+    public void testLongCommentIsLinear() {
+        String huge = repeat("word ", 1_000_000);
+        ReviewValidator unbounded = new ReviewValidator(Collections.singletonList(ReviewRule.minWords(5)));
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(2), () -> {
+            for (int i = 0; i < 20; i++) {
+                assertNull(unbounded.validate(new ReviewRequest("Ann", 4, huge)));
+            }
+        });
+        assertEquals(ReviewValidationError.Code.TOO_MANY_WORDS, validator.validate(new ReviewRequest("Ann", 4, huge)).getCode());
+    }
+
+    @Test
+    public void testSuccessPathDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ReviewRequest request = new ReviewRequest("Ann", 4, "A really gripping film overall, with a twist ending");
+        ReviewValidationError[] errors = new ReviewValidationError[1];
+        List<ReviewRequest> batch = Collections.singletonList(request);
+        for (int i = 0; i < 200_000; i++) {
+            validator.validateAll(batch, errors);
+        }
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 100_000; i++) {
+            validator.validateAll(batch, errors);
+        }
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+        // Allow for the measurement itself and stray JIT activity, far below one object per call
+        assertTrue(allocated < 100_000, "allocated " + allocated + " bytes over 100k validations");
+    }
+
+    @Test
+    public void testBatchValidation() {
+        List<ReviewRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            requests.add(i % 10 == 0 ? new ReviewRequest("Ann", 9, "one two three four five")
+                                     : new ReviewRequest("Ann", 4, "one two three four five"));
+        }
+        ReviewValidationError[] errors = new ReviewValidationError[requests.size()];
+        assertEquals(500, validator.validateAll(requests, errors));
+        assertEquals(ReviewValidationError.Code.RATING_OUT_OF_RANGE, errors[0].getCode());
+        assertNull(errors[1]);
+        assertSame(errors[0], errors[10]);
+        assertEquals(500, validator.validateAll(requests).stream().filter(e -> e != null).count());
+    }
+
+    @Test
+    public void testCustomRulesAndMessages() {
+        ReviewValidator strict = new ReviewValidator(Arrays.asList(ReviewRule.ratingRange(3, 5), ReviewRule.minWords(2)));
+        assertEquals("Rating must be between 3 and 5 stars", strict.validate(new ReviewRequest(null, 2, "x y")).getMessage());
+        assertNull(strict.validate(new ReviewRequest(null, 3, "x y")));
+        assertEquals("Review must be at least 2 words", strict.messageFor("TOO_FEW_WORDS"));
+        assertEquals("Your review could not be saved", strict.messageFor("NAME_TOO_LONG"));
+        assertEquals("Your review could not be saved", strict.messageFor("<script>"));
+        assertNull(strict.messageFor(null));
+    }
+
+    private ReviewValidationError.Code code(String name, int rating, String comment) {
+        ReviewValidationError error = validator.validate(new ReviewRequest(name, rating, comment));
+        return error == null ? null : error.getCode();
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder(value.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
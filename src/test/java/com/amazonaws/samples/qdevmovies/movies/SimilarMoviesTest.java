@@ -0,0 +1,120 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SimilarMoviesTest {
+
+    private static final String[] GENRES = {"Drama", "Crime/Drama", "Action/Crime", "Action/Sci-Fi", "Adventure/Fantasy", "Comedy", "Horror/Thriller"};
+    private static final String[] DIRECTORS = {"Ann Lee", "Bo Kim", "Cy Dao", "Di Ruiz", "Ed Park", "Flo Ng", "Gus Ito", "Hal Moss"};
+    private static final String[] WORDS = {"heist", "family", "dream", "city", "hero", "prison", "ring", "space", "war", "club", "love", "secret", "night", "ocean", "robot", "kingdom"};
+
+    @Test
+    public void testExactNeighboursMatchBruteForce() {
+        List<Movie> movies = catalog(300, new Random(1));
+        SimilarMovies similarMovies = new SimilarMovies(movies, 10, 2);
+
+        float[] features = new float[movies.size() * SimilarMovies.DIMENSIONS];
+        for (int i = 0; i < movies.size(); i++) {
+            similarMovies.encode(movies.get(i), features, i * SimilarMovies.DIMENSIONS);
+        }
+        for (int i = 0; i < movies.size(); i++) {
+            int ordinal = i;
+            List<Integer> others = new ArrayList<>();
+            for (int j = 0; j < movies.size(); j++) {
+                if (j != i) {
+                    others.add(j);
+                }
+            }
+            others.sort(Comparator.<Integer>comparingDouble(j -> -dot(features, ordinal, j)).thenComparing(j -> j));
+            List<SimilarMovie> similar = similarMovies.similarTo(movies.get(i).getId(), 10);
+            assertEquals(10, similar.size());
+            for (int rank = 0; rank < 10; rank++) {
+                assertEquals(movies.get(others.get(rank)).getId(), similar.get(rank).getMovie().getId());
+                assertEquals(dot(features, i, others.get(rank)), similar.get(rank).getSimilarity(), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testBundledCatalogNeighbours() {
+        SimilarMovieService service = new SimilarMovieService(new MovieService(), 10, 1);
+
+        // Dream Heist: the other Action/Sci-Fi movie, then the same director's Action/Crime movie
+        assertEquals(Arrays.asList(7L, 3L), ids(service.similarTo(6L, 2)));
+        // Space Wars: Adventure/Sci-Fi, closest to the other Adventure movie
+        assertEquals(Arrays.asList(9L), ids(service.similarTo(10L, 1)));
+        assertEquals(10, service.similarTo(1L, null).size());
+        assertEquals(10, service.similarTo(1L, 100).size());
+        assertEquals(1, service.similarTo(1L, 0).size());
+        assertTrue(service.similarTo(99L, 5).isEmpty());
+        for (SimilarMovie similar : service.similarTo(2L, null)) {
+            assertTrue(similar.getMovie().getId() != 2L);
+        }
+    }
+
+    @Test
+    public void testHashedNeighboursAreCloseToExact() {
+        List<Movie> movies = catalog(10_000, new Random(2));
+        SimilarMovies approximate = new SimilarMovies(movies, 10, 2);
+        SimilarMovies exact = new SimilarMovies(movies, 10, 2, Integer.MAX_VALUE);
+
+        double approximateTotal = 0;
+        double exactTotal = 0;
+        int found = 0;
+        Random random = new Random(3);
+        for (int sample = 0; sample < 1000; sample++) {
+            long id = movies.get(random.nextInt(movies.size())).getId();
+            List<SimilarMovie> expected = exact.similarTo(id, 10);
+            List<SimilarMovie> actual = approximate.similarTo(id, 10);
+            assertEquals(10, actual.size());
+            for (int rank = 0; rank < 10; rank++) {
+                approximateTotal += actual.get(rank).getSimilarity();
+                exactTotal += expected.get(rank).getSimilarity();
+                if (actual.get(rank).getSimilarity() >= expected.get(9).getSimilarity()) {
+                    found++;
+                }
+            }
+        }
+        // Ties are common, so count a neighbour as found if it is as similar as the exact 10th
+        assertTrue(approximateTotal / exactTotal > 0.98, String.valueOf(approximateTotal / exactTotal));
+        assertTrue(found / 10_000.0 > 0.5, String.valueOf(found / 10_000.0));
+    }
+
+    private static List<Long> ids(List<SimilarMovie> similar) {
+        List<Long> ids = new ArrayList<>();
+        for (SimilarMovie movie : similar) {
+            ids.add(movie.getMovie().getId());
+        }
+        return ids;
+    }
+
+    private static float dot(float[] features, int a, int b) {
+        float sum = 0;
+        for (int i = 0; i < SimilarMovies.DIMENSIONS; i++) {
+            sum += features[a * SimilarMovies.DIMENSIONS + i] * features[b * SimilarMovies.DIMENSIONS + i];
+        }
+        return sum;
+    }
+
+    private static List<Movie> catalog(int size, Random random) {
+        List<Movie> movies = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            StringBuilder description = new StringBuilder();
+            for (int word = 0; word < 12; word++) {
+                description.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            movies.add(new Movie(i, "Movie " + i, DIRECTORS[random.nextInt(DIRECTORS.length)], 1950 + random.nextInt(70),
+                GENRES[random.nextInt(GENRES.length)], description.toString().trim(), 80 + random.nextInt(120), (2 + random.nextInt(7)) / 2.0));
+        }
+        return movies;
+    }
+}